@@ -0,0 +1,79 @@
+-- ====================================================
+-- 性能优化迁移脚本
+-- 配合后端批量写入、去重等改动使用，按章节顺序执行
+-- ====================================================
+
+USE deepseek_doctor;
+
+-- ====================================================
+-- 1. 标签批量关联
+-- 标签和文章-标签关联改为 INSERT IGNORE 批量写入，依赖以下唯一索引去重
+-- ====================================================
+
+-- 清理重复的文章-标签关联（保留ID最小的一条）
+DELETE at1 FROM article_tag at1
+INNER JOIN article_tag at2
+    ON at1.article_id = at2.article_id AND at1.tag_id = at2.tag_id AND at1.id > at2.id;
+
+ALTER TABLE article_tag ADD UNIQUE INDEX uk_article_tag (article_id, tag_id);
+
+-- 标签名唯一（存在重复标签名时需先人工合并）
+SELECT name, COUNT(*) AS duplicates FROM tag GROUP BY name HAVING COUNT(*) > 1;
+ALTER TABLE tag ADD UNIQUE INDEX uk_tag_name (name);
+
+-- ====================================================
+-- 2. 对话记忆
+-- 对话记忆冷启动时按用户加载最近的聊天记录
+-- ====================================================
+
+ALTER TABLE chat_record ADD INDEX idx_family_member_time (family_member, chat_time);
+
+-- ====================================================
+-- 3. 统计汇总表
+-- 访问和搜索统计消息按批汇总后累加写入，不再逐条处理
+-- ====================================================
+
+CREATE TABLE IF NOT EXISTS article_visit_minute (
+    article_id BIGINT NOT NULL COMMENT '文章ID',
+    minute_at DATETIME NOT NULL COMMENT '统计分钟',
+    visits BIGINT NOT NULL DEFAULT 0 COMMENT '访问数',
+    PRIMARY KEY (article_id, minute_at),
+    INDEX idx_minute_at (minute_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='文章每分钟访问数';
+
+CREATE TABLE IF NOT EXISTS article_visit_daily (
+    article_id BIGINT NOT NULL COMMENT '文章ID',
+    stat_date DATE NOT NULL COMMENT '统计日期',
+    visits BIGINT NOT NULL DEFAULT 0 COMMENT '访问数',
+    PRIMARY KEY (article_id, stat_date)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='文章每日访问数';
+
+CREATE TABLE IF NOT EXISTS search_keyword_minute (
+    keyword VARCHAR(100) NOT NULL COMMENT '搜索关键词',
+    minute_at DATETIME NOT NULL COMMENT '统计分钟',
+    searches BIGINT NOT NULL DEFAULT 0 COMMENT '搜索次数',
+    PRIMARY KEY (keyword, minute_at),
+    INDEX idx_minute_keyword (minute_at, keyword)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='关键词每分钟搜索次数';
+
+-- ====================================================
+-- 4. 发件箱
+-- 文章、评论事件与业务数据在同一事务中写入，由投递任务批量发送并等待 broker 确认
+-- ====================================================
+
+CREATE TABLE IF NOT EXISTS outbox_event (
+    id BIGINT NOT NULL AUTO_INCREMENT COMMENT '主键',
+    message_id VARCHAR(64) NOT NULL COMMENT '消息ID',
+    exchange VARCHAR(100) NOT NULL COMMENT '交换机',
+    routing_key VARCHAR(100) NOT NULL COMMENT '路由键',
+    payload_type VARCHAR(200) NOT NULL COMMENT '消息类型',
+    payload TEXT NOT NULL COMMENT '消息内容(JSON)',
+    status TINYINT NOT NULL DEFAULT 0 COMMENT '0待发送 1已发送 2失败',
+    attempts INT NOT NULL DEFAULT 0 COMMENT '发送失败次数',
+    next_attempt_at DATETIME NOT NULL COMMENT '下次发送时间',
+    created_at DATETIME NOT NULL COMMENT '创建时间',
+    sent_at DATETIME NULL COMMENT '发送时间',
+    PRIMARY KEY (id),
+    INDEX idx_status_next_attempt (status, next_attempt_at),
+    INDEX idx_status_sent_at (status, sent_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='发件箱事件';
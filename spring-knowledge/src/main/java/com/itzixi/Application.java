@@ -4,10 +4,12 @@ import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @MapperScan("com.itzixi.mapper")
 @ComponentScan(basePackages = "com.itzixi")
+@EnableScheduling
 public class Application {
 
     //    http://localhost:8080/hello/world
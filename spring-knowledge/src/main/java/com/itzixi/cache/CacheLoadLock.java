@@ -0,0 +1,78 @@
+package com.itzixi.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.UUID;
+
+/**
+ * 缓存加载分布式锁
+ * 同一个 key 在整个集群内同一时刻只由一个节点回源加载，其余节点等待 Redis 回填
+ */
+@Slf4j
+public class CacheLoadLock {
+
+    private static final String LOCK_KEY_PREFIX = "lock:cache:";
+
+    /**
+     * Redis 不可用时返回的令牌，表示不加锁直接加载
+     */
+    static final String NO_LOCK = "";
+
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final Duration leaseTime;
+
+    public CacheLoadLock(StringRedisTemplate stringRedisTemplate, Duration leaseTime) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.leaseTime = leaseTime;
+    }
+
+    /**
+     * 尝试加锁
+     * @return 锁令牌；未抢到锁返回 null
+     */
+    public String tryLock(String cacheName, String key) {
+        String token = UUID.randomUUID().toString();
+        try {
+            Boolean locked = stringRedisTemplate.opsForValue()
+                    .setIfAbsent(lockKey(cacheName, key), token, leaseTime);
+            return Boolean.TRUE.equals(locked) ? token : null;
+        } catch (Exception e) {
+            log.warn("缓存加载锁获取失败，直接回源: cache={}, key={}, error={}", cacheName, key, e.getMessage());
+            return NO_LOCK;
+        }
+    }
+
+    /**
+     * 释放锁，只删除自己持有的锁
+     */
+    public void unlock(String cacheName, String key, String token) {
+        if (token == null || NO_LOCK.equals(token)) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(lockKey(cacheName, key)), token);
+        } catch (Exception e) {
+            log.warn("缓存加载锁释放失败，等待自动过期: cache={}, key={}, error={}", cacheName, key, e.getMessage());
+        }
+    }
+
+    /**
+     * 未抢到锁时最长等待时间，与锁的租期一致
+     */
+    public Duration getLeaseTime() {
+        return leaseTime;
+    }
+
+    private String lockKey(String cacheName, String key) {
+        return LOCK_KEY_PREFIX + cacheName + ":" + key;
+    }
+}
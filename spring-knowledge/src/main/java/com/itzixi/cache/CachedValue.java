@@ -0,0 +1,51 @@
+package com.itzixi.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 缓存条目
+ * 除缓存值外还记录加载耗时和逻辑过期时间，用于提前刷新（XFetch）和过期后返回旧值
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CachedValue {
+
+    /**
+     * 缓存值，null 表示缓存的是空结果
+     */
+    private Object value;
+
+    /**
+     * 加载该值的耗时（毫秒）
+     */
+    private long loadMillis;
+
+    /**
+     * 逻辑过期时间（毫秒时间戳），Redis 中的实际过期时间会再多保留一段宽限期
+     */
+    private long expireAt;
+
+    /**
+     * 是否已经逻辑过期
+     */
+    public boolean expiredAt(long now) {
+        return now >= expireAt;
+    }
+
+    /**
+     * XFetch 概率提前过期：now - loadMillis * beta * ln(rand) >= expireAt
+     * 越接近过期、加载越慢，提前刷新的概率越高，使热点 key 在过期前由单个请求在后台刷新
+     */
+    public boolean shouldRefreshEarly(long now, double beta) {
+        if (beta <= 0 || loadMillis <= 0) {
+            return false;
+        }
+        double random = 1.0 - ThreadLocalRandom.current().nextDouble();
+        return now - loadMillis * beta * Math.log(random) >= expireAt;
+    }
+}
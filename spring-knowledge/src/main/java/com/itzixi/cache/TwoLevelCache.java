@@ -0,0 +1,340 @@
+package com.itzixi.cache;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 二级缓存
+ * L1 为进程内 Caffeine 缓存（有容量上限和较短的过期时间），L2 为 Redis 缓存；
+ * 读取时先查 L1，未命中再查 L2 并回填 L1，写入和删除会通知其他节点清除各自的 L1。
+ * 通过 get(key, loader)（即 @Cacheable(sync = true)）读取时带有击穿保护：
+ * 同一节点同一个 key 只有一个线程回源，热点 key 在过期前按概率后台刷新，过期后宽限期内先返回旧值。
+ * 注意：L1 中保存的是对象引用，调用方不应修改从缓存中取出的对象
+ */
+@Slf4j
+public class TwoLevelCache extends AbstractValueAdaptingCache {
+
+    private final String name;
+
+    private final com.github.benmanes.caffeine.cache.Cache<Object, Object> localCache;
+
+    private final Cache remoteCache;
+
+    /**
+     * 逻辑过期时间
+     */
+    private final long ttlMillis;
+
+    private final TwoLevelCacheManager cacheManager;
+
+    /**
+     * 正在进行的加载（包括后台刷新），同一个 key 的并发请求共用一个结果
+     */
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter remoteHits;
+
+    private final Counter remoteMisses;
+
+    private final Counter coalescedLoads;
+
+    private final Counter backgroundRefreshes;
+
+    private final Counter staleHits;
+
+    public TwoLevelCache(String name,
+                         com.github.benmanes.caffeine.cache.Cache<Object, Object> localCache,
+                         Cache remoteCache,
+                         Duration ttl,
+                         TwoLevelCacheManager cacheManager,
+                         MeterRegistry meterRegistry) {
+        super(true);
+        this.name = name;
+        this.localCache = localCache;
+        this.remoteCache = remoteCache;
+        this.ttlMillis = ttl.toMillis();
+        this.cacheManager = cacheManager;
+        this.remoteHits = Counter.builder("cache.gets")
+                .tags("cache", name, "level", "l2", "result", "hit")
+                .description("Redis 缓存命中次数")
+                .register(meterRegistry);
+        this.remoteMisses = Counter.builder("cache.gets")
+                .tags("cache", name, "level", "l2", "result", "miss")
+                .description("Redis 缓存未命中次数")
+                .register(meterRegistry);
+        this.coalescedLoads = Counter.builder("cache.loads.coalesced")
+                .tag("cache", name)
+                .description("等待其他线程加载结果而未回源的请求数")
+                .register(meterRegistry);
+        this.backgroundRefreshes = Counter.builder("cache.refreshes")
+                .tag("cache", name)
+                .description("后台提前刷新次数")
+                .register(meterRegistry);
+        this.staleHits = Counter.builder("cache.gets.stale")
+                .tag("cache", name)
+                .description("过期后在宽限期内返回旧值的次数")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return localCache;
+    }
+
+    /**
+     * 普通读取不做后台刷新，逻辑过期的条目视为未命中
+     */
+    @Override
+    protected Object lookup(Object key) {
+        CachedValue entry = lookupEntry(key);
+        if (entry == null || entry.expiredAt(System.currentTimeMillis())) {
+            return null;
+        }
+        return toStoreValue(entry.getValue());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        CachedValue entry = lookupEntry(key);
+        if (entry != null) {
+            long now = System.currentTimeMillis();
+            if (entry.expiredAt(now)) {
+                // 已过期但仍在宽限期内：先返回旧值，由一个后台任务回源
+                staleHits.increment();
+                refreshAsync(key, valueLoader, entry);
+            } else if (entry.shouldRefreshEarly(now, cacheManager.getEarlyRefreshBeta())) {
+                refreshAsync(key, valueLoader, entry);
+            }
+            return (T) entry.getValue();
+        }
+        return (T) loadOnce(key, valueLoader);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        putEntry(key, new CachedValue(value, 0, System.currentTimeMillis() + ttlMillis));
+    }
+
+    @Override
+    public void evict(Object key) {
+        remoteCache.evict(key);
+        String localKey = localKey(key);
+        localCache.invalidate(localKey);
+        cacheManager.publishEviction(name, localKey);
+    }
+
+    @Override
+    public void clear() {
+        remoteCache.clear();
+        localCache.invalidateAll();
+        cacheManager.publishEviction(name, null);
+    }
+
+    /**
+     * 收到其他节点的失效通知时只清除本地 L1
+     */
+    void evictLocal(String localKey) {
+        if (localKey == null) {
+            localCache.invalidateAll();
+        } else {
+            localCache.invalidate(localKey);
+        }
+    }
+
+    CacheStats localStats() {
+        return localCache.stats();
+    }
+
+    long localSize() {
+        return localCache.estimatedSize();
+    }
+
+    private CachedValue lookupEntry(Object key) {
+        String localKey = localKey(key);
+        Object local = localCache.getIfPresent(localKey);
+        if (local instanceof CachedValue entry) {
+            return entry;
+        }
+
+        ValueWrapper wrapper = remoteCache.get(key);
+        if (wrapper == null) {
+            remoteMisses.increment();
+            return null;
+        }
+        remoteHits.increment();
+        Object remote = wrapper.get();
+        // 兼容旧格式的缓存值：没有过期信息，按刚写入处理
+        CachedValue entry = remote instanceof CachedValue cachedValue
+                ? cachedValue
+                : new CachedValue(remote, 0, System.currentTimeMillis() + ttlMillis);
+        localCache.put(localKey, entry);
+        return entry;
+    }
+
+    /**
+     * 单飞加载：同一个 key 只有第一个请求回源，其余请求等待它的结果
+     */
+    private Object loadOnce(Object key, Callable<?> valueLoader) {
+        String localKey = localKey(key);
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(localKey, future);
+        if (existing != null) {
+            coalescedLoads.increment();
+            return await(existing);
+        }
+
+        try {
+            Object value = loadWithLock(key, localKey, valueLoader);
+            future.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(localKey, future);
+        }
+    }
+
+    /**
+     * 开启分布式锁时，未抢到锁的节点等待持锁节点回填 Redis，超时后再自行回源
+     */
+    private Object loadWithLock(Object key, String localKey, Callable<?> valueLoader) {
+        CacheLoadLock loadLock = cacheManager.getLoadLock();
+        if (loadLock == null) {
+            return load(key, valueLoader);
+        }
+
+        String token = loadLock.tryLock(name, localKey);
+        if (token == null) {
+            CachedValue filled = waitForRemote(key, loadLock.getLeaseTime());
+            if (filled != null) {
+                coalescedLoads.increment();
+                localCache.put(localKey, filled);
+                return filled.getValue();
+            }
+            log.warn("等待缓存回填超时，自行回源: cache={}, key={}", name, localKey);
+        }
+        try {
+            return load(key, valueLoader);
+        } finally {
+            loadLock.unlock(name, localKey, token);
+        }
+    }
+
+    private CachedValue waitForRemote(Object key, Duration timeout) {
+        long deadline = System.currentTimeMillis() + timeout.toMillis();
+        try {
+            while (System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+                ValueWrapper wrapper = remoteCache.get(key);
+                if (wrapper != null && wrapper.get() instanceof CachedValue entry
+                        && !entry.expiredAt(System.currentTimeMillis())) {
+                    return entry;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    /**
+     * 后台刷新：已有加载在进行时直接跳过；线程池满时放弃本次刷新，请求方继续使用旧值
+     */
+    private void refreshAsync(Object key, Callable<?> valueLoader, CachedValue current) {
+        String localKey = localKey(key);
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(localKey, future) != null) {
+            return;
+        }
+
+        try {
+            cacheManager.getRefreshExecutor().execute(() -> {
+                try {
+                    future.complete(refresh(key, localKey, valueLoader, current));
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                    log.warn("缓存后台刷新失败: cache={}, key={}, error={}", name, localKey, e.getMessage());
+                } finally {
+                    inFlight.remove(localKey, future);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(localKey, future);
+            future.complete(current.getValue());
+        }
+    }
+
+    private Object refresh(Object key, String localKey, Callable<?> valueLoader, CachedValue current) {
+        CacheLoadLock loadLock = cacheManager.getLoadLock();
+        String token = loadLock == null ? null : loadLock.tryLock(name, localKey);
+        if (loadLock != null && token == null) {
+            // 其他节点正在刷新
+            return current.getValue();
+        }
+        try {
+            backgroundRefreshes.increment();
+            return load(key, valueLoader);
+        } finally {
+            if (loadLock != null) {
+                loadLock.unlock(name, localKey, token);
+            }
+        }
+    }
+
+    private Object load(Object key, Callable<?> valueLoader) {
+        long start = System.currentTimeMillis();
+        Object value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        long now = System.currentTimeMillis();
+        putEntry(key, new CachedValue(value, now - start, now + ttlMillis));
+        return value;
+    }
+
+    private void putEntry(Object key, CachedValue entry) {
+        remoteCache.put(key, entry);
+        String localKey = localKey(key);
+        localCache.put(localKey, entry);
+        cacheManager.publishEviction(name, localKey);
+    }
+
+    private Object await(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * L1 统一使用字符串 key，与 Redis 中的 key 形式保持一致，跨节点失效时才能对上
+     */
+    private String localKey(Object key) {
+        return String.valueOf(key);
+    }
+}
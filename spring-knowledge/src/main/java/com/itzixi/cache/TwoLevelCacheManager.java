@@ -0,0 +1,212 @@
+package com.itzixi.cache;
+
+import com.alibaba.fastjson2.JSON;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+
+/**
+ * 二级缓存管理器
+ * 在 RedisCacheManager 之上为每个缓存区域包一层 Caffeine 本地缓存，
+ * 并通过 Redis 发布订阅在节点之间同步本地缓存的失效
+ */
+@Slf4j
+public class TwoLevelCacheManager implements CacheManager, MessageListener, InitializingBean {
+
+    /**
+     * 本地缓存失效通知频道
+     */
+    public static final String INVALIDATION_CHANNEL = "cache:invalidate";
+
+    private final RedisCacheManager redisCacheManager;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 各缓存区域的逻辑过期时间
+     */
+    private final Map<String, Duration> ttls;
+
+    private final Duration defaultTtl;
+
+    private final long localMaximumSize;
+
+    /**
+     * 本地缓存最长过期时间
+     */
+    private final Duration localMaxTtl;
+
+    /**
+     * 后台刷新线程池
+     */
+    private Executor refreshExecutor = Runnable::run;
+
+    /**
+     * XFetch 提前刷新系数，越大越早刷新，0 表示关闭
+     */
+    private double earlyRefreshBeta = 1.0;
+
+    /**
+     * 分布式加载锁，为 null 时只做单节点内的合并加载
+     */
+    private CacheLoadLock loadLock;
+
+    /**
+     * 当前节点标识，用于忽略自己发出的失效通知
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final ConcurrentMap<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(RedisCacheManager redisCacheManager,
+                                StringRedisTemplate stringRedisTemplate,
+                                MeterRegistry meterRegistry,
+                                Map<String, Duration> ttls,
+                                Duration defaultTtl,
+                                long localMaximumSize,
+                                Duration localMaxTtl) {
+        this.redisCacheManager = redisCacheManager;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.ttls = ttls;
+        this.defaultTtl = defaultTtl;
+        this.localMaximumSize = localMaximumSize;
+        this.localMaxTtl = localMaxTtl;
+    }
+
+    /**
+     * 预先创建已配置的缓存区域，启动后即可看到各区域的监控指标
+     */
+    @Override
+    public void afterPropertiesSet() {
+        ttls.keySet().forEach(this::getCache);
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    private TwoLevelCache createCache(String name) {
+        Cache remoteCache = redisCacheManager.getCache(name);
+        Duration ttl = ttls.getOrDefault(name, defaultTtl);
+        // 本地缓存过期时间不超过逻辑过期时间，避免失效通知丢失时长期读到旧数据
+        Duration localTtl = ttl.compareTo(localMaxTtl) < 0 ? ttl : localMaxTtl;
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> localCache = Caffeine.newBuilder()
+                .maximumSize(localMaximumSize)
+                .expireAfterWrite(localTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, name, "level", "l1");
+        log.info("创建二级缓存: {}, ttl={}, localTtl={}", name, ttl, localTtl);
+        return new TwoLevelCache(name, localCache, remoteCache, ttl, this, meterRegistry);
+    }
+
+    /**
+     * 通知其他节点清除本地缓存，key 为 null 表示清空整个缓存区域
+     * 通知失败只记录日志，其他节点的本地缓存会在过期后自然失效
+     */
+    void publishEviction(String cacheName, String key) {
+        try {
+            String payload = JSON.toJSONString(new CacheInvalidationMessage(nodeId, cacheName, key));
+            stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, payload);
+        } catch (Exception e) {
+            log.warn("发送缓存失效通知失败: cache={}, key={}, error={}", cacheName, key, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        CacheInvalidationMessage invalidation;
+        try {
+            invalidation = JSON.parseObject(new String(message.getBody(), StandardCharsets.UTF_8),
+                    CacheInvalidationMessage.class);
+        } catch (Exception e) {
+            log.warn("无法解析缓存失效通知: {}", e.getMessage());
+            return;
+        }
+        if (invalidation == null || nodeId.equals(invalidation.nodeId())) {
+            return;
+        }
+        TwoLevelCache cache = caches.get(invalidation.cacheName());
+        if (cache != null) {
+            cache.evictLocal(invalidation.key());
+            log.debug("收到缓存失效通知: cache={}, key={}", invalidation.cacheName(), invalidation.key());
+        }
+    }
+
+    public void setRefreshExecutor(Executor refreshExecutor) {
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    public void setEarlyRefreshBeta(double earlyRefreshBeta) {
+        this.earlyRefreshBeta = earlyRefreshBeta;
+    }
+
+    public void setLoadLock(CacheLoadLock loadLock) {
+        this.loadLock = loadLock;
+    }
+
+    Executor getRefreshExecutor() {
+        return refreshExecutor;
+    }
+
+    double getEarlyRefreshBeta() {
+        return earlyRefreshBeta;
+    }
+
+    CacheLoadLock getLoadLock() {
+        return loadLock;
+    }
+
+    /**
+     * 各缓存区域的本地缓存统计
+     */
+    public Map<String, Map<String, Object>> getLocalStatistics() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        caches.forEach((name, cache) -> {
+            CacheStats stats = cache.localStats();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("size", cache.localSize());
+            item.put("hitCount", stats.hitCount());
+            item.put("missCount", stats.missCount());
+            item.put("hitRate", stats.hitRate());
+            item.put("evictionCount", stats.evictionCount());
+            result.put(name, item);
+        });
+        return result;
+    }
+
+    /**
+     * 缓存失效通知
+     */
+    public record CacheInvalidationMessage(String nodeId, String cacheName, String key) {
+    }
+}
@@ -0,0 +1,36 @@
+package com.itzixi.common.result;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 游标分页结果
+ * 客户端把 nextCursor 原样传回即可获取下一页，翻页深度不影响查询开销
+ */
+@Data
+public class CursorPage<T> {
+    
+    private List<T> records;
+    
+    /**
+     * 下一页游标，没有更多数据时为 null
+     */
+    private String nextCursor;
+    
+    private boolean hasMore;
+    
+    /**
+     * 总数估算值（来自缓存，可能有短暂延迟），未请求总数时为 null
+     */
+    private Long total;
+    
+    public static <T> CursorPage<T> of(List<T> records, String nextCursor, Long total) {
+        CursorPage<T> page = new CursorPage<>();
+        page.setRecords(records);
+        page.setNextCursor(nextCursor);
+        page.setHasMore(nextCursor != null);
+        page.setTotal(total);
+        return page;
+    }
+}
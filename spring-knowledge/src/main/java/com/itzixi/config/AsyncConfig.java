@@ -1,6 +1,7 @@
 package com.itzixi.config;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
@@ -105,4 +106,82 @@ public class AsyncConfig {
         log.info("通知处理异步线程池初始化完成");
         return executor;
     }
-} 
\ No newline at end of file
+
+    /**
+     * AI 对话异步线程池
+     * 用于流式回复完成后保存聊天记录，不占用请求线程和响应式线程
+     */
+    @Bean("chatTaskExecutor")
+    public Executor chatTaskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(8);
+        executor.setQueueCapacity(500);
+        executor.setThreadNamePrefix("chat-async-");
+        executor.setKeepAliveSeconds(60);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+        log.info("AI对话异步线程池初始化完成");
+        return executor;
+    }
+
+    /**
+     * 缓存后台刷新线程池
+     * 刷新失败或被拒绝时请求方继续使用旧值，因此队列满时直接拒绝，不占用请求线程
+     */
+    @Bean("cacheRefreshExecutor")
+    public Executor cacheRefreshExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("cache-refresh-");
+        executor.setKeepAliveSeconds(60);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        log.info("缓存刷新线程池初始化完成");
+        return executor;
+    }
+
+    /**
+     * 发件箱投递线程
+     * 单线程顺序投递，多次唤醒在 OutboxRelay 中合并；队列满时拒绝，由定时任务兜底
+     */
+    @Bean("outboxRelayExecutor")
+    public Executor outboxRelayExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(10);
+        executor.setThreadNamePrefix("outbox-relay-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        log.info("发件箱投递线程池初始化完成");
+        return executor;
+    }
+
+    /**
+     * 搜索索引全量重建线程池
+     * 一个线程负责切块和等待，其余线程并行写入索引块；队列满时由切块线程自己执行，形成背压
+     */
+    @Bean("searchReindexExecutor")
+    public Executor searchReindexExecutor(@Value("${search.reindex.parallelism:4}") int parallelism) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism + 1);
+        executor.setMaxPoolSize(parallelism + 1);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("search-reindex-");
+        executor.setKeepAliveSeconds(60);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        log.info("搜索索引重建线程池初始化完成");
+        return executor;
+    }
+}
@@ -3,6 +3,7 @@ package com.itzixi.config;
 import com.baomidou.mybatisplus.annotation.DbType;
 import com.baomidou.mybatisplus.core.handlers.MetaObjectHandler;
 import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
+import com.baomidou.mybatisplus.extension.plugins.inner.PaginationInnerInterceptor;
 import org.apache.ibatis.reflection.MetaObject;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -15,13 +16,20 @@ import java.time.LocalDateTime;
 @Configuration
 public class MyBatisPlusConfig implements MetaObjectHandler {
     
+    /**
+     * 单页最大条数
+     */
+    private static final long MAX_PAGE_SIZE = 100L;
+    
     /**
      * 分页插件
      */
     @Bean
     public MybatisPlusInterceptor mybatisPlusInterceptor() {
         MybatisPlusInterceptor interceptor = new MybatisPlusInterceptor();
-        // 分页插件配置暂时简化，等依赖解决后再配置
+        PaginationInnerInterceptor pagination = new PaginationInnerInterceptor(DbType.MYSQL);
+        pagination.setMaxLimit(MAX_PAGE_SIZE);
+        interceptor.addInnerInterceptor(pagination);
         return interceptor;
     }
     
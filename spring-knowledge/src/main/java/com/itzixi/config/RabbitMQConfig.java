@@ -2,13 +2,22 @@ package com.itzixi.config;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.RabbitTemplateConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * RabbitMQ 消息队列配置
  * 用于高并发场景下的消息异步处理
@@ -26,6 +35,7 @@ public class RabbitMQConfig {
     // 队列名称
     public static final String ARTICLE_PUBLISH_QUEUE = "article.publish.queue";
     public static final String ARTICLE_UPDATE_QUEUE = "article.update.queue";
+    public static final String ARTICLE_DELETE_QUEUE = "article.delete.queue";
     public static final String COMMENT_PUBLISH_QUEUE = "comment.publish.queue";
     public static final String COMMENT_APPROVE_QUEUE = "comment.approve.queue";
     public static final String NOTIFICATION_EMAIL_QUEUE = "notification.email.queue";
@@ -35,12 +45,75 @@ public class RabbitMQConfig {
     // 路由键
     public static final String ARTICLE_PUBLISH_ROUTING_KEY = "article.publish";
     public static final String ARTICLE_UPDATE_ROUTING_KEY = "article.update";
+    public static final String ARTICLE_DELETE_ROUTING_KEY = "article.delete";
     public static final String COMMENT_PUBLISH_ROUTING_KEY = "comment.publish";
     public static final String COMMENT_APPROVE_ROUTING_KEY = "comment.approve";
     public static final String NOTIFICATION_EMAIL_ROUTING_KEY = "notification.email";
     public static final String STATS_VISIT_ROUTING_KEY = "stats.visit";
     public static final String STATS_SEARCH_ROUTING_KEY = "stats.search";
 
+    // 统计消息批量消费的容器工厂
+    public static final String STATS_BATCH_CONTAINER_FACTORY = "statsBatchContainerFactory";
+
+    // 手动确认、失败延时重试的容器工厂
+    public static final String RELIABLE_CONTAINER_FACTORY = "reliableContainerFactory";
+
+    // 死信交换机，业务队列的死信路由键为 "dlx." + 业务路由键
+    public static final String DLX_EXCHANGE = "dlx.exchange";
+
+    // 重试次数消息头
+    public static final String RETRY_COUNT_HEADER = "x-retry-count";
+
+    /**
+     * 业务队列及其路由键，每个队列对应一个死信队列
+     */
+    public static final Map<String, String> QUEUE_ROUTING_KEYS = new LinkedHashMap<>();
+
+    /**
+     * 失败后延时重试的队列
+     */
+    public static final List<String> RETRYABLE_QUEUES = List.of(
+            ARTICLE_PUBLISH_QUEUE, ARTICLE_UPDATE_QUEUE, ARTICLE_DELETE_QUEUE,
+            COMMENT_PUBLISH_QUEUE, COMMENT_APPROVE_QUEUE);
+
+    static {
+        QUEUE_ROUTING_KEYS.put(ARTICLE_PUBLISH_QUEUE, ARTICLE_PUBLISH_ROUTING_KEY);
+        QUEUE_ROUTING_KEYS.put(ARTICLE_UPDATE_QUEUE, ARTICLE_UPDATE_ROUTING_KEY);
+        QUEUE_ROUTING_KEYS.put(ARTICLE_DELETE_QUEUE, ARTICLE_DELETE_ROUTING_KEY);
+        QUEUE_ROUTING_KEYS.put(COMMENT_PUBLISH_QUEUE, COMMENT_PUBLISH_ROUTING_KEY);
+        QUEUE_ROUTING_KEYS.put(COMMENT_APPROVE_QUEUE, COMMENT_APPROVE_ROUTING_KEY);
+        QUEUE_ROUTING_KEYS.put(NOTIFICATION_EMAIL_QUEUE, NOTIFICATION_EMAIL_ROUTING_KEY);
+        QUEUE_ROUTING_KEYS.put(STATS_VISIT_QUEUE, STATS_VISIT_ROUTING_KEY);
+        QUEUE_ROUTING_KEYS.put(STATS_SEARCH_QUEUE, STATS_SEARCH_ROUTING_KEY);
+    }
+
+    /**
+     * 死信队列名
+     */
+    public static String deadLetterQueueName(String queue) {
+        return queue + ".dlq";
+    }
+
+    /**
+     * 重试队列名，包含延时，修改重试间隔时会声明新的队列
+     */
+    public static String retryQueueName(String queue, long delayMillis) {
+        return queue + ".retry." + delayMillis + "ms";
+    }
+
+    /**
+     * 各次重试的延时：初始间隔按倍数递增
+     */
+    public static List<Long> retryDelays(Duration initialInterval, double multiplier, int maxAttempts) {
+        List<Long> delays = new ArrayList<>(maxAttempts);
+        double delay = initialInterval.toMillis();
+        for (int i = 0; i < maxAttempts; i++) {
+            delays.add((long) delay);
+            delay *= multiplier;
+        }
+        return delays;
+    }
+
     /**
      * 消息转换器
      */
@@ -51,11 +124,15 @@ public class RabbitMQConfig {
 
     /**
      * RabbitTemplate 配置
+     * 先应用 spring.rabbitmq.template.* 配置；开启 mandatory，无法路由的消息由 broker 退回，
+     * 发件箱据此判断投递失败
      */
     @Bean
-    public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
-        RabbitTemplate rabbitTemplate = new RabbitTemplate(connectionFactory);
+    public RabbitTemplate rabbitTemplate(RabbitTemplateConfigurer configurer, ConnectionFactory connectionFactory) {
+        RabbitTemplate rabbitTemplate = new RabbitTemplate();
+        configurer.configure(rabbitTemplate, connectionFactory);
         rabbitTemplate.setMessageConverter(jsonMessageConverter());
+        rabbitTemplate.setMandatory(true);
         
         // 消息发送确认
         rabbitTemplate.setConfirmCallback((correlationData, ack, cause) -> {
@@ -76,6 +153,83 @@ public class RabbitMQConfig {
         return rabbitTemplate;
     }
 
+    /**
+     * 统计消息批量消费容器工厂
+     * 每次取一批消息交给监听器，处理完成后整批确认一次；预取数不小于批大小，保证批能攒满
+     */
+    @Bean(STATS_BATCH_CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory statsBatchContainerFactory(
+            ConnectionFactory connectionFactory,
+            @Value("${stats.batch.size:1000}") int batchSize,
+            @Value("${stats.batch.prefetch:5000}") int prefetch,
+            @Value("${stats.batch.receive-timeout:200ms}") Duration receiveTimeout,
+            @Value("${stats.batch.concurrency:2}") int concurrency) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(jsonMessageConverter());
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setPrefetchCount(Math.max(prefetch, batchSize));
+        // 批未攒满时最多等待的时间
+        factory.setReceiveTimeout(receiveTimeout.toMillis());
+        factory.setConcurrentConsumers(concurrency);
+        factory.setMaxConcurrentConsumers(concurrency);
+        return factory;
+    }
+
+    /**
+     * 业务消息消费容器工厂
+     * 不论环境配置如何都使用手动确认，由 MessageRetryHandler 确认、重试或转入死信队列
+     */
+    @Bean(RELIABLE_CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory reliableContainerFactory(
+            ConnectionFactory connectionFactory,
+            @Value("${mq.consumer.prefetch:50}") int prefetch,
+            @Value("${mq.consumer.concurrency:2}") int concurrency,
+            @Value("${mq.consumer.max-concurrency:8}") int maxConcurrency) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(jsonMessageConverter());
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setPrefetchCount(prefetch);
+        factory.setConcurrentConsumers(concurrency);
+        factory.setMaxConcurrentConsumers(Math.max(concurrency, maxConcurrency));
+        factory.setDefaultRequeueRejected(false);
+        return factory;
+    }
+
+    /**
+     * 死信交换机、死信队列和重试队列
+     * 重试队列没有消费者，消息过期后经默认交换机回到原队列
+     */
+    @Bean
+    public Declarables retryAndDeadLetterDeclarables(
+            @Value("${mq.retry.initial-interval:1s}") Duration initialInterval,
+            @Value("${mq.retry.multiplier:5}") double multiplier,
+            @Value("${mq.retry.max-attempts:3}") int maxAttempts) {
+        List<Declarable> declarables = new ArrayList<>();
+        DirectExchange deadLetterExchange = new DirectExchange(DLX_EXCHANGE, true, false);
+        declarables.add(deadLetterExchange);
+        QUEUE_ROUTING_KEYS.forEach((queue, routingKey) -> {
+            Queue deadLetterQueue = QueueBuilder.durable(deadLetterQueueName(queue)).build();
+            declarables.add(deadLetterQueue);
+            declarables.add(BindingBuilder.bind(deadLetterQueue).to(deadLetterExchange).with("dlx." + routingKey));
+        });
+        List<Long> delays = retryDelays(initialInterval, multiplier, maxAttempts);
+        for (String queue : RETRYABLE_QUEUES) {
+            for (Long delay : delays) {
+                declarables.add(QueueBuilder.durable(retryQueueName(queue, delay))
+                        .withArgument("x-message-ttl", delay)
+                        .withArgument("x-dead-letter-exchange", "")
+                        .withArgument("x-dead-letter-routing-key", queue)
+                        .build());
+            }
+        }
+        return new Declarables(declarables);
+    }
+
     /**
      * 文章交换机
      */
@@ -132,6 +286,18 @@ public class RabbitMQConfig {
                 .build();
     }
 
+    /**
+     * 文章删除队列
+     */
+    @Bean
+    public Queue articleDeleteQueue() {
+        return QueueBuilder.durable(ARTICLE_DELETE_QUEUE)
+                .withArgument("x-message-ttl", 30000)
+                .withArgument("x-dead-letter-exchange", "dlx.exchange")
+                .withArgument("x-dead-letter-routing-key", "dlx.article.delete")
+                .build();
+    }
+
     /**
      * 评论发布队列
      */
@@ -212,6 +378,16 @@ public class RabbitMQConfig {
                 .with(ARTICLE_UPDATE_ROUTING_KEY);
     }
 
+    /**
+     * 绑定文章删除队列到交换机
+     */
+    @Bean
+    public Binding articleDeleteBinding() {
+        return BindingBuilder.bind(articleDeleteQueue())
+                .to(articleExchange())
+                .with(ARTICLE_DELETE_ROUTING_KEY);
+    }
+
     /**
      * 绑定评论发布队列到交换机
      */
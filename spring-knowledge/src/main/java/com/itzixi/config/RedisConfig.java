@@ -1,10 +1,22 @@
 package com.itzixi.config;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
-import org.springframework.cache.CacheManager;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.itzixi.cache.CacheLoadLock;
+import com.itzixi.cache.TwoLevelCacheManager;
+import com.itzixi.security.PrincipalCache;
+import com.itzixi.security.TokenRevocationList;
+import com.itzixi.utils.SSEServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -12,21 +24,73 @@ import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.adapter.RedisListenerExecutionFailedException;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Executor;
 
 /**
  * Redis 缓存配置类
  * 支持高并发场景的缓存配置
  */
+@Slf4j
 @Configuration
 @EnableCaching
 public class RedisConfig {
     
+    /**
+     * Redis 消息订阅启动失败后的重试间隔（秒）
+     */
+    private static final long SUBSCRIBE_RETRY_SECONDS = 10;
+    
+    /**
+     * 本地缓存每个缓存区域的最大条目数
+     */
+    @Value("${cache.local.maximum-size:10000}")
+    private long localMaximumSize;
+    
+    /**
+     * 本地缓存最长过期时间
+     */
+    @Value("${cache.local.expire-after-write:60s}")
+    private Duration localExpireAfterWrite;
+    
+    /**
+     * 逻辑过期后 Redis 中继续保留旧值的宽限期，期间请求先拿旧值，由后台刷新
+     */
+    @Value("${cache.stampede.stale-grace:60s}")
+    private Duration staleGrace;
+    
+    /**
+     * XFetch 提前刷新系数，0 表示关闭提前刷新
+     */
+    @Value("${cache.stampede.early-refresh-beta:1.0}")
+    private double earlyRefreshBeta;
+    
+    /**
+     * 是否启用跨节点的缓存加载锁
+     */
+    @Value("${cache.stampede.distributed-lock:false}")
+    private boolean distributedLock;
+    
+    /**
+     * 缓存加载锁的租期，也是未抢到锁时等待回填的最长时间
+     */
+    @Value("${cache.stampede.lock-lease-time:5s}")
+    private Duration lockLeaseTime;
+    
     /**
      * RedisTemplate 配置
      * 使用 Jackson2JsonRedisSerializer 进行序列化
@@ -55,39 +119,99 @@ public class RedisConfig {
     
     /**
      * 缓存管理器配置
-     * 支持不同缓存区域的不同过期时间
+     * Caffeine 本地缓存（L1）+ Redis 缓存（L2），支持不同缓存区域的不同过期时间
      */
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory factory) {
-        // 默认缓存配置
+    public TwoLevelCacheManager cacheManager(RedisConnectionFactory factory,
+                                             StringRedisTemplate stringRedisTemplate,
+                                             MeterRegistry meterRegistry,
+                                             @Qualifier("cacheRefreshExecutor") Executor cacheRefreshExecutor) {
+        Duration defaultTtl = Duration.ofMinutes(30);  // 默认缓存30分钟
+        // 默认缓存配置，各缓存区域在此基础上只修改过期时间，保持 key/value 序列化方式一致
         RedisCacheConfiguration config = RedisCacheConfiguration.defaultCacheConfig()
-            .entryTtl(Duration.ofMinutes(30))  // 默认缓存30分钟
+            .entryTtl(defaultTtl.plus(staleGrace))
             .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
-            .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(new GenericJackson2JsonRedisSerializer()));
+            .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(cacheValueSerializer()));
+        
+        Map<String, Duration> ttls = new LinkedHashMap<>();
+        ttls.put("user", Duration.ofHours(2));         // 用户信息缓存 - 2小时
+        ttls.put("article", Duration.ofMinutes(10));   // 文章详情缓存 - 10分钟
+        ttls.put("hot", Duration.ofMinutes(5));        // 热门文章缓存 - 5分钟
+        ttls.put("latest", Duration.ofMinutes(5));     // 最新文章缓存 - 5分钟
+        ttls.put("category", Duration.ofHours(1));     // 分类缓存 - 1小时
+        ttls.put("tag", Duration.ofMinutes(30));       // 标签缓存 - 30分钟
+        ttls.put("search", Duration.ofMinutes(5));     // 搜索结果缓存 - 5分钟
+        ttls.put("stats", Duration.ofMinutes(1));      // 统计数据缓存 - 1分钟
+        ttls.put("comment", Duration.ofMinutes(5));    // 文章评论树缓存 - 5分钟
         
-        return RedisCacheManager.builder(factory)
+        // 以上为逻辑过期时间，Redis 中多保留一段宽限期用于返回旧值
+        Map<String, RedisCacheConfiguration> redisConfigs = new LinkedHashMap<>();
+        ttls.forEach((name, ttl) -> redisConfigs.put(name, config.entryTtl(ttl.plus(staleGrace))));
+        
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(factory)
             .cacheDefaults(config)
-            // 用户信息缓存 - 2小时
-            .withCacheConfiguration("user", 
-                RedisCacheConfiguration.defaultCacheConfig().entryTtl(Duration.ofHours(2)))
-            // 文章详情缓存 - 10分钟
-            .withCacheConfiguration("article", 
-                RedisCacheConfiguration.defaultCacheConfig().entryTtl(Duration.ofMinutes(10)))
-            // 热门文章缓存 - 5分钟
-            .withCacheConfiguration("hot", 
-                RedisCacheConfiguration.defaultCacheConfig().entryTtl(Duration.ofMinutes(5)))
-            // 分类缓存 - 1小时
-            .withCacheConfiguration("category", 
-                RedisCacheConfiguration.defaultCacheConfig().entryTtl(Duration.ofHours(1)))
-            // 标签缓存 - 30分钟
-            .withCacheConfiguration("tag", 
-                RedisCacheConfiguration.defaultCacheConfig().entryTtl(Duration.ofMinutes(30)))
-            // 搜索结果缓存 - 5分钟
-            .withCacheConfiguration("search", 
-                RedisCacheConfiguration.defaultCacheConfig().entryTtl(Duration.ofMinutes(5)))
-            // 统计数据缓存 - 1分钟
-            .withCacheConfiguration("stats", 
-                RedisCacheConfiguration.defaultCacheConfig().entryTtl(Duration.ofMinutes(1)))
+            .withInitialCacheConfigurations(redisConfigs)
             .build();
+        redisCacheManager.afterPropertiesSet();
+        
+        TwoLevelCacheManager cacheManager = new TwoLevelCacheManager(redisCacheManager, stringRedisTemplate,
+            meterRegistry, ttls, defaultTtl, localMaximumSize, localExpireAfterWrite);
+        cacheManager.setRefreshExecutor(cacheRefreshExecutor);
+        cacheManager.setEarlyRefreshBeta(earlyRefreshBeta);
+        if (distributedLock) {
+            cacheManager.setLoadLock(new CacheLoadLock(stringRedisTemplate, lockLeaseTime));
+        }
+        return cacheManager;
+    }
+    
+    /**
+     * Redis 消息监听容器
+     * 订阅本地缓存、认证缓存的失效通知、Token吊销通知和SSE节点间转发的消息
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory factory,
+                                                                       TwoLevelCacheManager cacheManager,
+                                                                       PrincipalCache principalCache,
+                                                                       TokenRevocationList tokenRevocationList,
+                                                                       SSEServer sseServer) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer() {
+            @Override
+            public void start() {
+                try {
+                    super.start();
+                } catch (RedisListenerExecutionFailedException | IllegalStateException e) {
+                    // Redis 暂不可用时不阻止应用启动，本地缓存照常工作，稍后重试订阅
+                    log.warn("Redis 消息订阅启动失败，{} 秒后重试: {}", SUBSCRIBE_RETRY_SECONDS, e.getMessage());
+                    super.stop();
+                    CompletableFuture.delayedExecutor(SUBSCRIBE_RETRY_SECONDS, TimeUnit.SECONDS).execute(() -> {
+                        if (isActive() && !isRunning()) {
+                            start();
+                        }
+                    });
+                }
+            }
+        };
+        container.setConnectionFactory(factory);
+        container.addMessageListener(cacheManager, new ChannelTopic(TwoLevelCacheManager.INVALIDATION_CHANNEL));
+        container.addMessageListener(principalCache, new ChannelTopic(PrincipalCache.INVALIDATION_CHANNEL));
+        container.addMessageListener(tokenRevocationList, new ChannelTopic(TokenRevocationList.REVOCATION_CHANNEL));
+        container.addMessageListener(sseServer, List.of(new ChannelTopic(sseServer.getNodeChannel()),
+                new ChannelTopic(SSEServer.BROADCAST_CHANNEL)));
+        return container;
+    }
+    
+    /**
+     * 缓存值序列化器
+     * 支持 LocalDateTime 等 Java 8 时间类型，并忽略实体中新增或只读的属性
+     */
+    private GenericJackson2JsonRedisSerializer cacheValueSerializer() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        mapper.activateDefaultTyping(LaissezFaireSubTypeValidator.instance,
+            ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+        GenericJackson2JsonRedisSerializer.registerNullValueSerializer(mapper, null);
+        return new GenericJackson2JsonRedisSerializer(mapper);
     }
-} 
\ No newline at end of file
+}
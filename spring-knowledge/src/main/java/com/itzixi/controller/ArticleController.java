@@ -2,9 +2,14 @@ package com.itzixi.controller;
 
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.itzixi.common.result.CursorPage;
 import com.itzixi.common.result.Result;
+import com.itzixi.dto.KeywordSearchCount;
 import com.itzixi.entity.Article;
 import com.itzixi.service.ArticleService;
+import com.itzixi.service.StatsEventPublisher;
+import com.itzixi.service.StatsRollupService;
+import jakarta.servlet.http.HttpServletRequest;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -34,6 +39,10 @@ public class ArticleController {
     
     private final ArticleService articleService;
     
+    private final StatsRollupService statsRollupService;
+    
+    private final StatsEventPublisher statsEventPublisher;
+    
     @Operation(summary = "分页查询文章列表", description = "获取文章列表，支持分页和状态筛选")
     @GetMapping
     public DeferredResult<Result<IPage<Article>>> getArticles(
@@ -80,15 +89,28 @@ public class ArticleController {
         return deferredResult;
     }
     
+    @Operation(summary = "游标分页查询文章列表", description = "按置顶、创建时间倒序返回文章，传入上一页的 nextCursor 获取下一页，翻页深度不影响性能")
+    @GetMapping("/cursor")
+    public Result<CursorPage<Article>> getArticlesByCursor(
+            @Parameter(description = "上一页返回的游标，首页不传") @RequestParam(required = false) String cursor,
+            @Parameter(description = "页大小", example = "10") @RequestParam(defaultValue = "10") Integer size,
+            @Parameter(description = "状态") @RequestParam(required = false) Integer status,
+            @Parameter(description = "是否返回总数估算值") @RequestParam(defaultValue = "false") Boolean withTotal) {
+        return Result.success(articleService.getArticleCursorPage(cursor, size, status, withTotal));
+    }
+    
     @Operation(summary = "根据ID查询文章详情", description = "获取指定ID的文章详细信息")
     @GetMapping("/{id}")
-    public Result<Article> getArticleById(@Parameter(description = "文章ID") @PathVariable Long id) {
+    public Result<Article> getArticleById(@Parameter(description = "文章ID") @PathVariable Long id,
+                                          HttpServletRequest request) {
         Article article = articleService.getArticleById(id);
         if (article == null) {
             return Result.notFound();
         }
         // 增加阅读量
         articleService.incrementViews(id);
+        // 记录访问统计，只写入内存缓冲区，不等待消息队列
+        statsEventPublisher.recordVisit(id, getCurrentUserId(), getClientIpAddress(request), request.getHeader("User-Agent"));
         return Result.success(article);
     }
     
@@ -206,7 +228,7 @@ public class ArticleController {
     @Operation(summary = "删除文章", description = "删除指定ID的文章")
     @DeleteMapping("/{id}")
     public Result<Void> deleteArticle(@Parameter(description = "文章ID") @PathVariable Long id) {
-        boolean success = articleService.deleteArticle(id);
+        boolean success = articleService.deleteArticle(id, getCurrentUserId());
         return success ? Result.success("文章删除成功", null) : Result.error("文章删除失败");
     }
     
@@ -288,13 +310,39 @@ public class ArticleController {
     public Result<IPage<Article>> searchArticles(
             @Parameter(description = "关键词") @RequestParam String keyword,
             @Parameter(description = "页码", example = "1") @RequestParam(defaultValue = "1") Integer pageNum,
-            @Parameter(description = "页大小", example = "10") @RequestParam(defaultValue = "10") Integer pageSize) {
+            @Parameter(description = "页大小", example = "10") @RequestParam(defaultValue = "10") Integer pageSize,
+            HttpServletRequest request) {
         
         Page<Article> page = new Page<>(pageNum, pageSize);
         IPage<Article> result = articleService.searchArticles(page, keyword);
+        // 翻页不重复统计
+        if (pageNum == 1) {
+            statsEventPublisher.recordSearch(keyword, getCurrentUserId(), getClientIpAddress(request), request.getHeader("User-Agent"));
+        }
         return Result.success(result);
     }
     
+    @Operation(summary = "游标分页搜索文章", description = "按相关度返回搜索结果，传入上一页的 nextCursor 获取下一页")
+    @GetMapping("/search/cursor")
+    public Result<CursorPage<Article>> searchArticlesByCursor(
+            @Parameter(description = "关键词") @RequestParam String keyword,
+            @Parameter(description = "上一页返回的游标，首页不传") @RequestParam(required = false) String cursor,
+            @Parameter(description = "页大小", example = "10") @RequestParam(defaultValue = "10") Integer size,
+            HttpServletRequest request) {
+        if (cursor == null) {
+            statsEventPublisher.recordSearch(keyword, getCurrentUserId(), getClientIpAddress(request), request.getHeader("User-Agent"));
+        }
+        return Result.success(articleService.searchArticlesByCursor(keyword, cursor, size));
+    }
+    
+    @Operation(summary = "热门搜索关键词", description = "按最近一段时间的搜索次数排序")
+    @GetMapping("/search/trending")
+    public Result<List<KeywordSearchCount>> getTrendingKeywords(
+            @Parameter(description = "统计最近多少分钟", example = "60") @RequestParam(defaultValue = "60") Integer minutes,
+            @Parameter(description = "数量限制", example = "10") @RequestParam(defaultValue = "10") Integer limit) {
+        return Result.success(statsRollupService.getTrendingKeywords(minutes, limit));
+    }
+    
     @Operation(summary = "获取热门文章", description = "获取最受欢迎的文章列表")
     @GetMapping("/popular")
     public Result<List<Article>> getPopularArticles(
@@ -314,15 +362,23 @@ public class ArticleController {
     @Operation(summary = "点赞文章", description = "为文章点赞")
     @PostMapping("/{id}/like")
     public Result<Void> likeArticle(@Parameter(description = "文章ID") @PathVariable Long id) {
-        boolean success = articleService.likeArticle(id);
-        return success ? Result.success("点赞成功", null) : Result.error("点赞失败");
+        User currentUser = getCurrentUser();
+        if (currentUser == null) {
+            return Result.unauthorized("请先登录");
+        }
+        boolean success = articleService.likeArticle(id, currentUser.getId());
+        return success ? Result.success("点赞成功", null) : Result.badRequest("已经点过赞了");
     }
     
     @Operation(summary = "取消点赞文章", description = "取消文章点赞")
     @DeleteMapping("/{id}/like")
     public Result<Void> unlikeArticle(@Parameter(description = "文章ID") @PathVariable Long id) {
-        boolean success = articleService.unlikeArticle(id);
-        return success ? Result.success("取消点赞成功", null) : Result.error("操作失败");
+        User currentUser = getCurrentUser();
+        if (currentUser == null) {
+            return Result.unauthorized("请先登录");
+        }
+        boolean success = articleService.unlikeArticle(id, currentUser.getId());
+        return success ? Result.success("取消点赞成功", null) : Result.badRequest("尚未点赞");
     }
     
     /**
@@ -335,4 +391,26 @@ public class ArticleController {
         }
         return null;
     }
+    
+    private Long getCurrentUserId() {
+        User currentUser = getCurrentUser();
+        return currentUser != null ? currentUser.getId() : null;
+    }
+    
+    /**
+     * 获取客户端真实IP地址
+     */
+    private String getClientIpAddress(HttpServletRequest request) {
+        String xForwardedFor = request.getHeader("X-Forwarded-For");
+        if (xForwardedFor != null && !xForwardedFor.isEmpty() && !"unknown".equalsIgnoreCase(xForwardedFor)) {
+            return xForwardedFor.split(",")[0].trim();
+        }
+        
+        String xRealIp = request.getHeader("X-Real-IP");
+        if (xRealIp != null && !xRealIp.isEmpty() && !"unknown".equalsIgnoreCase(xRealIp)) {
+            return xRealIp;
+        }
+        
+        return request.getRemoteAddr();
+    }
 } 
\ No newline at end of file
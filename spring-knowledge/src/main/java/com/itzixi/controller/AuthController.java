@@ -199,9 +199,12 @@ public class AuthController {
      * 用户注销
      */
     @PostMapping("/logout")
-    public Result<Void> logout() {
-        // JWT是无状态的，客户端删除token即可
-        // 这里可以将token加入黑名单（如果需要的话）
+    public Result<Void> logout(HttpServletRequest request) {
+        // 当前Token加入吊销列表，到原定过期时间前都不能再使用
+        String token = getTokenFromRequest(request);
+        if (token != null) {
+            jwtUtil.revokeToken(token);
+        }
         return Result.success("注销成功", null);
     }
     
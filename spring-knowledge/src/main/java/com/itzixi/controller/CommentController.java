@@ -2,14 +2,19 @@ package com.itzixi.controller;
 
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.fasterxml.jackson.databind.util.RawValue;
+import com.itzixi.common.result.CursorPage;
 import com.itzixi.common.result.Result;
 import com.itzixi.entity.Comment;
+import com.itzixi.entity.User;
 import com.itzixi.service.CommentService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.servlet.http.HttpServletRequest;
@@ -27,11 +32,29 @@ public class CommentController {
     
     private final CommentService commentService;
     
-    @Operation(summary = "获取文章评论", description = "获取指定文章的所有评论")
+    @Operation(summary = "获取文章评论", description = "获取指定文章的评论树，子评论在 children 中")
     @GetMapping("/article/{articleId}")
-    public Result<List<Comment>> getCommentsByArticleId(@Parameter(description = "文章ID") @PathVariable Long articleId) {
-        List<Comment> comments = commentService.getCommentsByArticleId(articleId);
-        return Result.success(comments);
+    public Result<RawValue> getCommentsByArticleId(@Parameter(description = "文章ID") @PathVariable Long articleId) {
+        // 评论树按文章缓存为 JSON，原样写入响应，不再重复序列化
+        return Result.success(new RawValue(commentService.getCommentTreeJson(articleId)));
+    }
+    
+    @Operation(summary = "分页获取文章讨论串", description = "按时间正序分页返回顶级评论及其回复数，回复通过 /{id}/replies 按需加载")
+    @GetMapping("/article/{articleId}/threads")
+    public Result<CursorPage<Comment>> getCommentThreads(
+            @Parameter(description = "文章ID") @PathVariable Long articleId,
+            @Parameter(description = "上一页返回的游标，首页不传") @RequestParam(required = false) String cursor,
+            @Parameter(description = "页大小") @RequestParam(defaultValue = "20") Integer size) {
+        return Result.success(commentService.getCommentThreads(articleId, cursor, size));
+    }
+    
+    @Operation(summary = "分页获取评论回复", description = "按时间正序分页返回直接回复及其回复数")
+    @GetMapping("/{id}/replies")
+    public Result<CursorPage<Comment>> getCommentReplies(
+            @Parameter(description = "评论ID") @PathVariable Long id,
+            @Parameter(description = "上一页返回的游标，首页不传") @RequestParam(required = false) String cursor,
+            @Parameter(description = "页大小") @RequestParam(defaultValue = "20") Integer size) {
+        return Result.success(commentService.getCommentReplies(id, cursor, size));
     }
     
     @Operation(summary = "分页查询评论", description = "获取评论列表，支持分页查询")
@@ -47,6 +70,17 @@ public class CommentController {
         return Result.success(result);
     }
     
+    @Operation(summary = "游标分页查询评论", description = "按创建时间倒序返回评论，传入上一页的 nextCursor 获取下一页")
+    @GetMapping("/cursor")
+    public Result<CursorPage<Comment>> getCommentsByCursor(
+            @Parameter(description = "上一页返回的游标，首页不传") @RequestParam(required = false) String cursor,
+            @Parameter(description = "页大小") @RequestParam(defaultValue = "10") Integer size,
+            @Parameter(description = "文章ID") @RequestParam(required = false) Long articleId,
+            @Parameter(description = "状态") @RequestParam(required = false) Integer status,
+            @Parameter(description = "是否返回总数估算值") @RequestParam(defaultValue = "false") Boolean withTotal) {
+        return Result.success(commentService.getCommentCursorPage(cursor, size, articleId, status, withTotal));
+    }
+    
     @Operation(summary = "获取最新评论", description = "获取最新的评论列表")
     @GetMapping("/latest")
     public Result<List<Comment>> getLatestComments(
@@ -113,15 +147,34 @@ public class CommentController {
     @Operation(summary = "点赞评论", description = "为评论点赞")
     @PostMapping("/{id}/like")
     public Result<Void> likeComment(@Parameter(description = "评论ID") @PathVariable Long id) {
-        boolean success = commentService.likeComment(id);
-        return success ? Result.success("点赞成功", null) : Result.error("点赞失败");
+        User currentUser = getCurrentUser();
+        if (currentUser == null) {
+            return Result.unauthorized("请先登录");
+        }
+        boolean success = commentService.likeComment(id, currentUser.getId());
+        return success ? Result.success("点赞成功", null) : Result.badRequest("已经点过赞了");
     }
     
     @Operation(summary = "取消点赞评论", description = "取消为评论点赞")
     @DeleteMapping("/{id}/like")
     public Result<Void> unlikeComment(@Parameter(description = "评论ID") @PathVariable Long id) {
-        boolean success = commentService.unlikeComment(id);
-        return success ? Result.success("取消点赞成功", null) : Result.error("操作失败");
+        User currentUser = getCurrentUser();
+        if (currentUser == null) {
+            return Result.unauthorized("请先登录");
+        }
+        boolean success = commentService.unlikeComment(id, currentUser.getId());
+        return success ? Result.success("取消点赞成功", null) : Result.badRequest("尚未点赞");
+    }
+    
+    /**
+     * 获取当前登录用户
+     */
+    private User getCurrentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof User) {
+            return (User) authentication.getPrincipal();
+        }
+        return null;
     }
     
     /**
@@ -0,0 +1,58 @@
+package com.itzixi.controller;
+
+import com.itzixi.common.result.Result;
+import com.itzixi.service.DeadLetterService;
+import com.itzixi.service.OutboxRelay;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 消息队列管理控制器（仅管理员）
+ */
+@io.swagger.v3.oas.annotations.tags.Tag(name = "消息队列管理", description = "死信队列和发件箱失败事件的查看和重放")
+@Slf4j
+@RestController
+@RequestMapping("/api/admin/mq")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class MessageAdminController {
+    
+    private final DeadLetterService deadLetterService;
+    
+    private final OutboxRelay outboxRelay;
+    
+    @Operation(summary = "查看死信队列", description = "各业务队列对应死信队列的消息数")
+    @GetMapping("/dlq")
+    public Result<List<Map<String, Object>>> getDeadLetterQueues() {
+        return Result.success(deadLetterService.getDeadLetterQueues());
+    }
+    
+    @Operation(summary = "重放死信消息", description = "把死信消息重新投递回原队列，重试次数清零")
+    @PostMapping("/dlq/{queue}/replay")
+    public Result<Integer> replay(
+            @Parameter(description = "业务队列名", example = "article.publish.queue") @PathVariable String queue,
+            @Parameter(description = "最多重放的消息数", example = "100") @RequestParam(defaultValue = "100") Integer limit) {
+        log.info("管理员重放死信消息: queue={}, limit={}", queue, limit);
+        return Result.success(deadLetterService.replay(queue, limit));
+    }
+    
+    @Operation(summary = "查看发件箱失败事件数", description = "超过最大发送次数、等待人工处理的发件箱事件数")
+    @GetMapping("/outbox/failed")
+    public Result<Long> countFailedOutboxEvents() {
+        return Result.success(outboxRelay.countFailed());
+    }
+    
+    @Operation(summary = "重放发件箱失败事件", description = "把投递失败的发件箱事件恢复为待发送，发送次数清零")
+    @PostMapping("/outbox/replay")
+    public Result<Integer> replayOutbox(
+            @Parameter(description = "最多重放的事件数", example = "100") @RequestParam(defaultValue = "100") Integer limit) {
+        log.info("管理员重放发件箱失败事件: limit={}", limit);
+        return Result.success(outboxRelay.replayFailed(limit));
+    }
+}
@@ -6,14 +6,10 @@ import com.itzixi.service.OllamaService;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.model.ChatResponse;
-import org.springframework.ai.chat.messages.UserMessage;
-import org.springframework.ai.chat.prompt.Prompt;
-import org.springframework.ai.ollama.OllamaChatModel;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * @ClassName HelloController
@@ -30,9 +26,6 @@ public class OllamaController {
 //    http://150.109.247.64:9090/ollama/ai/chat?msg=你是谁？
 
 
-    @Resource
-    private OllamaChatModel ollamaChatModel;
-
     @Resource
     private OllamaService ollamaService;
 
@@ -42,30 +35,18 @@ public class OllamaController {
     @GetMapping("/ai/chat")
     public Object aiOllamaChat(@RequestParam String msg) {
         // 同步调用deepseek，当前页面会卡住，直到获得所有的数据才会返回给页面
-        return ollamaChatModel.call(msg);
+        // 经推理调度器排队，避免突发请求压垮模型服务
+        return ollamaService.aiOllamaChat(msg);
     }
 
     @GetMapping("/ai/stream1")
     public Flux<ChatResponse> aiOllamaStream1(@RequestParam String msg) {
-        Prompt prompt = new Prompt(new UserMessage(msg));
-        Flux<ChatResponse> streamResponse = ollamaChatModel.stream(prompt);
-        return streamResponse;
+        return ollamaService.aiOllamaStream1(msg);
     }
 
     @GetMapping("/ai/stream2")
     public List<String> aiOllamaStream2(@RequestParam String msg) {
-        Prompt prompt = new Prompt(new UserMessage(msg));
-        Flux<ChatResponse> streamResponse = ollamaChatModel.stream(prompt);
-
-        List<String> list = streamResponse.toStream().map(chatResponse -> {
-            String content = chatResponse.getResult().getOutput().getText();
-//            System.out.println(content);
-            log.info(content);
-            return content;
-        }).collect(Collectors.toList());
-
-
-        return list;
+        return ollamaService.aiOllamaStream2(msg);
     }
 
 
@@ -2,9 +2,11 @@ package com.itzixi.controller;
 
 import com.itzixi.utils.SSEMsgType;
 import com.itzixi.utils.SSEServer;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -19,17 +21,23 @@ import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 @Slf4j
 @RestController
 @RequestMapping("sse")
+@RequiredArgsConstructor
 public class SSEController {
 
+    private final SSEServer sseServer;
+
     /**
      * @Description: 连接sse服务的接口
      * @Author 陈壮壮
      * @param userId
+     * @param lastEventId
      * @return SseEmitter
      */
     @GetMapping(path = "connect", produces = {MediaType.TEXT_EVENT_STREAM_VALUE})
-    public SseEmitter connect(@RequestParam String userId) {
-        return SSEServer.connect(userId);
+    public SseEmitter connect(@RequestParam String userId,
+                              @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        // 浏览器 EventSource 重连时自动带上 Last-Event-ID，服务端据此补发断线期间的消息
+        return sseServer.connect(userId, lastEventId);
     }
 
     /**
@@ -41,7 +49,7 @@ public class SSEController {
      */
     @GetMapping("sendMessage")
     public Object sendMessage(@RequestParam String userId, @RequestParam String message) {
-        SSEServer.sendMessage(userId, message, SSEMsgType.MESSAGE);
+        sseServer.sendMessage(userId, message, SSEMsgType.MESSAGE);
         return "OK";
     }
 
@@ -53,7 +61,7 @@ public class SSEController {
      */
     @GetMapping("sendMessageAll")
     public Object sendMessageAll(@RequestParam String message) {
-        SSEServer.sendMessageToAllUsers(message);
+        sseServer.sendMessageToAllUsers(message);
         return "OK";
     }
 
@@ -69,7 +77,7 @@ public class SSEController {
                                  @RequestParam String message) throws Exception {
         for (int i = 0 ; i < 10 ; i ++) {
             Thread.sleep(200);
-            SSEServer.sendMessage(userId, message + "-" + i, SSEMsgType.ADD);
+            sseServer.sendMessage(userId, message + "-" + i, SSEMsgType.ADD);
         }
         return "OK";
     }
@@ -82,7 +90,7 @@ public class SSEController {
      */
     @GetMapping("stop")
     public Object stopServer(@RequestParam String userId)  {
-        SSEServer.stopServer(userId);
+        sseServer.stopServer(userId);
         return "OK";
     }
 
@@ -94,7 +102,7 @@ public class SSEController {
      */
     @GetMapping("getOnlineCounts")
     public Object getOnlineCounts() {
-        return SSEServer.getOnlineCounts();
+        return sseServer.getClusterOnlineCounts();
     }
 
 
@@ -0,0 +1,42 @@
+package com.itzixi.controller;
+
+import com.itzixi.common.result.Result;
+import com.itzixi.search.SearchIndexSyncService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * 搜索索引管理控制器（仅管理员）
+ */
+@io.swagger.v3.oas.annotations.tags.Tag(name = "搜索索引管理", description = "搜索索引重建相关的API接口")
+@Slf4j
+@RestController
+@RequestMapping("/api/admin/search")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class SearchAdminController {
+    
+    private final SearchIndexSyncService searchIndexSyncService;
+    
+    @Operation(summary = "重建搜索索引", description = "按ID分块并行重建索引，中断后再次调用会从检查点继续")
+    @PostMapping("/reindex")
+    public Result<Map<String, Object>> reindex(
+            @Parameter(description = "是否清除检查点从头开始", example = "false") @RequestParam(defaultValue = "false") Boolean restart) {
+        if (!searchIndexSyncService.startReindex(restart)) {
+            return Result.badRequest("索引重建正在进行中");
+        }
+        log.info("管理员触发搜索索引重建: restart={}", restart);
+        return Result.success("索引重建已开始", searchIndexSyncService.getReindexStatus());
+    }
+    
+    @Operation(summary = "获取索引重建进度")
+    @GetMapping("/reindex/status")
+    public Result<Map<String, Object>> getReindexStatus() {
+        return Result.success(searchIndexSyncService.getReindexStatus());
+    }
+}
@@ -6,6 +6,7 @@ import lombok.AllArgsConstructor;
 
 import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 /**
  * 文章消息实体
@@ -14,7 +15,7 @@ import java.time.LocalDateTime;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-public class ArticleMessage implements Serializable {
+public class ArticleMessage implements Serializable, QueueMessage {
     
     private static final long serialVersionUID = 1L;
     
@@ -71,4 +72,18 @@ public class ArticleMessage implements Serializable {
     public boolean isMaxRetryReached() {
         return this.retryCount >= MAX_RETRY_COUNT;
     }
-} 
\ No newline at end of file
+    
+    /**
+     * 创建带新消息ID的消息
+     */
+    public static ArticleMessage of(Long articleId, String operationType, Long userId, String content) {
+        ArticleMessage message = new ArticleMessage();
+        message.setMessageId(UUID.randomUUID().toString());
+        message.setArticleId(articleId);
+        message.setOperationType(operationType);
+        message.setUserId(userId);
+        message.setContent(content);
+        message.setCreateTime(LocalDateTime.now());
+        return message;
+    }
+}
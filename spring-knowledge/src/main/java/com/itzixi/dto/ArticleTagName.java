@@ -0,0 +1,15 @@
+package com.itzixi.dto;
+
+import lombok.Data;
+
+/**
+ * 文章与标签名的对应关系
+ * 用于批量查询多篇文章的标签
+ */
+@Data
+public class ArticleTagName {
+
+    private Long articleId;
+
+    private String tagName;
+}
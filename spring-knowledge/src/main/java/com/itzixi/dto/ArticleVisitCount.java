@@ -0,0 +1,26 @@
+package com.itzixi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 文章在某一分钟内的访问数
+ * 用于访问统计批量汇总写入
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArticleVisitCount {
+
+    private Long articleId;
+
+    /**
+     * 统计分钟（秒及以下为 0）
+     */
+    private LocalDateTime minuteAt;
+
+    private Long visits;
+}
@@ -6,6 +6,7 @@ import lombok.AllArgsConstructor;
 
 import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 /**
  * 评论消息实体
@@ -14,7 +15,7 @@ import java.time.LocalDateTime;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-public class CommentMessage implements Serializable {
+public class CommentMessage implements Serializable, QueueMessage {
     
     private static final long serialVersionUID = 1L;
     
@@ -76,4 +77,19 @@ public class CommentMessage implements Serializable {
     public boolean isMaxRetryReached() {
         return this.retryCount >= MAX_RETRY_COUNT;
     }
-} 
\ No newline at end of file
+    
+    /**
+     * 创建带新消息ID的消息
+     */
+    public static CommentMessage of(Long commentId, Long articleId, String operationType, Long userId, String content) {
+        CommentMessage message = new CommentMessage();
+        message.setMessageId(UUID.randomUUID().toString());
+        message.setCommentId(commentId);
+        message.setArticleId(articleId);
+        message.setOperationType(operationType);
+        message.setUserId(userId);
+        message.setContent(content);
+        message.setCreateTime(LocalDateTime.now());
+        return message;
+    }
+}
@@ -0,0 +1,15 @@
+package com.itzixi.dto;
+
+import lombok.Data;
+
+/**
+ * 评论的直接回复数
+ * 用于批量统计一页讨论串的回复数
+ */
+@Data
+public class CommentReplyCount {
+
+    private Long parentId;
+
+    private Long replyCount;
+}
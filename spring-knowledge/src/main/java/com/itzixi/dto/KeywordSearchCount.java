@@ -0,0 +1,26 @@
+package com.itzixi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 关键词在某一分钟内的搜索次数
+ * 用于搜索统计批量汇总写入和热门关键词查询
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KeywordSearchCount {
+
+    private String keyword;
+
+    /**
+     * 统计分钟，热门关键词查询结果中为空
+     */
+    private LocalDateTime minuteAt;
+
+    private Long searches;
+}
@@ -0,0 +1,13 @@
+package com.itzixi.dto;
+
+/**
+ * 消息队列消息
+ * messageId 在发件箱投递和消费端去重中作为消息的唯一标识
+ */
+public interface QueueMessage {
+
+    /**
+     * 消息ID
+     */
+    String getMessageId();
+}
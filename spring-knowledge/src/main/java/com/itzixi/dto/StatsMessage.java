@@ -14,7 +14,7 @@ import java.time.LocalDateTime;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-public class StatsMessage implements Serializable {
+public class StatsMessage implements Serializable, QueueMessage {
     
     private static final long serialVersionUID = 1L;
     
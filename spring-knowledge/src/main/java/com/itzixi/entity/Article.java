@@ -67,6 +67,12 @@ public class Article {
     @TableField(exist = false)
     private String categoryName;
     
+    /**
+     * 写入缓存时的加载时间戳，读取时据此叠加之后的阅读量和点赞增量
+     */
+    @TableField(exist = false)
+    private Long cachedAt;
+    
     // 业务方法
     
     public ArticleStatus getArticleStatus() {
@@ -5,6 +5,7 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * 评论实体类
@@ -57,6 +58,18 @@ public class Comment {
     @TableField(exist = false)
     private String parentAuthorName;
     
+    /**
+     * 子评论，仅评论树中有值
+     */
+    @TableField(exist = false)
+    private List<Comment> children;
+    
+    /**
+     * 直接回复数，仅分页查询讨论串时有值
+     */
+    @TableField(exist = false)
+    private Long replyCount;
+    
     /**
      * 增加点赞数
      */
@@ -0,0 +1,69 @@
+package com.itzixi.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 发件箱事件
+ * 与业务数据在同一事务中写入，由投递任务发送到消息队列
+ */
+@Data
+@TableName("outbox_event")
+public class OutboxEvent {
+
+    /**
+     * 待发送
+     */
+    public static final int STATUS_PENDING = 0;
+
+    /**
+     * 已发送（已收到 broker 确认）
+     */
+    public static final int STATUS_SENT = 1;
+
+    /**
+     * 超过最大重试次数，需要人工处理
+     */
+    public static final int STATUS_FAILED = 2;
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    @TableField("message_id")
+    private String messageId;
+
+    @TableField("exchange")
+    private String exchange;
+
+    @TableField("routing_key")
+    private String routingKey;
+
+    /**
+     * 消息类型的全限定类名
+     */
+    @TableField("payload_type")
+    private String payloadType;
+
+    /**
+     * 消息内容（JSON）
+     */
+    @TableField("payload")
+    private String payload;
+
+    @TableField("status")
+    private Integer status;
+
+    @TableField("attempts")
+    private Integer attempts;
+
+    @TableField("next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @TableField("created_at")
+    private LocalDateTime createdAt;
+
+    @TableField("sent_at")
+    private LocalDateTime sentAt;
+}
@@ -7,7 +7,10 @@ import com.itzixi.entity.Article;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 文章Mapper接口
@@ -20,6 +23,16 @@ public interface ArticleMapper extends BaseMapper<Article> {
      */
     IPage<Article> selectArticlePageWithDetails(Page<Article> page, @Param("status") Integer status);
     
+    /**
+     * 游标分页查询文章列表，按 (is_top, created_at, id) 倒序取游标之后的 limit 条
+     * @param afterId 上一页最后一条的ID，为空时从第一条开始
+     */
+    List<Article> selectArticlesAfter(@Param("status") Integer status,
+                                      @Param("afterTop") Boolean afterTop,
+                                      @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                      @Param("afterId") Long afterId,
+                                      @Param("limit") int limit);
+    
     /**
      * 根据分类ID查询文章
      */
@@ -31,9 +44,25 @@ public interface ArticleMapper extends BaseMapper<Article> {
     List<Article> selectByTagName(@Param("tagName") String tagName);
     
     /**
-     * 搜索文章
+     * 搜索已发布文章的ID（数据库兜底搜索），标题命中的排在前面
+     * @param matchContent 是否匹配正文，正文匹配需要扫描大字段
+     */
+    List<Long> searchArticleIds(@Param("keyword") String keyword,
+                                @Param("matchContent") boolean matchContent,
+                                @Param("offset") long offset,
+                                @Param("limit") int limit);
+    
+    /**
+     * 统计搜索命中的已发布文章数，最多统计到 maxResults
      */
-    IPage<Article> searchArticles(Page<Article> page, @Param("keyword") String keyword);
+    long countSearchArticles(@Param("keyword") String keyword,
+                             @Param("matchContent") boolean matchContent,
+                             @Param("maxResults") int maxResults);
+    
+    /**
+     * 按ID批量查询文章（列表字段，不含正文）
+     */
+    List<Article> selectByIdsWithDetails(@Param("ids") Collection<Long> ids);
     
     /**
      * 获取热门文章
@@ -46,7 +75,14 @@ public interface ArticleMapper extends BaseMapper<Article> {
     List<Article> selectLatestArticles(@Param("limit") Integer limit);
     
     /**
-     * 增加文章阅读量
+     * 批量增加文章阅读量
+     * @param deltas 文章ID -> 阅读量增量
+     */
+    int batchIncrementViews(@Param("deltas") Map<Long, Long> deltas);
+    
+    /**
+     * 批量累加文章点赞数（结果不小于0）
+     * @param deltas 文章ID -> 点赞增量
      */
-    void incrementViews(@Param("id") Long id);
+    int batchIncrementLikes(@Param("deltas") Map<Long, Long> deltas);
 } 
\ No newline at end of file
@@ -2,6 +2,9 @@ package com.itzixi.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.itzixi.bean.ChatRecord;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * @ClassName ChatRecordMapper
@@ -10,4 +13,10 @@ import com.itzixi.bean.ChatRecord;
  * @Description ChatRecordMapper
  **/
 public interface ChatRecordMapper extends BaseMapper<ChatRecord> {
+
+    /**
+     * 查询用户最近的聊天记录，按时间倒序
+     */
+    List<ChatRecord> selectRecentByFamilyMember(@Param("familyMember") String familyMember,
+                                                @Param("limit") int limit);
 }
@@ -3,11 +3,15 @@ package com.itzixi.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.itzixi.dto.CommentReplyCount;
 import com.itzixi.entity.Comment;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 评论Mapper接口
@@ -25,8 +29,44 @@ public interface CommentMapper extends BaseMapper<Comment> {
      */
     IPage<Comment> selectCommentPage(Page<Comment> page, @Param("articleId") Long articleId, @Param("status") Integer status);
     
+    /**
+     * 游标分页查询评论，按 (created_at, id) 倒序取游标之后的 limit 条
+     * @param afterId 上一页最后一条的ID，为空时从第一条开始
+     */
+    List<Comment> selectCommentsAfter(@Param("articleId") Long articleId,
+                                      @Param("status") Integer status,
+                                      @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                      @Param("afterId") Long afterId,
+                                      @Param("limit") int limit);
+    
+    /**
+     * 游标分页查询已发布的直接子评论，按 (created_at, id) 正序
+     * @param parentId 为空时查询文章的顶级评论
+     */
+    List<Comment> selectChildrenAfter(@Param("articleId") Long articleId,
+                                      @Param("parentId") Long parentId,
+                                      @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                      @Param("afterId") Long afterId,
+                                      @Param("limit") int limit);
+    
+    /**
+     * 评论是否存在，按主键只查一行
+     */
+    boolean existsById(@Param("id") Long id);
+    
+    /**
+     * 批量统计已发布的直接回复数
+     */
+    List<CommentReplyCount> countRepliesByParentIds(@Param("parentIds") Collection<Long> parentIds);
+    
     /**
      * 查询最新评论
      */
     List<Comment> selectLatestComments(@Param("limit") Integer limit);
+    
+    /**
+     * 批量累加评论点赞数（结果不小于0）
+     * @param deltas 评论ID -> 点赞增量
+     */
+    int batchIncrementLikes(@Param("deltas") Map<Long, Long> deltas);
 } 
\ No newline at end of file
@@ -0,0 +1,46 @@
+package com.itzixi.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.itzixi.entity.OutboxEvent;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 发件箱事件 Mapper
+ */
+public interface OutboxEventMapper extends BaseMapper<OutboxEvent> {
+
+    /**
+     * 锁定一批到期的待发送事件，已被其他节点锁定的行直接跳过
+     */
+    List<OutboxEvent> selectDueForUpdate(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    /**
+     * 认领事件：把下次发送时间推迟到租约到期，租约内其他节点不会再选中；投递节点崩溃时租约到期后重新投递
+     */
+    int claim(@Param("ids") List<Long> ids, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    /**
+     * 标记为已发送
+     */
+    int markSent(@Param("ids") List<Long> ids, @Param("sentAt") LocalDateTime sentAt);
+
+    /**
+     * 记录一次发送失败并推迟下次发送，达到最大次数的标记为失败
+     */
+    int markRetry(@Param("ids") List<Long> ids,
+                  @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                  @Param("maxAttempts") int maxAttempts);
+
+    /**
+     * 把投递失败的事件恢复为待发送，发送次数清零
+     */
+    int replayFailed(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    /**
+     * 删除早于指定时间发送的事件
+     */
+    int deleteSentBefore(@Param("before") LocalDateTime before, @Param("limit") int limit);
+}
@@ -0,0 +1,36 @@
+package com.itzixi.mapper;
+
+import com.itzixi.dto.ArticleVisitCount;
+import com.itzixi.dto.KeywordSearchCount;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 统计汇总表 Mapper
+ * 按分钟和按天累加计数，多行一次写入
+ */
+public interface StatsRollupMapper {
+
+    /**
+     * 累加文章每分钟访问数
+     */
+    int upsertArticleVisitMinute(@Param("counts") List<ArticleVisitCount> counts);
+
+    /**
+     * 累加文章每日访问数，minuteAt 取日期部分
+     */
+    int upsertArticleVisitDaily(@Param("counts") List<ArticleVisitCount> counts);
+
+    /**
+     * 累加关键词每分钟搜索次数
+     */
+    int upsertKeywordSearchMinute(@Param("counts") List<KeywordSearchCount> counts);
+
+    /**
+     * 查询时间点之后搜索次数最多的关键词
+     */
+    List<KeywordSearchCount> selectTrendingKeywords(@Param("since") LocalDateTime since,
+                                                    @Param("limit") int limit);
+}
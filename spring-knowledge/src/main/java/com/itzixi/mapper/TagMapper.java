@@ -1,11 +1,14 @@
 package com.itzixi.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.itzixi.dto.ArticleTagName;
 import com.itzixi.entity.Tag;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 标签Mapper接口
@@ -18,6 +21,48 @@ public interface TagMapper extends BaseMapper<Tag> {
      */
     List<Tag> selectByArticleId(@Param("articleId") Long articleId);
     
+    /**
+     * 批量查询多篇文章的标签名
+     */
+    List<ArticleTagName> selectTagNamesByArticleIds(@Param("articleIds") Collection<Long> articleIds);
+    
+    /**
+     * 查询文章关联的标签ID
+     */
+    List<Long> selectTagIdsByArticleId(@Param("articleId") Long articleId);
+    
+    /**
+     * 按名称批量查询标签
+     */
+    List<Tag> selectByNames(@Param("names") Collection<String> names);
+    
+    /**
+     * 批量创建标签，已存在的标签名忽略（依赖 uk_tag_name）
+     */
+    int insertIgnoreTags(@Param("names") Collection<String> names, @Param("color") String color);
+    
+    /**
+     * 批量创建文章-标签关联，已存在的关联忽略（依赖 uk_article_tag）
+     */
+    int insertIgnoreArticleTags(@Param("articleId") Long articleId, @Param("tagIds") Collection<Long> tagIds);
+    
+    /**
+     * 删除文章-标签关联
+     * @param tagIds 为空时删除文章的全部关联
+     */
+    int deleteArticleTags(@Param("articleId") Long articleId, @Param("tagIds") Collection<Long> tagIds);
+    
+    /**
+     * 批量调整标签的文章数（结果不小于0），增加时同时累加热度
+     * @param deltas 标签ID -> 文章数增量
+     */
+    int batchAdjustArticleCount(@Param("deltas") Map<Long, Integer> deltas);
+    
+    /**
+     * 按文章-标签关联表重新统计标签的文章数
+     */
+    int recountArticleCount(@Param("tagIds") Collection<Long> tagIds);
+    
     /**
      * 获取热门标签
      */
@@ -0,0 +1,58 @@
+package com.itzixi.search;
+
+import com.itzixi.entity.Article;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * 文章索引文档
+ * 中文字段使用 IK 分词：索引时 ik_max_word 细粒度切分，查询时 ik_smart 粗粒度切分
+ */
+@Data
+@Document(indexName = "article")
+public class ArticleDocument {
+
+    @Id
+    private Long id;
+
+    @Field(type = FieldType.Text, analyzer = "ik_max_word", searchAnalyzer = "ik_smart")
+    private String title;
+
+    @Field(type = FieldType.Text, analyzer = "ik_max_word", searchAnalyzer = "ik_smart")
+    private String summary;
+
+    @Field(type = FieldType.Text, analyzer = "ik_max_word", searchAnalyzer = "ik_smart")
+    private String content;
+
+    @Field(type = FieldType.Text, analyzer = "ik_max_word", searchAnalyzer = "ik_smart")
+    private List<String> tags;
+
+    @Field(type = FieldType.Integer)
+    private Integer status;
+
+    /**
+     * 创建时间（毫秒时间戳），相关度相同时按时间倒序
+     */
+    @Field(type = FieldType.Long)
+    private Long createdAt;
+
+    public static ArticleDocument from(Article article, List<String> tags) {
+        ArticleDocument document = new ArticleDocument();
+        document.setId(article.getId());
+        document.setTitle(article.getTitle());
+        document.setSummary(article.getSummary());
+        document.setContent(article.getContent());
+        document.setTags(tags);
+        document.setStatus(article.getStatus());
+        if (article.getCreatedAt() != null) {
+            document.setCreatedAt(article.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
+        return document;
+    }
+}
@@ -0,0 +1,124 @@
+package com.itzixi.search;
+
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.itzixi.entity.Article;
+import com.itzixi.mapper.ArticleMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 文章搜索服务
+ * 根据配置项 search.engine 选择搜索引擎，引擎不可用或异常时降级到数据库搜索；
+ * 引擎只返回文章ID，文章列表数据统一从数据库批量加载
+ */
+@Slf4j
+@Service
+public class ArticleSearchService {
+
+    /**
+     * 单页最大条数
+     */
+    private static final int MAX_PAGE_SIZE = 50;
+
+    private final Map<String, SearchEngine> engines;
+
+    private final DatabaseSearchEngine fallbackEngine;
+
+    private final ArticleMapper articleMapper;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Counter fallbackCounter;
+
+    @Value("${search.engine:database}")
+    private String engineName;
+
+    public ArticleSearchService(List<SearchEngine> engines,
+                                DatabaseSearchEngine fallbackEngine,
+                                ArticleMapper articleMapper,
+                                MeterRegistry meterRegistry) {
+        this.engines = engines.stream().collect(Collectors.toMap(SearchEngine::name, Function.identity()));
+        this.fallbackEngine = fallbackEngine;
+        this.articleMapper = articleMapper;
+        this.meterRegistry = meterRegistry;
+        this.fallbackCounter = Counter.builder("search.fallback")
+                .description("搜索引擎异常后降级到数据库的次数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 搜索已发布文章
+     */
+    public IPage<Article> search(String keyword, int pageNum, int pageSize) {
+        pageNum = Math.max(pageNum, 1);
+        pageSize = Math.min(Math.max(pageSize, 1), MAX_PAGE_SIZE);
+        Page<Article> page = new Page<>(pageNum, pageSize);
+        if (!StringUtils.hasText(keyword)) {
+            return page;
+        }
+
+        SearchResult result = doSearch(keyword.trim(), pageNum, pageSize);
+        page.setTotal(result.total());
+        page.setRecords(loadArticles(result.articleIds()));
+        return page;
+    }
+
+    private SearchResult doSearch(String keyword, int pageNum, int pageSize) {
+        SearchEngine engine = currentEngine();
+        if (!engine.available()) {
+            fallbackCounter.increment();
+            return fallbackEngine.search(keyword, pageNum, pageSize);
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return engine.search(keyword, pageNum, pageSize);
+        } catch (Exception e) {
+            if (engine == fallbackEngine) {
+                throw e;
+            }
+            fallbackCounter.increment();
+            log.warn("搜索引擎 {} 不可用，降级到数据库搜索: {}", engine.name(), e.getMessage());
+            return fallbackEngine.search(keyword, pageNum, pageSize);
+        } finally {
+            sample.stop(meterRegistry.timer("search.requests", "engine", engine.name()));
+        }
+    }
+
+    /**
+     * 按引擎返回的顺序批量加载文章，索引中残留的已删除文章会被跳过
+     */
+    private List<Article> loadArticles(List<Long> articleIds) {
+        if (articleIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Article> articles = articleMapper.selectByIdsWithDetails(articleIds).stream()
+                .collect(Collectors.toMap(Article::getId, Function.identity()));
+        List<Article> ordered = new ArrayList<>(articleIds.size());
+        for (Long articleId : articleIds) {
+            Article article = articles.get(articleId);
+            if (article != null) {
+                ordered.add(article);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * 当前配置的搜索引擎
+     */
+    SearchEngine currentEngine() {
+        return engines.getOrDefault(engineName, fallbackEngine);
+    }
+}
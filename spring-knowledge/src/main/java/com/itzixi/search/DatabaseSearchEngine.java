@@ -0,0 +1,72 @@
+package com.itzixi.search;
+
+import com.itzixi.mapper.ArticleMapper;
+import com.itzixi.service.CountEstimateService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 数据库搜索引擎
+ * 未部署 Elasticsearch 或其不可用时的兜底方案：LIKE 匹配标题和摘要（可配置匹配正文），标题命中优先，
+ * 分页在 SQL 中完成。结果窗口与原实现一致限制在 max-results 条内，命中总数按关键词缓存
+ */
+@Component
+public class DatabaseSearchEngine implements SearchEngine {
+
+    private final ArticleMapper articleMapper;
+
+    private final CountEstimateService countEstimateService;
+
+    private final boolean matchContent;
+
+    private final int maxResults;
+
+    public DatabaseSearchEngine(ArticleMapper articleMapper, CountEstimateService countEstimateService,
+                                @Value("${search.database.match-content:false}") boolean matchContent,
+                                @Value("${search.database.max-results:1000}") int maxResults) {
+        this.articleMapper = articleMapper;
+        this.countEstimateService = countEstimateService;
+        this.matchContent = matchContent;
+        this.maxResults = maxResults;
+    }
+
+    @Override
+    public String name() {
+        return "database";
+    }
+
+    @Override
+    public boolean requiresIndex() {
+        return false;
+    }
+
+    @Override
+    public SearchResult search(String keyword, int pageNum, int pageSize) {
+        // 命中总数最多统计到结果窗口大小，同一关键词在缓存有效期内复用
+        long total = countEstimateService.estimate("search", keyword,
+                () -> articleMapper.countSearchArticles(keyword, matchContent, maxResults));
+        if (total == 0) {
+            return SearchResult.empty();
+        }
+        long offset = (long) (pageNum - 1) * pageSize;
+        if (offset >= total) {
+            return new SearchResult(List.of(), total);
+        }
+        int limit = (int) Math.min(pageSize, total - offset);
+        return new SearchResult(articleMapper.searchArticleIds(keyword, matchContent, offset, limit), total);
+    }
+
+    /**
+     * 直接查询文章表，无需维护索引
+     */
+    @Override
+    public void index(List<ArticleDocument> documents) {
+    }
+
+    @Override
+    public void delete(Collection<Long> articleIds) {
+    }
+}
@@ -0,0 +1,126 @@
+package com.itzixi.search;
+
+import com.itzixi.common.enums.ArticleStatus;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.query.DeleteQuery;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilterBuilder;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Elasticsearch 搜索引擎
+ * 在标题、标签、摘要、正文上做 multi_match 查询，按相关度排序并分页
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "search.engine", havingValue = "elasticsearch")
+public class ElasticsearchSearchEngine implements SearchEngine {
+
+    /**
+     * Elasticsearch 默认的 max_result_window
+     */
+    private static final int MAX_RESULT_WINDOW = 10000;
+
+    private static final List<String> SEARCH_FIELDS = List.of("title^3", "tags^2", "summary^2", "content");
+
+    private final ElasticsearchOperations elasticsearchOperations;
+
+    /**
+     * 索引和映射是否就绪
+     */
+    private volatile boolean available;
+
+    /**
+     * 启动时创建索引和映射。失败时（Elasticsearch 不可用或未安装 IK 分词插件）标记为不可用：
+     * 搜索直接走数据库，也不写入索引，避免 Elasticsearch 按动态映射自动建出没有分词器的索引。
+     * 处理后需重启应用并执行一次全量重建
+     */
+    @PostConstruct
+    public void initIndex() {
+        try {
+            IndexOperations indexOps = elasticsearchOperations.indexOps(ArticleDocument.class);
+            if (!indexOps.exists()) {
+                indexOps.createWithMapping();
+                log.info("创建文章搜索索引: {}", indexOps.getIndexCoordinates().getIndexName());
+            }
+            available = true;
+        } catch (Exception e) {
+            available = false;
+            log.error("初始化文章搜索索引失败（需要安装 IK 分词插件），搜索降级到数据库: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public String name() {
+        return "elasticsearch";
+    }
+
+    @Override
+    public boolean requiresIndex() {
+        return true;
+    }
+
+    @Override
+    public boolean available() {
+        return available;
+    }
+
+    @Override
+    public SearchResult search(String keyword, int pageNum, int pageSize) {
+        if ((long) pageNum * pageSize > MAX_RESULT_WINDOW) {
+            return SearchResult.empty();
+        }
+
+        NativeQuery query = NativeQuery.builder()
+                .withQuery(q -> q.bool(b -> b
+                        .must(m -> m.multiMatch(mm -> mm.query(keyword).fields(SEARCH_FIELDS)))
+                        .filter(f -> f.term(t -> t.field("status").value(ArticleStatus.PUBLISHED.getCode().longValue())))))
+                .withSort(Sort.by(Sort.Order.desc("_score"), Sort.Order.desc("createdAt")))
+                .withPageable(PageRequest.of(pageNum - 1, pageSize))
+                // 只取回 ID，正文等大字段不经过网络传输
+                .withSourceFilter(new FetchSourceFilterBuilder().withIncludes("id").build())
+                .withTrackTotalHits(true)
+                .build();
+
+        SearchHits<ArticleDocument> hits = elasticsearchOperations.search(query, ArticleDocument.class);
+        List<Long> ids = hits.getSearchHits().stream()
+                .map(SearchHit::getContent)
+                .map(ArticleDocument::getId)
+                .toList();
+        return new SearchResult(ids, hits.getTotalHits());
+    }
+
+    @Override
+    public void index(List<ArticleDocument> documents) {
+        if (!documents.isEmpty()) {
+            elasticsearchOperations.save(documents);
+        }
+    }
+
+    /**
+     * 按ID批量删除，一次请求完成
+     */
+    @Override
+    public void delete(Collection<Long> articleIds) {
+        if (articleIds.isEmpty()) {
+            return;
+        }
+        List<String> ids = articleIds.stream().map(String::valueOf).toList();
+        Query query = NativeQuery.builder().withQuery(q -> q.ids(i -> i.values(ids))).build();
+        elasticsearchOperations.delete(DeleteQuery.builder(query).build(), ArticleDocument.class);
+    }
+}
@@ -0,0 +1,517 @@
+package com.itzixi.search;
+
+import com.itzixi.common.enums.ArticleStatus;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 进程内倒排索引搜索引擎
+ * 单机部署或没有 Elasticsearch 的环境使用：标题、标签、摘要、正文按 N-gram 切分后建立倒排索引，
+ * 查询时对所有查询词的倒排列表求交集并按 BM25 打分，不再扫描文章表。
+ * 文章更新时旧文档只做删除标记，删除标记累计到一定比例后压缩；
+ * 索引定期写入快照文件，重启后加载快照并解码为堆内的索引结构（文件读写通过内存映射顺序进行，
+ * 查询不直接访问映射内存），之后只需补齐快照之后变更和删除的文章
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "search.engine", havingValue = "inverted")
+public class InvertedIndexSearchEngine implements SearchEngine {
+
+    private static final int SNAPSHOT_MAGIC = 0x49495831;
+
+    private static final int SNAPSHOT_VERSION = 1;
+
+    /**
+     * 与 Elasticsearch 的 max_result_window 保持一致，限制深分页
+     */
+    private static final int MAX_RESULT_WINDOW = 10000;
+
+    private static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    private static final double K1 = 1.2;
+
+    private static final double B = 0.75;
+
+    /**
+     * 各字段的词频权重，相当于 Elasticsearch 查询中的字段 boost
+     */
+    private static final int TITLE_WEIGHT = 3;
+
+    private static final int TAG_WEIGHT = 2;
+
+    private static final int SUMMARY_WEIGHT = 2;
+
+    private static final int CONTENT_WEIGHT = 1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, PostingList> postings = new HashMap<>();
+
+    /**
+     * 文章ID到文档序号
+     */
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+
+    /**
+     * 以下数组按文档序号下标
+     */
+    private long[] articleIds = new long[1024];
+
+    private long[] createdAts = new long[1024];
+
+    private int[] docLengths = new int[1024];
+
+    private final BitSet deleted = new BitSet();
+
+    /**
+     * 已分配的文档序号数量（包含已删除的文档）
+     */
+    private int docCount;
+
+    private int deletedCount;
+
+    private long totalLength;
+
+    private volatile boolean dirty;
+
+    /**
+     * 启动时是否成功加载了快照
+     */
+    private volatile boolean restored;
+
+    private volatile LocalDateTime snapshotTime;
+
+    @Value("${search.inverted.snapshot-path:data/search/article-index.bin}")
+    private String snapshotPath;
+
+    /**
+     * 删除标记占比超过该值时压缩
+     */
+    @Value("${search.inverted.compact-ratio:0.3}")
+    private double compactRatio;
+
+    public InvertedIndexSearchEngine(MeterRegistry meterRegistry) {
+        Gauge.builder("search.inverted.docs", this, engine -> engine.docCount - engine.deletedCount)
+                .description("倒排索引中的文章数")
+                .register(meterRegistry);
+        Gauge.builder("search.inverted.terms", postings, Map::size)
+                .description("倒排索引中的词项数")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String name() {
+        return "inverted";
+    }
+
+    @Override
+    public boolean requiresIndex() {
+        return true;
+    }
+
+    @Override
+    public boolean needsRebuild() {
+        return !restored;
+    }
+
+    @Override
+    public LocalDateTime indexedUntil() {
+        return snapshotTime;
+    }
+
+    @Override
+    public SearchResult search(String keyword, int pageNum, int pageSize) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(NGramTokenizer.tokenize(keyword, false)));
+        int offset = (pageNum - 1) * pageSize;
+        if (terms.isEmpty() || offset >= MAX_RESULT_WINDOW) {
+            return SearchResult.empty();
+        }
+        int topK = Math.min(offset + pageSize, MAX_RESULT_WINDOW);
+
+        lock.readLock().lock();
+        try {
+            int liveDocs = docCount - deletedCount;
+            if (liveDocs == 0) {
+                return SearchResult.empty();
+            }
+            PostingList[] lists = new PostingList[terms.size()];
+            for (int i = 0; i < lists.length; i++) {
+                lists[i] = postings.get(terms.get(i));
+                if (lists[i] == null) {
+                    return SearchResult.empty();
+                }
+            }
+            // 从最短的列表开始求交集
+            Arrays.sort(lists, Comparator.comparingInt(PostingList::size));
+            PostingList.Cursor[] cursors = new PostingList.Cursor[lists.length];
+            double[] idfs = new double[lists.length];
+            for (int i = 0; i < lists.length; i++) {
+                cursors[i] = lists[i].cursor();
+                int df = lists[i].size();
+                idfs[i] = Math.log(1 + (liveDocs - df + 0.5) / (df + 0.5));
+            }
+            double avgLength = (double) totalLength / liveDocs;
+
+            PriorityQueue<Hit> top = new PriorityQueue<>(topK + 1, Hit.ORDER);
+            long total = 0;
+            PostingList.Cursor lead = cursors[0];
+            int doc = lead.next() ? lead.doc() : NO_MORE_DOCS;
+            outer:
+            while (doc != NO_MORE_DOCS) {
+                for (int i = 1; i < cursors.length; i++) {
+                    if (!cursors[i].advance(doc)) {
+                        break outer;
+                    }
+                    if (cursors[i].doc() > doc) {
+                        doc = lead.advance(cursors[i].doc()) ? lead.doc() : NO_MORE_DOCS;
+                        continue outer;
+                    }
+                }
+                if (!deleted.get(doc)) {
+                    total++;
+                    double lengthNorm = K1 * (1 - B + B * docLengths[doc] / avgLength);
+                    double score = 0;
+                    for (int i = 0; i < cursors.length; i++) {
+                        int freq = cursors[i].freq();
+                        score += idfs[i] * freq * (K1 + 1) / (freq + lengthNorm);
+                    }
+                    top.offer(new Hit(articleIds[doc], score, createdAts[doc]));
+                    if (top.size() > topK) {
+                        top.poll();
+                    }
+                }
+                doc = lead.next() ? lead.doc() : NO_MORE_DOCS;
+            }
+
+            if (offset >= top.size()) {
+                return new SearchResult(List.of(), total);
+            }
+            List<Hit> ranked = new ArrayList<>(top);
+            ranked.sort(Hit.ORDER.reversed());
+            return new SearchResult(ranked.subList(offset, ranked.size()).stream().map(Hit::articleId).toList(), total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void index(List<ArticleDocument> documents) {
+        lock.writeLock().lock();
+        try {
+            for (ArticleDocument document : documents) {
+                remove(document.getId());
+                if (ArticleStatus.PUBLISHED.getCode().equals(document.getStatus())) {
+                    add(document);
+                }
+            }
+            compactIfNeeded();
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(Collection<Long> articleIds) {
+        lock.writeLock().lock();
+        try {
+            articleIds.forEach(this::remove);
+            compactIfNeeded();
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 启动时把快照解码到堆内，没有快照或快照损坏时由 SearchIndexSyncService 从数据库全量构建
+     */
+    @PostConstruct
+    public void loadSnapshot() {
+        Path path = Paths.get(snapshotPath);
+        if (!Files.exists(path)) {
+            log.info("倒排索引快照不存在，将从数据库全量构建: {}", path.toAbsolutePath());
+            return;
+        }
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            readSnapshot(buffer);
+            restored = true;
+            log.info("加载倒排索引快照完成: docs={}, terms={}, snapshotTime={}, 耗时={}ms",
+                    docCount, postings.size(), snapshotTime, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            reset();
+            log.warn("倒排索引快照加载失败，将从数据库全量构建: {}", e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 定期写快照，索引没有变化时跳过
+     */
+    @Scheduled(fixedDelayString = "${search.inverted.snapshot-interval:300000}")
+    public void scheduledSnapshot() {
+        if (dirty) {
+            saveSnapshot();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (dirty) {
+            saveSnapshot();
+        }
+    }
+
+    /**
+     * 先压缩再写入临时文件，完成后原子替换快照；写快照期间只阻塞索引写入，不阻塞查询
+     */
+    public void saveSnapshot() {
+        Path path = Paths.get(snapshotPath);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        // 只有压缩成功后才降级为读锁；压缩抛出异常时 finally 释放的是仍持有的写锁
+        boolean downgraded = false;
+        try {
+            if (deletedCount > 0) {
+                compact();
+            }
+            dirty = false;
+            lock.readLock().lock();
+            lock.writeLock().unlock();
+            downgraded = true;
+
+            LocalDateTime takenAt = LocalDateTime.now();
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                long size = snapshotSize();
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("快照超过 2GB: " + size);
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                writeSnapshot(buffer, takenAt);
+                buffer.force();
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            snapshotTime = takenAt;
+            log.info("倒排索引快照已保存: docs={}, terms={}, 耗时={}ms",
+                    docCount, postings.size(), System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            dirty = true;
+            log.error("倒排索引快照保存失败: {}", e.getMessage(), e);
+        } finally {
+            if (downgraded) {
+                lock.readLock().unlock();
+            } else {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public Collection<Long> indexedArticleIds() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(ordinals.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void add(ArticleDocument document) {
+        Map<String, Integer> freqs = new HashMap<>();
+        int length = 0;
+        length += addTerms(freqs, NGramTokenizer.tokenize(document.getTitle(), true), TITLE_WEIGHT);
+        if (document.getTags() != null) {
+            for (String tag : document.getTags()) {
+                length += addTerms(freqs, NGramTokenizer.tokenize(tag, true), TAG_WEIGHT);
+            }
+        }
+        length += addTerms(freqs, NGramTokenizer.tokenize(document.getSummary(), false), SUMMARY_WEIGHT);
+        length += addTerms(freqs, NGramTokenizer.tokenize(document.getContent(), false), CONTENT_WEIGHT);
+
+        int doc = docCount++;
+        ensureCapacity(docCount);
+        articleIds[doc] = document.getId();
+        createdAts[doc] = document.getCreatedAt() == null ? 0 : document.getCreatedAt();
+        docLengths[doc] = length;
+        totalLength += length;
+        ordinals.put(document.getId(), doc);
+        freqs.forEach((term, freq) -> postings.computeIfAbsent(term, key -> new PostingList()).add(doc, freq));
+    }
+
+    private int addTerms(Map<String, Integer> freqs, List<String> terms, int weight) {
+        for (String term : terms) {
+            freqs.merge(term, weight, Integer::sum);
+        }
+        return terms.size() * weight;
+    }
+
+    /**
+     * 只做删除标记，倒排列表在压缩时才清理
+     */
+    private void remove(Long articleId) {
+        Integer doc = ordinals.remove(articleId);
+        if (doc != null) {
+            deleted.set(doc);
+            deletedCount++;
+            totalLength -= docLengths[doc];
+        }
+    }
+
+    private void compactIfNeeded() {
+        if (deletedCount > 1024 && deletedCount > docCount * compactRatio) {
+            compact();
+        }
+    }
+
+    /**
+     * 按原顺序给存活的文档重新编号，并重写所有倒排列表
+     */
+    private void compact() {
+        long start = System.currentTimeMillis();
+        int[] remap = new int[docCount];
+        int live = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (deleted.get(doc)) {
+                remap[doc] = -1;
+            } else {
+                remap[doc] = live;
+                articleIds[live] = articleIds[doc];
+                createdAts[live] = createdAts[doc];
+                docLengths[live] = docLengths[doc];
+                live++;
+            }
+        }
+        postings.replaceAll((term, list) -> list.compact(remap));
+        postings.values().removeIf(PostingList::isEmpty);
+        ordinals.replaceAll((articleId, doc) -> remap[doc]);
+        log.info("倒排索引压缩完成: 删除={}, 剩余={}, 耗时={}ms", deletedCount, live, System.currentTimeMillis() - start);
+        docCount = live;
+        deletedCount = 0;
+        deleted.clear();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > articleIds.length) {
+            int newCapacity = Math.max(capacity, articleIds.length * 2);
+            articleIds = Arrays.copyOf(articleIds, newCapacity);
+            createdAts = Arrays.copyOf(createdAts, newCapacity);
+            docLengths = Arrays.copyOf(docLengths, newCapacity);
+        }
+    }
+
+    private void reset() {
+        postings.clear();
+        ordinals.clear();
+        deleted.clear();
+        docCount = 0;
+        deletedCount = 0;
+        totalLength = 0;
+        snapshotTime = null;
+    }
+
+    /**
+     * 快照格式：魔数、版本、快照时间，文档表（文章ID、创建时间、长度），词典（词项、倒排列表）
+     */
+    private long snapshotSize() {
+        long size = Integer.BYTES * 2 + Long.BYTES + Integer.BYTES
+                + (long) docCount * (Long.BYTES * 2 + Integer.BYTES) + Integer.BYTES;
+        for (Map.Entry<String, PostingList> entry : postings.entrySet()) {
+            size += Integer.BYTES + entry.getKey().getBytes(StandardCharsets.UTF_8).length
+                    + entry.getValue().serializedSize();
+        }
+        return size;
+    }
+
+    private void writeSnapshot(ByteBuffer buffer, LocalDateTime takenAt) {
+        buffer.putInt(SNAPSHOT_MAGIC);
+        buffer.putInt(SNAPSHOT_VERSION);
+        buffer.putLong(takenAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        buffer.putInt(docCount);
+        for (int doc = 0; doc < docCount; doc++) {
+            buffer.putLong(articleIds[doc]);
+            buffer.putLong(createdAts[doc]);
+            buffer.putInt(docLengths[doc]);
+        }
+        buffer.putInt(postings.size());
+        for (Map.Entry<String, PostingList> entry : postings.entrySet()) {
+            byte[] term = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            buffer.putInt(term.length);
+            buffer.put(term);
+            entry.getValue().writeTo(buffer);
+        }
+    }
+
+    private void readSnapshot(ByteBuffer buffer) throws IOException {
+        if (buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != SNAPSHOT_VERSION) {
+            throw new IOException("快照格式不匹配");
+        }
+        reset();
+        snapshotTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(buffer.getLong()), ZoneId.systemDefault());
+        int docs = buffer.getInt();
+        ensureCapacity(docs);
+        for (int doc = 0; doc < docs; doc++) {
+            articleIds[doc] = buffer.getLong();
+            createdAts[doc] = buffer.getLong();
+            docLengths[doc] = buffer.getInt();
+            totalLength += docLengths[doc];
+            ordinals.put(articleIds[doc], doc);
+        }
+        docCount = docs;
+        int terms = buffer.getInt();
+        for (int i = 0; i < terms; i++) {
+            byte[] term = new byte[buffer.getInt()];
+            buffer.get(term);
+            postings.put(new String(term, StandardCharsets.UTF_8), PostingList.readFrom(buffer));
+        }
+    }
+
+    /**
+     * 命中结果，按得分升序排列，得分相同时较早的文章排在前面
+     */
+    private record Hit(long articleId, double score, long createdAt) {
+
+        static final Comparator<Hit> ORDER = Comparator.comparingDouble(Hit::score)
+                .thenComparingLong(Hit::createdAt);
+    }
+}
@@ -0,0 +1,92 @@
+package com.itzixi.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * N-gram 分词器
+ * 中日韩文字按相邻两字切分（二元组），孤立的单字原样输出；字母和数字按连续片段切成单词并转为小写；
+ * 其余字符作为分隔符。二元组不依赖词典，查询词与正文按同样的规则切分后做交集即可近似子串匹配
+ */
+public final class NGramTokenizer {
+
+    /**
+     * 单个英文/数字词的最大长度，超长的片段（如 Base64、URL）截断，避免撑大词典
+     */
+    private static final int MAX_WORD_LENGTH = 32;
+
+    private NGramTokenizer() {
+    }
+
+    /**
+     * 切分文本
+     * @param unigrams 是否同时输出中日韩单字，用于标题、标签等短字段，使单字查询也能命中
+     */
+    public static List<String> tokenize(String text, boolean unigrams) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int codePoint = text.codePointAt(i);
+            if (isCjk(codePoint)) {
+                i = cjkRun(text, i, unigrams, tokens);
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                i = wordRun(text, i, tokens);
+            } else {
+                i += Character.charCount(codePoint);
+            }
+        }
+        return tokens;
+    }
+
+    private static int cjkRun(String text, int start, boolean unigrams, List<String> tokens) {
+        int previous = -1;
+        int count = 0;
+        int i = start;
+        while (i < text.length()) {
+            int codePoint = text.codePointAt(i);
+            if (!isCjk(codePoint)) {
+                break;
+            }
+            if (unigrams) {
+                tokens.add(new String(Character.toChars(codePoint)));
+            }
+            if (previous >= 0) {
+                tokens.add(new StringBuilder(4).appendCodePoint(previous).appendCodePoint(codePoint).toString());
+            }
+            previous = codePoint;
+            count++;
+            i += Character.charCount(codePoint);
+        }
+        if (count == 1 && !unigrams) {
+            tokens.add(new String(Character.toChars(previous)));
+        }
+        return i;
+    }
+
+    private static int wordRun(String text, int start, List<String> tokens) {
+        int i = start;
+        while (i < text.length()) {
+            int codePoint = text.codePointAt(i);
+            if (isCjk(codePoint) || !Character.isLetterOrDigit(codePoint)) {
+                break;
+            }
+            i += Character.charCount(codePoint);
+        }
+        String word = text.substring(start, Math.min(i, start + MAX_WORD_LENGTH));
+        tokens.add(word.toLowerCase(Locale.ROOT));
+        return i;
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
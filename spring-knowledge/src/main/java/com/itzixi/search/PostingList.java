@@ -0,0 +1,171 @@
+package com.itzixi.search;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 倒排列表
+ * 文档序号只会递增追加，存储相邻序号的差值和词频，两者都用 varint 编码，
+ * 常见词的列表每条记录通常只占 2 个字节
+ */
+final class PostingList {
+
+    private byte[] data;
+
+    /**
+     * 已使用的字节数
+     */
+    private int length;
+
+    /**
+     * 记录条数（包含已删除但尚未压缩的文档），用作文档频率
+     */
+    private int size;
+
+    private int lastDoc = -1;
+
+    PostingList() {
+        this.data = new byte[8];
+    }
+
+    private PostingList(byte[] data, int size, int lastDoc) {
+        this.data = data;
+        this.length = data.length;
+        this.size = size;
+        this.lastDoc = lastDoc;
+    }
+
+    /**
+     * 追加一条记录，文档序号必须大于已有的序号
+     */
+    void add(int doc, int freq) {
+        if (doc <= lastDoc) {
+            throw new IllegalArgumentException("文档序号必须递增: " + doc + " <= " + lastDoc);
+        }
+        if (length + 10 > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, length + 10));
+        }
+        writeVarint(doc - lastDoc);
+        writeVarint(freq);
+        lastDoc = doc;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * 压缩：去掉已删除的文档并按 remap 重新编号，remap 中为 -1 的文档被删除
+     */
+    PostingList compact(int[] remap) {
+        PostingList compacted = new PostingList();
+        Cursor cursor = cursor();
+        while (cursor.next()) {
+            int doc = remap[cursor.doc()];
+            if (doc >= 0) {
+                compacted.add(doc, cursor.freq());
+            }
+        }
+        compacted.data = Arrays.copyOf(compacted.data, compacted.length);
+        return compacted;
+    }
+
+    int serializedSize() {
+        return Integer.BYTES * 3 + length;
+    }
+
+    void writeTo(ByteBuffer buffer) {
+        buffer.putInt(size);
+        buffer.putInt(lastDoc);
+        buffer.putInt(length);
+        buffer.put(data, 0, length);
+    }
+
+    static PostingList readFrom(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        int lastDoc = buffer.getInt();
+        byte[] data = new byte[buffer.getInt()];
+        buffer.get(data);
+        return new PostingList(data, size, lastDoc);
+    }
+
+    private void writeVarint(int value) {
+        while ((value & ~0x7F) != 0) {
+            data[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[length++] = (byte) value;
+    }
+
+    /**
+     * 顺序读取游标，只能前进
+     */
+    final class Cursor {
+
+        private int position;
+
+        private int doc = -1;
+
+        private int freq;
+
+        /**
+         * 移动到下一条记录
+         */
+        boolean next() {
+            if (position >= length) {
+                return false;
+            }
+            doc += readVarint();
+            freq = readVarint();
+            return true;
+        }
+
+        /**
+         * 移动到第一条序号不小于 target 的记录，已在其上时不移动
+         */
+        boolean advance(int target) {
+            if (doc >= target) {
+                return true;
+            }
+            if (target > lastDoc) {
+                position = length;
+                return false;
+            }
+            while (next()) {
+                if (doc >= target) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int doc() {
+            return doc;
+        }
+
+        int freq() {
+            return freq;
+        }
+
+        private int readVarint() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.itzixi.search;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 文章搜索引擎
+ * 只负责返回按相关度排序的文章ID，文章详情统一由 ArticleSearchService 从数据库批量加载
+ */
+public interface SearchEngine {
+
+    /**
+     * 引擎名称，与配置项 search.engine 对应
+     */
+    String name();
+
+    /**
+     * 是否需要维护独立的索引，为 false 时文章变更无需同步
+     */
+    boolean requiresIndex();
+
+    /**
+     * 引擎是否可用，不可用时搜索直接走数据库，也不向索引写入
+     */
+    default boolean available() {
+        return true;
+    }
+
+    /**
+     * 索引是否为空需要从数据库全量构建，例如本地索引启动时没有可用的快照
+     */
+    default boolean needsRebuild() {
+        return false;
+    }
+
+    /**
+     * 索引从快照恢复时返回快照时间，此后变更的文章需要重新同步；无需补齐时返回 null
+     */
+    default LocalDateTime indexedUntil() {
+        return null;
+    }
+
+    /**
+     * 索引中的全部文章ID，从快照恢复后用于找出快照之后被删除的文章；不支持时返回空集合
+     */
+    default Collection<Long> indexedArticleIds() {
+        return List.of();
+    }
+
+    /**
+     * 搜索已发布文章
+     * @param pageNum 页码，从1开始
+     */
+    SearchResult search(String keyword, int pageNum, int pageSize);
+
+    /**
+     * 写入或覆盖文章索引
+     */
+    void index(List<ArticleDocument> documents);
+
+    /**
+     * 删除文章索引
+     */
+    void delete(Collection<Long> articleIds);
+}
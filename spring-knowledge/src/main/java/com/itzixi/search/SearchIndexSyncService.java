@@ -0,0 +1,348 @@
+package com.itzixi.search;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.itzixi.common.exception.BusinessException;
+import com.itzixi.config.RabbitMQConfig;
+import com.itzixi.dto.ArticleMessage;
+import com.itzixi.dto.ArticleTagName;
+import com.itzixi.entity.Article;
+import com.itzixi.mapper.ArticleMapper;
+import com.itzixi.mapper.TagMapper;
+import com.itzixi.service.OutboxService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 搜索索引同步服务
+ * 增量同步：文章发布、更新、删除消息在确认之前同步写入索引，写入失败时消息进入重试队列，
+ * 不再是已发布状态的文章从索引中删除；
+ * 启动补齐：本地索引从快照恢复后批量同步快照之后变更过的文章，失败的批次写入发件箱，
+ * 由消息消费者重试；
+ * 全量重建：按ID区间切块并行写入索引，每完成一块记录到 Redis，中断后重新执行会跳过已完成的块
+ */
+@Slf4j
+@Service
+public class SearchIndexSyncService {
+
+    private static final String CHECKPOINT_KEY_PREFIX = "search:reindex:done:";
+
+    private final ArticleSearchService articleSearchService;
+
+    private final ArticleMapper articleMapper;
+
+    private final TagMapper tagMapper;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final Executor reindexExecutor;
+
+    private final OutboxService outboxService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final AtomicBoolean reindexRunning = new AtomicBoolean();
+
+    private volatile ReindexProgress reindexProgress;
+
+    private final Counter indexedDocs;
+
+    private final Counter deletedDocs;
+
+    private final Counter syncFailures;
+
+    @Value("${search.sync.batch-size:200}")
+    private int batchSize;
+
+    @Value("${search.reindex.chunk-size:1000}")
+    private int chunkSize;
+
+    public SearchIndexSyncService(ArticleSearchService articleSearchService,
+                                  ArticleMapper articleMapper,
+                                  TagMapper tagMapper,
+                                  StringRedisTemplate stringRedisTemplate,
+                                  MeterRegistry meterRegistry,
+                                  @Qualifier("searchReindexExecutor") Executor reindexExecutor,
+                                  OutboxService outboxService,
+                                  TransactionTemplate transactionTemplate) {
+        this.articleSearchService = articleSearchService;
+        this.articleMapper = articleMapper;
+        this.tagMapper = tagMapper;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.reindexExecutor = reindexExecutor;
+        this.outboxService = outboxService;
+        this.transactionTemplate = transactionTemplate;
+        this.indexedDocs = Counter.builder("search.index.docs")
+                .tag("operation", "upsert")
+                .description("写入搜索索引的文档数")
+                .register(meterRegistry);
+        this.deletedDocs = Counter.builder("search.index.docs")
+                .tag("operation", "delete")
+                .description("从搜索索引删除的文档数")
+                .register(meterRegistry);
+        this.syncFailures = Counter.builder("search.index.failures")
+                .description("搜索索引同步失败的批次数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 同步一篇文章到索引，消息消费者在确认消息之前调用，失败时抛出异常交给消息重试
+     */
+    public void sync(Long articleId) {
+        SearchEngine engine = articleSearchService.currentEngine();
+        if (articleId == null || !engine.requiresIndex() || !engine.available()) {
+            return;
+        }
+        try {
+            syncBatch(List.of(articleId));
+        } catch (RuntimeException e) {
+            syncFailures.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * 启动后补齐本地索引：没有快照时全量重建，从快照恢复时重新同步快照之后变更过的文章，
+     * 并删除快照中存在但数据库中已不存在的文章
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverIndex() {
+        SearchEngine engine = articleSearchService.currentEngine();
+        if (!engine.requiresIndex() || !engine.available()) {
+            return;
+        }
+        try {
+            if (engine.needsRebuild()) {
+                startReindex(true);
+                return;
+            }
+            LocalDateTime since = engine.indexedUntil();
+            if (since != null) {
+                // 多回溯一分钟，覆盖快照前已修改但尚未同步的文章
+                Set<Long> articleIds = articleMapper.selectObjs(new QueryWrapper<Article>()
+                                .select("id")
+                                .ge("updated_at", since.minusMinutes(1))).stream()
+                        .map(id -> ((Number) id).longValue())
+                        .collect(Collectors.toCollection(LinkedHashSet::new));
+                int changed = articleIds.size();
+                // 快照之后被物理删除的文章不会出现在上面的查询里，与数据库现有ID对比找出来，同步时从索引删除
+                Set<Long> existing = articleMapper.selectObjs(new QueryWrapper<Article>().select("id")).stream()
+                        .map(id -> ((Number) id).longValue())
+                        .collect(Collectors.toSet());
+                List<Long> removed = engine.indexedArticleIds().stream()
+                        .filter(id -> !existing.contains(id))
+                        .toList();
+                articleIds.addAll(removed);
+                log.info("搜索索引从快照恢复，待补齐文章数: {}, 快照后已删除: {}", changed, removed.size());
+                syncInBatches(new ArrayList<>(articleIds));
+            }
+        } catch (Exception e) {
+            log.error("搜索索引启动补齐失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 分批同步，失败的批次写入发件箱：下一次快照会越过这些文章的更新时间，只放在内存里等待重试，
+     * 进程退出后就再也补不回来
+     */
+    void syncInBatches(List<Long> articleIds) {
+        for (int from = 0; from < articleIds.size(); from += batchSize) {
+            List<Long> batch = articleIds.subList(from, Math.min(from + batchSize, articleIds.size()));
+            try {
+                syncBatch(batch);
+            } catch (Exception e) {
+                syncFailures.increment();
+                log.error("搜索索引同步失败，写入发件箱重试: articles={}, error={}", batch.size(), e.getMessage(), e);
+                transactionTemplate.executeWithoutResult(status -> batch.forEach(articleId ->
+                        outboxService.enqueue(RabbitMQConfig.ARTICLE_EXCHANGE,
+                                RabbitMQConfig.ARTICLE_UPDATE_ROUTING_KEY,
+                                ArticleMessage.of(articleId, "UPDATE", null, "搜索索引补齐"))));
+            }
+        }
+    }
+
+    /**
+     * 启动全量重建，已在执行时返回 false
+     * @param restart 为 true 时清除检查点从头开始
+     */
+    public boolean startReindex(boolean restart) {
+        SearchEngine engine = articleSearchService.currentEngine();
+        if (!engine.requiresIndex()) {
+            throw new BusinessException("当前搜索引擎无需建立索引");
+        }
+        if (!engine.available()) {
+            throw new BusinessException("当前搜索引擎不可用，请检查索引初始化日志");
+        }
+        if (!reindexRunning.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            reindexExecutor.execute(() -> runReindex(restart));
+        } catch (RuntimeException e) {
+            reindexRunning.set(false);
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * 全量重建进度
+     */
+    public Map<String, Object> getReindexStatus() {
+        ReindexProgress progress = reindexProgress;
+        if (progress == null) {
+            return Map.of("running", false);
+        }
+        return Map.of(
+                "running", reindexRunning.get(),
+                "totalChunks", progress.totalChunks,
+                "completedChunks", progress.completedChunks.get(),
+                "skippedChunks", progress.skippedChunks.get(),
+                "failedChunks", progress.failedChunks.get(),
+                "startedAt", progress.startedAt.toString(),
+                "finishedAt", progress.finishedAt == null ? "" : progress.finishedAt.toString());
+    }
+
+    private void runReindex(boolean restart) {
+        String checkpointKey = CHECKPOINT_KEY_PREFIX + chunkSize;
+        try {
+            if (restart) {
+                stringRedisTemplate.delete(checkpointKey);
+            }
+            Map<String, Object> range = articleMapper.selectMaps(
+                    new QueryWrapper<Article>().select("MIN(id) AS minId", "MAX(id) AS maxId")).get(0);
+            if (range == null || range.get("minId") == null) {
+                reindexProgress = new ReindexProgress(0);
+                log.info("没有需要重建索引的文章");
+                return;
+            }
+            long minId = ((Number) range.get("minId")).longValue();
+            long maxId = ((Number) range.get("maxId")).longValue();
+            ReindexProgress progress = new ReindexProgress((int) ((maxId - minId) / chunkSize + 1));
+            reindexProgress = progress;
+            Set<String> done = stringRedisTemplate.opsForSet().members(checkpointKey);
+            log.info("开始重建搜索索引: id=[{}, {}], chunks={}, 已完成={}",
+                    minId, maxId, progress.totalChunks, done == null ? 0 : done.size());
+
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (long start = minId; start <= maxId; start += chunkSize) {
+                if (done != null && done.contains(String.valueOf(start))) {
+                    progress.skippedChunks.incrementAndGet();
+                    continue;
+                }
+                long chunkStart = start;
+                futures.add(CompletableFuture.runAsync(
+                        () -> reindexChunk(chunkStart, checkpointKey, progress), reindexExecutor));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+            if (progress.failedChunks.get() == 0) {
+                stringRedisTemplate.delete(checkpointKey);
+                log.info("搜索索引重建完成: chunks={}", progress.totalChunks);
+            } else {
+                log.warn("搜索索引重建部分失败，重新执行将从检查点继续: failed={}", progress.failedChunks.get());
+            }
+        } catch (Exception e) {
+            log.error("搜索索引重建失败: {}", e.getMessage(), e);
+        } finally {
+            if (reindexProgress != null) {
+                reindexProgress.finishedAt = LocalDateTime.now();
+            }
+            reindexRunning.set(false);
+        }
+    }
+
+    private void reindexChunk(long start, String checkpointKey, ReindexProgress progress) {
+        try {
+            List<Article> articles = articleMapper.selectList(new QueryWrapper<Article>()
+                    .ge("id", start)
+                    .lt("id", start + chunkSize));
+            writeToIndex(articles, List.of());
+            stringRedisTemplate.opsForSet().add(checkpointKey, String.valueOf(start));
+            progress.completedChunks.incrementAndGet();
+        } catch (Exception e) {
+            progress.failedChunks.incrementAndGet();
+            log.error("重建索引块失败: start={}, error={}", start, e.getMessage(), e);
+        }
+    }
+
+    private void syncBatch(List<Long> articleIds) {
+        List<Article> articles = articleMapper.selectBatchIds(articleIds);
+        Set<Long> found = articles.stream().map(Article::getId).collect(Collectors.toSet());
+        List<Long> missing = articleIds.stream().filter(id -> !found.contains(id)).toList();
+        writeToIndex(articles, missing);
+    }
+
+    /**
+     * 已发布的文章批量写入索引，其余文章和已删除的文章从索引中删除
+     */
+    private void writeToIndex(List<Article> articles, Collection<Long> deletedIds) {
+        SearchEngine engine = articleSearchService.currentEngine();
+        List<Article> published = new ArrayList<>();
+        List<Long> toDelete = new ArrayList<>(deletedIds);
+        for (Article article : articles) {
+            if (article.isPublished()) {
+                published.add(article);
+            } else {
+                toDelete.add(article.getId());
+            }
+        }
+
+        if (!published.isEmpty()) {
+            Map<Long, List<String>> tags = tagMapper.selectTagNamesByArticleIds(
+                            published.stream().map(Article::getId).toList()).stream()
+                    .collect(Collectors.groupingBy(ArticleTagName::getArticleId,
+                            Collectors.mapping(ArticleTagName::getTagName, Collectors.toList())));
+            engine.index(published.stream()
+                    .map(article -> ArticleDocument.from(article, tags.getOrDefault(article.getId(), List.of())))
+                    .toList());
+            indexedDocs.increment(published.size());
+        }
+        if (!toDelete.isEmpty()) {
+            engine.delete(toDelete);
+            deletedDocs.increment(toDelete.size());
+        }
+    }
+
+    /**
+     * 全量重建进度
+     */
+    private static class ReindexProgress {
+
+        private final int totalChunks;
+
+        private final AtomicInteger completedChunks = new AtomicInteger();
+
+        private final AtomicInteger skippedChunks = new AtomicInteger();
+
+        private final AtomicInteger failedChunks = new AtomicInteger();
+
+        private final LocalDateTime startedAt = LocalDateTime.now();
+
+        private volatile LocalDateTime finishedAt;
+
+        ReindexProgress(int totalChunks) {
+            this.totalChunks = totalChunks;
+        }
+    }
+}
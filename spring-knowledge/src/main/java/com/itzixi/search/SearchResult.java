@@ -0,0 +1,16 @@
+package com.itzixi.search;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 搜索结果
+ * @param articleIds 当前页的文章ID，按相关度排序
+ * @param total 命中总数
+ */
+public record SearchResult(List<Long> articleIds, long total) {
+
+    public static SearchResult empty() {
+        return new SearchResult(Collections.emptyList(), 0);
+    }
+}
@@ -1,17 +1,16 @@
 package com.itzixi.security;
 
+import com.itzixi.entity.User;
 import com.itzixi.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.ApplicationContext;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -28,7 +27,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private JwtUtil jwtUtil;
     
     @Autowired
-    private ApplicationContext applicationContext;
+    private PrincipalCache principalCache;
     
     @Override
     protected void doFilterInternal(
@@ -40,19 +39,20 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String token = getTokenFromRequest(request);
             
-            if (StringUtils.hasText(token) && jwtUtil.validateToken(token)) {
-                String username = jwtUtil.getUsernameFromToken(token);
+            if (StringUtils.hasText(token) && SecurityContextHolder.getContext().getAuthentication() == null) {
+                // 签名和过期时间在一次解析中校验，用户从认证缓存中获取，命中时不查数据库
+                Claims claims = jwtUtil.parseToken(token);
+                String username = claims != null ? claims.getSubject() : null;
                 
-                if (StringUtils.hasText(username) && SecurityContextHolder.getContext().getAuthentication() == null) {
-                    UserDetailsService userDetailsService = applicationContext.getBean(UserDetailsService.class);
-                    UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                if (StringUtils.hasText(username)) {
+                    User user = principalCache.get(username);
                     
-                    if (jwtUtil.validateToken(token, userDetails.getUsername())) {
+                    if (user != null && user.isEnabled()) {
                         UsernamePasswordAuthenticationToken authentication = 
                             new UsernamePasswordAuthenticationToken(
-                                userDetails, 
+                                user, 
                                 null, 
-                                userDetails.getAuthorities()
+                                user.getAuthorities()
                             );
                         authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                         
@@ -0,0 +1,136 @@
+package com.itzixi.security;
+
+import com.alibaba.fastjson2.JSON;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.itzixi.entity.User;
+import com.itzixi.mapper.UserMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * 认证用户缓存
+ * JWT 过滤器按用户名从这里取登录用户，命中时不查数据库。
+ * 用户实体包含密码哈希，只缓存在本地内存，不写入 Redis；
+ * 用户资料、角色或启用状态变更时清除，并通过 Redis 发布订阅通知其他节点
+ */
+@Slf4j
+@Component
+public class PrincipalCache implements MessageListener {
+
+    /**
+     * 认证缓存失效通知频道
+     */
+    public static final String INVALIDATION_CHANNEL = "auth:principal:invalidate";
+
+    private final UserMapper userMapper;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final Cache<String, User> cache;
+
+    /**
+     * 当前节点标识，用于忽略自己发出的失效通知
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public PrincipalCache(UserMapper userMapper,
+                          StringRedisTemplate stringRedisTemplate,
+                          MeterRegistry meterRegistry,
+                          @Value("${security.principal-cache.maximum-size:10000}") long maximumSize,
+                          @Value("${security.principal-cache.ttl:5m}") Duration ttl) {
+        this.userMapper = userMapper;
+        this.stringRedisTemplate = stringRedisTemplate;
+        // 过期时间是失效通知丢失时读到旧数据的上限
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "principal");
+    }
+
+    /**
+     * 获取认证用户，未命中时查询数据库，用户不存在返回 null
+     */
+    public User get(String username) {
+        return cache.get(username, this::load);
+    }
+
+    /**
+     * 清除用户的认证缓存并通知其他节点
+     * 在事务中调用时提交后再清除一次，避免提交前被并发请求重新加载旧数据
+     */
+    public void evict(String username) {
+        if (username == null) {
+            return;
+        }
+        cache.invalidate(username);
+        publishEviction(username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(username);
+                    publishEviction(username);
+                }
+            });
+        }
+    }
+
+    private User load(String username) {
+        LambdaQueryWrapper<User> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(User::getUsername, username);
+        User user = userMapper.selectOne(wrapper);
+        log.debug("加载认证用户: {}, 存在: {}", username, user != null);
+        return user;
+    }
+
+    /**
+     * 通知失败只记录日志，其他节点的缓存会在过期后自然失效
+     */
+    private void publishEviction(String username) {
+        try {
+            String payload = JSON.toJSONString(new PrincipalInvalidationMessage(nodeId, username));
+            stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, payload);
+        } catch (Exception e) {
+            log.warn("发送认证缓存失效通知失败: username={}, error={}", username, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        PrincipalInvalidationMessage invalidation;
+        try {
+            invalidation = JSON.parseObject(new String(message.getBody(), StandardCharsets.UTF_8),
+                    PrincipalInvalidationMessage.class);
+        } catch (Exception e) {
+            log.warn("无法解析认证缓存失效通知: {}", e.getMessage());
+            return;
+        }
+        if (invalidation == null || nodeId.equals(invalidation.nodeId()) || invalidation.username() == null) {
+            return;
+        }
+        cache.invalidate(invalidation.username());
+        log.debug("收到认证缓存失效通知: username={}", invalidation.username());
+    }
+
+    /**
+     * 认证缓存失效通知
+     */
+    public record PrincipalInvalidationMessage(String nodeId, String username) {
+    }
+}
@@ -0,0 +1,139 @@
+package com.itzixi.security;
+
+import com.alibaba.fastjson2.JSON;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token 吊销列表
+ * 注销和刷新后的旧 Token 记录在这里直到原定过期时间。Redis 中保存一份用于重启恢复，
+ * 吊销时通过发布订阅同步到其他节点，校验时只查本地内存
+ */
+@Slf4j
+@Component
+public class TokenRevocationList implements MessageListener {
+
+    /**
+     * Token 吊销通知频道
+     */
+    public static final String REVOCATION_CHANNEL = "auth:token:revoke";
+
+    private static final String KEY_PREFIX = "auth:revoked:";
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * Token 哈希 -> 过期时间戳（毫秒），条目在 Token 过期时自动移除
+     */
+    private final Cache<String, Long> revoked = Caffeine.newBuilder()
+            .expireAfter(new Expiry<String, Long>() {
+                @Override
+                public long expireAfterCreate(String key, Long expiresAt, long currentTime) {
+                    return TimeUnit.MILLISECONDS.toNanos(Math.max(0, expiresAt - System.currentTimeMillis()));
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, Long expiresAt, long currentTime, long currentDuration) {
+                    return expireAfterCreate(key, expiresAt, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(String key, Long expiresAt, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+
+    /**
+     * 当前节点标识，用于忽略自己发出的吊销通知
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public TokenRevocationList(StringRedisTemplate stringRedisTemplate) {
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    /**
+     * 判断 Token 是否已吊销，只查本地内存
+     */
+    public boolean isRevoked(String tokenHash) {
+        return revoked.getIfPresent(tokenHash) != null;
+    }
+
+    /**
+     * 吊销 Token，保留到其原定过期时间
+     */
+    public void revoke(String tokenHash, long expiresAt) {
+        long ttl = expiresAt - System.currentTimeMillis();
+        if (ttl <= 0) {
+            return;
+        }
+        revoked.put(tokenHash, expiresAt);
+        try {
+            stringRedisTemplate.opsForValue().set(KEY_PREFIX + tokenHash, String.valueOf(expiresAt), Duration.ofMillis(ttl));
+            String payload = JSON.toJSONString(new TokenRevocationMessage(nodeId, tokenHash, expiresAt));
+            stringRedisTemplate.convertAndSend(REVOCATION_CHANNEL, payload);
+        } catch (Exception e) {
+            log.warn("同步Token吊销记录失败: error={}", e.getMessage());
+        }
+    }
+
+    /**
+     * 启动时从 Redis 恢复尚未过期的吊销记录
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        int count = 0;
+        ScanOptions options = ScanOptions.scanOptions().match(KEY_PREFIX + "*").count(1000).build();
+        try (Cursor<String> cursor = stringRedisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                String key = cursor.next();
+                String value = stringRedisTemplate.opsForValue().get(key);
+                if (value != null) {
+                    revoked.put(key.substring(KEY_PREFIX.length()), Long.parseLong(value));
+                    count++;
+                }
+            }
+            log.info("加载Token吊销记录: {} 条", count);
+        } catch (Exception e) {
+            log.warn("加载Token吊销记录失败: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        TokenRevocationMessage revocation;
+        try {
+            revocation = JSON.parseObject(new String(message.getBody(), StandardCharsets.UTF_8),
+                    TokenRevocationMessage.class);
+        } catch (Exception e) {
+            log.warn("无法解析Token吊销通知: {}", e.getMessage());
+            return;
+        }
+        if (revocation == null || nodeId.equals(revocation.nodeId()) || revocation.tokenHash() == null) {
+            return;
+        }
+        revoked.put(revocation.tokenHash(), revocation.expiresAt());
+    }
+
+    /**
+     * Token 吊销通知
+     */
+    public record TokenRevocationMessage(String nodeId, String tokenHash, long expiresAt) {
+    }
+}
@@ -0,0 +1,232 @@
+package com.itzixi.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * AI 回复缓存
+ * 按归一化后的问题缓存完整回复，重复提问直接返回，不再占用模型推理。
+ * 精确匹配按问题哈希查找；开启语义匹配后，用 Ollama 向量模型计算问题向量，
+ * 在内存中查找相似度超过阈值的已缓存问题。缓存按数量和写入时间淘汰
+ */
+@Slf4j
+@Service
+public class AiResponseCache {
+
+    private final boolean enabled;
+
+    private final boolean semanticEnabled;
+
+    private final double similarityThreshold;
+
+    private final int maxAnswerChars;
+
+    private final EmbeddingModel embeddingModel;
+
+    /**
+     * 问题哈希 -> 回复
+     */
+    private final Cache<String, String> answers;
+
+    /**
+     * 问题哈希 -> 归一化向量，随回复一起淘汰
+     */
+    private final Map<String, float[]> vectors = new ConcurrentHashMap<>();
+
+    /**
+     * 未命中的问题向量，生成完成写入缓存时复用，避免重复计算
+     */
+    private final Cache<String, float[]> pendingVectors;
+
+    private final Counter exactHits;
+
+    private final Counter semanticHits;
+
+    private final Counter misses;
+
+    public AiResponseCache(ObjectProvider<EmbeddingModel> embeddingModelProvider,
+                           MeterRegistry meterRegistry,
+                           @Value("${ai.cache.enabled:true}") boolean enabled,
+                           @Value("${ai.cache.maximum-size:1000}") long maximumSize,
+                           @Value("${ai.cache.ttl:6h}") Duration ttl,
+                           @Value("${ai.cache.max-answer-chars:20000}") int maxAnswerChars,
+                           @Value("${ai.cache.semantic.enabled:false}") boolean semanticEnabled,
+                           @Value("${ai.cache.semantic.similarity-threshold:0.92}") double similarityThreshold) {
+        this.enabled = enabled;
+        this.maxAnswerChars = maxAnswerChars;
+        this.similarityThreshold = similarityThreshold;
+        this.embeddingModel = semanticEnabled ? embeddingModelProvider.getIfAvailable() : null;
+        this.semanticEnabled = this.embeddingModel != null;
+        if (semanticEnabled && this.embeddingModel == null) {
+            log.warn("未找到向量模型，AI回复缓存只使用精确匹配");
+        }
+        this.answers = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .removalListener((String key, String value, RemovalCause cause) -> {
+                    if (key != null && cause != RemovalCause.REPLACED) {
+                        vectors.remove(key);
+                    }
+                })
+                .build();
+        this.pendingVectors = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofMinutes(10))
+                .build();
+        this.exactHits = Counter.builder("ai.cache.requests").tag("result", "exact")
+                .description("AI回复缓存查询次数").register(meterRegistry);
+        this.semanticHits = Counter.builder("ai.cache.requests").tag("result", "semantic")
+                .description("AI回复缓存查询次数").register(meterRegistry);
+        this.misses = Counter.builder("ai.cache.requests").tag("result", "miss")
+                .description("AI回复缓存查询次数").register(meterRegistry);
+        Gauge.builder("ai.cache.size", answers, Cache::estimatedSize)
+                .description("AI回复缓存条数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 查找缓存的回复，未命中时返回空
+     * 精确匹配在调用线程完成；语义匹配需要请求向量模型，在弹性线程执行
+     */
+    public Mono<String> lookup(String question) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        String key = hash(normalize(question));
+        String answer = answers.getIfPresent(key);
+        if (answer != null) {
+            exactHits.increment();
+            return Mono.just(answer);
+        }
+        if (!semanticEnabled) {
+            misses.increment();
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> findSimilar(key, question))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(e -> {
+                    log.warn("AI回复语义缓存查询失败: error={}", e.getMessage());
+                    return Mono.empty();
+                })
+                .doOnNext(value -> semanticHits.increment())
+                .switchIfEmpty(Mono.fromRunnable(misses::increment));
+    }
+
+    /**
+     * 缓存完整生成的回复，不完整或过长的回复不缓存
+     */
+    public void put(String question, String answer) {
+        if (!enabled || answer == null || answer.isEmpty() || answer.length() > maxAnswerChars) {
+            return;
+        }
+        String key = hash(normalize(question));
+        if (semanticEnabled) {
+            float[] vector = pendingVectors.getIfPresent(key);
+            if (vector == null) {
+                try {
+                    vector = embed(question);
+                } catch (Exception e) {
+                    log.warn("计算问题向量失败，只缓存精确匹配: error={}", e.getMessage());
+                }
+            }
+            pendingVectors.invalidate(key);
+            if (vector != null) {
+                vectors.put(key, vector);
+            }
+        }
+        answers.put(key, answer);
+    }
+
+    /**
+     * 归一化问题：全半角统一、忽略大小写、合并空白、去掉末尾标点
+     */
+    static String normalize(String question) {
+        String text = Normalizer.normalize(question == null ? "" : question, Normalizer.Form.NFKC)
+                .toLowerCase()
+                .replaceAll("\\s+", " ")
+                .trim();
+        int end = text.length();
+        while (end > 0 && isTrailingPunctuation(text.charAt(end - 1))) {
+            end--;
+        }
+        return text.substring(0, end).trim();
+    }
+
+    private static boolean isTrailingPunctuation(char c) {
+        return c == '?' || c == '!' || c == '.' || c == '。' || c == '~' || c == '…';
+    }
+
+    private String findSimilar(String key, String question) {
+        float[] vector = embed(question);
+        pendingVectors.put(key, vector);
+        // 向量数受缓存条数限制，线性扫描即可
+        String bestKey = null;
+        double bestScore = similarityThreshold;
+        for (Map.Entry<String, float[]> entry : vectors.entrySet()) {
+            double score = dot(vector, entry.getValue());
+            if (score >= bestScore) {
+                bestScore = score;
+                bestKey = entry.getKey();
+            }
+        }
+        return bestKey == null ? null : answers.getIfPresent(bestKey);
+    }
+
+    /**
+     * 计算单位向量，相似度直接用点积
+     */
+    private float[] embed(String question) {
+        float[] vector = embeddingModel.embed(normalize(question));
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        if (norm > 0) {
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = (float) (vector[i] / norm);
+            }
+        }
+        return vector;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return 0;
+        }
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static String hash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
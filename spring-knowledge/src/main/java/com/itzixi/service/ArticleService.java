@@ -3,6 +3,7 @@ package com.itzixi.service;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.itzixi.common.result.CursorPage;
 import com.itzixi.entity.Article;
 
 import java.util.List;
@@ -17,6 +18,13 @@ public interface ArticleService extends IService<Article> {
      */
     IPage<Article> getArticlePage(Page<Article> page, Integer status);
     
+    /**
+     * 游标分页查询文章列表
+     * @param cursor 上一页返回的游标，为空时查询第一页
+     * @param withTotal 是否返回总数估算值
+     */
+    CursorPage<Article> getArticleCursorPage(String cursor, int size, Integer status, boolean withTotal);
+    
     /**
      * 根据ID查询文章详情
      */
@@ -33,9 +41,9 @@ public interface ArticleService extends IService<Article> {
     Article updateArticle(Article article, List<String> tagNames);
     
     /**
-     * 删除文章
+     * 删除文章，userId 为执行删除的用户
      */
-    boolean deleteArticle(Long id);
+    boolean deleteArticle(Long id, Long userId);
     
     /**
      * 发布文章
@@ -67,6 +75,11 @@ public interface ArticleService extends IService<Article> {
      */
     IPage<Article> searchArticles(Page<Article> page, String keyword);
     
+    /**
+     * 游标分页搜索文章
+     */
+    CursorPage<Article> searchArticlesByCursor(String keyword, String cursor, int size);
+    
     /**
      * 获取热门文章
      */
@@ -84,11 +97,13 @@ public interface ArticleService extends IService<Article> {
     
     /**
      * 点赞文章
+     * @return 是否为新增点赞，重复点赞返回 false
      */
-    boolean likeArticle(Long id);
+    boolean likeArticle(Long id, Long userId);
     
     /**
      * 取消点赞文章
+     * @return 是否确实取消了点赞，未点赞过返回 false
      */
-    boolean unlikeArticle(Long id);
+    boolean unlikeArticle(Long id, Long userId);
 } 
\ No newline at end of file
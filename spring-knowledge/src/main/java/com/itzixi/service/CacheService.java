@@ -1,120 +1,57 @@
 package com.itzixi.service;
 
+import com.itzixi.cache.TwoLevelCacheManager;
 import com.itzixi.entity.Article;
-import com.itzixi.entity.User;
+import com.itzixi.mapper.ArticleMapper;
+import com.itzixi.mapper.CommentMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.util.DigestUtils;
-
-import java.time.Duration;
-import java.util.List;
 
 /**
  * 缓存服务类
- * 支持高并发场景的缓存策略
+ * 支持高并发场景的缓存策略，缓存由 TwoLevelCacheManager 提供（Caffeine 本地缓存 + Redis）
  */
 @Service
 @Slf4j
 public class CacheService {
-    
+
     @Autowired
-    private RedisTemplate<String, Object> redisTemplate;
-    
-    private static final String USER_CACHE_PREFIX = "user:";
-    private static final String ARTICLE_CACHE_PREFIX = "article:";
-    private static final String HOT_ARTICLES_KEY = "hot:articles";
-    private static final String SEARCH_CACHE_PREFIX = "search:";
-    private static final String CATEGORY_CACHE_PREFIX = "category:";
-    private static final String TAG_CACHE_PREFIX = "tag:";
-    private static final String STATS_CACHE_PREFIX = "stats:";
-    
-    /**
-     * 用户信息缓存
-     */
-    @Cacheable(value = "user", key = "#username")
-    public User getUserByUsername(String username) {
-        log.info("缓存用户信息: {}", username);
-        // 这里应该调用实际的用户服务
-        return null; // 实际实现中需要注入UserService
-    }
-    
+    private ArticleMapper articleMapper;
+
+    @Autowired
+    private CommentMapper commentMapper;
+
+    @Autowired
+    private TwoLevelCacheManager cacheManager;
+
     /**
      * 文章详情缓存
+     * 只缓存数据库中的文章，阅读量、点赞数等实时增量由 ArticleService 按加载时间在副本上叠加
      */
-    @Cacheable(value = "article", key = "#articleId")
+    @Cacheable(value = "article", key = "#articleId", sync = true)
     public Article getArticleById(Long articleId) {
-        log.info("缓存文章详情: {}", articleId);
-        // 这里应该调用实际的文章服务
-        return null; // 实际实现中需要注入ArticleService
-    }
-    
-    /**
-     * 热门文章缓存
-     */
-    @Cacheable(value = "hot", key = "'articles'")
-    public List<Article> getHotArticles() {
-        log.info("缓存热门文章列表");
-        // 这里应该调用实际的文章服务
-        return null; // 实际实现中需要注入ArticleService
-    }
-    
-    /**
-     * 搜索结果缓存
-     */
-    public List<Article> getSearchResults(String keyword) {
-        String cacheKey = SEARCH_CACHE_PREFIX + DigestUtils.md5DigestAsHex(keyword.getBytes());
-        List<Article> cached = (List<Article>) redisTemplate.opsForValue().get(cacheKey);
-        if (cached != null) {
-            log.info("从缓存获取搜索结果: {}", keyword);
-            return cached;
-        }
-        
-        log.info("从数据库获取搜索结果: {}", keyword);
-        // 这里应该调用实际的搜索服务
-        List<Article> results = null; // 实际实现中需要注入SearchService
-        
-        // 缓存搜索结果，5分钟过期
-        if (results != null) {
-            redisTemplate.opsForValue().set(cacheKey, results, Duration.ofMinutes(5));
+        log.debug("从数据库加载文章详情: {}", articleId);
+        Article article = articleMapper.selectById(articleId);
+        if (article != null) {
+            // 查询之后取加载时间，叠加增量时只计入之后才开始落库的批次
+            article.setCachedAt(System.currentTimeMillis());
         }
-        
-        return results;
-    }
-    
-    /**
-     * 分类列表缓存
-     */
-    @Cacheable(value = "category", key = "'list'")
-    public List<Object> getCategoryList() {
-        log.info("缓存分类列表");
-        // 这里应该调用实际的分类服务
-        return null; // 实际实现中需要注入CategoryService
+        return article;
     }
-    
-    /**
-     * 标签列表缓存
-     */
-    @Cacheable(value = "tag", key = "'list'")
-    public List<Object> getTagList() {
-        log.info("缓存标签列表");
-        // 这里应该调用实际的标签服务
-        return null; // 实际实现中需要注入TagService
-    }
-    
+
     /**
-     * 统计数据缓存
+     * 评论是否存在
+     * 评论只做软删除，存在的结果不会失效，只缓存存在的结果，新评论不会被之前的未命中挡住
      */
-    @Cacheable(value = "stats", key = "'dashboard'")
-    public Object getDashboardStats() {
-        log.info("缓存仪表板统计数据");
-        // 这里应该调用实际的统计服务
-        return null; // 实际实现中需要注入StatsService
+    @Cacheable(value = "comment", key = "'exists:' + #commentId", unless = "!#result")
+    public boolean commentExists(Long commentId) {
+        return commentMapper.existsById(commentId);
     }
-    
+
     /**
      * 清除文章缓存
      */
@@ -122,6 +59,14 @@ public class CacheService {
     public void evictArticleCache(Long articleId) {
         log.info("清除文章缓存: {}", articleId);
     }
+
+    /**
+     * 清除文章评论树缓存
+     */
+    @CacheEvict(value = "comment", key = "'tree:' + #articleId")
+    public void evictCommentTreeCache(Long articleId) {
+        log.debug("清除评论树缓存: {}", articleId);
+    }
     
     /**
      * 清除用户缓存
@@ -130,39 +75,39 @@ public class CacheService {
     public void evictUserCache(String username) {
         log.info("清除用户缓存: {}", username);
     }
-    
+
     /**
      * 清除热门文章缓存
      */
-    @CacheEvict(value = "hot", key = "'articles'")
+    @CacheEvict(value = "hot", allEntries = true)
     public void evictHotArticlesCache() {
         log.info("清除热门文章缓存");
     }
-    
+
     /**
      * 清除最新文章缓存
      */
-    @CacheEvict(value = "latest", key = "'articles'")
+    @CacheEvict(value = "latest", allEntries = true)
     public void evictLatestArticlesCache() {
         log.info("清除最新文章缓存");
     }
-    
+
     /**
      * 清除分类缓存
      */
-    @CacheEvict(value = "category", key = "'list'")
+    @CacheEvict(value = "category", allEntries = true)
     public void evictCategoryCache() {
         log.info("清除分类缓存");
     }
-    
+
     /**
      * 清除标签缓存
      */
-    @CacheEvict(value = "tag", key = "'list'")
+    @CacheEvict(value = "tag", allEntries = true)
     public void evictTagCache() {
         log.info("清除标签缓存");
     }
-    
+
     /**
      * 清除统计数据缓存
      */
@@ -170,21 +115,25 @@ public class CacheService {
     public void evictStatsCache() {
         log.info("清除统计数据缓存");
     }
-    
+
     /**
      * 清除所有缓存
+     * 只清理缓存区域，不能 flushDb，否则会把点赞记录等非缓存数据一起删掉
      */
     public void clearAllCache() {
         log.info("清除所有缓存");
-        redisTemplate.getConnectionFactory().getConnection().flushDb();
+        for (String name : cacheManager.getCacheNames()) {
+            Cache cache = cacheManager.getCache(name);
+            if (cache != null) {
+                cache.clear();
+            }
+        }
     }
-    
+
     /**
-     * 获取缓存统计信息
+     * 获取缓存统计信息（本地缓存部分，Redis 命中率见 cache.gets 指标）
      */
     public Object getCacheStats() {
-        log.info("获取缓存统计信息");
-        // 这里可以返回缓存的统计信息
-        return null;
+        return cacheManager.getLocalStatistics();
     }
-} 
\ No newline at end of file
+}
@@ -3,6 +3,7 @@ package com.itzixi.service;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.itzixi.common.result.CursorPage;
 import com.itzixi.entity.Comment;
 
 import java.util.List;
@@ -17,11 +18,33 @@ public interface CommentService extends IService<Comment> {
      */
     List<Comment> getCommentsByArticleId(Long articleId);
     
+    /**
+     * 获取文章评论树的 JSON，按文章缓存序列化结果，评论发布、审核后失效
+     */
+    String getCommentTreeJson(Long articleId);
+    
+    /**
+     * 游标分页查询文章的顶级评论（讨论串），附带直接回复数
+     */
+    CursorPage<Comment> getCommentThreads(Long articleId, String cursor, int size);
+    
+    /**
+     * 游标分页查询评论的直接回复，附带各回复的回复数
+     */
+    CursorPage<Comment> getCommentReplies(Long parentId, String cursor, int size);
+    
     /**
      * 分页查询评论
      */
     IPage<Comment> getCommentPage(Page<Comment> page, Long articleId, Integer status);
     
+    /**
+     * 游标分页查询评论
+     * @param cursor 上一页返回的游标，为空时查询第一页
+     * @param withTotal 是否返回总数估算值
+     */
+    CursorPage<Comment> getCommentCursorPage(String cursor, int size, Long articleId, Integer status, boolean withTotal);
+    
     /**
      * 创建评论
      */
@@ -44,13 +67,15 @@ public interface CommentService extends IService<Comment> {
     
     /**
      * 点赞评论
+     * @return 是否为新增点赞，重复点赞返回 false
      */
-    boolean likeComment(Long id);
+    boolean likeComment(Long id, Long userId);
     
     /**
      * 取消点赞评论
+     * @return 是否确实取消了点赞，未点赞过返回 false
      */
-    boolean unlikeComment(Long id);
+    boolean unlikeComment(Long id, Long userId);
     
     /**
      * 获取最新评论
@@ -0,0 +1,29 @@
+package com.itzixi.service;
+
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.List;
+
+/**
+ * 对话记忆
+ * 每个用户保留按 token 预算限制的最近对话窗口，移出窗口的旧对话增量合并为摘要
+ */
+public interface ConversationMemoryService {
+
+    /**
+     * 构建本轮对话的消息：摘要、窗口内的历史对话和当前问题
+     * @param userName 用户名
+     * @param question 当前问题
+     * @return 消息列表，只有当前问题时表示没有历史上下文
+     */
+    public List<Message> buildMessages(String userName, String question);
+
+    /**
+     * 记录完成的一轮对话
+     * @param userName 用户名
+     * @param question 用户问题
+     * @param answer AI 回复
+     */
+    public void appendTurn(String userName, String question, String answer);
+
+}
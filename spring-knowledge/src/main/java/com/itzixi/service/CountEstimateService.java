@@ -0,0 +1,38 @@
+package com.itzixi.service;
+
+import com.itzixi.cache.TwoLevelCacheManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+/**
+ * 列表总数估算服务
+ * 分页总数只用于展示页码，不需要精确：COUNT 结果放入缓存，在缓存有效期内复用，
+ * 并发未命中时只有一个线程执行 COUNT（见 TwoLevelCache 的单飞加载）
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CountEstimateService {
+
+    private final TwoLevelCacheManager cacheManager;
+
+    /**
+     * 读取缓存的计数，未命中时执行 counter
+     * @param cacheName 缓存区域，决定估算值的有效期
+     */
+    public long estimate(String cacheName, String key, Supplier<Long> counter) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache == null) {
+            return counter.get();
+        }
+        // 缓存反序列化后小数值可能是 Integer，统一按 Number 读取
+        Callable<Number> loader = counter::get;
+        Number count = cache.get("count:" + key, loader);
+        return count == null ? 0 : count.longValue();
+    }
+}
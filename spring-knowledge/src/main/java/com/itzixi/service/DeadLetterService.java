@@ -0,0 +1,123 @@
+package com.itzixi.service;
+
+import com.itzixi.common.exception.BusinessException;
+import com.itzixi.config.RabbitMQConfig;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.GetResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 死信队列管理
+ * 查看各死信队列的积压，把死信消息重新投递回原队列
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DeadLetterService {
+
+    /**
+     * 单次重放的最大消息数
+     */
+    private static final int MAX_REPLAY = 1000;
+
+    /**
+     * 每投递这么多条等待一次 broker 确认，确认后再批量确认死信
+     */
+    private static final int CONFIRM_BATCH = 100;
+
+    /**
+     * 等待 broker 确认的超时时间
+     */
+    private static final long CONFIRM_TIMEOUT_MILLIS = 10_000;
+
+    private final RabbitTemplate rabbitTemplate;
+
+    private final AmqpAdmin amqpAdmin;
+
+    /**
+     * 各业务队列对应死信队列的消息数
+     */
+    public List<Map<String, Object>> getDeadLetterQueues() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (String queue : RabbitMQConfig.QUEUE_ROUTING_KEYS.keySet()) {
+            String deadLetterQueue = RabbitMQConfig.deadLetterQueueName(queue);
+            QueueInformation info = amqpAdmin.getQueueInfo(deadLetterQueue);
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("queue", queue);
+            item.put("deadLetterQueue", deadLetterQueue);
+            item.put("messageCount", info != null ? info.getMessageCount() : 0);
+            result.add(item);
+        }
+        return result;
+    }
+
+    /**
+     * 把死信消息重新投递回原队列，重试次数清零
+     * 投递开启发布确认，broker 确认重新投递的消息后才确认死信；
+     * 确认失败或超时时通道关闭，未确认的死信回到死信队列，不会丢失（可能重复，由消费端去重）
+     * @param queue 原业务队列名
+     * @param limit 最多重放的消息数
+     * @return 实际重放的消息数
+     */
+    public int replay(String queue, int limit) {
+        if (!RabbitMQConfig.QUEUE_ROUTING_KEYS.containsKey(queue)) {
+            throw new BusinessException(400, "未知队列: " + queue);
+        }
+        String deadLetterQueue = RabbitMQConfig.deadLetterQueueName(queue);
+        int max = Math.max(1, Math.min(limit, MAX_REPLAY));
+        Integer replayed = rabbitTemplate.execute(channel -> {
+            // 已开启确认模式的通道重复调用不受影响
+            channel.confirmSelect();
+            int count = 0;
+            int unconfirmed = 0;
+            long lastDeliveryTag = 0;
+            while (count < max) {
+                GetResponse response = channel.basicGet(deadLetterQueue, false);
+                if (response == null) {
+                    break;
+                }
+                channel.basicPublish("", queue, resetHeaders(response.getProps()), response.getBody());
+                lastDeliveryTag = response.getEnvelope().getDeliveryTag();
+                count++;
+                if (++unconfirmed == CONFIRM_BATCH) {
+                    channel.waitForConfirmsOrDie(CONFIRM_TIMEOUT_MILLIS);
+                    channel.basicAck(lastDeliveryTag, true);
+                    unconfirmed = 0;
+                }
+            }
+            if (unconfirmed > 0) {
+                channel.waitForConfirmsOrDie(CONFIRM_TIMEOUT_MILLIS);
+                channel.basicAck(lastDeliveryTag, true);
+            }
+            return count;
+        });
+        int count = replayed == null ? 0 : replayed;
+        log.info("重放死信消息: queue={}, 数量={}", queue, count);
+        return count;
+    }
+
+    /**
+     * 去掉重试次数和死信记录，重放的消息重新获得完整的重试机会
+     */
+    private static AMQP.BasicProperties resetHeaders(AMQP.BasicProperties properties) {
+        Map<String, Object> headers = properties.getHeaders() == null
+                ? new HashMap<>() : new HashMap<>(properties.getHeaders());
+        headers.remove(RabbitMQConfig.RETRY_COUNT_HEADER);
+        headers.remove("x-death");
+        headers.remove("x-first-death-exchange");
+        headers.remove("x-first-death-queue");
+        headers.remove("x-first-death-reason");
+        return properties.builder().headers(headers).expiration(null).build();
+    }
+}
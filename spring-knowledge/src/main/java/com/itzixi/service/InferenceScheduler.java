@@ -0,0 +1,319 @@
+package com.itzixi.service;
+
+import com.itzixi.common.exception.BusinessException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * 大模型推理调度器
+ * 限制同时进行的生成数量，超出的请求按用户分队列排队，用户之间轮流出队，
+ * 单个用户的大量请求不会挤占其他用户。排队位置变化时回调通知，
+ * 取消订阅（如客户端断开）时从队列移除或释放名额。
+ * 后台任务（如对话摘要）单独排队，只在没有用户请求等待时出队，且至少留出一个名额给用户请求
+ */
+@Slf4j
+@Service
+public class InferenceScheduler {
+
+    private static final int PENDING = 0;
+    private static final int STARTED = 1;
+    private static final int CANCELLED = 2;
+
+    private final int maxInFlight;
+
+    private final int maxQueueSize;
+
+    private final int maxQueuePerUser;
+
+    private final Object lock = new Object();
+
+    /**
+     * 各用户的等待队列，只在持有 lock 时访问
+     */
+    private final Map<String, ArrayDeque<Task>> queues = new HashMap<>();
+
+    /**
+     * 轮转顺序，有等待任务的用户按此顺序出队
+     */
+    private final ArrayDeque<String> rotation = new ArrayDeque<>();
+
+    /**
+     * 后台任务等待队列，只在持有 lock 时访问
+     */
+    private final ArrayDeque<Task> backgroundQueue = new ArrayDeque<>();
+
+    private int inFlight;
+
+    private int queued;
+
+    private final Timer waitTimer;
+
+    public InferenceScheduler(MeterRegistry meterRegistry,
+                              @Value("${ai.scheduler.max-in-flight:2}") int maxInFlight,
+                              @Value("${ai.scheduler.max-queue-size:100}") int maxQueueSize,
+                              @Value("${ai.scheduler.max-queue-per-user:3}") int maxQueuePerUser) {
+        this.maxInFlight = maxInFlight;
+        this.maxQueueSize = maxQueueSize;
+        this.maxQueuePerUser = maxQueuePerUser;
+        this.waitTimer = Timer.builder("ai.scheduler.wait")
+                .description("推理请求排队等待时间")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("ai.scheduler.in.flight", this, InferenceScheduler::getInFlight)
+                .description("正在进行的推理数")
+                .register(meterRegistry);
+        Gauge.builder("ai.scheduler.queued", this, InferenceScheduler::getQueued)
+                .description("排队中的推理请求数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 排队执行一次生成，订阅返回的 Flux 时入队，轮到时才订阅 generation
+     * @param userId 排队所属用户
+     * @param generation 生成任务，轮到时调用
+     * @param onQueuePosition 排队位置回调（从 1 开始），开始生成时回调 0，可以为 null
+     */
+    public <T> Flux<T> schedule(String userId, Supplier<? extends Flux<T>> generation, IntConsumer onQueuePosition) {
+        return Mono.<Task>create(sink -> enqueue(new Task(userId, false, sink, onQueuePosition)))
+                .flatMapMany(task -> Flux.defer(generation).doFinally(signal -> task.release()));
+    }
+
+    /**
+     * 以低优先级排队执行一次生成，用户请求排队时不会出队，也不会占用最后一个名额
+     * @param name 任务名称，用于日志
+     * @param generation 生成任务，轮到时调用
+     */
+    public <T> Flux<T> scheduleBackground(String name, Supplier<? extends Flux<T>> generation) {
+        return Mono.<Task>create(sink -> enqueue(new Task(name, true, sink, null)))
+                .flatMapMany(task -> Flux.defer(generation).doFinally(signal -> task.release()));
+    }
+
+    public int getInFlight() {
+        synchronized (lock) {
+            return inFlight;
+        }
+    }
+
+    public int getQueued() {
+        synchronized (lock) {
+            return queued + backgroundQueue.size();
+        }
+    }
+
+    private void enqueue(Task task) {
+        task.sink.onCancel(() -> cancel(task));
+        List<Task> started;
+        List<Task> positionChanged;
+        synchronized (lock) {
+            ArrayDeque<Task> queue = task.background ? backgroundQueue : queues.get(task.userId);
+            boolean rejected = task.background
+                    ? backgroundQueue.size() >= maxQueueSize
+                    : queued >= maxQueueSize || (queue != null && queue.size() >= maxQueuePerUser);
+            if (rejected) {
+                task.state.set(CANCELLED);
+                started = null;
+                positionChanged = null;
+            } else if (task.background) {
+                backgroundQueue.addLast(task);
+                started = dispatchLocked();
+                positionChanged = List.of();
+            } else {
+                if (queue == null) {
+                    queue = new ArrayDeque<>();
+                    queues.put(task.userId, queue);
+                    rotation.addLast(task.userId);
+                }
+                queue.addLast(task);
+                queued++;
+                started = dispatchLocked();
+                positionChanged = updatePositionsLocked();
+            }
+        }
+        if (started == null) {
+            log.warn("推理请求排队已满，拒绝请求: userId={}", task.userId);
+            task.sink.error(new BusinessException(429, "AI服务繁忙，请稍后再试"));
+            return;
+        }
+        publish(started, positionChanged);
+    }
+
+    private void cancel(Task task) {
+        if (task.state.compareAndSet(PENDING, CANCELLED)) {
+            List<Task> positionChanged;
+            synchronized (lock) {
+                ArrayDeque<Task> queue = task.background ? null : queues.get(task.userId);
+                if (task.background) {
+                    backgroundQueue.remove(task);
+                } else if (queue != null && queue.remove(task)) {
+                    queued--;
+                    if (queue.isEmpty()) {
+                        queues.remove(task.userId);
+                        rotation.remove(task.userId);
+                    }
+                }
+                positionChanged = updatePositionsLocked();
+            }
+            log.debug("推理请求排队中被取消: userId={}", task.userId);
+            publish(List.of(), positionChanged);
+        } else if (task.state.get() == STARTED) {
+            // 已出队但下游尚未订阅生成任务时取消，由这里释放名额
+            task.release();
+        }
+    }
+
+    private void release() {
+        List<Task> started;
+        List<Task> positionChanged;
+        synchronized (lock) {
+            inFlight--;
+            started = dispatchLocked();
+            positionChanged = updatePositionsLocked();
+        }
+        publish(started, positionChanged);
+    }
+
+    /**
+     * 有空闲名额时按用户轮转出队，用户请求都已出队后再出队后台任务
+     */
+    private List<Task> dispatchLocked() {
+        List<Task> started = new ArrayList<>();
+        while (inFlight < maxInFlight && !rotation.isEmpty()) {
+            String userId = rotation.pollFirst();
+            ArrayDeque<Task> queue = queues.get(userId);
+            Task task = queue.pollFirst();
+            queued--;
+            if (queue.isEmpty()) {
+                queues.remove(userId);
+            } else {
+                rotation.addLast(userId);
+            }
+            if (task.state.compareAndSet(PENDING, STARTED)) {
+                inFlight++;
+                started.add(task);
+            }
+        }
+        // 名额多于一个时给用户请求保留一个
+        int backgroundLimit = maxInFlight > 1 ? maxInFlight - 1 : maxInFlight;
+        while (rotation.isEmpty() && inFlight < backgroundLimit && !backgroundQueue.isEmpty()) {
+            Task task = backgroundQueue.pollFirst();
+            if (task.state.compareAndSet(PENDING, STARTED)) {
+                inFlight++;
+                started.add(task);
+            }
+        }
+        return started;
+    }
+
+    /**
+     * 按轮转顺序计算每个等待任务的出队位置，返回位置发生变化的任务
+     */
+    private List<Task> updatePositionsLocked() {
+        List<Task> changed = new ArrayList<>();
+        List<Iterator<Task>> iterators = new ArrayList<>();
+        for (String userId : rotation) {
+            iterators.add(queues.get(userId).iterator());
+        }
+        int position = 0;
+        boolean remaining = true;
+        while (remaining) {
+            remaining = false;
+            for (Iterator<Task> iterator : iterators) {
+                if (iterator.hasNext()) {
+                    remaining = true;
+                    Task task = iterator.next();
+                    position++;
+                    if (task.position != position) {
+                        task.position = position;
+                        changed.add(task);
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 回调在锁外执行
+     */
+    private void publish(List<Task> started, List<Task> positionChanged) {
+        for (Task task : positionChanged) {
+            task.notifyPosition(task.position);
+        }
+        for (Task task : started) {
+            waitTimer.record(System.nanoTime() - task.enqueuedAt, TimeUnit.NANOSECONDS);
+            task.notifyPosition(0);
+            task.sink.success(task);
+        }
+    }
+
+    private final class Task {
+
+        /**
+         * 用户ID，后台任务为任务名称
+         */
+        private final String userId;
+
+        private final boolean background;
+
+        private final MonoSink<Task> sink;
+
+        private final IntConsumer onQueuePosition;
+
+        private final long enqueuedAt = System.nanoTime();
+
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        /**
+         * 最近一次计算的排队位置，只在持有 lock 时修改
+         */
+        private volatile int position;
+
+        private Task(String userId, boolean background, MonoSink<Task> sink, IntConsumer onQueuePosition) {
+            this.userId = userId;
+            this.background = background;
+            this.sink = sink;
+            this.onQueuePosition = onQueuePosition;
+        }
+
+        private void notifyPosition(int position) {
+            if (onQueuePosition == null) {
+                return;
+            }
+            try {
+                onQueuePosition.accept(position);
+            } catch (Exception e) {
+                log.warn("推送排队位置失败: userId={}, error={}", userId, e.getMessage());
+            }
+        }
+
+        /**
+         * 释放名额，生成结束和取消都可能调用，只生效一次
+         */
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                InferenceScheduler.this.release();
+            }
+        }
+    }
+}
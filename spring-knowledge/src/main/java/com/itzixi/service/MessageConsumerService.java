@@ -4,14 +4,25 @@ import com.itzixi.config.RabbitMQConfig;
 import com.itzixi.dto.ArticleMessage;
 import com.itzixi.dto.CommentMessage;
 import com.itzixi.dto.StatsMessage;
+import com.itzixi.search.SearchIndexSyncService;
+import com.rabbitmq.client.Channel;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
 /**
  * 消息消费者服务
- * 负责处理RabbitMQ队列中的消息
+ * 负责处理RabbitMQ队列中的消息；业务消息手动确认，失败时由 MessageRetryHandler 延时重试或转入死信队列
  */
 @Slf4j
 @Service
@@ -20,12 +31,23 @@ public class MessageConsumerService {
     
     private final CacheService cacheService;
     
+    private final SearchIndexSyncService searchIndexSyncService;
+    
+    private final StatsRollupService statsRollupService;
+    
+    private final MessageConverter messageConverter;
+    
+    private final MessageRetryHandler messageRetryHandler;
+    
+    private final MessageDeduplicator messageDeduplicator;
+    
     /**
      * 处理文章发布消息
      */
-    @RabbitListener(queues = RabbitMQConfig.ARTICLE_PUBLISH_QUEUE)
-    public void handleArticlePublishMessage(ArticleMessage message) {
-        try {
+    @RabbitListener(queues = RabbitMQConfig.ARTICLE_PUBLISH_QUEUE,
+            containerFactory = RabbitMQConfig.RELIABLE_CONTAINER_FACTORY)
+    public void handleArticlePublishMessage(Message amqpMessage, Channel channel) throws IOException {
+        messageRetryHandler.handle(amqpMessage, channel, ArticleMessage.class, ArticleMessage::getMessageId, message -> {
             log.info("开始处理文章发布消息: messageId={}, articleId={}", 
                     message.getMessageId(), message.getArticleId());
             
@@ -34,34 +56,21 @@ public class MessageConsumerService {
             cacheService.evictHotArticlesCache();
             cacheService.evictLatestArticlesCache();
             
-            // 这里可以添加其他异步处理逻辑
-            // 例如：更新搜索引擎索引、发送通知等
+            // 确认消息前写入搜索索引，失败时进入重试
+            searchIndexSyncService.sync(message.getArticleId());
             
             log.info("文章发布消息处理完成: messageId={}, articleId={}", 
                     message.getMessageId(), message.getArticleId());
-                    
-        } catch (Exception e) {
-            log.error("处理文章发布消息失败: messageId={}, articleId={}, error={}", 
-                    message.getMessageId(), message.getArticleId(), e.getMessage(), e);
-            
-            // 增加重试次数
-            message.incrementRetryCount();
-            if (!message.isMaxRetryReached()) {
-                log.info("文章发布消息将重试: messageId={}, retryCount={}", 
-                        message.getMessageId(), message.getRetryCount());
-                // 这里可以实现重试逻辑
-            } else {
-                log.error("文章发布消息达到最大重试次数: messageId={}", message.getMessageId());
-            }
-        }
+        });
     }
     
     /**
      * 处理文章更新消息
      */
-    @RabbitListener(queues = RabbitMQConfig.ARTICLE_UPDATE_QUEUE)
-    public void handleArticleUpdateMessage(ArticleMessage message) {
-        try {
+    @RabbitListener(queues = RabbitMQConfig.ARTICLE_UPDATE_QUEUE,
+            containerFactory = RabbitMQConfig.RELIABLE_CONTAINER_FACTORY)
+    public void handleArticleUpdateMessage(Message amqpMessage, Channel channel) throws IOException {
+        messageRetryHandler.handle(amqpMessage, channel, ArticleMessage.class, ArticleMessage::getMessageId, message -> {
             log.info("开始处理文章更新消息: messageId={}, articleId={}", 
                     message.getMessageId(), message.getArticleId());
             
@@ -70,145 +79,133 @@ public class MessageConsumerService {
             cacheService.evictHotArticlesCache();
             cacheService.evictLatestArticlesCache();
             
-            // 这里可以添加其他异步处理逻辑
-            // 例如：更新搜索引擎索引、发送通知等
+            // 确认消息前写入搜索索引，失败时进入重试
+            searchIndexSyncService.sync(message.getArticleId());
             
             log.info("文章更新消息处理完成: messageId={}, articleId={}", 
                     message.getMessageId(), message.getArticleId());
-                    
-        } catch (Exception e) {
-            log.error("处理文章更新消息失败: messageId={}, articleId={}, error={}", 
-                    message.getMessageId(), message.getArticleId(), e.getMessage(), e);
+        });
+    }
+    
+    /**
+     * 处理文章删除消息
+     */
+    @RabbitListener(queues = RabbitMQConfig.ARTICLE_DELETE_QUEUE,
+            containerFactory = RabbitMQConfig.RELIABLE_CONTAINER_FACTORY)
+    public void handleArticleDeleteMessage(Message amqpMessage, Channel channel) throws IOException {
+        messageRetryHandler.handle(amqpMessage, channel, ArticleMessage.class, ArticleMessage::getMessageId, message -> {
+            log.info("开始处理文章删除消息: messageId={}, articleId={}", 
+                    message.getMessageId(), message.getArticleId());
             
-            message.incrementRetryCount();
-            if (!message.isMaxRetryReached()) {
-                log.info("文章更新消息将重试: messageId={}, retryCount={}", 
-                        message.getMessageId(), message.getRetryCount());
-            } else {
-                log.error("文章更新消息达到最大重试次数: messageId={}", message.getMessageId());
-            }
-        }
+            // 清除相关缓存
+            cacheService.evictArticleCache(message.getArticleId());
+            cacheService.evictHotArticlesCache();
+            cacheService.evictLatestArticlesCache();
+            
+            // 从搜索索引中删除（同步时发现文章已不存在会删除索引文档），失败时进入重试
+            searchIndexSyncService.sync(message.getArticleId());
+            
+            log.info("文章删除消息处理完成: messageId={}, articleId={}", 
+                    message.getMessageId(), message.getArticleId());
+        });
     }
     
     /**
      * 处理评论发布消息
      */
-    @RabbitListener(queues = RabbitMQConfig.COMMENT_PUBLISH_QUEUE)
-    public void handleCommentPublishMessage(CommentMessage message) {
-        try {
+    @RabbitListener(queues = RabbitMQConfig.COMMENT_PUBLISH_QUEUE,
+            containerFactory = RabbitMQConfig.RELIABLE_CONTAINER_FACTORY)
+    public void handleCommentPublishMessage(Message amqpMessage, Channel channel) throws IOException {
+        messageRetryHandler.handle(amqpMessage, channel, CommentMessage.class, CommentMessage::getMessageId, message -> {
             log.info("开始处理评论发布消息: messageId={}, commentId={}, articleId={}", 
                     message.getMessageId(), message.getCommentId(), message.getArticleId());
             
             // 清除相关缓存
             cacheService.evictArticleCache(message.getArticleId());
+            cacheService.evictCommentTreeCache(message.getArticleId());
             
             // 这里可以添加其他异步处理逻辑
             // 例如：发送邮件通知、更新评论计数等
             
             log.info("评论发布消息处理完成: messageId={}, commentId={}", 
                     message.getMessageId(), message.getCommentId());
-                    
-        } catch (Exception e) {
-            log.error("处理评论发布消息失败: messageId={}, commentId={}, error={}", 
-                    message.getMessageId(), message.getCommentId(), e.getMessage(), e);
-            
-            message.incrementRetryCount();
-            if (!message.isMaxRetryReached()) {
-                log.info("评论发布消息将重试: messageId={}, retryCount={}", 
-                        message.getMessageId(), message.getRetryCount());
-            } else {
-                log.error("评论发布消息达到最大重试次数: messageId={}", message.getMessageId());
-            }
-        }
+        });
     }
     
     /**
      * 处理评论审核消息
      */
-    @RabbitListener(queues = RabbitMQConfig.COMMENT_APPROVE_QUEUE)
-    public void handleCommentApproveMessage(CommentMessage message) {
-        try {
+    @RabbitListener(queues = RabbitMQConfig.COMMENT_APPROVE_QUEUE,
+            containerFactory = RabbitMQConfig.RELIABLE_CONTAINER_FACTORY)
+    public void handleCommentApproveMessage(Message amqpMessage, Channel channel) throws IOException {
+        messageRetryHandler.handle(amqpMessage, channel, CommentMessage.class, CommentMessage::getMessageId, message -> {
             log.info("开始处理评论审核消息: messageId={}, commentId={}, articleId={}", 
                     message.getMessageId(), message.getCommentId(), message.getArticleId());
             
             // 清除相关缓存
             cacheService.evictArticleCache(message.getArticleId());
+            cacheService.evictCommentTreeCache(message.getArticleId());
             
             // 这里可以添加其他异步处理逻辑
             // 例如：发送邮件通知、更新统计等
             
             log.info("评论审核消息处理完成: messageId={}, commentId={}", 
                     message.getMessageId(), message.getCommentId());
-                    
-        } catch (Exception e) {
-            log.error("处理评论审核消息失败: messageId={}, commentId={}, error={}", 
-                    message.getMessageId(), message.getCommentId(), e.getMessage(), e);
-            
-            message.incrementRetryCount();
-            if (!message.isMaxRetryReached()) {
-                log.info("评论审核消息将重试: messageId={}, retryCount={}", 
-                        message.getMessageId(), message.getRetryCount());
-            } else {
-                log.error("评论审核消息达到最大重试次数: messageId={}", message.getMessageId());
-            }
-        }
+        });
     }
     
     /**
-     * 处理访问统计消息
+     * 批量处理访问统计消息
+     * 一批消息汇总写入后整批确认，写入失败时整批拒绝，由死信队列接收；
+     * 统计消息量大，只按本地记录去重（同批重复和本实例确认处理过的消息），不逐条访问 Redis
      */
-    @RabbitListener(queues = RabbitMQConfig.STATS_VISIT_QUEUE)
-    public void handleVisitStatsMessage(StatsMessage message) {
-        try {
-            log.debug("开始处理访问统计消息: messageId={}, articleId={}", 
-                    message.getMessageId(), message.getRelatedId());
-            
-            // 异步更新访问统计
-            // 这里可以实现批量更新逻辑，提高性能
-            
-            log.debug("访问统计消息处理完成: messageId={}, articleId={}", 
-                    message.getMessageId(), message.getRelatedId());
-                    
-        } catch (Exception e) {
-            log.error("处理访问统计消息失败: messageId={}, articleId={}, error={}", 
-                    message.getMessageId(), message.getRelatedId(), e.getMessage(), e);
-            
-            message.incrementRetryCount();
-            if (!message.isMaxRetryReached()) {
-                log.debug("访问统计消息将重试: messageId={}, retryCount={}", 
-                        message.getMessageId(), message.getRetryCount());
-            } else {
-                log.error("访问统计消息达到最大重试次数: messageId={}", message.getMessageId());
-            }
-        }
+    @RabbitListener(queues = RabbitMQConfig.STATS_VISIT_QUEUE,
+            containerFactory = RabbitMQConfig.STATS_BATCH_CONTAINER_FACTORY)
+    public void handleVisitStatsMessages(List<Message> messages, Channel channel) throws IOException {
+        handleStatsBatch(messages, channel, "访问", statsRollupService::recordVisits);
     }
     
     /**
-     * 处理搜索统计消息
+     * 批量处理搜索统计消息
      */
-    @RabbitListener(queues = RabbitMQConfig.STATS_SEARCH_QUEUE)
-    public void handleSearchStatsMessage(StatsMessage message) {
+    @RabbitListener(queues = RabbitMQConfig.STATS_SEARCH_QUEUE,
+            containerFactory = RabbitMQConfig.STATS_BATCH_CONTAINER_FACTORY)
+    public void handleSearchStatsMessages(List<Message> messages, Channel channel) throws IOException {
+        handleStatsBatch(messages, channel, "搜索", statsRollupService::recordSearches);
+    }
+    
+    private void handleStatsBatch(List<Message> messages, Channel channel, String statsName,
+                                  Consumer<List<StatsMessage>> recorder) throws IOException {
+        if (messages.isEmpty()) {
+            return;
+        }
+        long lastDeliveryTag = messages.get(messages.size() - 1).getMessageProperties().getDeliveryTag();
+        String queue = messages.get(0).getMessageProperties().getConsumerQueue();
+        List<StatsMessage> stats = new ArrayList<>(messages.size());
+        Set<String> batchIds = new HashSet<>();
+        for (Message message : messages) {
+            try {
+                StatsMessage stat = (StatsMessage) messageConverter.fromMessage(message);
+                String messageId = stat.getMessageId();
+                if (messageId != null && (!batchIds.add(messageId) || messageDeduplicator.seenLocally(queue, messageId))) {
+                    continue;
+                }
+                stats.add(stat);
+            } catch (Exception e) {
+                // 无法解析的消息直接丢弃，不影响同批其他消息
+                log.warn("{}统计消息解析失败: deliveryTag={}, error={}", statsName,
+                        message.getMessageProperties().getDeliveryTag(), e.getMessage());
+            }
+        }
         try {
-            log.debug("开始处理搜索统计消息: messageId={}, keyword={}", 
-                    message.getMessageId(), message.getKeyword());
-            
-            // 异步更新搜索统计
-            // 这里可以实现批量更新逻辑，提高性能
-            
-            log.debug("搜索统计消息处理完成: messageId={}, keyword={}", 
-                    message.getMessageId(), message.getKeyword());
-                    
+            recorder.accept(stats);
+            // 写入成功后才记录，整批拒绝重投时不会被误判为重复
+            batchIds.forEach(messageDeduplicator::completeLocally);
+            channel.basicAck(lastDeliveryTag, true);
+            log.debug("{}统计消息批量处理完成: 消息数={}", statsName, messages.size());
         } catch (Exception e) {
-            log.error("处理搜索统计消息失败: messageId={}, keyword={}, error={}", 
-                    message.getMessageId(), message.getKeyword(), e.getMessage(), e);
-            
-            message.incrementRetryCount();
-            if (!message.isMaxRetryReached()) {
-                log.debug("搜索统计消息将重试: messageId={}, retryCount={}", 
-                        message.getMessageId(), message.getRetryCount());
-            } else {
-                log.error("搜索统计消息达到最大重试次数: messageId={}", message.getMessageId());
-            }
+            log.error("{}统计消息批量处理失败: 消息数={}, error={}", statsName, messages.size(), e.getMessage(), e);
+            channel.basicNack(lastDeliveryTag, true, false);
         }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,186 @@
+package com.itzixi.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.itzixi.utils.RollingBloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 消息去重
+ * 以 Redis SETNX 为准，多实例共享：处理前占位，成功后把占位延长到去重窗口，失败时删除占位以便重试。
+ * 本地记录只在 Redis 未启用或不可用时，以及不访问 Redis 的统计消息上使用，由有界的精确集合判重，
+ * 前面的滚动布隆过滤器只用来快速排除没处理过的消息，命中后仍要精确集合确认，误判不会导致消息被丢弃。
+ * 本地内存主要是精确集合：36 位 UUID 的 messageId 每条约 180 字节，默认 20 万条约 35MB，
+ * 布隆过滤器两代合计约 2.3MB；精确集合淘汰后最多导致重复处理（宁可重复也不丢失）
+ */
+@Slf4j
+@Component
+public class MessageDeduplicator {
+
+    private static final String KEY_PREFIX = "mq:dedup:";
+
+    private static final String PROCESSING = "processing";
+
+    private static final String DONE = "done";
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final MeterRegistry meterRegistry;
+
+    private final boolean enabled;
+
+    private final boolean redisEnabled;
+
+    private final Duration window;
+
+    private final Duration processingTimeout;
+
+    private final RollingBloomFilter bloomFilter;
+
+    /**
+     * 本实例处理过的 messageId，用于确认布隆过滤器的命中；超出容量淘汰后最多导致重复处理
+     */
+    private final Cache<String, Boolean> processed;
+
+    private final Counter redisErrors;
+
+    public MessageDeduplicator(StringRedisTemplate stringRedisTemplate, MeterRegistry meterRegistry,
+                               @Value("${mq.dedup.enabled:true}") boolean enabled,
+                               @Value("${mq.dedup.redis-enabled:true}") boolean redisEnabled,
+                               @Value("${mq.dedup.window:10m}") Duration window,
+                               @Value("${mq.dedup.processing-timeout:5m}") Duration processingTimeout,
+                               @Value("${mq.dedup.expected-insertions:1000000}") long expectedInsertions,
+                               @Value("${mq.dedup.fpp:0.01}") double fpp,
+                               @Value("${mq.dedup.local-max-size:200000}") long localMaxSize) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.redisEnabled = redisEnabled;
+        this.window = window;
+        this.processingTimeout = processingTimeout;
+        this.bloomFilter = new RollingBloomFilter(expectedInsertions, fpp, window);
+        this.processed = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(window)
+                .build();
+        this.redisErrors = Counter.builder("mq.dedup.redis.errors")
+                .description("去重访问 Redis 失败次数").register(meterRegistry);
+        Gauge.builder("mq.dedup.bloom.bytes", bloomFilter, RollingBloomFilter::memoryBytes)
+                .description("去重布隆过滤器占用字节数")
+                .register(meterRegistry);
+        Gauge.builder("mq.dedup.local.entries", this, MessageDeduplicator::localEntries)
+                .description("本地精确集合中的消息数，每条约 180 字节")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 处理前占位，返回 false 表示重复消息，应直接确认跳过
+     * @param redelivered broker 重新投递的消息。只有持有者的通道断开才会重新投递，
+     *                    此时遗留的处理中占位视为持有者已崩溃，由本次接管
+     */
+    public boolean tryAcquire(String queue, String messageId, boolean redelivered) {
+        if (!enabled || messageId == null) {
+            return true;
+        }
+        if (!redisEnabled) {
+            return acquired(queue, messageId, !processedLocally(messageId));
+        }
+        try {
+            String key = KEY_PREFIX + messageId;
+            Boolean absent = stringRedisTemplate.opsForValue().setIfAbsent(key, PROCESSING, processingTimeout);
+            if (Boolean.TRUE.equals(absent)) {
+                return true;
+            }
+            boolean takeOver = redelivered && PROCESSING.equals(stringRedisTemplate.opsForValue().get(key));
+            return acquired(queue, messageId, takeOver);
+        } catch (Exception e) {
+            redisErrors.increment();
+            log.warn("去重访问Redis失败，只跳过本地确认处理过的消息: messageId={}, error={}", messageId, e.getMessage());
+            return acquired(queue, messageId, !processedLocally(messageId));
+        }
+    }
+
+    /**
+     * 处理成功，在去重窗口内不再处理同一消息
+     */
+    public void complete(String messageId) {
+        if (!enabled || messageId == null) {
+            return;
+        }
+        completeLocally(messageId);
+        if (redisEnabled) {
+            try {
+                stringRedisTemplate.opsForValue().set(KEY_PREFIX + messageId, DONE, window);
+            } catch (Exception e) {
+                redisErrors.increment();
+                log.warn("去重记录写入Redis失败: messageId={}, error={}", messageId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 处理失败，删除占位，重试时可以再次处理
+     */
+    public void release(String messageId) {
+        if (!enabled || messageId == null || !redisEnabled) {
+            return;
+        }
+        try {
+            stringRedisTemplate.delete(KEY_PREFIX + messageId);
+        } catch (Exception e) {
+            redisErrors.increment();
+            log.warn("去重占位删除失败，需等待占位过期后重试: messageId={}, error={}", messageId, e.getMessage());
+        }
+    }
+
+    /**
+     * 只查本地记录，用于量大的统计消息，不访问 Redis；只有本实例确认处理过的消息才返回 true
+     */
+    public boolean seenLocally(String queue, String messageId) {
+        if (!enabled || messageId == null) {
+            return false;
+        }
+        return !acquired(queue, messageId, !processedLocally(messageId));
+    }
+
+    /**
+     * 只写本地记录
+     */
+    public void completeLocally(String messageId) {
+        if (enabled && messageId != null) {
+            bloomFilter.put(messageId);
+            processed.put(messageId, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * 本地精确集合中的消息数，不超过 local-max-size
+     */
+    long localEntries() {
+        processed.cleanUp();
+        return processed.estimatedSize();
+    }
+
+    /**
+     * 布隆过滤器未命中时一定没处理过，命中时再查精确集合确认
+     */
+    private boolean processedLocally(String messageId) {
+        return bloomFilter.mightContain(messageId) && processed.getIfPresent(messageId) != null;
+    }
+
+    private boolean acquired(String queue, String messageId, boolean acquired) {
+        if (!acquired) {
+            meterRegistry.counter("mq.dedup.duplicates", "queue", String.valueOf(queue)).increment();
+            log.debug("跳过重复消息: queue={}, messageId={}", queue, messageId);
+        }
+        return acquired;
+    }
+}
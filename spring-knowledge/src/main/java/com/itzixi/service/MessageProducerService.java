@@ -71,6 +71,29 @@ public class MessageProducerService {
         }
     }
     
+    /**
+     * 发送文章删除消息
+     */
+    public void sendArticleDeleteMessage(Long articleId, Long userId) {
+        ArticleMessage message = new ArticleMessage();
+        message.setMessageId(UUID.randomUUID().toString());
+        message.setArticleId(articleId);
+        message.setOperationType("DELETE");
+        message.setUserId(userId);
+        message.setCreateTime(LocalDateTime.now());
+        
+        try {
+            rabbitTemplate.convertAndSend(
+                RabbitMQConfig.ARTICLE_EXCHANGE,
+                RabbitMQConfig.ARTICLE_DELETE_ROUTING_KEY,
+                message
+            );
+            log.info("发送文章删除消息成功: articleId={}, messageId={}", articleId, message.getMessageId());
+        } catch (Exception e) {
+            log.error("发送文章删除消息失败: articleId={}, error={}", articleId, e.getMessage(), e);
+        }
+    }
+    
     /**
      * 发送评论发布消息
      */
@@ -0,0 +1,151 @@
+package com.itzixi.service;
+
+import com.itzixi.config.RabbitMQConfig;
+import com.rabbitmq.client.Channel;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 消息处理、确认与重试
+ * 处理成功后确认；失败时把消息发到对应延时的重试队列并确认原消息，消费者不会被失败消息阻塞；
+ * 超过重试次数或无法解析的消息拒绝且不重新入队，由队列的死信配置转入死信队列。
+ * 处理前按 messageId 去重，重复投递的消息直接确认跳过
+ */
+@Slf4j
+@Component
+public class MessageRetryHandler {
+
+    private final RabbitTemplate rabbitTemplate;
+
+    private final MessageConverter messageConverter;
+
+    private final MeterRegistry meterRegistry;
+
+    private final MessageDeduplicator messageDeduplicator;
+
+    private final List<Long> retryDelays;
+
+    private final boolean publisherConfirms;
+
+    public MessageRetryHandler(RabbitTemplate rabbitTemplate, MessageConverter messageConverter,
+                               MeterRegistry meterRegistry, MessageDeduplicator messageDeduplicator,
+                               @Value("${mq.retry.initial-interval:1s}") Duration initialInterval,
+                               @Value("${mq.retry.multiplier:5}") double multiplier,
+                               @Value("${mq.retry.max-attempts:3}") int maxAttempts) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.messageConverter = messageConverter;
+        this.meterRegistry = meterRegistry;
+        this.messageDeduplicator = messageDeduplicator;
+        this.retryDelays = RabbitMQConfig.retryDelays(initialInterval, multiplier, maxAttempts);
+        this.publisherConfirms = rabbitTemplate.getConnectionFactory().isPublisherConfirms();
+    }
+
+    /**
+     * 解析并处理一条消息，处理结束后一定会确认或拒绝
+     * @param type 消息类型
+     * @param messageIdOf 取消息体中的 messageId，AMQP 属性没有 messageId 时使用
+     * @param handler 业务处理，抛出异常表示失败
+     */
+    public <T> void handle(Message message, Channel channel, Class<T> type, Function<T, String> messageIdOf,
+                           Consumer<T> handler) throws IOException {
+        MessageProperties properties = message.getMessageProperties();
+        long deliveryTag = properties.getDeliveryTag();
+        String queue = properties.getConsumerQueue();
+        T payload;
+        try {
+            payload = type.cast(messageConverter.fromMessage(message));
+        } catch (MessageConversionException | ClassCastException e) {
+            // 无法解析的消息重试也不会成功，直接进入死信队列
+            log.error("消息解析失败，转入死信队列: queue={}, messageId={}, error={}",
+                    queue, properties.getMessageId(), e.getMessage());
+            count(queue, "dead");
+            channel.basicNack(deliveryTag, false, false);
+            return;
+        }
+        String messageId = properties.getMessageId() != null ? properties.getMessageId() : messageIdOf.apply(payload);
+        if (!messageDeduplicator.tryAcquire(queue, messageId, Boolean.TRUE.equals(properties.getRedelivered()))) {
+            count(queue, "duplicate");
+            channel.basicAck(deliveryTag, false);
+            return;
+        }
+        try {
+            handler.accept(payload);
+        } catch (Exception e) {
+            messageDeduplicator.release(messageId);
+            retryOrDeadLetter(message, channel, queue, e);
+            return;
+        }
+        // 先记录再确认，确认前崩溃导致的重新投递会被识别为重复
+        messageDeduplicator.complete(messageId);
+        channel.basicAck(deliveryTag, false);
+        count(queue, "success");
+    }
+
+    private void retryOrDeadLetter(Message message, Channel channel, String queue, Exception cause) throws IOException {
+        MessageProperties properties = message.getMessageProperties();
+        long deliveryTag = properties.getDeliveryTag();
+        int retryCount = retryCount(properties);
+        boolean retryable = RabbitMQConfig.RETRYABLE_QUEUES.contains(queue);
+        if (!retryable || retryCount >= retryDelays.size()) {
+            log.error("消息处理失败且不再重试，转入死信队列: queue={}, messageId={}, retryCount={}, error={}",
+                    queue, properties.getMessageId(), retryCount, cause.getMessage(), cause);
+            count(queue, "dead");
+            channel.basicNack(deliveryTag, false, false);
+            return;
+        }
+        long delay = retryDelays.get(retryCount);
+        properties.setHeader(RabbitMQConfig.RETRY_COUNT_HEADER, retryCount + 1);
+        if (publish(RabbitMQConfig.retryQueueName(queue, delay), message)) {
+            log.warn("消息处理失败，{}毫秒后第{}次重试: queue={}, messageId={}, error={}",
+                    delay, retryCount + 1, queue, properties.getMessageId(), cause.getMessage());
+            count(queue, "retry");
+            channel.basicAck(deliveryTag, false);
+        } else {
+            // 重试队列不可用时转入死信队列，避免消息丢失或反复重投
+            log.error("发送到重试队列失败，转入死信队列: queue={}, messageId={}", queue, properties.getMessageId());
+            count(queue, "dead");
+            channel.basicNack(deliveryTag, false, false);
+        }
+    }
+
+    /**
+     * 经默认交换机直接发到重试队列，开启发布确认时等待 broker 确认
+     */
+    private boolean publish(String retryQueue, Message message) {
+        try {
+            CorrelationData correlation = new CorrelationData();
+            rabbitTemplate.send("", retryQueue, message, correlation);
+            if (!publisherConfirms) {
+                return true;
+            }
+            return correlation.getFuture().get(5, TimeUnit.SECONDS).isAck();
+        } catch (Exception e) {
+            log.warn("发送到重试队列失败: queue={}, error={}", retryQueue, e.getMessage());
+            return false;
+        }
+    }
+
+    private static int retryCount(MessageProperties properties) {
+        Object value = properties.getHeaders().get(RabbitMQConfig.RETRY_COUNT_HEADER);
+        return value instanceof Number number ? number.intValue() : 0;
+    }
+
+    private void count(String queue, String result) {
+        meterRegistry.counter("mq.consume", "queue", String.valueOf(queue), "result", result).increment();
+    }
+}
@@ -0,0 +1,318 @@
+package com.itzixi.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itzixi.entity.OutboxEvent;
+import com.itzixi.mapper.OutboxEventMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 发件箱投递任务
+ * 在短事务中用 SELECT ... FOR UPDATE SKIP LOCKED 选出一批待发送事件并认领（下次发送时间推迟到租约到期），
+ * 多个节点可以同时投递而不重复；事务提交后再发送并等待 broker 确认，期间不持有行锁和数据库连接，
+ * 最后在第二个短事务中把确认成功的标记为已发送，失败的按退避时间重试。
+ * 超过最大次数的事件标记为失败并告警，由管理员确认后重放
+ */
+@Slf4j
+@Service
+public class OutboxRelay {
+
+    /**
+     * 目前只有本项目的消息类型可以写入发件箱
+     */
+    private static final String PAYLOAD_PACKAGE = "com.itzixi.dto.";
+
+    private final OutboxEventMapper outboxEventMapper;
+
+    private final RabbitTemplate rabbitTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean publisherConfirms;
+
+    /**
+     * 每批投递的事件数
+     */
+    @Value("${outbox.batch-size:200}")
+    private int batchSize;
+
+    /**
+     * 等待 broker 确认的超时时间
+     */
+    @Value("${outbox.confirm-timeout:5s}")
+    private Duration confirmTimeout;
+
+    /**
+     * 最大发送次数，超过后标记为失败
+     */
+    @Value("${outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    /**
+     * 首次重试的退避时间，之后按次数翻倍
+     */
+    @Value("${outbox.retry-backoff:5s}")
+    private Duration retryBackoff;
+
+    /**
+     * 认领租约，需大于确认超时；投递节点崩溃时租约到期后由其他节点重新投递
+     */
+    @Value("${outbox.lease:30s}")
+    private Duration lease;
+
+    /**
+     * 已发送事件的保留时间
+     */
+    @Value("${outbox.retention:7d}")
+    private Duration retention;
+
+    private final Executor relayExecutor;
+
+    /**
+     * 已安排但尚未开始的投递，多次唤醒合并为一次
+     */
+    private final AtomicBoolean pending = new AtomicBoolean(false);
+
+    private final Counter sentCounter;
+
+    private final Counter failedCounter;
+
+    private final Counter deadCounter;
+
+    public OutboxRelay(OutboxEventMapper outboxEventMapper, RabbitTemplate rabbitTemplate,
+                       ObjectMapper objectMapper, TransactionTemplate transactionTemplate,
+                       MeterRegistry meterRegistry,
+                       @Qualifier("outboxRelayExecutor") Executor relayExecutor) {
+        this.outboxEventMapper = outboxEventMapper;
+        this.relayExecutor = relayExecutor;
+        this.rabbitTemplate = rabbitTemplate;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.publisherConfirms = rabbitTemplate.getConnectionFactory().isPublisherConfirms();
+        if (!publisherConfirms) {
+            log.warn("RabbitMQ 未开启发布确认(publisher-confirm-type: correlated)，发件箱发送成功即视为已投递");
+        }
+        this.sentCounter = Counter.builder("outbox.events.sent")
+                .description("发件箱已投递事件数").register(meterRegistry);
+        this.failedCounter = Counter.builder("outbox.events.failed")
+                .description("发件箱投递失败次数").register(meterRegistry);
+        this.deadCounter = Counter.builder("outbox.events.dead")
+                .description("超过最大发送次数被标记为失败的事件数").register(meterRegistry);
+    }
+
+    /**
+     * 事务提交后唤醒投递，不阻塞调用方；已有一轮投递在排队时直接返回，
+     * 投递开始时清除标记，开始之后的唤醒会再安排一轮
+     */
+    public void trigger() {
+        if (!pending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            relayExecutor.execute(this::relay);
+        } catch (Exception e) {
+            pending.set(false);
+            // 已关闭时由下次启动后的定时任务投递
+            log.debug("发件箱投递唤醒失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 把投递失败的事件恢复为待发送并立即投递
+     * @return 恢复的事件数
+     */
+    public int replayFailed(int limit) {
+        int replayed = outboxEventMapper.replayFailed(LocalDateTime.now(), limit);
+        if (replayed > 0) {
+            log.info("重放投递失败的发件箱事件: {}", replayed);
+            trigger();
+        }
+        return replayed;
+    }
+
+    /**
+     * 投递失败、等待人工处理的事件数
+     */
+    public long countFailed() {
+        return outboxEventMapper.selectCount(new QueryWrapper<OutboxEvent>()
+                .eq("status", OutboxEvent.STATUS_FAILED));
+    }
+
+    /**
+     * 定时投递，兜底唤醒丢失、发送失败重试和其他节点遗留的事件
+     */
+    @Scheduled(fixedDelayString = "${outbox.poll-interval:1000}")
+    public void scheduledRelay() {
+        trigger();
+    }
+
+    /**
+     * 定时清理已发送的事件
+     */
+    @Scheduled(fixedDelayString = "${outbox.cleanup-interval:3600000}")
+    public void cleanup() {
+        try {
+            int deleted;
+            int total = 0;
+            do {
+                deleted = outboxEventMapper.deleteSentBefore(LocalDateTime.now().minus(retention), 1000);
+                total += deleted;
+            } while (deleted == 1000);
+            if (total > 0) {
+                log.info("清理已发送的发件箱事件: {}", total);
+            }
+        } catch (Exception e) {
+            log.warn("清理发件箱事件失败: {}", e.getMessage());
+        }
+    }
+
+    private void relay() {
+        pending.set(false);
+        try {
+            int relayed;
+            do {
+                relayed = relayBatch();
+            } while (relayed == batchSize);
+        } catch (Exception e) {
+            log.error("发件箱投递失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 投递一批事件：认领事务提交后再发送和等待确认，结果在第二个短事务中写回
+     * @return 本批认领的事件数
+     */
+    private int relayBatch() {
+        LocalDateTime claimedAt = LocalDateTime.now();
+        Duration claimLease = lease.compareTo(confirmTimeout) > 0 ? lease : confirmTimeout.multipliedBy(2);
+        List<OutboxEvent> events = transactionTemplate.execute(status -> {
+            List<OutboxEvent> due = outboxEventMapper.selectDueForUpdate(claimedAt, batchSize);
+            if (!due.isEmpty()) {
+                outboxEventMapper.claim(due.stream().map(OutboxEvent::getId).toList(), claimedAt.plus(claimLease));
+            }
+            return due;
+        });
+        if (events == null || events.isEmpty()) {
+            return 0;
+        }
+
+        List<CorrelationData> confirms = new ArrayList<>(events.size());
+        for (OutboxEvent event : events) {
+            confirms.add(send(event));
+        }
+        List<Long> sent = new ArrayList<>();
+        List<Long> failed = new ArrayList<>();
+        int failedAttempts = 0;
+        long deadline = System.nanoTime() + confirmTimeout.toNanos();
+        for (int i = 0; i < events.size(); i++) {
+            OutboxEvent event = events.get(i);
+            if (isConfirmed(event, confirms.get(i), deadline)) {
+                sent.add(event.getId());
+            } else {
+                failed.add(event.getId());
+                int attempts = event.getAttempts() == null ? 0 : event.getAttempts();
+                failedAttempts = Math.max(failedAttempts, attempts);
+                if (attempts + 1 >= maxAttempts) {
+                    deadCounter.increment();
+                    log.error("发件箱事件超过最大发送次数，已标记为失败，需人工确认后重放: id={}, messageId={}",
+                            event.getId(), event.getMessageId());
+                }
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        long backoff = retryBackoff.toMillis() << Math.min(failedAttempts, 10);
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!sent.isEmpty()) {
+                outboxEventMapper.markSent(sent, now);
+            }
+            if (!failed.isEmpty()) {
+                outboxEventMapper.markRetry(failed, now.plus(Duration.ofMillis(backoff)), maxAttempts);
+            }
+        });
+        sentCounter.increment(sent.size());
+        if (!failed.isEmpty()) {
+            failedCounter.increment(failed.size());
+            log.warn("发件箱事件投递失败，稍后重试: 数量={}", failed.size());
+        }
+        return events.size();
+    }
+
+    /**
+     * 发送一条事件，发送异常时返回 null
+     */
+    private CorrelationData send(OutboxEvent event) {
+        try {
+            if (!event.getPayloadType().startsWith(PAYLOAD_PACKAGE)) {
+                throw new IllegalStateException("不支持的消息类型: " + event.getPayloadType());
+            }
+            Object message = objectMapper.readValue(event.getPayload(), Class.forName(event.getPayloadType()));
+            CorrelationData correlation = new CorrelationData(event.getMessageId());
+            MessagePostProcessor withMessageId = amqpMessage -> {
+                amqpMessage.getMessageProperties().setMessageId(event.getMessageId());
+                return amqpMessage;
+            };
+            rabbitTemplate.convertAndSend(event.getExchange(), event.getRoutingKey(), message, withMessageId, correlation);
+            return correlation;
+        } catch (Exception e) {
+            log.warn("发件箱事件发送失败: id={}, messageId={}, error={}", event.getId(), event.getMessageId(), e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean isConfirmed(OutboxEvent event, CorrelationData correlation, long deadline) {
+        if (correlation == null) {
+            return false;
+        }
+        if (!publisherConfirms) {
+            return true;
+        }
+        try {
+            long timeout = Math.max(0, deadline - System.nanoTime());
+            CorrelationData.Confirm confirm = correlation.getFuture().get(timeout, TimeUnit.NANOSECONDS);
+            if (!confirm.isAck()) {
+                log.warn("broker 拒绝发件箱事件: messageId={}, reason={}", event.getMessageId(), confirm.getReason());
+                return false;
+            }
+            // 无法路由的消息也会被确认，模板开启 mandatory 后 broker 会先退回消息
+            if (correlation.getReturned() != null) {
+                log.warn("发件箱事件无法路由被退回: messageId={}, replyText={}",
+                        event.getMessageId(), correlation.getReturned().getReplyText());
+                return false;
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("等待发件箱事件确认被中断: messageId={}", event.getMessageId());
+            return false;
+        } catch (TimeoutException e) {
+            log.warn("等待发件箱事件确认超时: messageId={}", event.getMessageId());
+            return false;
+        } catch (ExecutionException e) {
+            log.warn("等待发件箱事件确认失败: messageId={}, error={}", event.getMessageId(), e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.itzixi.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itzixi.dto.QueueMessage;
+import com.itzixi.entity.OutboxEvent;
+import com.itzixi.mapper.OutboxEventMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * 发件箱
+ * 事件与业务数据在同一事务中写入 outbox_event 表，事务回滚时事件一起回滚；
+ * 提交后唤醒投递任务，请求线程不等待消息队列
+ */
+@Slf4j
+@Service
+public class OutboxService {
+
+    private final OutboxEventMapper outboxEventMapper;
+
+    private final ObjectMapper objectMapper;
+
+    private final OutboxRelay outboxRelay;
+
+    public OutboxService(OutboxEventMapper outboxEventMapper, ObjectMapper objectMapper,
+                         @Lazy OutboxRelay outboxRelay) {
+        this.outboxEventMapper = outboxEventMapper;
+        this.objectMapper = objectMapper;
+        this.outboxRelay = outboxRelay;
+    }
+
+    /**
+     * 在当前事务中登记一条待发送的消息
+     * @param message 消息对象，沿用其 messageId，为空时生成新的ID
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(String exchange, String routingKey, QueueMessage message) {
+        OutboxEvent event = new OutboxEvent();
+        event.setMessageId(message.getMessageId() != null ? message.getMessageId() : UUID.randomUUID().toString());
+        event.setExchange(exchange);
+        event.setRoutingKey(routingKey);
+        event.setPayloadType(message.getClass().getName());
+        try {
+            event.setPayload(objectMapper.writeValueAsString(message));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("消息序列化失败: " + message.getClass().getName(), e);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        event.setStatus(OutboxEvent.STATUS_PENDING);
+        event.setAttempts(0);
+        event.setNextAttemptAt(now);
+        event.setCreatedAt(now);
+        outboxEventMapper.insert(event);
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                outboxRelay.trigger();
+            }
+        });
+        log.debug("登记发件箱事件: routingKey={}, messageId={}", routingKey, event.getMessageId());
+    }
+}
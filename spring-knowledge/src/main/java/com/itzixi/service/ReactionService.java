@@ -0,0 +1,168 @@
+package com.itzixi.service;
+
+import com.itzixi.mapper.ArticleMapper;
+import com.itzixi.mapper.CommentMapper;
+import com.itzixi.utils.CounterBuffer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 点赞服务
+ * 用户点赞记录保存在 Redis Set 中做去重，一次点赞只需一次 Redis 往返；
+ * 点赞数的增量在内存中累加，由定时任务用原子 SQL 批量写回数据库；落库后不清除文章缓存，读取时叠加增量
+ */
+@Slf4j
+@Service
+public class ReactionService {
+
+    /**
+     * 点赞对象类型
+     */
+    public enum Target {
+        ARTICLE("article"),
+        COMMENT("comment");
+
+        private final String key;
+
+        Target(String key) {
+            this.key = key;
+        }
+    }
+
+    private static final String LIKE_KEY_PREFIX = "like:";
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final Map<Target, CounterBuffer> buffers = new EnumMap<>(Target.class);
+
+    private final Map<Target, Consumer<Map<Long, Long>>> writers = new EnumMap<>(Target.class);
+
+    private final Timer flushTimer;
+
+    @Value("${article.likes.flush-batch-size:500}")
+    private int flushBatchSize;
+
+    @Value("${article.counters.overlay-retention:15m}")
+    private Duration overlayRetention;
+
+    public ReactionService(StringRedisTemplate stringRedisTemplate,
+                           ArticleMapper articleMapper,
+                           CommentMapper commentMapper,
+                           MeterRegistry meterRegistry) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        writers.put(Target.ARTICLE, articleMapper::batchIncrementLikes);
+        writers.put(Target.COMMENT, commentMapper::batchIncrementLikes);
+        for (Target target : Target.values()) {
+            CounterBuffer buffer = new CounterBuffer();
+            buffers.put(target, buffer);
+            Gauge.builder("reaction.likes.pending", buffer, CounterBuffer::pendingTotal)
+                    .description("尚未落库的点赞增量")
+                    .tag("target", target.key)
+                    .register(meterRegistry);
+        }
+        this.flushTimer = Timer.builder("reaction.likes.flush")
+                .description("点赞数批量落库耗时")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 点赞
+     * @return 本次是否为新增点赞（重复点赞返回 false）
+     */
+    public boolean like(Target target, Long targetId, Long userId) {
+        Long added = stringRedisTemplate.opsForSet().add(likeKey(target, targetId), String.valueOf(userId));
+        if (added != null && added > 0) {
+            buffers.get(target).add(targetId, 1);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 取消点赞
+     * @return 本次是否确实取消了点赞（未点赞过返回 false）
+     */
+    public boolean unlike(Target target, Long targetId, Long userId) {
+        Long removed = stringRedisTemplate.opsForSet().remove(likeKey(target, targetId), String.valueOf(userId));
+        if (removed != null && removed > 0) {
+            buffers.get(target).add(targetId, -1);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 用户是否已点赞
+     */
+    public boolean hasLiked(Target target, Long targetId, Long userId) {
+        return Boolean.TRUE.equals(
+                stringRedisTemplate.opsForSet().isMember(likeKey(target, targetId), String.valueOf(userId)));
+    }
+
+    /**
+     * 获取缓存对象加载之后的点赞增量（含尚未落库的）
+     * @param loadedAt 缓存对象的加载时间，为空时只返回未落库的增量
+     */
+    public long getLikesSince(Target target, Long targetId, Long loadedAt) {
+        return buffers.get(target).changedSince(targetId, loadedAt);
+    }
+
+    /**
+     * 定时批量落库点赞数
+     */
+    @Scheduled(fixedDelayString = "${article.likes.flush-interval:2000}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    /**
+     * 应用关闭前落库剩余的点赞增量
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * 批量落库，失败的批次放回缓冲区等待下次重试
+     */
+    public synchronized void flush() {
+        for (Target target : Target.values()) {
+            CounterBuffer buffer = buffers.get(target);
+            buffer.expireFlushed(System.currentTimeMillis() - overlayRetention.toMillis());
+            long stamp = System.currentTimeMillis();
+            Map<Long, Long> deltas = buffer.drain(stamp);
+            if (deltas.isEmpty()) {
+                continue;
+            }
+            for (Map<Long, Long> batch : CounterBuffer.partition(deltas, flushBatchSize)) {
+                Timer.Sample sample = Timer.start();
+                try {
+                    writers.get(target).accept(batch);
+                } catch (Exception e) {
+                    buffer.restore(batch, stamp);
+                    log.error("点赞数批量落库失败，稍后重试: target={}, size={}, error={}",
+                            target.key, batch.size(), e.getMessage(), e);
+                } finally {
+                    sample.stop(flushTimer);
+                }
+            }
+        }
+    }
+
+    private String likeKey(Target target, Long targetId) {
+        return LIKE_KEY_PREFIX + target.key + ":" + targetId;
+    }
+}
@@ -0,0 +1,162 @@
+package com.itzixi.service;
+
+import com.itzixi.config.RabbitMQConfig;
+import com.itzixi.dto.StatsMessage;
+import com.itzixi.utils.MpscRingBuffer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 统计事件发布器
+ * 请求线程只把事件写入无锁环形缓冲区，不等待消息队列；由定时任务批量取出，
+ * 在同一个通道上连续发送。缓冲区满或发送失败时丢弃事件并计数，统计数据允许有限丢失
+ */
+@Slf4j
+@Service
+public class StatsEventPublisher {
+
+    private static final String TYPE_VISIT = "VISIT";
+
+    private static final String TYPE_SEARCH = "SEARCH";
+
+    private final RabbitTemplate rabbitTemplate;
+
+    private final MpscRingBuffer<StatsMessage> buffer;
+
+    /**
+     * 每次发送的最大消息数
+     */
+    @Value("${stats.publisher.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * 每次定时任务最多发送的批数，避免积压时长时间占用调度线程
+     */
+    @Value("${stats.publisher.max-batches-per-flush:20}")
+    private int maxBatchesPerFlush;
+
+    private final Counter visitDropped;
+
+    private final Counter searchDropped;
+
+    private final Counter publishFailed;
+
+    private final Counter published;
+
+    public StatsEventPublisher(RabbitTemplate rabbitTemplate, MeterRegistry meterRegistry,
+                               @Value("${stats.publisher.buffer-size:65536}") int bufferSize) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.buffer = new MpscRingBuffer<>(bufferSize);
+        this.visitDropped = Counter.builder("stats.events.dropped").tag("type", TYPE_VISIT)
+                .description("缓冲区已满被丢弃的统计事件数").register(meterRegistry);
+        this.searchDropped = Counter.builder("stats.events.dropped").tag("type", TYPE_SEARCH)
+                .description("缓冲区已满被丢弃的统计事件数").register(meterRegistry);
+        this.publishFailed = Counter.builder("stats.events.publish.failed")
+                .description("发送失败被丢弃的统计事件数").register(meterRegistry);
+        this.published = Counter.builder("stats.events.published")
+                .description("已发送的统计事件数").register(meterRegistry);
+        Gauge.builder("stats.events.buffered", buffer, MpscRingBuffer::size)
+                .description("缓冲区中待发送的统计事件数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 记录一次文章访问
+     */
+    public void recordVisit(Long articleId, Long userId, String ipAddress, String userAgent) {
+        StatsMessage message = newMessage(TYPE_VISIT, userId, ipAddress, userAgent);
+        message.setRelatedId(articleId);
+        if (!buffer.offer(message)) {
+            visitDropped.increment();
+        }
+    }
+
+    /**
+     * 记录一次搜索
+     */
+    public void recordSearch(String keyword, Long userId, String ipAddress, String userAgent) {
+        StatsMessage message = newMessage(TYPE_SEARCH, userId, ipAddress, userAgent);
+        message.setKeyword(keyword);
+        if (!buffer.offer(message)) {
+            searchDropped.increment();
+        }
+    }
+
+    /**
+     * 定时发送缓冲区中的事件，固定延迟调度保证只有一个线程消费缓冲区
+     */
+    @Scheduled(fixedDelayString = "${stats.publisher.flush-interval:100}")
+    public void scheduledFlush() {
+        flush(maxBatchesPerFlush);
+    }
+
+    /**
+     * 应用关闭前发送剩余事件
+     */
+    @PreDestroy
+    public void shutdown() {
+        log.info("应用关闭，发送剩余统计事件: {}", buffer.size());
+        flush(Integer.MAX_VALUE);
+    }
+
+    private synchronized void flush(int maxBatches) {
+        List<StatsMessage> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < maxBatches; i++) {
+            batch.clear();
+            if (buffer.drainTo(batch, batchSize) == 0) {
+                return;
+            }
+            publish(batch);
+            if (batch.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 在同一个通道上连续发送一批消息，失败时整批丢弃
+     */
+    private void publish(List<StatsMessage> batch) {
+        try {
+            rabbitTemplate.invoke(operations -> {
+                for (StatsMessage message : batch) {
+                    message.setMessageId(UUID.randomUUID().toString());
+                    String routingKey = TYPE_VISIT.equals(message.getStatsType())
+                            ? RabbitMQConfig.STATS_VISIT_ROUTING_KEY
+                            : RabbitMQConfig.STATS_SEARCH_ROUTING_KEY;
+                    operations.convertAndSend(RabbitMQConfig.STATS_EXCHANGE, routingKey, message);
+                }
+                return null;
+            });
+            published.increment(batch.size());
+        } catch (Exception e) {
+            publishFailed.increment(batch.size());
+            log.warn("统计事件批量发送失败，丢弃本批: 数量={}, error={}", batch.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * 请求线程上只做字段赋值，消息ID在发送线程生成
+     */
+    private static StatsMessage newMessage(String statsType, Long userId, String ipAddress, String userAgent) {
+        StatsMessage message = new StatsMessage();
+        message.setStatsType(statsType);
+        message.setUserId(userId);
+        message.setIpAddress(ipAddress);
+        message.setUserAgent(userAgent);
+        message.setCreateTime(LocalDateTime.now());
+        return message;
+    }
+}
@@ -0,0 +1,30 @@
+package com.itzixi.service;
+
+import com.itzixi.dto.KeywordSearchCount;
+import com.itzixi.dto.StatsMessage;
+
+import java.util.List;
+
+/**
+ * 统计汇总服务
+ * 一批统计消息在内存中按 (文章, 分钟) / (关键词, 分钟) 合并后，多行一次写入汇总表
+ */
+public interface StatsRollupService {
+
+    /**
+     * 汇总一批访问统计消息，写入文章每分钟和每日访问数
+     */
+    void recordVisits(List<StatsMessage> messages);
+
+    /**
+     * 汇总一批搜索统计消息，写入关键词每分钟搜索次数
+     */
+    void recordSearches(List<StatsMessage> messages);
+
+    /**
+     * 查询最近一段时间的热门搜索关键词
+     * @param minutes 统计最近多少分钟
+     * @param limit 返回数量
+     */
+    List<KeywordSearchCount> getTrendingKeywords(int minutes, int limit);
+}
@@ -45,6 +45,11 @@ public interface TagService extends IService<Tag> {
      */
     void removeTagsFromArticle(Long articleId);
     
+    /**
+     * 按差异同步文章标签：只新增缺少的关联、删除多余的关联
+     */
+    void syncArticleTags(Long articleId, List<String> tagNames);
+    
     /**
      * 更新标签
      */
@@ -0,0 +1,121 @@
+package com.itzixi.service;
+
+import com.itzixi.mapper.ArticleMapper;
+import com.itzixi.utils.CounterBuffer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文章阅读量计数服务
+ * 阅读量先累加在内存中，由定时任务批量写回数据库，避免热点文章每次访问都去竞争同一行的行锁。
+ * 落库后不清除文章缓存，读取时按缓存对象的加载时间叠加之后的增量，热点文章始终留在缓存中
+ */
+@Slf4j
+@Service
+public class ViewCountService {
+
+    private final ArticleMapper articleMapper;
+
+    private final CounterBuffer buffer = new CounterBuffer();
+
+    /**
+     * 单条 UPDATE 语句最多合并的文章数
+     */
+    @Value("${article.views.flush-batch-size:500}")
+    private int flushBatchSize;
+
+    /**
+     * 已落库增量的保留时间，需覆盖文章缓存的最长存活时间（含过期宽限期）
+     */
+    @Value("${article.counters.overlay-retention:15m}")
+    private Duration overlayRetention;
+
+    private final Timer flushTimer;
+
+    private final Counter flushFailures;
+
+    public ViewCountService(ArticleMapper articleMapper, MeterRegistry meterRegistry) {
+        this.articleMapper = articleMapper;
+        this.flushTimer = Timer.builder("article.views.flush")
+                .description("阅读量批量落库耗时")
+                .register(meterRegistry);
+        this.flushFailures = Counter.builder("article.views.flush.failures")
+                .description("阅读量批量落库失败次数")
+                .register(meterRegistry);
+        Gauge.builder("article.views.pending", buffer, CounterBuffer::pendingTotal)
+                .description("尚未落库的阅读量增量")
+                .register(meterRegistry);
+        Gauge.builder("article.views.pending.articles", buffer, CounterBuffer::size)
+                .description("存在未落库阅读量的文章数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 记录一次阅读
+     */
+    public void increment(Long articleId) {
+        buffer.add(articleId, 1);
+    }
+
+    /**
+     * 获取缓存对象加载之后新增的阅读量（含尚未落库的），用于在详情中展示实时阅读数
+     * @param loadedAt 缓存对象的加载时间，为空时只返回未落库的阅读量
+     */
+    public long getViewsSince(Long articleId, Long loadedAt) {
+        return buffer.changedSince(articleId, loadedAt);
+    }
+
+    /**
+     * 定时把内存中的阅读量增量批量写回数据库
+     */
+    @Scheduled(fixedDelayString = "${article.views.flush-interval:5000}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    /**
+     * 应用关闭前把剩余的增量全部落库
+     */
+    @PreDestroy
+    public void shutdown() {
+        log.info("应用关闭，落库剩余阅读量: {}", buffer.pendingTotal());
+        flush();
+    }
+
+    /**
+     * 批量落库，失败的批次会放回缓冲区等待下次重试
+     */
+    public synchronized void flush() {
+        buffer.expireFlushed(System.currentTimeMillis() - overlayRetention.toMillis());
+        long stamp = System.currentTimeMillis();
+        Map<Long, Long> deltas = buffer.drain(stamp);
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        for (Map<Long, Long> batch : CounterBuffer.partition(deltas, flushBatchSize)) {
+            long start = System.nanoTime();
+            try {
+                articleMapper.batchIncrementViews(batch);
+            } catch (Exception e) {
+                flushFailures.increment();
+                buffer.restore(batch, stamp);
+                log.error("阅读量批量落库失败，稍后重试: articles={}, error={}", batch.size(), e.getMessage(), e);
+            } finally {
+                flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+        log.debug("阅读量批量落库完成: articles={}", deltas.size());
+    }
+}
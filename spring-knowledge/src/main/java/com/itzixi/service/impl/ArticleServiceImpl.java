@@ -1,20 +1,34 @@
 package com.itzixi.service.impl;
 
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.itzixi.common.enums.ArticleStatus;
+import com.itzixi.common.result.CursorPage;
+import com.itzixi.config.RabbitMQConfig;
+import com.itzixi.dto.ArticleMessage;
 import com.itzixi.entity.Article;
 import com.itzixi.mapper.ArticleMapper;
+import com.itzixi.search.ArticleSearchService;
 import com.itzixi.service.ArticleService;
+import com.itzixi.service.CacheService;
+import com.itzixi.service.CountEstimateService;
 import com.itzixi.service.TagService;
-import com.itzixi.service.MessageProducerService;
+import com.itzixi.service.OutboxService;
+import com.itzixi.service.ReactionService;
+import com.itzixi.service.ViewCountService;
+import com.itzixi.utils.PageCursor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.BeanUtils;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -27,20 +41,68 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ArticleServiceImpl extends ServiceImpl<ArticleMapper, Article> implements ArticleService {
     
+    /**
+     * 游标分页单页最大条数
+     */
+    private static final int MAX_CURSOR_PAGE_SIZE = 50;
+    
     private final TagService tagService;
-    private final MessageProducerService messageProducerService;
+    private final OutboxService outboxService;
+    private final ViewCountService viewCountService;
+    private final ReactionService reactionService;
+    private final CacheService cacheService;
+    private final ArticleSearchService articleSearchService;
+    private final CountEstimateService countEstimateService;
     
     @Override
     public IPage<Article> getArticlePage(Page<Article> page, Integer status) {
-        return baseMapper.selectArticlePageWithDetails(page, status);
+        // 总数用缓存的估算值，不再每次翻页都 COUNT
+        page.setSearchCount(false);
+        IPage<Article> result = baseMapper.selectArticlePageWithDetails(page, status);
+        result.setTotal(countArticles(status));
+        return result;
+    }
+    
+    @Override
+    public CursorPage<Article> getArticleCursorPage(String cursor, int size, Integer status, boolean withTotal) {
+        int limit = Math.min(Math.max(size, 1), MAX_CURSOR_PAGE_SIZE);
+        List<Article> articles;
+        if (StringUtils.hasText(cursor)) {
+            PageCursor after = PageCursor.decode(cursor, "article", 3);
+            articles = baseMapper.selectArticlesAfter(status, after.getBoolean(0), after.getDateTime(1),
+                    after.getLong(2), limit + 1);
+        } else {
+            articles = baseMapper.selectArticlesAfter(status, null, null, null, limit + 1);
+        }
+        
+        // 多查一条判断是否还有下一页
+        String nextCursor = null;
+        if (articles.size() > limit) {
+            articles = articles.subList(0, limit);
+            Article last = articles.get(limit - 1);
+            nextCursor = PageCursor.encode("article", Boolean.TRUE.equals(last.getIsTop()),
+                    last.getCreatedAt(), last.getId());
+        }
+        return CursorPage.of(articles, nextCursor, withTotal ? countArticles(status) : null);
     }
     
     @Override
     public Article getArticleById(Long id) {
-        Article article = baseMapper.selectById(id);
-        if (article != null) {
-            // 查询文章的标签
-            // 这里可以在后续优化为联查
+        Article cached = cacheService.getArticleById(id);
+        if (cached == null) {
+            return null;
+        }
+        
+        // 缓存中的对象是各请求共享的，在副本上叠加缓存加载之后的阅读量和点赞数
+        Article article = new Article();
+        BeanUtils.copyProperties(cached, article, "articleStatus", "cachedAt");
+        long pendingViews = viewCountService.getViewsSince(id, cached.getCachedAt());
+        if (pendingViews > 0) {
+            article.setViews((article.getViews() == null ? 0 : article.getViews()) + pendingViews);
+        }
+        long pendingLikes = reactionService.getLikesSince(ReactionService.Target.ARTICLE, id, cached.getCachedAt());
+        if (pendingLikes != 0) {
+            article.setLikes(Math.max(0, (article.getLikes() == null ? 0 : article.getLikes()) + pendingLikes));
         }
         return article;
     }
@@ -81,12 +143,12 @@ public class ArticleServiceImpl extends ServiceImpl<ArticleMapper, Article> impl
             tagService.associateTagsWithArticle(article.getId(), tagNames);
         }
         
-        // 异步发送文章发布消息
+        // 文章发布消息与文章在同一事务中写入发件箱
         if (article.isPublished()) {
-            asyncSendArticlePublishMessage(article.getId(), article.getAuthorId(), 
-                    "文章发布: " + article.getTitle());
+            enqueuePublishMessage(article.getId(), article.getAuthorId(), "文章发布: " + article.getTitle());
         }
         
+        evictArticleCaches(article.getId());
         return article;
     }
     
@@ -102,27 +164,34 @@ public class ArticleServiceImpl extends ServiceImpl<ArticleMapper, Article> impl
         // 更新文章
         baseMapper.updateById(article);
         
-        // 更新标签关联
+        // 更新标签关联，只改动有变化的标签
         if (tagNames != null) {
-            tagService.removeTagsFromArticle(article.getId());
-            if (!tagNames.isEmpty()) {
-                tagService.associateTagsWithArticle(article.getId(), tagNames);
-            }
+            tagService.syncArticleTags(article.getId(), tagNames);
         }
         
+        evictArticleCaches(article.getId());
+        Long authorId = existingArticle != null ? existingArticle.getAuthorId() : article.getAuthorId();
+        enqueueUpdateMessage(article.getId(), authorId, "文章更新: " + article.getTitle());
         return article;
     }
     
     @Override
     @Transactional
-    public boolean deleteArticle(Long id) {
+    public boolean deleteArticle(Long id, Long userId) {
         // 删除标签关联
         tagService.removeTagsFromArticle(id);
         // 删除文章
-        return baseMapper.deleteById(id) > 0;
+        boolean deleted = baseMapper.deleteById(id) > 0;
+        evictArticleCaches(id);
+        if (deleted) {
+            outboxService.enqueue(RabbitMQConfig.ARTICLE_EXCHANGE, RabbitMQConfig.ARTICLE_DELETE_ROUTING_KEY,
+                    ArticleMessage.of(id, "DELETE", userId, null));
+        }
+        return deleted;
     }
     
     @Override
+    @Transactional
     public boolean publishArticle(Long id) {
         Article article = baseMapper.selectById(id);
         if (article != null && article.canTransitionTo(ArticleStatus.PUBLISHED)) {
@@ -130,27 +199,44 @@ public class ArticleServiceImpl extends ServiceImpl<ArticleMapper, Article> impl
             if (article.getPublishTime() == null) {
                 article.setPublishTime(LocalDateTime.now());
             }
-            return baseMapper.updateById(article) > 0;
+            boolean updated = baseMapper.updateById(article) > 0;
+            evictArticleCaches(id);
+            if (updated) {
+                enqueuePublishMessage(id, article.getAuthorId(), "文章发布: " + article.getTitle());
+            }
+            return updated;
         }
         return false;
     }
     
     @Override
+    @Transactional
     public boolean draftArticle(Long id) {
         Article article = baseMapper.selectById(id);
         if (article != null && article.canTransitionTo(ArticleStatus.DRAFT)) {
             article.setArticleStatus(ArticleStatus.DRAFT);
-            return baseMapper.updateById(article) > 0;
+            boolean updated = baseMapper.updateById(article) > 0;
+            evictArticleCaches(id);
+            if (updated) {
+                enqueueUpdateMessage(id, article.getAuthorId(), "文章状态变更: " + article.getTitle());
+            }
+            return updated;
         }
         return false;
     }
     
     @Override
+    @Transactional
     public boolean archiveArticle(Long id) {
         Article article = baseMapper.selectById(id);
         if (article != null && article.canTransitionTo(ArticleStatus.ARCHIVED)) {
             article.setArticleStatus(ArticleStatus.ARCHIVED);
-            return baseMapper.updateById(article) > 0;
+            boolean updated = baseMapper.updateById(article) > 0;
+            evictArticleCaches(id);
+            if (updated) {
+                enqueueUpdateMessage(id, article.getAuthorId(), "文章状态变更: " + article.getTitle());
+            }
+            return updated;
         }
         return false;
     }
@@ -167,65 +253,100 @@ public class ArticleServiceImpl extends ServiceImpl<ArticleMapper, Article> impl
     
     @Override
     public IPage<Article> searchArticles(Page<Article> page, String keyword) {
-        return baseMapper.searchArticles(page, keyword);
+        return articleSearchService.search(keyword, (int) page.getCurrent(), (int) page.getSize());
+    }
+    
+    /**
+     * 搜索结果按相关度排序，没有可用于定位的稳定排序键，游标记录的是页码；
+     * 各搜索引擎内部按窗口截断，总数也来自引擎或缓存，不会出现数据库深分页
+     */
+    @Override
+    public CursorPage<Article> searchArticlesByCursor(String keyword, String cursor, int size) {
+        int pageNum = StringUtils.hasText(cursor) ? PageCursor.decode(cursor, "search", 1).getInt(0) : 1;
+        int limit = Math.min(Math.max(size, 1), MAX_CURSOR_PAGE_SIZE);
+        IPage<Article> page = articleSearchService.search(keyword, pageNum, limit);
+        String nextCursor = (long) pageNum * limit < page.getTotal() && !page.getRecords().isEmpty()
+                ? PageCursor.encode("search", pageNum + 1)
+                : null;
+        return CursorPage.of(page.getRecords(), nextCursor, page.getTotal());
     }
     
     @Override
+    @Cacheable(value = "hot", key = "#limit", sync = true)
     public List<Article> getPopularArticles(Integer limit) {
         return baseMapper.selectPopularArticles(limit);
     }
     
     @Override
+    @Cacheable(value = "latest", key = "#limit", sync = true)
     public List<Article> getLatestArticles(Integer limit) {
         return baseMapper.selectLatestArticles(limit);
     }
     
     @Override
     public void incrementViews(Long id) {
-        baseMapper.incrementViews(id);
+        // 只在内存中计数，由 ViewCountService 定时批量落库
+        viewCountService.increment(id);
     }
     
     @Override
-    public boolean likeArticle(Long id) {
-        Article article = baseMapper.selectById(id);
-        if (article != null) {
-            article.incrementLikes();
-            return baseMapper.updateById(article) > 0;
+    public boolean likeArticle(Long id, Long userId) {
+        // 文章是否存在走文章详情缓存，不存在的文章不产生点赞记录
+        if (cacheService.getArticleById(id) == null) {
+            return false;
         }
-        return false;
+        return reactionService.like(ReactionService.Target.ARTICLE, id, userId);
     }
     
     @Override
-    public boolean unlikeArticle(Long id) {
-        Article article = baseMapper.selectById(id);
-        if (article != null) {
-            article.decrementLikes();
-            return baseMapper.updateById(article) > 0;
-        }
-        return false;
+    public boolean unlikeArticle(Long id, Long userId) {
+        return reactionService.unlike(ReactionService.Target.ARTICLE, id, userId);
+    }
+    
+    private long countArticles(Integer status) {
+        return countEstimateService.estimate("stats", "article:" + status,
+                () -> baseMapper.selectCount(new LambdaQueryWrapper<Article>().eq(status != null, Article::getStatus, status)));
     }
     
     /**
-     * 异步发送文章发布消息
+     * 文章变更后清除相关缓存，articleId 为空时只清除列表类缓存
+     * 在事务提交后清除，避免并发读取在提交前把旧数据重新写入缓存
      */
-    @Async("articleTaskExecutor")
-    public void asyncSendArticlePublishMessage(Long articleId, Long userId, String content) {
-        try {
-            messageProducerService.sendArticlePublishMessage(articleId, userId, content);
-        } catch (Exception e) {
-            log.error("异步发送文章发布消息失败: articleId={}, error={}", articleId, e.getMessage(), e);
+    private void evictArticleCaches(Long articleId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            doEvictArticleCaches(articleId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                doEvictArticleCaches(articleId);
+            }
+        });
+    }
+    
+    private void doEvictArticleCaches(Long articleId) {
+        if (articleId != null) {
+            cacheService.evictArticleCache(articleId);
         }
+        cacheService.evictHotArticlesCache();
+        cacheService.evictLatestArticlesCache();
+        cacheService.evictCategoryCache();
     }
     
     /**
-     * 异步发送文章更新消息
+     * 在当前事务中登记文章发布消息
      */
-    @Async("articleTaskExecutor")
-    public void asyncSendArticleUpdateMessage(Long articleId, Long userId, String content) {
-        try {
-            messageProducerService.sendArticleUpdateMessage(articleId, userId, content);
-        } catch (Exception e) {
-            log.error("异步发送文章更新消息失败: articleId={}, error={}", articleId, e.getMessage(), e);
-        }
+    private void enqueuePublishMessage(Long articleId, Long userId, String content) {
+        outboxService.enqueue(RabbitMQConfig.ARTICLE_EXCHANGE, RabbitMQConfig.ARTICLE_PUBLISH_ROUTING_KEY,
+                ArticleMessage.of(articleId, "PUBLISH", userId, content));
+    }
+    
+    /**
+     * 在当前事务中登记文章更新消息
+     */
+    private void enqueueUpdateMessage(Long articleId, Long userId, String content) {
+        outboxService.enqueue(RabbitMQConfig.ARTICLE_EXCHANGE, RabbitMQConfig.ARTICLE_UPDATE_ROUTING_KEY,
+                ArticleMessage.of(articleId, "UPDATE", userId, content));
     }
-} 
\ No newline at end of file
+}
@@ -6,6 +6,8 @@ import com.itzixi.entity.Category;
 import com.itzixi.mapper.CategoryMapper;
 import com.itzixi.service.CategoryService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -18,6 +20,7 @@ import java.util.List;
 public class CategoryServiceImpl extends ServiceImpl<CategoryMapper, Category> implements CategoryService {
     
     @Override
+    @Cacheable(value = "category", key = "'list'", sync = true)
     public List<Category> getAllCategoriesWithCount() {
         return baseMapper.selectCategoriesWithArticleCount();
     }
@@ -33,6 +36,7 @@ public class CategoryServiceImpl extends ServiceImpl<CategoryMapper, Category> i
     }
     
     @Override
+    @CacheEvict(value = "category", allEntries = true)
     public Category createCategory(Category category) {
         // 设置默认排序
         if (category.getSortOrder() == null) {
@@ -50,12 +54,14 @@ public class CategoryServiceImpl extends ServiceImpl<CategoryMapper, Category> i
     }
     
     @Override
+    @CacheEvict(value = "category", allEntries = true)
     public Category updateCategory(Category category) {
         baseMapper.updateById(category);
         return category;
     }
     
     @Override
+    @CacheEvict(value = "category", allEntries = true)
     public boolean deleteCategory(Long id) {
         // 检查是否有子分类
         QueryWrapper<Category> wrapper = new QueryWrapper<>();
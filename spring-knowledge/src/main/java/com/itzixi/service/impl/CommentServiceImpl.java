@@ -4,16 +4,33 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itzixi.common.exception.BusinessException;
+import com.itzixi.common.result.CursorPage;
+import com.itzixi.config.RabbitMQConfig;
+import com.itzixi.dto.CommentMessage;
+import com.itzixi.dto.CommentReplyCount;
 import com.itzixi.entity.Comment;
 import com.itzixi.mapper.CommentMapper;
+import com.itzixi.service.CacheService;
 import com.itzixi.service.CommentService;
-import com.itzixi.service.MessageProducerService;
+import com.itzixi.service.CountEstimateService;
+import com.itzixi.service.OutboxService;
+import com.itzixi.service.ReactionService;
+import com.itzixi.utils.PageCursor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -23,10 +40,25 @@ import java.util.stream.Collectors;
 @Service
 public class CommentServiceImpl extends ServiceImpl<CommentMapper, Comment> implements CommentService {
     
-    private final MessageProducerService messageProducerService;
+    /**
+     * 游标分页单页最大条数
+     */
+    private static final int MAX_CURSOR_PAGE_SIZE = 50;
     
-    public CommentServiceImpl(MessageProducerService messageProducerService) {
-        this.messageProducerService = messageProducerService;
+    private final OutboxService outboxService;
+    private final ReactionService reactionService;
+    private final CountEstimateService countEstimateService;
+    private final CacheService cacheService;
+    private final ObjectMapper objectMapper;
+    
+    public CommentServiceImpl(OutboxService outboxService, ReactionService reactionService,
+                              CountEstimateService countEstimateService, CacheService cacheService,
+                              ObjectMapper objectMapper) {
+        this.outboxService = outboxService;
+        this.reactionService = reactionService;
+        this.countEstimateService = countEstimateService;
+        this.cacheService = cacheService;
+        this.objectMapper = objectMapper;
     }
     
     @Override
@@ -42,6 +74,29 @@ public class CommentServiceImpl extends ServiceImpl<CommentMapper, Comment> impl
         return buildCommentTree(comments);
     }
     
+    /**
+     * 缓存序列化后的 JSON，热门文章的评论树只在失效后查询和序列化一次
+     */
+    @Override
+    @Cacheable(value = "comment", key = "'tree:' + #articleId", sync = true)
+    public String getCommentTreeJson(Long articleId) {
+        try {
+            return objectMapper.writeValueAsString(getCommentsByArticleId(articleId));
+        } catch (JsonProcessingException e) {
+            throw new BusinessException(500, "评论序列化失败", e);
+        }
+    }
+    
+    @Override
+    public CursorPage<Comment> getCommentThreads(Long articleId, String cursor, int size) {
+        return pageChildren(articleId, null, cursor, size);
+    }
+    
+    @Override
+    public CursorPage<Comment> getCommentReplies(Long parentId, String cursor, int size) {
+        return pageChildren(null, parentId, cursor, size);
+    }
+    
     @Override
     public IPage<Comment> getCommentPage(Page<Comment> page, Long articleId, Integer status) {
         LambdaQueryWrapper<Comment> wrapper = new LambdaQueryWrapper<>();
@@ -53,8 +108,71 @@ public class CommentServiceImpl extends ServiceImpl<CommentMapper, Comment> impl
             wrapper.eq(Comment::getStatus, status);
         }
         
-        wrapper.orderByDesc(Comment::getCreatedAt);
-        return this.page(page, wrapper);
+        wrapper.orderByDesc(Comment::getCreatedAt).orderByDesc(Comment::getId);
+        // 总数用缓存的估算值，不再每次翻页都 COUNT
+        page.setSearchCount(false);
+        IPage<Comment> result = this.page(page, wrapper);
+        result.setTotal(countComments(articleId, status));
+        return result;
+    }
+    
+    @Override
+    public CursorPage<Comment> getCommentCursorPage(String cursor, int size, Long articleId, Integer status, boolean withTotal) {
+        int limit = Math.min(Math.max(size, 1), MAX_CURSOR_PAGE_SIZE);
+        List<Comment> comments;
+        if (StringUtils.hasText(cursor)) {
+            PageCursor after = PageCursor.decode(cursor, "comment", 2);
+            comments = baseMapper.selectCommentsAfter(articleId, status, after.getDateTime(0), after.getLong(1), limit + 1);
+        } else {
+            comments = baseMapper.selectCommentsAfter(articleId, status, null, null, limit + 1);
+        }
+        
+        // 多查一条判断是否还有下一页
+        String nextCursor = null;
+        if (comments.size() > limit) {
+            comments = comments.subList(0, limit);
+            Comment last = comments.get(limit - 1);
+            nextCursor = PageCursor.encode("comment", last.getCreatedAt(), last.getId());
+        }
+        return CursorPage.of(comments, nextCursor, withTotal ? countComments(articleId, status) : null);
+    }
+    
+    private long countComments(Long articleId, Integer status) {
+        return countEstimateService.estimate("stats", "comment:" + articleId + ":" + status, () -> {
+            LambdaQueryWrapper<Comment> wrapper = new LambdaQueryWrapper<>();
+            wrapper.eq(articleId != null, Comment::getArticleId, articleId)
+                    .eq(status != null, Comment::getStatus, status);
+            return this.count(wrapper);
+        });
+    }
+    
+    /**
+     * 游标分页查询直接子评论，回复数用一条分组查询批量统计
+     */
+    private CursorPage<Comment> pageChildren(Long articleId, Long parentId, String cursor, int size) {
+        int limit = Math.min(Math.max(size, 1), MAX_CURSOR_PAGE_SIZE);
+        List<Comment> comments;
+        if (StringUtils.hasText(cursor)) {
+            PageCursor after = PageCursor.decode(cursor, "thread", 2);
+            comments = baseMapper.selectChildrenAfter(articleId, parentId, after.getDateTime(0), after.getLong(1), limit + 1);
+        } else {
+            comments = baseMapper.selectChildrenAfter(articleId, parentId, null, null, limit + 1);
+        }
+        
+        String nextCursor = null;
+        if (comments.size() > limit) {
+            comments = comments.subList(0, limit);
+            Comment last = comments.get(limit - 1);
+            nextCursor = PageCursor.encode("thread", last.getCreatedAt(), last.getId());
+        }
+        
+        if (!comments.isEmpty()) {
+            Map<Long, Long> replyCounts = baseMapper.countRepliesByParentIds(
+                            comments.stream().map(Comment::getId).toList()).stream()
+                    .collect(Collectors.toMap(CommentReplyCount::getParentId, CommentReplyCount::getReplyCount));
+            comments.forEach(comment -> comment.setReplyCount(replyCounts.getOrDefault(comment.getId(), 0L)));
+        }
+        return CursorPage.of(comments, nextCursor, null);
     }
     
     @Override
@@ -71,9 +189,9 @@ public class CommentServiceImpl extends ServiceImpl<CommentMapper, Comment> impl
         // 保存评论
         this.save(comment);
         
-        // 异步发送评论发布消息
-        asyncSendCommentPublishMessage(comment.getId(), comment.getArticleId(), 
-                comment.getUserId(), "评论发布: " + comment.getContent());
+        // 评论发布消息与评论在同一事务中写入发件箱
+        enqueueCommentMessage(RabbitMQConfig.COMMENT_PUBLISH_ROUTING_KEY, "PUBLISH", comment.getId(),
+                comment.getArticleId(), comment.getUserId(), "评论发布: " + comment.getContent());
         
         log.info("创建评论成功，ID: {}", comment.getId());
         return comment;
@@ -92,6 +210,7 @@ public class CommentServiceImpl extends ServiceImpl<CommentMapper, Comment> impl
         boolean result = this.updateById(comment);
         
         if (result) {
+            evictCommentTreeCache(comment.getArticleId());
             log.info("删除评论成功，ID: {}", id);
         }
         return result;
@@ -109,6 +228,8 @@ public class CommentServiceImpl extends ServiceImpl<CommentMapper, Comment> impl
         boolean result = this.updateById(comment);
         
         if (result) {
+            enqueueCommentMessage(RabbitMQConfig.COMMENT_APPROVE_ROUTING_KEY, "APPROVE", id,
+                    comment.getArticleId(), comment.getUserId(), "评论审核通过");
             log.info("审核通过评论，ID: {}", id);
         }
         return result;
@@ -126,46 +247,32 @@ public class CommentServiceImpl extends ServiceImpl<CommentMapper, Comment> impl
         boolean result = this.updateById(comment);
         
         if (result) {
+            enqueueCommentMessage(RabbitMQConfig.COMMENT_APPROVE_ROUTING_KEY, "APPROVE", id,
+                    comment.getArticleId(), comment.getUserId(), "评论审核拒绝");
             log.info("拒绝评论，ID: {}", id);
         }
         return result;
     }
     
     @Override
-    @Transactional
-    public boolean likeComment(Long id) {
-        Comment comment = this.getById(id);
-        if (comment == null) {
+    public boolean likeComment(Long id, Long userId) {
+        // 评论是否存在走缓存，不存在的评论不产生点赞记录
+        if (!cacheService.commentExists(id)) {
             return false;
         }
-        
-        // 增加点赞数，防止空指针异常
-        Long currentLikes = comment.getLikes();
-        comment.setLikes((currentLikes == null ? 0 : currentLikes) + 1);
-        boolean result = this.updateById(comment);
-        
+        // 点赞去重在 Redis 中完成，点赞数由 ReactionService 批量落库
+        boolean result = reactionService.like(ReactionService.Target.COMMENT, id, userId);
         if (result) {
-            log.info("点赞评论成功，ID: {}", id);
+            log.debug("点赞评论成功，ID: {}, 用户: {}", id, userId);
         }
         return result;
     }
     
     @Override
-    @Transactional
-    public boolean unlikeComment(Long id) {
-        Comment comment = this.getById(id);
-        if (comment == null) {
-            return false;
-        }
-        
-        // 减少点赞数，但不能小于0，防止空指针异常
-        Long currentLikes = comment.getLikes();
-        long likes = Math.max(0, (currentLikes == null ? 0 : currentLikes) - 1);
-        comment.setLikes(likes);
-        boolean result = this.updateById(comment);
-        
+    public boolean unlikeComment(Long id, Long userId) {
+        boolean result = reactionService.unlike(ReactionService.Target.COMMENT, id, userId);
         if (result) {
-            log.info("取消点赞评论成功，ID: {}", id);
+            log.debug("取消点赞评论成功，ID: {}, 用户: {}", id, userId);
         }
         return result;
     }
@@ -182,59 +289,52 @@ public class CommentServiceImpl extends ServiceImpl<CommentMapper, Comment> impl
     
     /**
      * 构建评论树结构
+     * 先按ID建立索引，再遍历一次把每条评论挂到父评论下，时间复杂度 O(n)；
+     * 评论已按创建时间排序，各层子评论保持时间顺序。父评论未发布或已删除时其回复不展示
      */
     private List<Comment> buildCommentTree(List<Comment> comments) {
-        // 获取顶级评论（parentId为null的评论）
-        List<Comment> topComments = comments.stream()
-                .filter(comment -> comment.getParentId() == null)
-                .collect(Collectors.toList());
-        
-        // 为每个顶级评论设置子评论
-        for (Comment topComment : topComments) {
-            setChildren(topComment, comments);
+        Map<Long, Comment> commentMap = new HashMap<>(comments.size() * 2);
+        for (Comment comment : comments) {
+            comment.setChildren(new ArrayList<>());
+            commentMap.put(comment.getId(), comment);
         }
         
-        return topComments;
-    }
-    
-    /**
-     * 递归设置子评论
-     */
-    private void setChildren(Comment parent, List<Comment> allComments) {
-        List<Comment> children = allComments.stream()
-                .filter(comment -> parent.getId().equals(comment.getParentId()))
-                .collect(Collectors.toList());
-        
-        // 如果Comment实体有children字段，这里可以设置
-        // parent.setChildren(children);
-        
-        // 递归处理子评论
-        for (Comment child : children) {
-            setChildren(child, allComments);
+        List<Comment> topComments = new ArrayList<>();
+        for (Comment comment : comments) {
+            if (comment.getParentId() == null) {
+                topComments.add(comment);
+            } else {
+                Comment parent = commentMap.get(comment.getParentId());
+                if (parent != null) {
+                    parent.getChildren().add(comment);
+                }
+            }
         }
+        return topComments;
     }
     
     /**
-     * 异步发送评论发布消息
+     * 在事务提交后清除评论树缓存，避免并发读取在提交前把旧数据重新写入缓存
      */
-    @Async("commentTaskExecutor")
-    public void asyncSendCommentPublishMessage(Long commentId, Long articleId, Long userId, String content) {
-        try {
-            messageProducerService.sendCommentPublishMessage(commentId, articleId, userId, content);
-        } catch (Exception e) {
-            log.error("异步发送评论发布消息失败: commentId={}, error={}", commentId, e.getMessage(), e);
+    private void evictCommentTreeCache(Long articleId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cacheService.evictCommentTreeCache(articleId);
+            return;
         }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cacheService.evictCommentTreeCache(articleId);
+            }
+        });
     }
     
     /**
-     * 异步发送评论审核消息
+     * 在当前事务中登记评论消息
      */
-    @Async("commentTaskExecutor")
-    public void asyncSendCommentApproveMessage(Long commentId, Long articleId, Long userId, String content) {
-        try {
-            messageProducerService.sendCommentApproveMessage(commentId, articleId, userId, content);
-        } catch (Exception e) {
-            log.error("异步发送评论审核消息失败: commentId={}, error={}", commentId, e.getMessage(), e);
-        }
+    private void enqueueCommentMessage(String routingKey, String operationType, Long commentId,
+                                       Long articleId, Long userId, String content) {
+        outboxService.enqueue(RabbitMQConfig.COMMENT_EXCHANGE, routingKey,
+                CommentMessage.of(commentId, articleId, operationType, userId, content));
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,286 @@
+package com.itzixi.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.itzixi.bean.ChatRecord;
+import com.itzixi.mapper.ChatRecordMapper;
+import com.itzixi.service.ConversationMemoryService;
+import com.itzixi.service.InferenceScheduler;
+import com.itzixi.utils.ChatTypeEnum;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @ClassName ConversationMemoryServiceImpl
+ * @Description 对话记忆：内存热数据 + 聊天记录表冷加载。
+ * 窗口按估算的 token 数限制，构建提示词只遍历窗口，与历史总长度无关；
+ * 移出窗口的对话在后台调用模型合并进摘要，失败时退化为保留用户问题要点
+ **/
+@Slf4j
+@Service
+public class ConversationMemoryServiceImpl implements ConversationMemoryService {
+
+    /**
+     * 摘要任务在推理调度器中的名称
+     */
+    private static final String SUMMARY_TASK = "memory-summary";
+
+    @Resource
+    private ChatRecordMapper chatRecordMapper;
+
+    @Resource
+    private OllamaChatModel ollamaChatModel;
+
+    @Resource
+    private InferenceScheduler inferenceScheduler;
+
+    /**
+     * 历史对话窗口的 token 预算
+     */
+    @Value("${ai.memory.max-tokens:1500}")
+    private int maxTokens;
+
+    /**
+     * 摘要的最大字数
+     */
+    @Value("${ai.memory.summary-max-chars:300}")
+    private int summaryMaxChars;
+
+    /**
+     * 冷加载时读取的聊天记录条数
+     */
+    @Value("${ai.memory.load-records:40}")
+    private int loadRecords;
+
+    /**
+     * 是否调用模型生成摘要，关闭时只保留用户问题要点
+     */
+    @Value("${ai.memory.summarize:true}")
+    private boolean summarize;
+
+    private final Cache<String, Conversation> conversations;
+
+    public ConversationMemoryServiceImpl(@Value("${ai.memory.max-users:10000}") long maxUsers,
+                                         @Value("${ai.memory.idle-ttl:30m}") Duration idleTtl) {
+        this.conversations = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterAccess(idleTtl)
+                .build();
+    }
+
+    @Override
+    public List<Message> buildMessages(String userName, String question) {
+        Conversation conversation = conversations.get(userName, this::load);
+        List<Message> messages = new ArrayList<>();
+        synchronized (conversation) {
+            if (conversation.summary != null) {
+                messages.add(new SystemMessage("以下是与该用户之前对话的摘要：" + conversation.summary));
+            }
+            for (Turn turn : conversation.window) {
+                messages.add(turn.bot ? new AssistantMessage(turn.content) : new UserMessage(turn.content));
+            }
+        }
+        messages.add(new UserMessage(question));
+        return messages;
+    }
+
+    @Override
+    public void appendTurn(String userName, String question, String answer) {
+        Conversation conversation = conversations.getIfPresent(userName);
+        if (conversation == null) {
+            // 已被淘汰，下次提问时从聊天记录表重新加载
+            return;
+        }
+        synchronized (conversation) {
+            conversation.add(new Turn(false, question));
+            conversation.add(new Turn(true, answer));
+        }
+        scheduleSummary(userName, conversation);
+    }
+
+    /**
+     * 从聊天记录表加载最近的记录，超出预算的部分进入摘要
+     */
+    private Conversation load(String userName) {
+        Conversation conversation = new Conversation(maxTokens);
+        List<ChatRecord> records;
+        try {
+            records = chatRecordMapper.selectRecentByFamilyMember(userName, loadRecords);
+        } catch (Exception e) {
+            log.warn("加载对话记忆失败: userName={}, error={}", userName, e.getMessage());
+            return conversation;
+        }
+        Collections.reverse(records);
+        for (ChatRecord record : records) {
+            if (record.getContent() != null) {
+                conversation.add(new Turn(ChatTypeEnum.BOT.type.equals(record.getChatType()), record.getContent()));
+            }
+        }
+        scheduleSummary(userName, conversation);
+        return conversation;
+    }
+
+    private void scheduleSummary(String userName, Conversation conversation) {
+        synchronized (conversation) {
+            if (conversation.evicted.isEmpty() || conversation.summarizing) {
+                return;
+            }
+            conversation.summarizing = true;
+        }
+        summarize(userName, conversation);
+    }
+
+    /**
+     * 把移出窗口的对话合并进摘要，期间新移出的对话留到下一次合并。
+     * 模型调用经推理调度器以后台优先级排队，不与用户提问争抢名额，等待期间不占用线程
+     */
+    private void summarize(String userName, Conversation conversation) {
+        String previous;
+        List<Turn> batch;
+        synchronized (conversation) {
+            previous = conversation.summary;
+            batch = new ArrayList<>(conversation.evicted);
+        }
+        Mono<String> modelSummary = summarize
+                ? callSummaryModel(previous, batch).onErrorResume(e -> {
+                    log.warn("生成对话摘要失败，保留问题要点: userName={}, error={}", userName, e.getMessage());
+                    return Mono.empty();
+                })
+                : Mono.empty();
+        modelSummary
+                .filter(summary -> !summary.isBlank())
+                .switchIfEmpty(Mono.fromCallable(() -> extractiveSummary(previous, batch)))
+                .subscribe(summary -> {
+                    boolean more;
+                    synchronized (conversation) {
+                        String text = truncate(summary.trim(), summaryMaxChars);
+                        if (!text.isEmpty()) {
+                            conversation.summary = text;
+                        }
+                        conversation.evicted.subList(0, batch.size()).clear();
+                        conversation.summarizing = false;
+                        more = !conversation.evicted.isEmpty();
+                    }
+                    if (more) {
+                        scheduleSummary(userName, conversation);
+                    }
+                });
+    }
+
+    private Mono<String> callSummaryModel(String previous, List<Turn> batch) {
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("请把下面的医患对话合并成不超过").append(summaryMaxChars)
+                .append("字的摘要，保留症状、病史、用药和建议等关键信息，只输出摘要。\n");
+        if (previous != null) {
+            prompt.append("已有摘要：").append(previous).append('\n');
+        }
+        prompt.append("新的对话：\n");
+        for (Turn turn : batch) {
+            prompt.append(turn.bot ? "医生：" : "用户：").append(turn.content).append('\n');
+        }
+        return inferenceScheduler.scheduleBackground(SUMMARY_TASK,
+                        () -> Mono.fromCallable(() -> ollamaChatModel.call(prompt.toString()))
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .flux())
+                .next();
+    }
+
+    /**
+     * 不调用模型的摘要：在已有摘要后追加用户问题，超长时保留最新的部分
+     */
+    private String extractiveSummary(String previous, List<Turn> batch) {
+        StringBuilder summary = new StringBuilder(previous == null ? "" : previous);
+        for (Turn turn : batch) {
+            if (!turn.bot) {
+                summary.append(summary.isEmpty() ? "" : "；").append("用户曾问：").append(truncate(turn.content, 60));
+            }
+        }
+        int overflow = summary.length() - summaryMaxChars;
+        return overflow > 0 ? summary.substring(overflow) : summary.toString();
+    }
+
+    private static String truncate(String text, int maxChars) {
+        return text.length() <= maxChars ? text : text.substring(0, maxChars);
+    }
+
+    /**
+     * 估算 token 数：中日韩字符按 1 个，其他字符按 4 个字符 1 个
+     */
+    static int estimateTokens(String text) {
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.UnicodeScript.of(text.charAt(i)) == Character.UnicodeScript.HAN) {
+                cjk++;
+            } else {
+                other++;
+            }
+        }
+        return cjk + (other + 3) / 4;
+    }
+
+    private static final class Turn {
+
+        private final boolean bot;
+
+        private final String content;
+
+        private final int tokens;
+
+        private Turn(boolean bot, String content) {
+            this.bot = bot;
+            this.content = content;
+            this.tokens = estimateTokens(content);
+        }
+    }
+
+    /**
+     * 单个用户的对话窗口，访问时对实例加锁
+     */
+    private static final class Conversation {
+
+        private final int maxTokens;
+
+        private final ArrayDeque<Turn> window = new ArrayDeque<>();
+
+        /**
+         * 移出窗口、等待合并进摘要的对话
+         */
+        private final List<Turn> evicted = new ArrayList<>();
+
+        private int tokens;
+
+        private String summary;
+
+        private boolean summarizing;
+
+        private Conversation(int maxTokens) {
+            this.maxTokens = maxTokens;
+        }
+
+        private void add(Turn turn) {
+            window.addLast(turn);
+            tokens += turn.tokens;
+            while (tokens > maxTokens && !window.isEmpty()) {
+                Turn removed = window.pollFirst();
+                tokens -= removed.tokens;
+                evicted.add(removed);
+            }
+        }
+    }
+}
@@ -1,20 +1,37 @@
 package com.itzixi.service.impl;
 
+import com.itzixi.common.exception.BusinessException;
+import com.itzixi.service.AiResponseCache;
 import com.itzixi.service.ChatRecordService;
+import com.itzixi.service.ConversationMemoryService;
+import com.itzixi.service.InferenceScheduler;
 import com.itzixi.service.OllamaService;
 import com.itzixi.utils.ChatTypeEnum;
 import com.itzixi.utils.SSEMsgType;
 import com.itzixi.utils.SSEServer;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 /**
@@ -33,9 +50,80 @@ public class OllamaServiceImpl implements OllamaService {
     @Resource
     private ChatRecordService chatRecordService;
 
+    @Resource
+    private SSEServer sseServer;
+
+    @Resource(name = "chatTaskExecutor")
+    private Executor chatTaskExecutor;
+
+    @Resource
+    private InferenceScheduler inferenceScheduler;
+
+    @Resource
+    private AiResponseCache aiResponseCache;
+
+    @Resource
+    private ConversationMemoryService conversationMemoryService;
+
+    /**
+     * 缓存命中时按此长度分段推送，与模型流式输出走同一条 SSE 通道
+     */
+    @Value("${ai.cache.replay-chunk-chars:64}")
+    private int cacheReplayChunkChars;
+
+    /**
+     * 未区分用户的调用共用一个排队队列
+     */
+    private static final String ANONYMOUS = "anonymous";
+
+    /**
+     * 多个线程同时通知排队位置时，等待 sink 空闲的最长时间
+     */
+    private static final Duration POSITION_EMIT_TIMEOUT = Duration.ofMillis(100);
+
+    /**
+     * 客户端断开后等待重连的时间，期间重连（包括 Last-Event-ID 续传）不取消生成
+     */
+    @Value("${ai.scheduler.disconnect-grace:10s}")
+    private Duration disconnectGrace;
+
+    /**
+     * 各用户进行中和排队中的对话，客户端断开后统一取消；对话结束后移除，没有对话的用户不保留条目
+     */
+    private final Map<String, Disposable.Composite> activeChats = new ConcurrentHashMap<>();
+
+    /**
+     * 流式回复攒批的最大片段数
+     */
+    @Value("${ai.stream.batch-size:16}")
+    private int streamBatchSize;
+
+    /**
+     * 流式回复攒批的最长等待时间
+     */
+    @Value("${ai.stream.batch-interval:50ms}")
+    private Duration streamBatchInterval;
+
+    @PostConstruct
+    public void init() {
+        sseServer.addDisconnectListener(this::onClientDisconnect);
+    }
+
     @Override
     public Object aiOllamaChat(String msg) {
-        return ollamaChatModel.call(msg);
+        String cached = aiResponseCache.lookup(msg).block();
+        if (cached != null) {
+            return cached;
+        }
+        String answer = inferenceScheduler.schedule(ANONYMOUS,
+                        () -> Mono.fromCallable(() -> ollamaChatModel.call(msg))
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .flux(),
+                        null)
+                .next()
+                .block();
+        aiResponseCache.put(msg, answer);
+        return answer;
     }
 
     @Override
@@ -43,7 +131,8 @@ public class OllamaServiceImpl implements OllamaService {
         // 代码执行到此处的时间  22:00:00 - 开始时间
 
         Prompt prompt = new Prompt(new UserMessage(msg));
-        Flux<ChatResponse> streamResponse = ollamaChatModel.stream(prompt);
+        Flux<ChatResponse> streamResponse = inferenceScheduler.schedule(ANONYMOUS,
+                () -> ollamaChatModel.stream(prompt), null);
 
         // 代码执行到此处的时间  22:01:30 - 结束时间
         // 两个时间的时间差为1分30秒，则总计90秒
@@ -54,7 +143,8 @@ public class OllamaServiceImpl implements OllamaService {
     @Override
     public List<String> aiOllamaStream2(String msg) {
         Prompt prompt = new Prompt(new UserMessage(msg));
-        Flux<ChatResponse> streamResponse = ollamaChatModel.stream(prompt);
+        Flux<ChatResponse> streamResponse = inferenceScheduler.schedule(ANONYMOUS,
+                () -> ollamaChatModel.stream(prompt), null);
 
         List<String> list = streamResponse.toStream().map(chatResponse -> {
             String content = chatResponse.getResult().getOutput().getText();
@@ -66,33 +156,162 @@ public class OllamaServiceImpl implements OllamaService {
         return list;
     }
 
+    /**
+     * 流式回复全程不阻塞线程：订阅后立即返回，释放请求线程；
+     * 提示词带上对话记忆（摘要和按 token 预算截取的最近对话）；
+     * 没有历史上下文时，重复的问题直接推送缓存的回复；未命中时经推理调度器排队，排队位置通过 SSE 推送，
+     * 客户端断开且未在宽限期内重连时取消；模型输出按数量和时间攒批后推送，
+     * 回复完成后异步保存聊天记录，完整生成的回复写入缓存
+     */
     @Override
     public void doDoctorStreamV3(String userName, String message) {
 
-        // 保存用户发送的记录到数据库
-        chatRecordService.saveChatRecord(userName, message, ChatTypeEnum.USER);
+        StringBuilder answer = new StringBuilder();
+        AtomicBoolean fromCache = new AtomicBoolean(false);
+        AtomicBoolean withHistory = new AtomicBoolean(false);
+        AtomicBoolean failed = new AtomicBoolean(false);
 
-        Prompt prompt = new Prompt(new UserMessage(message));
-        Flux<ChatResponse> streamResponse = ollamaChatModel.stream(prompt);
+        AtomicReference<Disposable> subscription = new AtomicReference<>();
 
-        List<String> list = streamResponse.toStream().map(chatResponse -> {
-            String content = chatResponse.getResult().getOutput().getText();
+        Disposable disposable = Mono.fromCallable(() -> conversationMemoryService.buildMessages(userName, message))
+                // 对话记忆冷加载需要查询数据库，不占用请求线程
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnNext(messages -> {
+                    // 加载记忆之后再保存用户发送的记录，避免本轮问题被当作历史加载
+                    chatTaskExecutor.execute(() -> chatRecordService.saveChatRecord(userName, message, ChatTypeEnum.USER));
+                })
+                .flatMapMany(messages -> {
+                    // 有历史上下文时回复依赖上下文，不使用回复缓存
+                    withHistory.set(messages.size() > 1);
+                    Mono<String> cached = withHistory.get() ? Mono.empty() : aiResponseCache.lookup(message);
+                    return cached
+                            .doOnNext(value -> fromCache.set(true))
+                            .flatMapMany(this::splitCachedAnswer)
+                            .switchIfEmpty(Flux.defer(() -> generate(userName, new Prompt(messages))));
+                })
+                // 推送涉及 Redis 调用，切换到弹性线程，不占用模型客户端的 IO 线程
+                .publishOn(Schedulers.boundedElastic())
+                .doOnNext(chunk -> {
+                    answer.append(chunk);
+                    sseServer.sendMessage(userName, chunk, SSEMsgType.ADD);
+                })
+                .doOnError(e -> {
+                    failed.set(true);
+                    if (e instanceof BusinessException) {
+                        // 排队已满，提示用户稍后再试
+                        sseServer.sendMessage(userName, e.getMessage(), SSEMsgType.MESSAGE);
+                    } else {
+                        log.error("AI流式回复失败: userName={}, error={}", userName, e.getMessage(), e);
+                    }
+                })
+                .onErrorResume(e -> Flux.empty())
+                .doOnComplete(() -> {
+                    sseServer.sendMessage(userName, "GG", SSEMsgType.FINISH);
 
-            SSEServer.sendMessage(userName, content, SSEMsgType.ADD);
+                    // 保存AI回复的记录到数据库，出错时保存已生成的部分
+                    if (!answer.isEmpty()) {
+                        String result = answer.toString();
+                        conversationMemoryService.appendTurn(userName, message, result);
+                        boolean cacheable = !fromCache.get() && !withHistory.get() && !failed.get();
+                        chatTaskExecutor.execute(() -> {
+                            chatRecordService.saveChatRecord(userName, result, ChatTypeEnum.BOT);
+                            if (cacheable) {
+                                aiResponseCache.put(message, result);
+                            }
+                        });
+                    }
+                })
+                .doFinally(signal -> {
+                    Disposable self = subscription.get();
+                    if (self != null) {
+                        unregisterChat(userName, self);
+                    }
+                })
+                .subscribe();
+        subscription.set(disposable);
+        registerChat(userName, disposable);
+    }
 
-            log.info(content);
-            return content;
-        }).collect(Collectors.toList());
+    /**
+     * 登记进行中的对话。已被断开取消的集合不再复用，否则新对话加入时会被立即取消
+     */
+    private void registerChat(String userName, Disposable disposable) {
+        activeChats.compute(userName, (key, chats) -> {
+            if (chats == null || chats.isDisposed()) {
+                chats = Disposables.composite();
+            }
+            // 对话已结束时 doFinally 早于登记执行，不再加入
+            if (!disposable.isDisposed()) {
+                chats.add(disposable);
+            }
+            return chats.size() == 0 ? null : chats;
+        });
+    }
 
-        SSEServer.sendMessage(userName, "GG", SSEMsgType.FINISH);
+    /**
+     * 对话结束后移除，用户没有其他对话时删除条目
+     */
+    private void unregisterChat(String userName, Disposable disposable) {
+        activeChats.computeIfPresent(userName, (key, chats) -> {
+            chats.remove(disposable);
+            return chats.isDisposed() || chats.size() == 0 ? null : chats;
+        });
+    }
 
-        // 保存AI回复的记录到数据库
-        String htmlResult = "";
-        for (String s : list) {
-            htmlResult += s;
-        }
-        chatRecordService.saveChatRecord(userName, htmlResult, ChatTypeEnum.BOT);
+    /**
+     * 经推理调度器调用模型，输出按数量和时间攒批，减少 SSE 写入和节点间转发次数；
+     * 排队位置经单个串行的 sink 按通知顺序推送，开始生成（位置 0）之后不再推送位置
+     */
+    private Flux<String> generate(String userName, Prompt prompt) {
+        Sinks.Many<Integer> positions = Sinks.many().unicast().onBackpressureBuffer();
+        positions.asFlux()
+                .takeUntil(position -> position == 0)
+                .distinctUntilChanged()
+                // 推送涉及 Redis 调用，不占用调度器通知线程；publishOn 的单个 worker 保证顺序
+                .publishOn(Schedulers.boundedElastic())
+                .subscribe(position -> sseServer.sendMessage(userName, String.valueOf(position), SSEMsgType.QUEUE));
+        return inferenceScheduler.schedule(userName,
+                        () -> ollamaChatModel.stream(prompt),
+                        position -> positions.emitNext(position, Sinks.EmitFailureHandler.busyLooping(POSITION_EMIT_TIMEOUT)))
+                .doFinally(signal -> positions.tryEmitComplete())
+                .map(chatResponse -> {
+                    String content = chatResponse.getResult() != null && chatResponse.getResult().getOutput() != null
+                            ? chatResponse.getResult().getOutput().getText() : null;
+                    return content != null ? content : "";
+                })
+                .filter(content -> !content.isEmpty())
+                .bufferTimeout(streamBatchSize, streamBatchInterval)
+                .map(contents -> String.join("", contents));
+    }
+
+    /**
+     * 缓存的回复按固定长度分段，前端按流式回复同样处理
+     */
+    private Flux<String> splitCachedAnswer(String cached) {
+        int size = Math.max(1, cacheReplayChunkChars);
+        return Flux.range(0, (cached.length() + size - 1) / size)
+                .map(i -> cached.substring(i * size, Math.min(cached.length(), (i + 1) * size)));
+    }
 
+    /**
+     * 客户端断开后等待宽限期，仍不在线则取消该用户的对话，释放推理名额
+     */
+    private void onClientDisconnect(String userName) {
+        if (!activeChats.containsKey(userName)) {
+            return;
+        }
+        Mono.delay(disconnectGrace, Schedulers.boundedElastic()).subscribe(tick -> {
+            if (sseServer.isOnline(userName)) {
+                return;
+            }
+            Disposable.Composite chats = activeChats.remove(userName);
+            if (chats != null && chats.size() > 0) {
+                log.info("客户端已断开，取消AI对话: userName={}, 数量={}", userName, chats.size());
+            }
+            if (chats != null) {
+                chats.dispose();
+            }
+        });
     }
 
 }
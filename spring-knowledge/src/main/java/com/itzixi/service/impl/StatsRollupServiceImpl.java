@@ -0,0 +1,147 @@
+package com.itzixi.service.impl;
+
+import com.itzixi.dto.ArticleVisitCount;
+import com.itzixi.dto.KeywordSearchCount;
+import com.itzixi.dto.StatsMessage;
+import com.itzixi.mapper.StatsRollupMapper;
+import com.itzixi.service.StatsRollupService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 统计汇总服务实现
+ * 汇总行按主键排序后写入，多个消费者并发累加同一行时加锁顺序一致，避免死锁
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StatsRollupServiceImpl implements StatsRollupService {
+
+    private static final int MAX_KEYWORD_LENGTH = 100;
+
+    private static final Comparator<VisitKey> VISIT_ORDER = Comparator
+            .comparing(VisitKey::articleId)
+            .thenComparing(VisitKey::minuteAt);
+
+    private static final Comparator<SearchKey> SEARCH_ORDER = Comparator
+            .comparing(SearchKey::keyword)
+            .thenComparing(SearchKey::minuteAt);
+
+    private final StatsRollupMapper statsRollupMapper;
+
+    /**
+     * 单条 INSERT 写入的最大行数
+     */
+    @Value("${stats.rollup.insert-batch-size:500}")
+    private int insertBatchSize;
+
+    @Override
+    @Transactional
+    public void recordVisits(List<StatsMessage> messages) {
+        Map<VisitKey, Long> counts = new TreeMap<>(VISIT_ORDER);
+        for (StatsMessage message : messages) {
+            if (message.getRelatedId() == null) {
+                continue;
+            }
+            counts.merge(new VisitKey(message.getRelatedId(), minuteOf(message)), 1L, Long::sum);
+        }
+        if (counts.isEmpty()) {
+            return;
+        }
+        List<ArticleVisitCount> rows = new ArrayList<>(counts.size());
+        counts.forEach((key, visits) -> rows.add(new ArticleVisitCount(key.articleId(), key.minuteAt(), visits)));
+        for (List<ArticleVisitCount> chunk : partition(rows)) {
+            statsRollupMapper.upsertArticleVisitMinute(chunk);
+        }
+        // 同一文章同一天的多个分钟合并为一行
+        List<ArticleVisitCount> daily = new ArrayList<>();
+        for (ArticleVisitCount row : rows) {
+            ArticleVisitCount last = daily.isEmpty() ? null : daily.get(daily.size() - 1);
+            if (last != null && last.getArticleId().equals(row.getArticleId())
+                    && last.getMinuteAt().toLocalDate().equals(row.getMinuteAt().toLocalDate())) {
+                last.setVisits(last.getVisits() + row.getVisits());
+            } else {
+                daily.add(new ArticleVisitCount(row.getArticleId(), row.getMinuteAt(), row.getVisits()));
+            }
+        }
+        for (List<ArticleVisitCount> chunk : partition(daily)) {
+            statsRollupMapper.upsertArticleVisitDaily(chunk);
+        }
+        log.debug("访问统计汇总写入完成: 消息数={}, 汇总行数={}", messages.size(), rows.size());
+    }
+
+    @Override
+    @Transactional
+    public void recordSearches(List<StatsMessage> messages) {
+        Map<SearchKey, Long> counts = new TreeMap<>(SEARCH_ORDER);
+        for (StatsMessage message : messages) {
+            String keyword = normalizeKeyword(message.getKeyword());
+            if (keyword == null) {
+                continue;
+            }
+            counts.merge(new SearchKey(keyword, minuteOf(message)), 1L, Long::sum);
+        }
+        if (counts.isEmpty()) {
+            return;
+        }
+        List<KeywordSearchCount> rows = new ArrayList<>(counts.size());
+        counts.forEach((key, searches) -> rows.add(new KeywordSearchCount(key.keyword(), key.minuteAt(), searches)));
+        for (List<KeywordSearchCount> chunk : partition(rows)) {
+            statsRollupMapper.upsertKeywordSearchMinute(chunk);
+        }
+        log.debug("搜索统计汇总写入完成: 消息数={}, 汇总行数={}", messages.size(), rows.size());
+    }
+
+    @Override
+    public List<KeywordSearchCount> getTrendingKeywords(int minutes, int limit) {
+        int window = Math.max(1, Math.min(minutes, 7 * 24 * 60));
+        int size = Math.max(1, Math.min(limit, 100));
+        LocalDateTime since = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES).minusMinutes(window);
+        return statsRollupMapper.selectTrendingKeywords(since, size);
+    }
+
+    private static LocalDateTime minuteOf(StatsMessage message) {
+        LocalDateTime time = message.getCreateTime() != null ? message.getCreateTime() : LocalDateTime.now();
+        return time.truncatedTo(ChronoUnit.MINUTES);
+    }
+
+    /**
+     * 关键词去掉首尾空白并转小写，超长截断，空关键词返回 null
+     */
+    private static String normalizeKeyword(String keyword) {
+        if (keyword == null) {
+            return null;
+        }
+        String normalized = keyword.trim().toLowerCase();
+        if (normalized.isEmpty()) {
+            return null;
+        }
+        return normalized.length() > MAX_KEYWORD_LENGTH ? normalized.substring(0, MAX_KEYWORD_LENGTH) : normalized;
+    }
+
+    private <T> List<List<T>> partition(List<T> rows) {
+        int size = Math.max(1, insertBatchSize);
+        List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i += size) {
+            chunks.add(rows.subList(i, Math.min(rows.size(), i + size)));
+        }
+        return chunks;
+    }
+
+    private record VisitKey(Long articleId, LocalDateTime minuteAt) {
+    }
+
+    private record SearchKey(String keyword, LocalDateTime minuteAt) {
+    }
+}
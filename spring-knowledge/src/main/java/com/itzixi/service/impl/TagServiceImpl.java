@@ -4,14 +4,28 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.itzixi.entity.Tag;
 import com.itzixi.mapper.TagMapper;
+import com.itzixi.service.CacheService;
 import com.itzixi.service.TagService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * 标签服务实现类
@@ -20,9 +34,17 @@ import java.util.List;
 @Service
 public class TagServiceImpl extends ServiceImpl<TagMapper, Tag> implements TagService {
     
+    /**
+     * 新建标签的默认颜色
+     */
+    private static final String DEFAULT_COLOR = "#6B7280";
+    
     @Autowired
     private JdbcTemplate jdbcTemplate;
     
+    @Autowired
+    private CacheService cacheService;
+    
     @Override
     public List<Tag> getAllTags() {
         return baseMapper.selectList(new QueryWrapper<Tag>().orderByDesc("article_count"));
@@ -34,6 +56,7 @@ public class TagServiceImpl extends ServiceImpl<TagMapper, Tag> implements TagSe
     }
     
     @Override
+    @Cacheable(value = "tag", key = "#limit", sync = true)
     public List<Tag> getPopularTags(Integer limit) {
         return baseMapper.selectPopularTags(limit);
     }
@@ -58,7 +81,7 @@ public class TagServiceImpl extends ServiceImpl<TagMapper, Tag> implements TagSe
         // 创建新标签
         Tag tag = new Tag();
         tag.setName(name);
-        tag.setColor(color != null ? color : "#6B7280"); // 默认颜色
+        tag.setColor(color != null ? color : DEFAULT_COLOR);
         tag.setHeat(0L);
         tag.setArticleCount(0L);
         
@@ -66,48 +89,121 @@ public class TagServiceImpl extends ServiceImpl<TagMapper, Tag> implements TagSe
         return tag;
     }
     
+    /**
+     * 批量关联：语句数与标签个数无关
+     */
     @Override
     @Transactional
     public void associateTagsWithArticle(Long articleId, List<String> tagNames) {
-        for (String tagName : tagNames) {
-            // 创建或获取标签
-            Tag tag = createOrGetTag(tagName, null);
-            
-            // 检查关联是否已存在
-            String checkSql = "SELECT COUNT(*) FROM article_tag WHERE article_id = ? AND tag_id = ?";
-            Integer count = jdbcTemplate.queryForObject(checkSql, Integer.class, articleId, tag.getId());
-            
-            if (count == 0) {
-                // 创建文章-标签关联
-                String insertSql = "INSERT INTO article_tag (article_id, tag_id) VALUES (?, ?)";
-                jdbcTemplate.update(insertSql, articleId, tag.getId());
-                
-                // 增加标签的文章数量
-                tag.incrementArticleCount();
-                tag.incrementHeat();
-                baseMapper.updateById(tag);
-            }
-        }
+        Set<Long> added = resolveTagIds(tagNames);
+        added.removeAll(baseMapper.selectTagIdsByArticleId(articleId));
+        applyChanges(articleId, added, Set.of());
     }
     
     @Override
     @Transactional
     public void removeTagsFromArticle(Long articleId) {
-        // 获取文章的所有标签
-        List<Tag> tags = getTagsByArticleId(articleId);
+        List<Long> tagIds = baseMapper.selectTagIdsByArticleId(articleId);
+        if (tagIds.isEmpty()) {
+            return;
+        }
+        int deleted = baseMapper.deleteArticleTags(articleId, null);
+        Map<Long, Integer> deltas = new HashMap<>();
+        Set<Long> recount = new HashSet<>();
+        collectDeltas(new HashSet<>(tagIds), deleted, -1, deltas, recount);
+        adjustArticleCounts(deltas, recount);
+        evictTagCacheAfterCommit();
+    }
+    
+    @Override
+    @Transactional
+    public void syncArticleTags(Long articleId, List<String> tagNames) {
+        Set<Long> target = resolveTagIds(tagNames);
+        Set<Long> current = new HashSet<>(baseMapper.selectTagIdsByArticleId(articleId));
         
-        // 删除关联关系
-        String deleteSql = "DELETE FROM article_tag WHERE article_id = ?";
-        jdbcTemplate.update(deleteSql, articleId);
+        Set<Long> added = new HashSet<>(target);
+        added.removeAll(current);
+        Set<Long> removed = new HashSet<>(current);
+        removed.removeAll(target);
+        applyChanges(articleId, added, removed);
+    }
+    
+    /**
+     * 标签名转为标签ID，不存在的标签用一条 INSERT IGNORE 批量创建
+     */
+    private Set<Long> resolveTagIds(List<String> tagNames) {
+        Set<String> names = new LinkedHashSet<>();
+        if (tagNames != null) {
+            for (String tagName : tagNames) {
+                if (StringUtils.hasText(tagName)) {
+                    names.add(tagName.trim());
+                }
+            }
+        }
+        if (names.isEmpty()) {
+            return new HashSet<>();
+        }
         
-        // 减少标签的文章数量
-        for (Tag tag : tags) {
-            tag.decrementArticleCount();
-            baseMapper.updateById(tag);
+        List<Tag> tags = new ArrayList<>(baseMapper.selectByNames(names));
+        // 标签名比较与数据库默认排序规则一致，不区分大小写
+        Set<String> existing = tags.stream()
+                .map(tag -> tag.getName().toLowerCase(Locale.ROOT))
+                .collect(Collectors.toSet());
+        List<String> missing = names.stream()
+                .filter(name -> !existing.contains(name.toLowerCase(Locale.ROOT)))
+                .toList();
+        if (!missing.isEmpty()) {
+            baseMapper.insertIgnoreTags(missing, DEFAULT_COLOR);
+            tags.addAll(baseMapper.selectByNames(missing));
+        }
+        return tags.stream().map(Tag::getId).collect(Collectors.toCollection(HashSet::new));
+    }
+    
+    /**
+     * 写入关联变化，并用一条语句调整所有涉及标签的文章数
+     */
+    private void applyChanges(Long articleId, Set<Long> added, Set<Long> removed) {
+        if (added.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> deltas = new HashMap<>();
+        Set<Long> recount = new HashSet<>();
+        if (!removed.isEmpty()) {
+            int deleted = baseMapper.deleteArticleTags(articleId, removed);
+            collectDeltas(removed, deleted, -1, deltas, recount);
+        }
+        if (!added.isEmpty()) {
+            int inserted = baseMapper.insertIgnoreArticleTags(articleId, added);
+            collectDeltas(added, inserted, 1, deltas, recount);
+        }
+        adjustArticleCounts(deltas, recount);
+        evictTagCacheAfterCommit();
+    }
+    
+    /**
+     * 按语句实际影响的行数计算文章数增量：全部生效时逐个加减；部分生效说明并发请求已改动了其中的关联，
+     * 无法区分是哪几个，这些标签改为按关联表重新统计
+     */
+    private void collectDeltas(Set<Long> tagIds, int affected, int delta,
+                               Map<Long, Integer> deltas, Set<Long> recount) {
+        if (affected == tagIds.size()) {
+            tagIds.forEach(tagId -> deltas.put(tagId, delta));
+        } else if (affected > 0) {
+            recount.addAll(tagIds);
+        }
+    }
+    
+    private void adjustArticleCounts(Map<Long, Integer> deltas, Set<Long> recount) {
+        if (!deltas.isEmpty()) {
+            baseMapper.batchAdjustArticleCount(deltas);
+        }
+        if (!recount.isEmpty()) {
+            baseMapper.recountArticleCount(recount);
         }
     }
     
     @Override
+    @CacheEvict(value = "tag", allEntries = true)
     public Tag updateTag(Tag tag) {
         baseMapper.updateById(tag);
         return tag;
@@ -124,6 +220,27 @@ public class TagServiceImpl extends ServiceImpl<TagMapper, Tag> implements TagSe
             throw new RuntimeException("该标签下存在关联文章，无法删除");
         }
         
-        return baseMapper.deleteById(id) > 0;
+        boolean deleted = baseMapper.deleteById(id) > 0;
+        if (deleted) {
+            evictTagCacheAfterCommit();
+        }
+        return deleted;
+    }
+    
+    /**
+     * 文章数在事务中调整，热门标签缓存在提交后清除，
+     * 避免外层文章事务提交前的并发读取把旧的文章数重新写入缓存
+     */
+    private void evictTagCacheAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cacheService.evictTagCache();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cacheService.evictTagCache();
+            }
+        });
     }
 } 
\ No newline at end of file
@@ -6,6 +6,7 @@ import com.itzixi.common.enums.UserRole;
 import com.itzixi.common.exception.BusinessException;
 import com.itzixi.entity.User;
 import com.itzixi.mapper.UserMapper;
+import com.itzixi.security.PrincipalCache;
 import com.itzixi.service.UserService;
 import com.itzixi.utils.JwtUtil;
 import lombok.extern.slf4j.Slf4j;
@@ -42,6 +43,9 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
     @Autowired
     private JwtUtil jwtUtil;
     
+    @Autowired
+    private PrincipalCache principalCache;
+    
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         User user = findByUsername(username);
@@ -51,6 +55,24 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
         return user;
     }
     
+    /**
+     * 用户资料、角色、启用状态的修改都经过这里，更新后清除认证缓存
+     */
+    @Override
+    public boolean updateById(User user) {
+        boolean updated = super.updateById(user);
+        if (updated) {
+            String username = user.getUsername();
+            if (username == null) {
+                // 只带部分字段的更新，按ID查出用户名
+                User stored = baseMapper.selectById(user.getId());
+                username = stored != null ? stored.getUsername() : null;
+            }
+            principalCache.evict(username);
+        }
+        return updated;
+    }
+    
     @Override
     public User findByUsername(String username) {
         LambdaQueryWrapper<User> wrapper = new LambdaQueryWrapper<>();
@@ -114,7 +136,10 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User>
     @Override
     public String refreshToken(String oldToken) {
         try {
-            return jwtUtil.refreshToken(oldToken);
+            String newToken = jwtUtil.refreshToken(oldToken);
+            // 刷新后旧Token立即失效
+            jwtUtil.revokeToken(oldToken);
+            return newToken;
         } catch (Exception e) {
             throw BusinessException.unauthorized("Token刷新失败");
         }
@@ -0,0 +1,197 @@
+package com.itzixi.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 计数增量缓冲区
+ * 以 id 为维度在内存中累加增量（每个 id 一个 LongAdder，写入无锁），由后台任务周期性地取出并批量落库。
+ * 取出时以落库开始前的时间戳把增量记入落库记录，UPDATE 执行期间和提交之后都能查到；
+ * 读取缓存对象时叠加时间戳晚于其加载时间的部分，落库不需要清除缓存。
+ * 缓存对象的加载时间须在查询数据库之后取，加载与落库重叠时宁可少算到下次加载，也不会重复计数
+ */
+public class CounterBuffer {
+
+    private final ConcurrentHashMap<Long, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * 落库中和已落库的增量，id -> [落库开始时间, 增量]，按时间升序
+     */
+    private final ConcurrentHashMap<Long, ArrayDeque<long[]>> flushed = new ConcurrentHashMap<>();
+
+    /**
+     * 累加增量
+     */
+    public void add(Long id, long delta) {
+        Counter counter = counters.computeIfAbsent(id, key -> new Counter());
+        counter.add(delta);
+        if (counters.get(id) != counter) {
+            // 计数器已被 drain 移除，这次写入可能发生在 drain 收尾之后，由写入方转到新的计数器
+            long late;
+            synchronized (counter) {
+                if (!counter.closed) {
+                    // drain 还没收尾，残留由 drain 收集
+                    return;
+                }
+                late = counter.sumThenReset();
+            }
+            if (late != 0) {
+                add(id, late);
+            }
+        }
+    }
+
+    /**
+     * 取出所有未落库的增量，并以落库开始时间记入落库记录
+     * 增量为 0 的计数器会被移除，避免冷数据长期占用内存
+     * @param stamp 落库开始前的时间戳（毫秒）
+     */
+    public synchronized Map<Long, Long> drain(long stamp) {
+        Map<Long, Long> deltas = new HashMap<>();
+        counters.forEach((id, counter) -> {
+            long delta = counter.sum();
+            if (delta != 0) {
+                // 先记入落库记录再扣减，读取方先读未落库的增量，中间不会漏算
+                record(id, stamp, delta);
+                counter.add(-delta);
+                deltas.put(id, delta);
+            } else if (counters.remove(id, counter)) {
+                long residue;
+                synchronized (counter) {
+                    counter.closed = true;
+                    residue = counter.sumThenReset();
+                }
+                if (residue != 0) {
+                    record(id, stamp, residue);
+                    deltas.put(id, residue);
+                }
+            }
+        });
+        return deltas;
+    }
+
+    /**
+     * 落库失败时撤回这一批的落库记录，把增量放回缓冲区等待下一次刷新
+     * @param stamp 取出这一批时使用的时间戳
+     */
+    public void restore(Map<Long, Long> deltas, long stamp) {
+        deltas.forEach((id, delta) -> {
+            // 先放回再撤回记录，读取方最多短暂多算，不会少算
+            add(id, delta);
+            flushed.computeIfPresent(id, (key, history) -> {
+                synchronized (history) {
+                    history.removeIf(entry -> entry[0] == stamp);
+                    return history.isEmpty() ? null : history;
+                }
+            });
+        });
+    }
+
+    /**
+     * 某个时间点之后开始落库的增量与尚未落库的增量之和，即该时间点加载的数据之后的变化量
+     * @param sinceMillis 数据加载时间戳，查询数据库之后取；为空时只返回未落库的增量
+     */
+    public long changedSince(Long id, Long sinceMillis) {
+        long total = pending(id);
+        if (sinceMillis == null) {
+            return total;
+        }
+        ArrayDeque<long[]> history = flushed.get(id);
+        if (history == null) {
+            return total;
+        }
+        synchronized (history) {
+            for (long[] entry : history) {
+                // 落库开始晚于加载完成，加载的数据一定不含这批增量
+                if (entry[0] > sinceMillis) {
+                    total += entry[1];
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 清理早于指定时间的落库记录，保留时间需覆盖缓存对象的最长存活时间
+     */
+    public void expireFlushed(long beforeMillis) {
+        flushed.forEach((id, history) -> flushed.computeIfPresent(id, (key, current) -> {
+            synchronized (current) {
+                while (!current.isEmpty() && current.peekFirst()[0] < beforeMillis) {
+                    current.pollFirst();
+                }
+                return current.isEmpty() ? null : current;
+            }
+        }));
+    }
+
+    /**
+     * 获取某个 id 尚未落库的增量
+     */
+    public long pending(Long id) {
+        Counter counter = counters.get(id);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * 所有尚未落库的增量之和
+     */
+    public long pendingTotal() {
+        long total = 0;
+        for (Counter counter : counters.values()) {
+            total += counter.sum();
+        }
+        return total;
+    }
+
+    /**
+     * 当前持有计数器的 id 数量
+     */
+    public int size() {
+        return counters.size();
+    }
+
+    /**
+     * 按批次大小切分增量，每批对应一条批量 UPDATE
+     */
+    public static List<Map<Long, Long>> partition(Map<Long, Long> deltas, int batchSize) {
+        List<Map<Long, Long>> batches = new ArrayList<>();
+        Map<Long, Long> current = new HashMap<>();
+        for (Map.Entry<Long, Long> entry : deltas.entrySet()) {
+            current.put(entry.getKey(), entry.getValue());
+            if (current.size() >= batchSize) {
+                batches.add(current);
+                current = new HashMap<>();
+            }
+        }
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+        return batches;
+    }
+
+    private void record(Long id, long stamp, long delta) {
+        flushed.compute(id, (key, history) -> {
+            if (history == null) {
+                history = new ArrayDeque<>();
+            }
+            synchronized (history) {
+                history.addLast(new long[]{stamp, delta});
+            }
+            return history;
+        });
+    }
+
+    /**
+     * 单个 id 的计数器，closed 表示已被 drain 移除并收走残留
+     */
+    private static class Counter extends LongAdder {
+
+        private boolean closed;
+    }
+}
@@ -1,17 +1,28 @@
 package com.itzixi.utils;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.itzixi.security.TokenRevocationList;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * JWT工具类
@@ -29,8 +40,50 @@ public class JwtUtil {
     @Value("${jwt.refresh-expiration:604800}")
     private Long refreshExpiration; // 刷新token过期时间，秒
     
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes());
+    @Value("${jwt.claims-cache.maximum-size:10000}")
+    private long claimsCacheSize;
+    
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+    
+    /**
+     * 签名密钥和解析器只创建一次，JwtParser 是线程安全的
+     */
+    private SecretKey signingKey;
+    
+    private JwtParser jwtParser;
+    
+    /**
+     * 已验证 Token 的缓存：Token 哈希 -> Claims，条目在 Token 过期时移除，
+     * 同一个 Token 只做一次签名校验
+     */
+    private Cache<String, Claims> claimsCache;
+    
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes());
+        jwtParser = Jwts.parser().verifyWith(signingKey).build();
+        claimsCache = Caffeine.newBuilder()
+                .maximumSize(claimsCacheSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String key, Claims claims, long currentTime) {
+                        long ttl = claims.getExpiration() == null ? 0
+                                : claims.getExpiration().getTime() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttl));
+                    }
+                    
+                    @Override
+                    public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                    
+                    @Override
+                    public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
     }
     
     /**
@@ -67,7 +120,7 @@ public class JwtUtil {
                 .subject(username)
                 .issuedAt(new Date())
                 .expiration(expirationDate)
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
     
@@ -84,6 +137,19 @@ public class JwtUtil {
         }
     }
     
+    /**
+     * 解析并验证Token，签名和过期时间在一次解析中完成校验
+     * @return 验证通过返回 Claims，否则返回 null
+     */
+    public Claims parseToken(String token) {
+        try {
+            return getClaimsFromToken(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("Token验证失败: {}", e.getMessage());
+            return null;
+        }
+    }
+    
     /**
      * 验证Token是否有效
      */
@@ -113,8 +179,8 @@ public class JwtUtil {
             Claims claims = getClaimsFromToken(oldToken);
             String username = claims.getSubject();
             
-            // 检查是否在刷新窗口期内
-            Date tokenCreated = (Date) claims.get("created");
+            // 检查是否在刷新窗口期内，自定义的 created 声明解析后是数字，签发时间取标准的 iat
+            Date tokenCreated = claims.getIssuedAt();
             Date now = new Date();
             
             long tokenAge = now.getTime() - tokenCreated.getTime();
@@ -154,13 +220,43 @@ public class JwtUtil {
     
     /**
      * 从Token中获取Claims
+     * 先查吊销列表，再查已验证缓存，未命中时校验签名并缓存到 Token 过期
      */
     private Claims getClaimsFromToken(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        if (token == null) {
+            throw new IllegalArgumentException("Token不能为空");
+        }
+        String tokenHash = hashToken(token);
+        if (tokenRevocationList.isRevoked(tokenHash)) {
+            throw new JwtException("Token已注销");
+        }
+        return claimsCache.get(tokenHash, key -> jwtParser.parseSignedClaims(token).getPayload());
+    }
+    
+    /**
+     * 吊销Token，注销和刷新后旧Token立即失效
+     */
+    public void revokeToken(String token) {
+        Claims claims = parseToken(token);
+        if (claims == null || claims.getExpiration() == null) {
+            return;
+        }
+        String tokenHash = hashToken(token);
+        tokenRevocationList.revoke(tokenHash, claims.getExpiration().getTime());
+        claimsCache.invalidate(tokenHash);
+        log.info("Token已吊销: {}", claims.getSubject());
+    }
+    
+    /**
+     * Token 的 SHA-256 摘要，缓存和 Redis 中不保存 Token 原文
+     */
+    private String hashToken(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
     
     /**
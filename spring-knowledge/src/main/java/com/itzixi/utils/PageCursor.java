@@ -0,0 +1,87 @@
+package com.itzixi.utils;
+
+import com.itzixi.common.exception.BusinessException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.StringJoiner;
+
+/**
+ * 分页游标
+ * 游标对客户端不透明：游标类型和排序键以 '|' 拼接后做 Base64URL 编码，
+ * 类型用于防止不同列表之间混用游标，解析失败统一按参数错误处理
+ */
+public final class PageCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private final String[] values;
+
+    private PageCursor(String[] values) {
+        this.values = values;
+    }
+
+    /**
+     * 生成游标，Boolean 编码为 1/0，其余按 toString 编码（LocalDateTime 保留原始精度）
+     */
+    public static String encode(String type, Object... values) {
+        StringJoiner joiner = new StringJoiner(SEPARATOR).add(type);
+        for (Object value : values) {
+            joiner.add(value instanceof Boolean flag ? (flag ? "1" : "0") : String.valueOf(value));
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(joiner.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标
+     * @param size 排序键个数
+     */
+    public static PageCursor decode(String token, String type, int size) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|", -1);
+        } catch (IllegalArgumentException e) {
+            throw invalid();
+        }
+        if (parts.length != size + 1 || !type.equals(parts[0])) {
+            throw invalid();
+        }
+        String[] values = new String[size];
+        System.arraycopy(parts, 1, values, 0, size);
+        return new PageCursor(values);
+    }
+
+    public long getLong(int index) {
+        try {
+            return Long.parseLong(values[index]);
+        } catch (NumberFormatException e) {
+            throw invalid();
+        }
+    }
+
+    public int getInt(int index) {
+        try {
+            return Integer.parseInt(values[index]);
+        } catch (NumberFormatException e) {
+            throw invalid();
+        }
+    }
+
+    public boolean getBoolean(int index) {
+        return "1".equals(values[index]);
+    }
+
+    public LocalDateTime getDateTime(int index) {
+        try {
+            return LocalDateTime.parse(values[index]);
+        } catch (RuntimeException e) {
+            throw invalid();
+        }
+    }
+
+    private static BusinessException invalid() {
+        return BusinessException.badRequest("分页游标无效");
+    }
+}
@@ -0,0 +1,169 @@
+package com.itzixi.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * 按时间滚动的布隆过滤器
+ * 保留当前和上一代两个位图，每过一个窗口丢弃上一代，元素至少保留一个窗口、最多两个窗口。
+ * 位数 m = -n·ln(p) / (ln2)²，哈希次数 k = (m/n)·ln2；
+ * 每代 100 万元素、误判率 1% 时约 958 万位（1.14 MiB），两代合计约 2.3 MiB。
+ * 只判断“可能出现过”，存在误判，不会漏判；线程安全
+ */
+public class RollingBloomFilter {
+
+    private final long bits;
+
+    private final int hashCount;
+
+    private final long windowNanos;
+
+    private final LongSupplier nanoClock;
+
+    private volatile Generation current;
+
+    private volatile Generation previous;
+
+    /**
+     * @param expectedInsertions 每个窗口预计写入的元素数
+     * @param fpp 单代的目标误判率，两代都查询时约为两倍
+     * @param window 滚动窗口
+     */
+    public RollingBloomFilter(long expectedInsertions, double fpp, Duration window) {
+        this(expectedInsertions, fpp, window, System::nanoTime);
+    }
+
+    RollingBloomFilter(long expectedInsertions, double fpp, Duration window, LongSupplier nanoClock) {
+        if (expectedInsertions <= 0 || fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("expectedInsertions 必须为正数，fpp 必须在 (0, 1) 之间");
+        }
+        this.bits = optimalBits(expectedInsertions, fpp);
+        this.hashCount = Math.max(1, (int) Math.round((double) bits / expectedInsertions * Math.log(2)));
+        this.windowNanos = window.toNanos();
+        this.nanoClock = nanoClock;
+        long now = nanoClock.getAsLong();
+        this.current = new Generation(bits, now);
+        this.previous = new Generation(bits, now);
+    }
+
+    /**
+     * 给定元素数和误判率所需的位数
+     */
+    public static long optimalBits(long expectedInsertions, double fpp) {
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (ln2 * ln2));
+        // 按 long 对齐
+        return (bits + 63) / 64 * 64;
+    }
+
+    public boolean mightContain(String value) {
+        rotateIfNeeded();
+        long hash1 = hash(value);
+        long hash2 = mix(hash1);
+        return current.contains(hash1, hash2, hashCount) || previous.contains(hash1, hash2, hashCount);
+    }
+
+    public void put(String value) {
+        rotateIfNeeded();
+        long hash1 = hash(value);
+        current.set(hash1, mix(hash1), hashCount);
+    }
+
+    /**
+     * 两代位图占用的字节数
+     */
+    public long memoryBytes() {
+        return bits / 8 * 2;
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    private void rotateIfNeeded() {
+        long now = nanoClock.getAsLong();
+        if (now - current.createdAt < windowNanos) {
+            return;
+        }
+        synchronized (this) {
+            Generation generation = current;
+            if (now - generation.createdAt < windowNanos) {
+                return;
+            }
+            // 超过两个窗口未写入时上一代也已过期
+            previous = now - generation.createdAt < windowNanos * 2 ? generation : new Generation(bits, now);
+            current = new Generation(bits, now);
+        }
+    }
+
+    /**
+     * 64 位 FNV-1a
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * splitmix64 终结函数，由第一个哈希派生第二个哈希
+     */
+    private static long mix(long value) {
+        long z = value + 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return (z ^ (z >>> 31)) | 1;
+    }
+
+    private static final class Generation {
+
+        private final AtomicLongArray words;
+
+        private final long bits;
+
+        private final long createdAt;
+
+        private Generation(long bits, long createdAt) {
+            this.words = new AtomicLongArray((int) (bits / 64));
+            this.bits = bits;
+            this.createdAt = createdAt;
+        }
+
+        /**
+         * 双重哈希 h1 + i·h2 生成 k 个位置
+         */
+        private boolean contains(long hash1, long hash2, int hashCount) {
+            long combined = hash1;
+            for (int i = 0; i < hashCount; i++) {
+                long index = Long.remainderUnsigned(combined, bits);
+                if ((words.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+                combined += hash2;
+            }
+            return true;
+        }
+
+        private void set(long hash1, long hash2, int hashCount) {
+            long combined = hash1;
+            for (int i = 0; i < hashCount; i++) {
+                long index = Long.remainderUnsigned(combined, bits);
+                int word = (int) (index >>> 6);
+                long mask = 1L << index;
+                long old;
+                do {
+                    old = words.get(word);
+                    if ((old & mask) != 0) {
+                        break;
+                    }
+                } while (!words.compareAndSet(word, old, old | mask));
+                combined += hash2;
+            }
+        }
+    }
+}
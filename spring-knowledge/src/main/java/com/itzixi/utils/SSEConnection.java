@@ -0,0 +1,215 @@
+package com.itzixi.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+/**
+ * 单个 SSE 连接的发送队列
+ * 消息先进入有界队列，由写线程按顺序发送，调用方不会被慢客户端阻塞；
+ * 队列满时按慢消费者策略处理。同一连接同一时刻最多只有一个写任务，保证消息顺序
+ */
+@Slf4j
+class SSEConnection {
+
+    /**
+     * 慢消费者策略
+     */
+    enum SlowConsumerPolicy {
+        /**
+         * 丢弃新消息
+         */
+        DROP_NEWEST,
+        /**
+         * 丢弃最早的消息，保留最新内容
+         */
+        DROP_OLDEST,
+        /**
+         * 断开连接，由客户端重连
+         */
+        DISCONNECT
+    }
+
+    /**
+     * 已序列化的事件、事件ID（0 表示不可重放的事件）和入队时间
+     */
+    record QueuedEvent(Set<ResponseBodyEmitter.DataWithMediaType> data, long eventId, long enqueuedAt) {
+    }
+
+    /**
+     * 关闭标记，排在它前面的消息发送完后结束连接
+     */
+    private static final QueuedEvent CLOSE = new QueuedEvent(null, 0L, 0L);
+
+    private final String userId;
+
+    private final SseEmitter emitter;
+
+    private final BlockingQueue<QueuedEvent> queue;
+
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+
+    private volatile boolean closed;
+
+    /**
+     * 最近一次成功写出的时间（System.nanoTime）
+     */
+    private volatile long lastActivity = System.nanoTime();
+
+    /**
+     * 重放已发送到的事件ID，队列中ID不大于它的事件不再重复发送
+     */
+    private volatile long replayedUpTo;
+
+    /**
+     * 已排入关闭标记，不再接收新消息
+     */
+    private volatile boolean closing;
+
+    SSEConnection(String userId, SseEmitter emitter, int capacity) {
+        this.userId = userId;
+        this.emitter = emitter;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    String getUserId() {
+        return userId;
+    }
+
+    SseEmitter getEmitter() {
+        return emitter;
+    }
+
+    long getLastActivity() {
+        return lastActivity;
+    }
+
+    int queueDepth() {
+        return queue.size();
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    void close() {
+        closed = true;
+        queue.clear();
+    }
+
+    /**
+     * 消息入队，不阻塞调用方
+     * @return 消息是否入队，队列满且策略为丢弃新消息或断开连接时返回 false
+     */
+    boolean offer(QueuedEvent event, SlowConsumerPolicy policy) {
+        if (closed || closing) {
+            return false;
+        }
+        if (queue.offer(event)) {
+            return true;
+        }
+        if (policy == SlowConsumerPolicy.DROP_OLDEST) {
+            // 并发入队时可能仍然失败，此时放弃本条
+            queue.poll();
+            return queue.offer(event);
+        }
+        return false;
+    }
+
+    /**
+     * 发送完已入队的消息后关闭连接
+     * @return 队列已满、关闭标记无法入队时返回 false，由调用方立即关闭连接
+     */
+    boolean closeAfterDrain() {
+        if (closed || closing) {
+            return true;
+        }
+        closing = true;
+        return queue.offer(CLOSE);
+    }
+
+    /**
+     * 暂停发送，等待重放。期间新消息正常入队，重放完成后再发送
+     */
+    void hold() {
+        draining.set(true);
+    }
+
+    /**
+     * 先发送重放事件再恢复发送队列，必须在 hold 之后调用
+     */
+    void replay(List<QueuedEvent> events, Executor executor, BiConsumer<QueuedEvent, IOException> sender) {
+        if (!events.isEmpty()) {
+            replayedUpTo = events.get(events.size() - 1).eventId();
+        }
+        executor.execute(() -> {
+            try {
+                for (QueuedEvent event : events) {
+                    if (closed || !send(event, sender)) {
+                        break;
+                    }
+                }
+            } finally {
+                draining.set(false);
+            }
+            if (!closed && !queue.isEmpty()) {
+                schedule(executor, sender);
+            }
+        });
+    }
+
+    /**
+     * 调度写任务，已有写任务在运行时由它继续发送
+     * @param sender 发送完成回调，参数为事件和发送异常（成功为 null）
+     */
+    void schedule(Executor executor, BiConsumer<QueuedEvent, IOException> sender) {
+        if (draining.compareAndSet(false, true)) {
+            executor.execute(() -> drain(executor, sender));
+        }
+    }
+
+    private void drain(Executor executor, BiConsumer<QueuedEvent, IOException> sender) {
+        try {
+            QueuedEvent event;
+            while (!closed && (event = queue.poll()) != null) {
+                if (event == CLOSE) {
+                    closed = true;
+                    emitter.complete();
+                    break;
+                }
+                if (event.eventId() > 0 && event.eventId() <= replayedUpTo) {
+                    continue;
+                }
+                send(event, sender);
+            }
+        } finally {
+            draining.set(false);
+        }
+        // 释放标记后若又有消息入队，需要重新调度
+        if (!closed && !queue.isEmpty()) {
+            schedule(executor, sender);
+        }
+    }
+
+    private boolean send(QueuedEvent event, BiConsumer<QueuedEvent, IOException> sender) {
+        try {
+            emitter.send(event.data());
+            lastActivity = System.nanoTime();
+            sender.accept(event, null);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            closed = true;
+            sender.accept(event, e instanceof IOException io ? io : new IOException(e));
+            return false;
+        }
+    }
+}
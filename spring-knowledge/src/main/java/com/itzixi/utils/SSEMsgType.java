@@ -10,6 +10,7 @@ public enum SSEMsgType {
     ADD("add", "消息追加，用于流式stream推送"),
     FINISH("finish", "消息完成"),
     CUSTOM_EVENT("customEvent", "自定义消息的类型"),
+    QUEUE("queue", "AI请求排队位置，0表示开始生成"),
     DONE("done", "消息完成");
 
     public final String type;
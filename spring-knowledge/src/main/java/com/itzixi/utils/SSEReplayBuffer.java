@@ -0,0 +1,170 @@
+package com.itzixi.utils;
+
+import com.alibaba.fastjson2.JSON;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * SSE 事件重放缓冲
+ * 为每个用户保留最近发送的定向消息并分配递增的事件ID，客户端断线重连时按 Last-Event-ID 补发，
+ * AI 流式回复不需要重新生成。本地模式只在发送消息的节点保留，适合单节点；
+ * 多节点部署开启 Redis 模式，重连到任意节点都能补发
+ */
+@Slf4j
+@Component
+public class SSEReplayBuffer {
+
+    private static final String SEQ_KEY_PREFIX = "sse:replay:seq:";
+
+    private static final String EVENTS_KEY_PREFIX = "sse:replay:events:";
+
+    /**
+     * 分配事件ID并写入事件列表，ID 首次从当前时间戳开始，缓冲过期重建后仍然递增
+     */
+    private static final DefaultRedisScript<Long> APPEND_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[1]) == 0 then redis.call('set', KEYS[1], ARGV[4]) end " +
+            "local id = redis.call('incr', KEYS[1]) " +
+            "redis.call('rpush', KEYS[2], id .. '|' .. ARGV[1]) " +
+            "redis.call('ltrim', KEYS[2], -tonumber(ARGV[2]), -1) " +
+            "redis.call('pexpire', KEYS[1], ARGV[3]) " +
+            "redis.call('pexpire', KEYS[2], ARGV[3]) " +
+            "return id",
+            Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final boolean redisEnabled;
+
+    private final int maxEvents;
+
+    private final int maxChars;
+
+    private final Duration ttl;
+
+    /**
+     * 本地模式的用户缓冲，按用户数量和空闲时间淘汰
+     */
+    private final Cache<String, UserBuffer> buffers;
+
+    public SSEReplayBuffer(StringRedisTemplate stringRedisTemplate,
+                           @Value("${sse.replay.redis:false}") boolean redisEnabled,
+                           @Value("${sse.replay.max-events:2048}") int maxEvents,
+                           @Value("${sse.replay.max-chars:65536}") int maxChars,
+                           @Value("${sse.replay.ttl:10m}") Duration ttl,
+                           @Value("${sse.replay.max-users:10000}") long maxUsers) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redisEnabled = redisEnabled;
+        this.maxEvents = maxEvents;
+        this.maxChars = maxChars;
+        this.ttl = ttl;
+        this.buffers = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterAccess(ttl)
+                .build();
+    }
+
+    /**
+     * 记录一条发给用户的消息
+     * @return 分配的事件ID，Redis 不可用时返回 0，表示该消息不可重放
+     */
+    public long append(String userId, String message, SSEMsgType msgType) {
+        if (redisEnabled) {
+            try {
+                Long id = stringRedisTemplate.execute(APPEND_SCRIPT,
+                        List.of(SEQ_KEY_PREFIX + userId, EVENTS_KEY_PREFIX + userId),
+                        JSON.toJSONString(new ReplayEvent(0L, msgType, message)),
+                        String.valueOf(maxEvents),
+                        String.valueOf(ttl.toMillis()),
+                        String.valueOf(System.currentTimeMillis()));
+                return id != null ? id : 0L;
+            } catch (Exception e) {
+                log.warn("写入SSE重放缓冲失败: userId={}, error={}", userId, e.getMessage());
+                return 0L;
+            }
+        }
+        return buffers.get(userId, key -> new UserBuffer()).append(message, msgType, maxEvents, maxChars);
+    }
+
+    /**
+     * 获取事件ID之后的消息，按ID升序
+     */
+    public List<ReplayEvent> since(String userId, long lastEventId) {
+        if (redisEnabled) {
+            try {
+                List<String> values = stringRedisTemplate.opsForList().range(EVENTS_KEY_PREFIX + userId, 0, -1);
+                if (values == null || values.isEmpty()) {
+                    return Collections.emptyList();
+                }
+                List<ReplayEvent> events = new ArrayList<>();
+                for (String value : values) {
+                    int separator = value.indexOf('|');
+                    long id = Long.parseLong(value.substring(0, separator));
+                    if (id > lastEventId) {
+                        ReplayEvent event = JSON.parseObject(value.substring(separator + 1), ReplayEvent.class);
+                        events.add(new ReplayEvent(id, event.msgType(), event.message()));
+                    }
+                }
+                return events;
+            } catch (Exception e) {
+                log.warn("读取SSE重放缓冲失败: userId={}, error={}", userId, e.getMessage());
+                return Collections.emptyList();
+            }
+        }
+        UserBuffer buffer = buffers.getIfPresent(userId);
+        return buffer != null ? buffer.since(lastEventId) : Collections.emptyList();
+    }
+
+    /**
+     * 可重放的事件
+     */
+    public record ReplayEvent(long id, SSEMsgType msgType, String message) {
+    }
+
+    /**
+     * 单个用户的环形缓冲，按事件数和总字符数限制内存
+     */
+    private static class UserBuffer {
+
+        private final ArrayDeque<ReplayEvent> events = new ArrayDeque<>();
+
+        /**
+         * 从当前时间戳开始递增，缓冲被淘汰重建后新ID仍大于客户端持有的旧ID
+         */
+        private long sequence = System.currentTimeMillis();
+
+        private int chars;
+
+        synchronized long append(String message, SSEMsgType msgType, int maxEvents, int maxChars) {
+            long id = ++sequence;
+            int length = message == null ? 0 : message.length();
+            events.addLast(new ReplayEvent(id, msgType, message));
+            chars += length;
+            while (events.size() > 1 && (events.size() > maxEvents || chars > maxChars)) {
+                ReplayEvent removed = events.removeFirst();
+                chars -= removed.message() == null ? 0 : removed.message().length();
+            }
+            return id;
+        }
+
+        synchronized List<ReplayEvent> since(long lastEventId) {
+            List<ReplayEvent> result = new ArrayList<>();
+            for (ReplayEvent event : events) {
+                if (event.id() > lastEventId) {
+                    result.add(event);
+                }
+            }
+            return result;
+        }
+    }
+}
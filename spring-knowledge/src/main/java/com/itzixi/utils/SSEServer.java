@@ -1,13 +1,40 @@
 package com.itzixi.utils;
 
+import com.alibaba.fastjson2.JSON;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.mockito.internal.junit.StrictStubsRunnerTestListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
@@ -16,121 +43,475 @@ import java.util.function.Consumer;
  * @Author 陈壮壮
  * @Version 1.0
  * @Description SSEServer
+ * SseEmitter 只能保存在建立连接的节点上，集群部署时通过 Redis 路由：
+ * 在线表记录用户连接在哪些节点，单发消息发布到目标节点的频道，群发消息发布到共享频道。
+ * 消息只序列化一次，放入每个连接的有界队列后由固定大小的写线程池发送，慢客户端不会拖慢其他连接。
+ * 队列满时默认断开连接，由客户端带 Last-Event-ID 重连补发，不会丢掉流式回复中间的片段或结束标记。
+ * 同一用户可以同时打开多个连接（多个标签页），定时发送心跳注释检测断开的连接并清理空闲连接。
+ * 定向消息带递增的事件ID并写入重放缓冲，客户端重连时按 Last-Event-ID 补发断线期间的消息
  **/
 @Slf4j
-public class SSEServer {
+@Component
+public class SSEServer implements MessageListener {
 
     /**
-     * 使用map对象，关联用户id和sse的服务连接
-     * 进阶提问1：SseEmitter 能不能放在Redis中和userId进行关联？
-     * 进阶提问2：SseEmitter 如何在集群SpringBoot中存在
+     * 群发消息频道，所有节点订阅
      */
-    private static Map<String, SseEmitter> sseClients = new ConcurrentHashMap<>();
+    public static final String BROADCAST_CHANNEL = "sse:broadcast";
+
+    private static final String NODE_CHANNEL_PREFIX = "sse:node:";
+
+    /**
+     * 用户在线节点，ZSET 成员为节点标识，分数为最近一次心跳时间戳
+     */
+    private static final String PRESENCE_KEY_PREFIX = "sse:presence:";
+
+    /**
+     * 各节点在线人数，field 为节点标识，value 为 "人数|心跳时间戳"
+     */
+    private static final String ONLINE_KEY = "sse:online";
+
+    /**
+     * 心跳事件，SSE 注释行，浏览器不会触发事件回调
+     */
+    private static final Set<ResponseBodyEmitter.DataWithMediaType> HEARTBEAT = SseEmitter.event()
+            .comment("heartbeat")
+            .build();
+
+    /**
+     * 使用map对象，关联用户id和sse的服务连接，只保存本节点的连接；在线人数和连接数都从这里统计
+     */
+    private final Map<String, List<SSEConnection>> sseClients = new ConcurrentHashMap<>();
+
+    /**
+     * 用户在本节点的最后一个连接断开时回调
+     */
+    private final List<Consumer<String>> disconnectListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 当前节点标识，在线表中记录的值和本节点订阅的频道都以它区分
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final SSEReplayBuffer replayBuffer;
+
+    /**
+     * 在线记录的过期时间，节点宕机后其用户的在线记录在此时间后视为失效
+     */
+    private final Duration presenceTtl;
+
+    /**
+     * 每个连接的发送队列长度
+     */
+    private final int queueCapacity;
+
+    private final SSEConnection.SlowConsumerPolicy slowConsumerPolicy;
+
+    /**
+     * 单个连接的最长存活时间，超时后客户端自动重连
+     */
+    private final Duration emitterTimeout;
+
+    /**
+     * 连接超过该时间没有写出任何数据（包括心跳）视为已断开
+     */
+    private final Duration idleTimeout;
+
+    /**
+     * 同一用户在本节点的最大连接数，超出时关闭最早的连接
+     */
+    private final int maxConnectionsPerUser;
+
+    /**
+     * 写线程池，有待发消息的连接才提交写任务，同一连接同一时刻最多一个任务。
+     * ResponseBodyEmitter.send 是同步方法，阻塞写在虚拟线程上会钉住载体线程，因此使用平台线程
+     */
+    private final ExecutorService writerExecutor;
+
+    /**
+     * 关闭连接的线程池。emitter.complete() 和 send() 同步在同一个 emitter 上，写线程阻塞时 complete 也会阻塞，
+     * 因此不在调度线程和调用方线程上执行；同时阻塞的 complete 不会多于阻塞的写线程，线程数与写线程池相同
+     */
+    private final ExecutorService closerExecutor;
+
+    private final Timer sendLatency;
+
+    private final Counter droppedMessages;
+
+    private final Counter slowDisconnects;
+
+    private final Counter idleReaped;
+
+    public SSEServer(StringRedisTemplate stringRedisTemplate,
+                     SSEReplayBuffer replayBuffer,
+                     MeterRegistry meterRegistry,
+                     @Value("${sse.presence-ttl:90s}") Duration presenceTtl,
+                     @Value("${sse.queue-capacity:256}") int queueCapacity,
+                     @Value("${sse.slow-consumer-policy:DISCONNECT}") SSEConnection.SlowConsumerPolicy slowConsumerPolicy,
+                     @Value("${sse.emitter-timeout:30m}") Duration emitterTimeout,
+                     @Value("${sse.idle-timeout:60s}") Duration idleTimeout,
+                     @Value("${sse.max-connections-per-user:5}") int maxConnectionsPerUser,
+                     @Value("${sse.writer-threads:8}") int writerThreads) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.replayBuffer = replayBuffer;
+        this.presenceTtl = presenceTtl;
+        this.queueCapacity = queueCapacity;
+        this.slowConsumerPolicy = slowConsumerPolicy;
+        this.emitterTimeout = emitterTimeout;
+        this.idleTimeout = idleTimeout;
+        this.maxConnectionsPerUser = maxConnectionsPerUser;
+        AtomicInteger threadIndex = new AtomicInteger();
+        // 每个连接最多排一个写任务，队列长度不超过连接数
+        this.writerExecutor = new ThreadPoolExecutor(writerThreads, writerThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "sse-writer-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        AtomicInteger closerIndex = new AtomicInteger();
+        this.closerExecutor = new ThreadPoolExecutor(writerThreads, writerThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "sse-closer-" + closerIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.sendLatency = Timer.builder("sse.send.latency")
+                .description("SSE消息从入队到写出的耗时")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.droppedMessages = Counter.builder("sse.messages.dropped")
+                .description("发送队列已满被丢弃的SSE消息数")
+                .register(meterRegistry);
+        this.slowDisconnects = Counter.builder("sse.slow.disconnects")
+                .description("因发送队列已满被断开的SSE连接数")
+                .register(meterRegistry);
+        this.idleReaped = Counter.builder("sse.idle.reaped")
+                .description("因长时间无法写出被清理的SSE连接数")
+                .register(meterRegistry);
+        Gauge.builder("sse.connections", this, SSEServer::getConnectionCounts)
+                .description("当前节点SSE连接数")
+                .register(meterRegistry);
+        Gauge.builder("sse.online.users", this, SSEServer::getOnlineCounts)
+                .description("当前节点SSE在线人数")
+                .register(meterRegistry);
+        Gauge.builder("sse.queue.depth", this, SSEServer::totalQueueDepth)
+                .description("当前节点所有SSE连接的待发消息数")
+                .register(meterRegistry);
+    }
 
     /**
-     * 用于统计当前总在线人数
+     * 本节点接收定向消息的频道
      */
-    private static AtomicInteger onlineCounts = new AtomicInteger(0);
+    public String getNodeChannel() {
+        return NODE_CHANNEL_PREFIX + nodeId;
+    }
+
+    public SseEmitter connect(String userId) {
+        return connect(userId, null);
+    }
 
-    public static SseEmitter connect(String userId) {
-        // 设置超时时间，0代表永不过期；默认30秒，超时未完成任务则会抛出异常
-        SseEmitter sseEmitter = new SseEmitter(0L);
+    /**
+     * 建立连接，带 Last-Event-ID 时先补发该事件之后的消息
+     */
+    public SseEmitter connect(String userId, String lastEventId) {
+        // 连接到期后由客户端 EventSource 自动重连，避免永不过期的连接堆积
+        SseEmitter sseEmitter = new SseEmitter(emitterTimeout.toMillis());
+        SSEConnection connection = new SSEConnection(userId, sseEmitter, queueCapacity);
+        long replayFrom = parseEventId(lastEventId);
+        if (replayFrom > 0) {
+            // 先暂停发送，注册后入队的新消息排在重放消息之后
+            connection.hold();
+        }
 
         // 注册SSE的回调方法
-        sseEmitter.onCompletion(completionCallback(userId));
-        sseEmitter.onError(errorCallback(userId));
-        sseEmitter.onTimeout(timeoutCallback(userId));
+        sseEmitter.onCompletion(completionCallback(userId, connection));
+        sseEmitter.onError(errorCallback(userId, connection));
+        sseEmitter.onTimeout(timeoutCallback(userId, connection));
 
-        sseClients.put(userId, sseEmitter);
+        // 同一用户的多个连接都保留，超过上限时关闭最早的连接
+        List<SSEConnection> evicted = new ArrayList<>();
+        sseClients.compute(userId, (key, connections) -> {
+            if (connections == null) {
+                connections = new CopyOnWriteArrayList<>();
+            }
+            connections.add(connection);
+            while (connections.size() > maxConnectionsPerUser) {
+                evicted.add(connections.remove(0));
+            }
+            return connections;
+        });
+        evicted.forEach(this::closeNow);
+        registerPresence(userId);
         log.info("当前创建新的SSE连接，用户ID为: {}", userId);
 
-        onlineCounts.getAndIncrement();
+        if (replayFrom > 0) {
+            List<SSEConnection.QueuedEvent> events = new ArrayList<>();
+            for (SSEReplayBuffer.ReplayEvent replayEvent : replayBuffer.since(userId, replayFrom)) {
+                events.add(new SSEConnection.QueuedEvent(
+                        buildEvent(replayEvent.id(), replayEvent.message(), replayEvent.msgType()),
+                        replayEvent.id(), System.nanoTime()));
+            }
+            connection.replay(events, writerExecutor, (sent, error) -> afterSend(connection, sent, error));
+            log.info("SSE重连补发消息，用户ID为: {}, Last-Event-ID: {}, 补发 {} 条", userId, replayFrom, events.size());
+        }
 
         return sseEmitter;
     }
 
     /**
-     * @Description: 发送单条消息
+     * @Description: 发送单条消息，推送到该用户在本节点的所有连接，并转发到用户有连接的其他节点
      * @Author 陈壮壮
      * @param userId
      * @param message
      * @param msgType
      */
-    public static void sendMessage(String userId, String message, SSEMsgType msgType) {
-        if (CollectionUtils.isEmpty(sseClients)) {
-            return;
-        }
-
-        if (sseClients.containsKey(userId)) {
-            SseEmitter sseEmitter = sseClients.get(userId);
-            sendEmitterMessage(sseEmitter, userId, message, msgType);
-        }
+    public void sendMessage(String userId, String message, SSEMsgType msgType) {
+        long eventId = replayBuffer.append(userId, message, msgType);
+        deliverLocal(userId, message, msgType, eventId);
+        routeToOwners(new SSERoutedMessage(nodeId, userId, message, msgType, eventId, false));
     }
 
     /**
-     * @Description: 发送消息给所有人
+     * @Description: 发送消息给所有人，包括其他节点上的用户
      * @Author 陈壮壮
      * @param message
      */
-    public static void sendMessageToAllUsers(String message) {
+    public void sendMessageToAllUsers(String message) {
+        sendMessageToLocalUsers(message);
+        try {
+            stringRedisTemplate.convertAndSend(BROADCAST_CHANNEL,
+                    JSON.toJSONString(new SSERoutedMessage(nodeId, null, message, SSEMsgType.MESSAGE, 0L, false)));
+        } catch (Exception e) {
+            log.warn("SSE群发消息转发失败，仅本节点用户收到: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 群发给本节点用户，事件只序列化一次，入队后立即返回
+     */
+    private void sendMessageToLocalUsers(String message) {
         if (CollectionUtils.isEmpty(sseClients)) {
             return;
         }
 
-        sseClients.forEach((userId, sseEmitter) -> {
-                sendEmitterMessage(sseEmitter, userId, message, SSEMsgType.MESSAGE);
+        Set<ResponseBodyEmitter.DataWithMediaType> data = SseEmitter.event()
+                .name(SSEMsgType.MESSAGE.type)
+                .data(message)
+                .build();
+        enqueueAll(data);
+    }
+
+    private void enqueueAll(Set<ResponseBodyEmitter.DataWithMediaType> data) {
+        SSEConnection.QueuedEvent event = new SSEConnection.QueuedEvent(data, 0L, System.nanoTime());
+        sseClients.values().forEach(connections -> connections.forEach(connection -> enqueue(connection, event)));
+    }
+
+    private void enqueue(SSEConnection connection, SSEConnection.QueuedEvent event) {
+        if (connection.offer(event, slowConsumerPolicy)) {
+            connection.schedule(writerExecutor, (sent, error) -> afterSend(connection, sent, error));
+            return;
+        }
+        if (connection.isClosed()) {
+            return;
+        }
+        droppedMessages.increment();
+        if (slowConsumerPolicy == SSEConnection.SlowConsumerPolicy.DISCONNECT) {
+            log.warn("用户[{}]的SSE发送队列已满，断开连接", connection.getUserId());
+            slowDisconnects.increment();
+            closeNow(connection);
+        }
+    }
+
+    private void afterSend(SSEConnection connection, SSEConnection.QueuedEvent event, IOException error) {
+        if (error == null) {
+            if (event.data() != HEARTBEAT) {
+                sendLatency.record(System.nanoTime() - event.enqueuedAt(), TimeUnit.NANOSECONDS);
+            }
+            return;
+        }
+        log.error("用户[{}]的消息推送发生异常！", connection.getUserId());
+        removeConnection(connection.getUserId(), connection);
+    }
+
+    private int totalQueueDepth() {
+        int depth = 0;
+        for (List<SSEConnection> connections : sseClients.values()) {
+            for (SSEConnection connection : connections) {
+                depth += connection.queueDepth();
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * 定时向空闲连接发送心跳，写失败的连接随即移除；队列中有待发消息的连接不需要心跳
+     */
+    @Scheduled(fixedDelayString = "${sse.heartbeat-interval:15000}")
+    public void heartbeat() {
+        SSEConnection.QueuedEvent event = new SSEConnection.QueuedEvent(HEARTBEAT, 0L, System.nanoTime());
+        sseClients.values().forEach(connections -> connections.forEach(connection -> {
+            if (connection.queueDepth() == 0) {
+                enqueue(connection, event);
+            }
+        }));
+    }
+
+    /**
+     * 清理长时间没有写出数据的连接，通常是客户端已断开但写操作一直阻塞
+     */
+    @Scheduled(fixedDelayString = "${sse.heartbeat-interval:15000}")
+    public void reapIdleConnections() {
+        long deadline = System.nanoTime() - idleTimeout.toNanos();
+        sseClients.values().forEach(connections -> connections.forEach(connection -> {
+            if (connection.getLastActivity() - deadline < 0) {
+                log.info("SSE连接空闲超时，用户ID为: {}", connection.getUserId());
+                idleReaped.increment();
+                closeNow(connection);
             }
-        );
+        }));
     }
 
     /**
-     * @Description: 使用SseEmitter推送消息
+     * @Description: 主动切断，停止该用户的所有sse连接，连接在其他节点时转发到该节点执行
      * @Author 陈壮壮
-     * @param sseEmitter
      * @param userId
-     * @param message
-     * @param msgType
      */
-    public static void sendEmitterMessage(SseEmitter sseEmitter,
-                                           String userId,
-                                           String message,
-                                           SSEMsgType msgType) {
+    public void stopServer(String userId) {
+        boolean stopped = stopLocal(userId);
+        if (!routeToOwners(new SSERoutedMessage(nodeId, userId, null, null, 0L, true)) && !stopped) {
+            log.warn("当前连接无需关闭，请不要重复操作");
+        }
+    }
 
+    private boolean stopLocal(String userId) {
+        List<SSEConnection> connections = sseClients.get(userId);
+        if (connections == null) {
+            return false;
+        }
+        for (SSEConnection connection : connections) {
+            // 已入队的消息发送完后再 complete 断开连接，队列已满时交给关闭线程池立即断开
+            if (!connection.closeAfterDrain()) {
+                closeNow(connection);
+                continue;
+            }
+            connection.schedule(writerExecutor, (sent, error) -> afterSend(connection, sent, error));
+            removeConnection(userId, connection);
+        }
+        log.info("连接关闭成功，被关闭的用户为 {}", userId);
+        return true;
+    }
+
+    /**
+     * 立即关闭连接：先停止发送并移除，再在关闭线程池中 complete，调用方不会被阻塞的写操作拖住
+     */
+    private void closeNow(SSEConnection connection) {
+        connection.close();
+        removeConnection(connection.getUserId(), connection);
         try {
-            SseEmitter.SseEventBuilder msg = SseEmitter.event()
-                    .id(userId)
-                    .name(msgType.type)
-                    .data(message);
-            sseEmitter.send(msg);
-        } catch (IOException e) {
-            log.error("用户[{}]的消息推送发生异常！", userId);
-            removeConnection(userId);
+            closerExecutor.execute(() -> {
+                try {
+                    connection.getEmitter().complete();
+                } catch (Exception e) {
+                    log.debug("关闭SSE连接失败: userId={}, error={}", connection.getUserId(), e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("SSE服务已关闭，跳过关闭连接: userId={}", connection.getUserId());
         }
+    }
 
+    private boolean deliverLocal(String userId, String message, SSEMsgType msgType, long eventId) {
+        List<SSEConnection> connections = sseClients.get(userId);
+        if (connections == null) {
+            return false;
+        }
+        SSEConnection.QueuedEvent event = new SSEConnection.QueuedEvent(
+                buildEvent(eventId, message, msgType), eventId, System.nanoTime());
+        connections.forEach(connection -> enqueue(connection, event));
+        return true;
     }
 
     /**
-     * @Description: 主动切断，停止sse服务和客户端的连接
-     * @Author 陈壮壮
-     * @param userId
+     * 序列化定向消息，事件ID为 0 时不带 id 字段
      */
-    public static void stopServer(String userId) {
-        if (CollectionUtils.isEmpty(sseClients)) {
-            return;
+    private Set<ResponseBodyEmitter.DataWithMediaType> buildEvent(long eventId, String message, SSEMsgType msgType) {
+        SseEmitter.SseEventBuilder builder = SseEmitter.event();
+        if (eventId > 0) {
+            builder.id(String.valueOf(eventId));
         }
+        return builder.name(msgType.type)
+                .data(message)
+                .build();
+    }
 
-        SseEmitter sseEmitter = sseClients.get(userId);
-        if (sseEmitter != null) {
-            // complete 表示执行完毕，断开连接
-            sseEmitter.complete();
-            removeConnection(userId);
-            log.info("连接关闭成功，被关闭的用户为 {}", userId);
-        } else {
-            log.warn("当前连接无需关闭，请不要重复操作");
+    private long parseEventId(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return 0L;
         }
+        try {
+            return Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            log.debug("忽略无法识别的 Last-Event-ID: {}", lastEventId);
+            return 0L;
+        }
+    }
 
+    /**
+     * 按在线表把消息转发到用户有连接的其他节点，心跳超时的节点不转发
+     * @return 有其他节点并已转发返回 true
+     */
+    private boolean routeToOwners(SSERoutedMessage routed) {
+        try {
+            long deadline = System.currentTimeMillis() - presenceTtl.toMillis();
+            Set<String> owners = stringRedisTemplate.opsForZSet()
+                    .rangeByScore(PRESENCE_KEY_PREFIX + routed.userId(), deadline, Double.MAX_VALUE);
+            if (CollectionUtils.isEmpty(owners)) {
+                log.debug("用户[{}]不在线，消息丢弃", routed.userId());
+                return false;
+            }
+            String payload = null;
+            for (String owner : owners) {
+                if (nodeId.equals(owner)) {
+                    continue;
+                }
+                if (payload == null) {
+                    payload = JSON.toJSONString(routed);
+                }
+                stringRedisTemplate.convertAndSend(NODE_CHANNEL_PREFIX + owner, payload);
+            }
+            return payload != null;
+        } catch (Exception e) {
+            log.warn("SSE消息转发失败: userId={}, error={}", routed.userId(), e.getMessage());
+            return false;
+        }
     }
 
+    /**
+     * 接收其他节点转发的定向消息和群发消息
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        SSERoutedMessage routed;
+        try {
+            routed = JSON.parseObject(new String(message.getBody(), StandardCharsets.UTF_8), SSERoutedMessage.class);
+        } catch (Exception e) {
+            log.warn("无法解析SSE转发消息: {}", e.getMessage());
+            return;
+        }
+        if (routed == null || nodeId.equals(routed.origin())) {
+            return;
+        }
+        if (routed.userId() == null) {
+            sendMessageToLocalUsers(routed.message());
+        } else if (routed.stop()) {
+            stopLocal(routed.userId());
+        } else if (!deliverLocal(routed.userId(), routed.message(), routed.msgType(), routed.eventId())) {
+            // 用户在转发途中断开或已迁移到其他节点
+            log.debug("用户[{}]已不在本节点，转发消息丢弃", routed.userId());
+        }
+    }
 
     /**
      * @Description: SSE连接完成后的回调方法（关闭连接的时候调用）
@@ -138,10 +519,10 @@ public class SSEServer {
      * @param userId
      * @return Runnable
      */
-    private static Runnable completionCallback(String userId) {
+    private Runnable completionCallback(String userId, SSEConnection connection) {
         return () -> {
             log.info("SSE连接完成并结束，用户ID为: {}", userId);
-            removeConnection(userId);
+            removeConnection(userId, connection);
         };
     }
 
@@ -151,10 +532,11 @@ public class SSEServer {
      * @param userId
      * @return Runnable
      */
-    private static Runnable timeoutCallback(String userId) {
+    private Runnable timeoutCallback(String userId, SSEConnection connection) {
         return () -> {
             log.info("SSE连接超时，用户ID为: {}", userId);
-            removeConnection(userId);
+            connection.close();
+            removeConnection(userId, connection);
         };
     }
 
@@ -164,33 +546,167 @@ public class SSEServer {
      * @param userId
      * @return Runnable
      */
-    private static Consumer<Throwable> errorCallback(String userId) {
+    private Consumer<Throwable> errorCallback(String userId, SSEConnection connection) {
         return Throwable -> {
             log.info("SSE连接发生错误，用户ID为: {}", userId);
-            removeConnection(userId);
+            connection.close();
+            removeConnection(userId, connection);
         };
     }
 
     /**
-     * @Description: 从整个SSE服务中移除用户连接
+     * @Description: 从整个SSE服务中移除用户连接，重复调用不会产生影响；用户最后一个连接移除时清除在线记录
      * @Author 陈壮壮
      * @param userId
      */
-    public static void removeConnection(String userId) {
-        sseClients.remove(userId);
+    private void removeConnection(String userId, SSEConnection connection) {
+        AtomicBoolean removed = new AtomicBoolean(false);
+        AtomicBoolean lastConnection = new AtomicBoolean(false);
+        sseClients.computeIfPresent(userId, (key, connections) -> {
+            removed.set(connections.remove(connection));
+            if (connections.isEmpty()) {
+                lastConnection.set(true);
+                return null;
+            }
+            return connections;
+        });
+        if (!removed.get()) {
+            return;
+        }
         log.info("SSE连接被移除，移除的用户ID为: {}", userId);
 
-        onlineCounts.getAndDecrement();
+        if (lastConnection.get()) {
+            try {
+                stringRedisTemplate.opsForZSet().remove(PRESENCE_KEY_PREFIX + userId, nodeId);
+            } catch (Exception e) {
+                log.warn("清除SSE在线记录失败，等待自动过期: userId={}, error={}", userId, e.getMessage());
+            }
+            for (Consumer<String> listener : disconnectListeners) {
+                try {
+                    listener.accept(userId);
+                } catch (Exception e) {
+                    log.warn("SSE断开回调执行失败: userId={}, error={}", userId, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 注册断开回调，用户在本节点的最后一个连接断开时调用，参数为用户ID
+     */
+    public void addDisconnectListener(Consumer<String> listener) {
+        disconnectListeners.add(listener);
     }
 
     /**
-     * @Description: 获得当前所有的会话总连接数（在线人数）
+     * 用户是否在线，本节点没有连接时查询集群在线表
+     */
+    public boolean isOnline(String userId) {
+        if (sseClients.containsKey(userId)) {
+            return true;
+        }
+        try {
+            long deadline = System.currentTimeMillis() - presenceTtl.toMillis();
+            Long count = stringRedisTemplate.opsForZSet().count(PRESENCE_KEY_PREFIX + userId, deadline, Double.MAX_VALUE);
+            return count != null && count > 0;
+        } catch (Exception e) {
+            log.warn("查询SSE在线状态失败，按在线处理: userId={}, error={}", userId, e.getMessage());
+            return true;
+        }
+    }
+
+    /**
+     * @Description: 获得当前节点的在线人数，同一用户的多个连接只算一人
      * @Author 陈壮壮
      * @param
      * @return int
      */
-    public static int getOnlineCounts() {
-        return onlineCounts.intValue();
+    public int getOnlineCounts() {
+        return sseClients.size();
+    }
+
+    /**
+     * 获得当前节点的连接总数
+     */
+    public int getConnectionCounts() {
+        int count = 0;
+        for (List<SSEConnection> connections : sseClients.values()) {
+            count += connections.size();
+        }
+        return count;
+    }
+
+    /**
+     * 获得集群总在线人数，心跳超时的节点不计入；同一用户连接在多个节点时按节点分别计算
+     */
+    public int getClusterOnlineCounts() {
+        try {
+            long deadline = System.currentTimeMillis() - presenceTtl.toMillis();
+            int total = 0;
+            for (Map.Entry<Object, Object> entry : stringRedisTemplate.opsForHash().entries(ONLINE_KEY).entrySet()) {
+                String[] parts = String.valueOf(entry.getValue()).split("\\|");
+                if (parts.length == 2 && Long.parseLong(parts[1]) >= deadline) {
+                    total += Integer.parseInt(parts[0]);
+                } else {
+                    stringRedisTemplate.opsForHash().delete(ONLINE_KEY, entry.getKey());
+                }
+            }
+            return total;
+        } catch (Exception e) {
+            log.warn("获取集群在线人数失败，返回本节点人数: {}", e.getMessage());
+            return getOnlineCounts();
+        }
+    }
+
+    private void registerPresence(String userId) {
+        try {
+            String key = PRESENCE_KEY_PREFIX + userId;
+            stringRedisTemplate.opsForZSet().add(key, nodeId, System.currentTimeMillis());
+            stringRedisTemplate.expire(key, presenceTtl);
+        } catch (Exception e) {
+            log.warn("写入SSE在线记录失败，其他节点无法向该用户转发: userId={}, error={}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * 定时续期本节点用户的在线记录并上报在线人数
+     */
+    @Scheduled(fixedDelayString = "${sse.presence-refresh:30000}")
+    public void refreshPresence() {
+        try {
+            long now = System.currentTimeMillis();
+            long expireSeconds = presenceTtl.toSeconds();
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                for (String userId : sseClients.keySet()) {
+                    stringConnection.zAdd(PRESENCE_KEY_PREFIX + userId, now, nodeId);
+                    stringConnection.expire(PRESENCE_KEY_PREFIX + userId, expireSeconds);
+                }
+                return null;
+            });
+            stringRedisTemplate.opsForHash().put(ONLINE_KEY, nodeId, getOnlineCounts() + "|" + now);
+        } catch (Exception e) {
+            log.warn("续期SSE在线记录失败: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            stringRedisTemplate.opsForHash().delete(ONLINE_KEY, nodeId);
+        } catch (Exception e) {
+            log.warn("清除节点在线人数失败: {}", e.getMessage());
+        }
+        sseClients.values().forEach(connections -> connections.forEach(this::closeNow));
+        closerExecutor.shutdown();
+        writerExecutor.shutdown();
+    }
+
+    /**
+     * 节点间转发的 SSE 消息，userId 为空表示群发；eventId 由发送节点分配，各节点使用同一个ID
+     */
+    public record SSERoutedMessage(String origin, String userId, String message, SSEMsgType msgType,
+                                   long eventId, boolean stop) {
     }
 
 }
@@ -0,0 +1,258 @@
+package com.itzixi.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.itzixi.config.AsyncConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 二级缓存击穿保护测试：单飞加载、XFetch 提前刷新、过期宽限期返回旧值、刷新线程池满时拒绝，
+ * 以及分布式加载锁被占用时的等待和超时回源。Redis 缓存用 ConcurrentMapCache 代替
+ */
+public class TwoLevelCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final TwoLevelCacheManager cacheManager = mock(TwoLevelCacheManager.class);
+
+    private final ConcurrentMapCache remoteCache = new ConcurrentMapCache("article");
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(16);
+
+    private ThreadPoolTaskExecutor refreshExecutor;
+
+    private TwoLevelCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        refreshExecutor = (ThreadPoolTaskExecutor) new AsyncConfig().cacheRefreshExecutor();
+        when(cacheManager.getRefreshExecutor()).thenReturn(refreshExecutor);
+        when(cacheManager.getEarlyRefreshBeta()).thenReturn(1.0);
+        cache = new TwoLevelCache("article", Caffeine.newBuilder().build(), remoteCache,
+                Duration.ofMinutes(10), cacheManager, meterRegistry);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        callers.shutdownNow();
+        refreshExecutor.shutdown();
+    }
+
+    @Test
+    public void testConcurrentMissLoadsOnce() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Callable<String> loader = () -> {
+            loads.incrementAndGet();
+            release.await(5, TimeUnit.SECONDS);
+            return "文章";
+        };
+
+        List<Future<String>> results = submitAll(16, () -> cache.get("1", loader));
+        await(() -> count("cache.loads.coalesced") == 15);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertEquals("文章", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals("文章", ((CachedValue) remoteCache.get("1").get()).getValue());
+    }
+
+    @Test
+    public void testEarlyRefreshBeforeExpiry() {
+        // 加载耗时远大于剩余时间，XFetch 几乎必然提前刷新
+        putEntry("1", new CachedValue("旧值", 3_600_000, System.currentTimeMillis() + 60_000));
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals("旧值", cache.get("1", () -> {
+            loads.incrementAndGet();
+            return "新值";
+        }));
+
+        await(() -> "新值".equals(valueOf("1")));
+        assertEquals(1, loads.get());
+        assertEquals(1.0, count("cache.refreshes"));
+    }
+
+    @Test
+    public void testNoEarlyRefreshFarFromExpiry() {
+        putEntry("1", new CachedValue("旧值", 1, System.currentTimeMillis() + 600_000));
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals("旧值", cache.get("1", () -> "新值"));
+        }
+        assertEquals(0.0, count("cache.refreshes"));
+    }
+
+    @Test
+    public void testStaleValueServedWithSingleReload() throws Exception {
+        putEntry("1", new CachedValue("旧值", 10, System.currentTimeMillis() - 1000));
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Callable<String> loader = () -> {
+            loads.incrementAndGet();
+            release.await(5, TimeUnit.SECONDS);
+            return "新值";
+        };
+
+        for (Future<String> result : submitAll(16, () -> cache.get("1", loader))) {
+            assertEquals("旧值", result.get(5, TimeUnit.SECONDS));
+        }
+        // 普通读取不返回过期的旧值
+        assertNull(cache.get("1"));
+        release.countDown();
+
+        await(() -> "新值".equals(valueOf("1")));
+        assertEquals(1, loads.get());
+        assertEquals(16.0, count("cache.gets.stale"));
+    }
+
+    @Test
+    public void testRefreshRejectedWhenExecutorFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        int capacity = refreshExecutor.getMaxPoolSize() + refreshExecutor.getQueueCapacity();
+        for (int i = 0; i < capacity; i++) {
+            refreshExecutor.execute(() -> {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        putEntry("1", new CachedValue("旧值", 10, System.currentTimeMillis() - 1000));
+        AtomicInteger loads = new AtomicInteger();
+        Callable<String> loader = () -> {
+            loads.incrementAndGet();
+            return "新值";
+        };
+
+        // 线程池满时放弃刷新，请求方照常拿到旧值
+        assertEquals("旧值", cache.get("1", loader));
+        assertEquals(0, loads.get());
+
+        // 拒绝后没有残留的加载标记，线程池空出来后可以再次刷新
+        release.countDown();
+        await(() -> refreshExecutor.getActiveCount() == 0 && refreshExecutor.getQueueSize() == 0);
+        assertEquals("旧值", cache.get("1", loader));
+        await(() -> "新值".equals(valueOf("1")));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLockContentionWaitsForRemoteFill() throws Exception {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> ops = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(ops);
+        when(ops.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+        when(cacheManager.getLoadLock()).thenReturn(new CacheLoadLock(redisTemplate, Duration.ofSeconds(5)));
+        AtomicInteger loads = new AtomicInteger();
+
+        // 其他节点持有锁，稍后把结果写入 Redis
+        CompletableFuture.runAsync(() -> remoteCache.put("1",
+                new CachedValue("其他节点", 10, System.currentTimeMillis() + 60_000)),
+                CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS));
+
+        assertEquals("其他节点", cache.get("1", () -> {
+            loads.incrementAndGet();
+            return "本节点";
+        }));
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLockWaitTimeoutFallsBackToLoad() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> ops = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(ops);
+        when(ops.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+        when(cacheManager.getLoadLock()).thenReturn(new CacheLoadLock(redisTemplate, Duration.ofMillis(200)));
+
+        // 持锁节点一直没有回填，等满租期后自行回源
+        long start = System.currentTimeMillis();
+        assertEquals("本节点", cache.get("1", () -> "本节点"));
+        assertTrue(System.currentTimeMillis() - start >= 200);
+    }
+
+    @Test
+    public void testLockUnavailableLoadsDirectly() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        when(redisTemplate.opsForValue()).thenThrow(new RedisConnectionFailureException("连接失败"));
+        when(cacheManager.getLoadLock()).thenReturn(new CacheLoadLock(redisTemplate, Duration.ofSeconds(5)));
+
+        long start = System.currentTimeMillis();
+        assertEquals("本节点", cache.get("1", () -> "本节点"));
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    private void putEntry(String key, CachedValue entry) {
+        remoteCache.put(key, entry);
+    }
+
+    private Object valueOf(String key) {
+        Cache.ValueWrapper wrapper = cache.get(key);
+        return wrapper == null ? null : wrapper.get();
+    }
+
+    private <T> List<Future<T>> submitAll(int count, Callable<T> task) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<T>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            futures.add(callers.submit(() -> {
+                start.await();
+                return task.call();
+            }));
+        }
+        start.countDown();
+        return futures;
+    }
+
+    private double count(String meter) {
+        return meterRegistry.get(meter).counter().count();
+    }
+
+    private void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "等待超时");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
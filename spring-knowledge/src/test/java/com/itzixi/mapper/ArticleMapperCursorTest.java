@@ -0,0 +1,248 @@
+package com.itzixi.mapper;
+
+import com.itzixi.common.result.CursorPage;
+import com.itzixi.entity.Article;
+import com.itzixi.search.ArticleSearchService;
+import com.itzixi.service.CacheService;
+import com.itzixi.service.CountEstimateService;
+import com.itzixi.service.OutboxService;
+import com.itzixi.service.ReactionService;
+import com.itzixi.service.TagService;
+import com.itzixi.service.ViewCountService;
+import com.itzixi.service.impl.ArticleServiceImpl;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.StringValue;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.MinorThan;
+import net.sf.jsqlparser.expression.operators.relational.ParenthesedExpressionList;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.statement.select.OrderByElement;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import org.apache.ibatis.binding.MapperMethod;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 文章游标分页测试：用 MyBatis 渲染 ArticleMapper.xml 中真实的 selectArticlesAfter，
+ * 在内存数据上执行渲染出的 WHERE / ORDER BY / LIMIT，经 ArticleServiceImpl 逐页翻完。
+ * 环境中没有数据库，只支持这条语句用到的比较和逻辑运算
+ */
+public class ArticleMapperCursorTest {
+
+    private static final String STATEMENT = "com.itzixi.mapper.ArticleMapper.selectArticlesAfter";
+
+    private static final DateTimeFormatter SQL_DATETIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS");
+
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    private final ArticleMapper articleMapper = mock(ArticleMapper.class);
+
+    private final List<Article> rows = new ArrayList<>();
+
+    private MappedStatement statement;
+
+    private ArticleServiceImpl articleService;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        Configuration configuration = new Configuration();
+        try (InputStream xml = getClass().getResourceAsStream("/mappers/ArticleMapper.xml")) {
+            new XMLMapperBuilder(xml, configuration, "mappers/ArticleMapper.xml", configuration.getSqlFragments()).parse();
+        }
+        statement = configuration.getMappedStatement(STATEMENT);
+        when(articleMapper.selectArticlesAfter(any(), any(), any(), any(), anyInt())).thenAnswer(invocation ->
+                execute(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2),
+                        invocation.getArgument(3), invocation.getArgument(4)));
+        articleService = new ArticleServiceImpl(mock(TagService.class), mock(OutboxService.class),
+                mock(ViewCountService.class), mock(ReactionService.class), mock(CacheService.class),
+                mock(ArticleSearchService.class), mock(CountEstimateService.class));
+        ReflectionTestUtils.setField(articleService, "baseMapper", articleMapper);
+    }
+
+    @Test
+    public void testFirstPageHasNoKeysetPredicate() {
+        String sql = render(1, null, null, null, 3);
+
+        assertFalse(sql.contains("a.id <"), sql);
+        assertTrue(sql.endsWith("ORDER BY a.is_top DESC, a.created_at DESC, a.id DESC LIMIT 3"), sql);
+    }
+
+    @Test
+    public void testTiesResolvedById() {
+        // 置顶文章排在最前；2~5 的 (is_top, created_at) 完全相同，6、7 另一组相同，只能靠 id 区分先后
+        rows.add(article(1L, true, 0, 1));
+        for (long id = 2; id <= 5; id++) {
+            rows.add(article(id, false, 10, 1));
+        }
+        rows.add(article(6L, false, 5, 1));
+        rows.add(article(7L, false, 5, 1));
+        rows.add(article(8L, false, 20, 0));
+
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CursorPage<Article> page = articleService.getArticleCursorPage(cursor, 2, 1, false);
+            page.getRecords().forEach(article -> ids.add(article.getId()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null && pages < 10);
+
+        // 每页边界都落在并列的记录中间，不跳过也不重复
+        assertEquals(List.of(1L, 5L, 4L, 3L, 2L, 7L, 6L), ids);
+        assertEquals(4, pages);
+    }
+
+    @Test
+    public void testSameMillisecondNotSkipped() {
+        rows.add(article(1L, false, 0, 1));
+        Article sameMillis = article(2L, false, 0, 1);
+        sameMillis.setCreatedAt(sameMillis.getCreatedAt().plusNanos(1_000));
+        rows.add(sameMillis);
+        rows.add(article(3L, false, 0, 1));
+
+        CursorPage<Article> first = articleService.getArticleCursorPage(null, 1, 1, false);
+        CursorPage<Article> second = articleService.getArticleCursorPage(first.getNextCursor(), 2, 1, false);
+
+        assertEquals(2L, first.getRecords().get(0).getId());
+        assertEquals(List.of(3L, 1L), second.getRecords().stream().map(Article::getId).toList());
+    }
+
+    /**
+     * 按映射文件渲染 SQL，参数按占位符顺序内联为字面量
+     */
+    private String render(Integer status, Boolean afterTop, LocalDateTime afterCreatedAt, Long afterId, int limit) {
+        MapperMethod.ParamMap<Object> params = new MapperMethod.ParamMap<>();
+        params.put("status", status);
+        params.put("afterTop", afterTop);
+        params.put("afterCreatedAt", afterCreatedAt);
+        params.put("afterId", afterId);
+        params.put("limit", limit);
+        BoundSql boundSql = statement.getBoundSql(params);
+        StringBuilder sql = new StringBuilder();
+        String[] parts = boundSql.getSql().replaceAll("\\s+", " ").trim().split("\\?", -1);
+        List<ParameterMapping> mappings = boundSql.getParameterMappings();
+        assertEquals(parts.length - 1, mappings.size());
+        for (int i = 0; i < mappings.size(); i++) {
+            sql.append(parts[i]).append(literal(params.get(mappings.get(i).getProperty())));
+        }
+        return sql.append(parts[parts.length - 1]).toString();
+    }
+
+    private String literal(Object value) {
+        if (value instanceof Boolean flag) {
+            return flag ? "1" : "0";
+        }
+        if (value instanceof LocalDateTime dateTime) {
+            return "'" + dateTime.format(SQL_DATETIME) + "'";
+        }
+        return String.valueOf(value);
+    }
+
+    private List<Article> execute(Integer status, Boolean afterTop, LocalDateTime afterCreatedAt, Long afterId, int limit)
+            throws JSQLParserException {
+        PlainSelect select = (PlainSelect) CCJSqlParserUtil.parse(render(status, afterTop, afterCreatedAt, afterId, limit));
+        Comparator<Map<String, Object>> order = null;
+        for (OrderByElement element : select.getOrderByElements()) {
+            String column = ((Column) element.getExpression()).getColumnName();
+            Comparator<Map<String, Object>> next = (left, right) -> compare(left.get(column), right.get(column));
+            next = element.isAsc() ? next : next.reversed();
+            order = order == null ? next : order.thenComparing(next);
+        }
+        long rowCount = ((LongValue) select.getLimit().getRowCount()).getValue();
+        List<Map<String, Object>> matched = new ArrayList<>();
+        for (Article article : rows) {
+            Map<String, Object> row = columns(article);
+            if (select.getWhere() == null || (Boolean) eval(select.getWhere(), row)) {
+                matched.add(row);
+            }
+        }
+        return matched.stream().sorted(order).limit(rowCount)
+                .map(row -> rows.stream().filter(article -> article.getId().equals(row.get("id"))).findFirst().orElseThrow())
+                .toList();
+    }
+
+    private Object eval(Expression expression, Map<String, Object> row) {
+        if (expression instanceof AndExpression and) {
+            return (Boolean) eval(and.getLeftExpression(), row) && (Boolean) eval(and.getRightExpression(), row);
+        }
+        if (expression instanceof OrExpression or) {
+            return (Boolean) eval(or.getLeftExpression(), row) || (Boolean) eval(or.getRightExpression(), row);
+        }
+        if (expression instanceof Parenthesis parenthesis) {
+            return eval(parenthesis.getExpression(), row);
+        }
+        if (expression instanceof ParenthesedExpressionList<?> list && list.size() == 1) {
+            return eval(list.get(0), row);
+        }
+        if (expression instanceof EqualsTo equalsTo) {
+            return compare(eval(equalsTo.getLeftExpression(), row), eval(equalsTo.getRightExpression(), row)) == 0;
+        }
+        if (expression instanceof MinorThan minorThan) {
+            return compare(eval(minorThan.getLeftExpression(), row), eval(minorThan.getRightExpression(), row)) < 0;
+        }
+        if (expression instanceof Column column) {
+            return row.get(column.getColumnName());
+        }
+        if (expression instanceof LongValue value) {
+            return value.getValue();
+        }
+        if (expression instanceof StringValue value) {
+            return value.getValue();
+        }
+        throw new IllegalArgumentException("不支持的表达式: " + expression);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private int compare(Object left, Object right) {
+        return ((Comparable) left).compareTo(right);
+    }
+
+    private Map<String, Object> columns(Article article) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", article.getId());
+        row.put("status", article.getStatus().longValue());
+        row.put("is_top", Boolean.TRUE.equals(article.getIsTop()) ? 1L : 0L);
+        row.put("created_at", article.getCreatedAt().format(SQL_DATETIME));
+        return row;
+    }
+
+    private Article article(Long id, boolean top, int minutes, int status) {
+        Article article = new Article();
+        article.setId(id);
+        article.setIsTop(top);
+        article.setStatus(status);
+        article.setCreatedAt(BASE_TIME.plusMinutes(minutes));
+        return article;
+    }
+}
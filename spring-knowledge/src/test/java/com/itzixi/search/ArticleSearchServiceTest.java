@@ -0,0 +1,74 @@
+package com.itzixi.search;
+
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.itzixi.entity.Article;
+import com.itzixi.mapper.ArticleMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 文章搜索服务测试：引擎初始化失败被标记为不可用时直接走数据库搜索，引擎异常时降级
+ */
+public class ArticleSearchServiceTest {
+
+    private final SearchEngine engine = mock(SearchEngine.class);
+
+    private final DatabaseSearchEngine fallbackEngine = mock(DatabaseSearchEngine.class);
+
+    private final ArticleMapper articleMapper = mock(ArticleMapper.class);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ArticleSearchService searchService;
+
+    @BeforeEach
+    public void setUp() {
+        when(engine.name()).thenReturn("elasticsearch");
+        when(fallbackEngine.name()).thenReturn("database");
+        when(fallbackEngine.search("高血压", 1, 10)).thenReturn(new SearchResult(List.of(3L), 1));
+        when(articleMapper.selectByIdsWithDetails(List.of(3L))).thenReturn(List.of(article(3L)));
+        searchService = new ArticleSearchService(List.of(engine, fallbackEngine), fallbackEngine,
+                articleMapper, meterRegistry);
+        ReflectionTestUtils.setField(searchService, "engineName", "elasticsearch");
+    }
+
+    @Test
+    public void testUnavailableEngineFallsBackWithoutRequest() {
+        when(engine.available()).thenReturn(false);
+
+        IPage<Article> page = searchService.search("高血压", 1, 10);
+
+        assertEquals(List.of(3L), page.getRecords().stream().map(Article::getId).toList());
+        verify(engine, never()).search(anyString(), anyInt(), anyInt());
+        assertEquals(1.0, meterRegistry.get("search.fallback").counter().count());
+    }
+
+    @Test
+    public void testEngineErrorFallsBack() {
+        when(engine.available()).thenReturn(true);
+        when(engine.search("高血压", 1, 10)).thenThrow(new IllegalStateException("连接失败"));
+
+        IPage<Article> page = searchService.search("高血压", 1, 10);
+
+        assertEquals(1, page.getTotal());
+        assertEquals(1.0, meterRegistry.get("search.fallback").counter().count());
+    }
+
+    private Article article(Long id) {
+        Article article = new Article();
+        article.setId(id);
+        return article;
+    }
+}
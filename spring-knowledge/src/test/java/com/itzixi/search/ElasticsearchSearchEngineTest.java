@@ -0,0 +1,150 @@
+package com.itzixi.search;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.elasticsearch.client.ClientConfiguration;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchClients;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Elasticsearch 搜索引擎测试，用本地 HTTP 服务模拟 Elasticsearch，校验发出的请求和对响应的解析，
+ * 以及缺少 IK 分词插件时建索引失败后标记为不可用
+ */
+public class ElasticsearchSearchEngineTest {
+
+    private static final String SEARCH_RESPONSE = """
+            {"took":1,"timed_out":false,"_shards":{"total":1,"successful":1,"skipped":0,"failed":0},
+             "hits":{"total":{"value":42,"relation":"eq"},"max_score":2.0,"hits":[
+               {"_index":"article","_id":"7","_score":2.0,"_source":{"id":7}},
+               {"_index":"article","_id":"3","_score":1.0,"_source":{"id":3}}]}}""";
+
+    private static final String DELETE_BY_QUERY_RESPONSE = """
+            {"took":1,"timed_out":false,"total":3,"deleted":3,"batches":1,"version_conflicts":0,"noops":0,
+             "retries":{"bulk":0,"search":0},"throttled_millis":0,"requests_per_second":-1.0,
+             "throttled_until_millis":0,"failures":[]}""";
+
+    private static final String MISSING_ANALYZER_RESPONSE = """
+            {"error":{"root_cause":[{"type":"mapper_parsing_exception",
+             "reason":"analyzer [ik_max_word] has not been configured in mappings"}],
+             "type":"mapper_parsing_exception","reason":"analyzer [ik_max_word] has not been configured in mappings"},
+             "status":400}""";
+
+    private final List<String[]> requests = new CopyOnWriteArrayList<>();
+
+    private volatile boolean missingAnalyzer;
+
+    private HttpServer server;
+
+    private ElasticsearchSearchEngine engine;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        ElasticsearchClient client = ElasticsearchClients.createImperative(
+                ClientConfiguration.create("localhost:" + server.getAddress().getPort()));
+        engine = new ElasticsearchSearchEngine(new ElasticsearchTemplate(client));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testSearchSendsMultiMatchAndReadsIds() {
+        SearchResult result = engine.search("高血压", 2, 10);
+
+        assertEquals(List.of(7L, 3L), result.articleIds());
+        assertEquals(42, result.total());
+        assertEquals(1, requests.size());
+        String path = requests.get(0)[0];
+        String body = requests.get(0)[1];
+        assertTrue(path.startsWith("/article/_search"), path);
+        assertTrue(body.contains("\"multi_match\""), body);
+        assertTrue(body.contains("\"title^3\""), body);
+        assertTrue(body.contains("\"from\":10") && body.contains("\"size\":10"), body);
+        assertTrue(body.contains("\"status\""), body);
+        assertTrue(body.contains("\"includes\":[\"id\"]"), body);
+    }
+
+    @Test
+    public void testSearchBeyondResultWindowSkipsRequest() {
+        SearchResult result = engine.search("高血压", 1001, 10);
+
+        assertTrue(result.articleIds().isEmpty());
+        assertTrue(requests.isEmpty());
+    }
+
+    @Test
+    public void testDeleteSendsOneRequestForAllIds() {
+        engine.delete(List.of(1L, 2L, 3L));
+
+        assertEquals(1, requests.size());
+        String path = requests.get(0)[0];
+        String body = requests.get(0)[1];
+        assertTrue(path.startsWith("/article/_delete_by_query"), path);
+        assertTrue(body.contains("\"ids\"") && body.contains("\"1\"") && body.contains("\"3\""), body);
+    }
+
+    @Test
+    public void testMissingAnalyzerMarksEngineUnavailable() {
+        missingAnalyzer = true;
+
+        engine.initIndex();
+
+        assertFalse(engine.available());
+        // 先检查索引是否存在，再按映射创建，创建失败后不再发出其他请求
+        assertEquals(2, requests.size());
+        assertTrue(requests.get(1)[1].contains("ik_max_word"), requests.get(1)[1]);
+    }
+
+    @Test
+    public void testExistingIndexMarksEngineAvailable() {
+        engine.initIndex();
+
+        assertTrue(engine.available());
+        assertEquals(1, requests.size());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().toString();
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        requests.add(new String[]{path, body});
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.getResponseHeaders().add("X-Elastic-Product", "Elasticsearch");
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            // 索引是否存在
+            exchange.sendResponseHeaders(missingAnalyzer ? 404 : 200, -1);
+            exchange.close();
+            return;
+        }
+        int status = 200;
+        String response = path.contains("_delete_by_query") ? DELETE_BY_QUERY_RESPONSE : SEARCH_RESPONSE;
+        if ("PUT".equals(exchange.getRequestMethod()) && missingAnalyzer) {
+            status = 400;
+            response = MISSING_ANALYZER_RESPONSE;
+        }
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
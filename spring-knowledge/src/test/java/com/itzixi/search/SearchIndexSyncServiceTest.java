@@ -0,0 +1,123 @@
+package com.itzixi.search;
+
+import com.itzixi.common.enums.ArticleStatus;
+import com.itzixi.config.RabbitMQConfig;
+import com.itzixi.dto.ArticleMessage;
+import com.itzixi.entity.Article;
+import com.itzixi.mapper.ArticleMapper;
+import com.itzixi.mapper.TagMapper;
+import com.itzixi.service.OutboxService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 搜索索引同步测试：消息消费时同步写入索引，失败时抛出异常交给消息重试；
+ * 启动补齐失败的批次写入发件箱，不留在内存里
+ */
+public class SearchIndexSyncServiceTest {
+
+    private final ArticleSearchService articleSearchService = mock(ArticleSearchService.class);
+
+    private final SearchEngine engine = mock(SearchEngine.class);
+
+    private final ArticleMapper articleMapper = mock(ArticleMapper.class);
+
+    private final TagMapper tagMapper = mock(TagMapper.class);
+
+    private final OutboxService outboxService = mock(OutboxService.class);
+
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+
+    private SearchIndexSyncService syncService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        when(articleSearchService.currentEngine()).thenReturn(engine);
+        when(engine.requiresIndex()).thenReturn(true);
+        when(engine.available()).thenReturn(true);
+        when(tagMapper.selectTagNamesByArticleIds(anyList())).thenReturn(List.of());
+        doAnswer(invocation -> {
+            ((Consumer<Object>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        syncService = new SearchIndexSyncService(articleSearchService, articleMapper, tagMapper, null,
+                new SimpleMeterRegistry(), Runnable::run, outboxService, transactionTemplate);
+        ReflectionTestUtils.setField(syncService, "batchSize", 2);
+    }
+
+    @Test
+    public void testSyncWritesPublishedAndDeletesMissing() {
+        when(articleMapper.selectBatchIds(List.of(1L))).thenReturn(List.of(article(1L)));
+
+        syncService.sync(1L);
+        syncService.sync(2L);
+
+        verify(engine).index(argThat(docs -> docs.size() == 1));
+        verify(engine).delete(List.of(2L));
+    }
+
+    @Test
+    public void testSyncFailurePropagatesForRetry() {
+        when(articleMapper.selectBatchIds(List.of(1L))).thenReturn(List.of(article(1L)));
+        doThrow(new IllegalStateException("索引不可用")).when(engine).index(anyList());
+
+        assertThrows(IllegalStateException.class, () -> syncService.sync(1L));
+        verify(outboxService, never()).enqueue(any(), any(), any());
+    }
+
+    @Test
+    public void testFailedRecoveryBatchGoesToOutbox() {
+        when(articleMapper.selectBatchIds(List.of(1L, 2L))).thenReturn(List.of(article(1L), article(2L)));
+        when(articleMapper.selectBatchIds(List.of(3L))).thenReturn(List.of(article(3L)));
+        doThrow(new IllegalStateException("索引不可用"))
+                .when(engine).index(argThat(docs -> docs != null && docs.size() == 2));
+
+        syncService.syncInBatches(List.of(1L, 2L, 3L));
+
+        verify(outboxService).enqueue(eq(RabbitMQConfig.ARTICLE_EXCHANGE), eq(RabbitMQConfig.ARTICLE_UPDATE_ROUTING_KEY),
+                argThat(message -> ((ArticleMessage) message).getArticleId() == 1L));
+        verify(outboxService).enqueue(eq(RabbitMQConfig.ARTICLE_EXCHANGE), eq(RabbitMQConfig.ARTICLE_UPDATE_ROUTING_KEY),
+                argThat(message -> ((ArticleMessage) message).getArticleId() == 2L));
+        verify(outboxService, never()).enqueue(any(), any(),
+                argThat(message -> ((ArticleMessage) message).getArticleId() == 3L));
+        verify(engine).index(argThat(docs -> docs != null && docs.size() == 1));
+    }
+
+    @Test
+    public void testUnavailableEngineSkipsWrites() {
+        when(engine.available()).thenReturn(false);
+
+        syncService.sync(1L);
+        syncService.recoverIndex();
+
+        verify(articleMapper, never()).selectBatchIds(anyList());
+        verify(engine, never()).index(anyList());
+    }
+
+    private Article article(Long id) {
+        Article article = new Article();
+        article.setId(id);
+        article.setTitle("文章" + id);
+        article.setStatus(ArticleStatus.PUBLISHED.getCode());
+        return article;
+    }
+}
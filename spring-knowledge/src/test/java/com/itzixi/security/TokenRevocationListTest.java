@@ -0,0 +1,94 @@
+package com.itzixi.security;
+
+import com.alibaba.fastjson2.JSON;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Token 吊销列表测试：吊销通知经发布订阅同步到其他节点、忽略本节点发出的通知、条目在 Token 过期时移除。
+ * 两个实例代表两个节点，发布的消息由测试转交给另一个节点
+ */
+public class TokenRevocationListTest {
+
+    private final StringRedisTemplate redisA = mock(StringRedisTemplate.class, RETURNS_DEEP_STUBS);
+
+    private final StringRedisTemplate redisB = mock(StringRedisTemplate.class, RETURNS_DEEP_STUBS);
+
+    private final TokenRevocationList nodeA = new TokenRevocationList(redisA);
+
+    private final TokenRevocationList nodeB = new TokenRevocationList(redisB);
+
+    @Test
+    public void testRevocationFromOtherNodeApplied() {
+        nodeA.revoke("hash-1", System.currentTimeMillis() + 60_000);
+        assertTrue(nodeA.isRevoked("hash-1"));
+        assertFalse(nodeB.isRevoked("hash-1"));
+
+        nodeB.onMessage(publishedBy(redisA), null);
+
+        assertTrue(nodeB.isRevoked("hash-1"));
+    }
+
+    @Test
+    public void testOwnRevocationIgnored() {
+        TokenRevocationList.TokenRevocationMessage own = new TokenRevocationList.TokenRevocationMessage(
+                (String) ReflectionTestUtils.getField(nodeA, "nodeId"),
+                "hash-2", System.currentTimeMillis() + 60_000);
+
+        nodeA.onMessage(message(JSON.toJSONString(own)), null);
+
+        assertFalse(nodeA.isRevoked("hash-2"));
+    }
+
+    @Test
+    public void testMalformedMessageIgnored() {
+        nodeB.onMessage(message("not json"), null);
+
+        assertFalse(nodeB.isRevoked("not json"));
+    }
+
+    @Test
+    public void testExpiredTokenNotRecorded() {
+        nodeA.revoke("hash-3", System.currentTimeMillis() - 1000);
+
+        assertFalse(nodeA.isRevoked("hash-3"));
+        verify(redisA, never()).convertAndSend(anyString(), anyString());
+    }
+
+    @Test
+    public void testEntryRemovedAtExpiry() throws InterruptedException {
+        long expiresAt = System.currentTimeMillis() + 1000;
+        nodeB.onMessage(message(JSON.toJSONString(new TokenRevocationList.TokenRevocationMessage(
+                "other", "hash-4", expiresAt))), null);
+        assertTrue(nodeB.isRevoked("hash-4"));
+
+        Thread.sleep(Math.max(0, expiresAt - System.currentTimeMillis() + 200));
+
+        assertFalse(nodeB.isRevoked("hash-4"));
+    }
+
+    private DefaultMessage publishedBy(StringRedisTemplate redis) {
+        ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+        verify(redis).convertAndSend(eq(TokenRevocationList.REVOCATION_CHANNEL), payload.capture());
+        return message(payload.getValue());
+    }
+
+    private DefaultMessage message(String body) {
+        return new DefaultMessage(TokenRevocationList.REVOCATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,102 @@
+package com.itzixi.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * AI 回复缓存测试：问题归一化、精确命中和未命中，语义匹配的向量模型用 mock 代替
+ */
+public class AiResponseCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+
+    @Test
+    public void testNormalize() {
+        assertEquals("什么是高血压", AiResponseCache.normalize("什么是高血压？"));
+        assertEquals("hello world", AiResponseCache.normalize("  ＨＥＬＬＯ \t\n World!!! "));
+        assertEquals("感冒了怎么办", AiResponseCache.normalize("感冒了怎么办。。。"));
+        assertEquals("", AiResponseCache.normalize(null));
+    }
+
+    @Test
+    public void testExactHitAfterNormalization() {
+        AiResponseCache cache = newCache(false);
+        cache.put("什么是高血压？", "高血压是指血压持续升高");
+
+        assertEquals("高血压是指血压持续升高", cache.lookup("  什么是高血压?").block());
+        assertEquals("高血压是指血压持续升高", cache.lookup("什么是高血压").block());
+        assertEquals(2.0, count("exact"));
+    }
+
+    @Test
+    public void testMiss() {
+        AiResponseCache cache = newCache(false);
+        cache.put("什么是高血压", "高血压是指血压持续升高");
+
+        assertNull(cache.lookup("什么是低血压").block());
+        assertEquals(1.0, count("miss"));
+    }
+
+    @Test
+    public void testIncompleteOrOversizedAnswerNotCached() {
+        AiResponseCache cache = newCache(false);
+        cache.put("空回复", "");
+        cache.put("超长回复", "长".repeat(101));
+
+        assertNull(cache.lookup("空回复").block());
+        assertNull(cache.lookup("超长回复").block());
+    }
+
+    @Test
+    public void testSemanticHitAboveThreshold() {
+        when(embeddingModel.embed(anyString())).thenAnswer(invocation -> {
+            String text = invocation.getArgument(0);
+            if (text.contains("血压")) {
+                return text.contains("高") ? new float[]{1f, 0.1f} : new float[]{1f, 0.2f};
+            }
+            return new float[]{0f, 1f};
+        });
+        AiResponseCache cache = newCache(true);
+        cache.put("什么是高血压", "高血压是指血压持续升高");
+
+        assertEquals("高血压是指血压持续升高", cache.lookup("血压偏离正常值是什么意思").block());
+        assertNull(cache.lookup("感冒了怎么办").block());
+        assertEquals(1.0, count("semantic"));
+        assertEquals(1.0, count("miss"));
+    }
+
+    @Test
+    public void testSemanticFailureFallsBackToMiss() {
+        when(embeddingModel.embed(anyString())).thenThrow(new IllegalStateException("向量模型不可用"));
+        AiResponseCache cache = newCache(true);
+        cache.put("什么是高血压", "高血压是指血压持续升高");
+
+        assertEquals("高血压是指血压持续升高", cache.lookup("什么是高血压").block());
+        assertNull(cache.lookup("感冒了怎么办").block());
+        assertEquals(1.0, count("miss"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private AiResponseCache newCache(boolean semanticEnabled) {
+        ObjectProvider<EmbeddingModel> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(embeddingModel);
+        return new AiResponseCache(provider, meterRegistry, true, 100, Duration.ofHours(1), 100,
+                semanticEnabled, 0.9);
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("ai.cache.requests").tag("result", result).counter().count();
+    }
+}
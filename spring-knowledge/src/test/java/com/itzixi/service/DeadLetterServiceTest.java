@@ -0,0 +1,78 @@
+package com.itzixi.service;
+
+import com.itzixi.config.RabbitMQConfig;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.GetResponse;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.rabbit.core.ChannelCallback;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 死信重放测试，通道用 mock 代替，校验先等 broker 确认再确认死信
+ */
+public class DeadLetterServiceTest {
+
+    private static final String QUEUE = RabbitMQConfig.ARTICLE_PUBLISH_QUEUE;
+
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+
+    private final Channel channel = mock(Channel.class);
+
+    private final DeadLetterService deadLetterService = new DeadLetterService(rabbitTemplate, mock(AmqpAdmin.class));
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testAcksDeadLettersAfterPublisherConfirm() throws Exception {
+        when(rabbitTemplate.execute(any(ChannelCallback.class)))
+                .thenAnswer(invocation -> ((ChannelCallback<Integer>) invocation.getArgument(0)).doInRabbit(channel));
+        String deadLetterQueue = RabbitMQConfig.deadLetterQueueName(QUEUE);
+        when(channel.basicGet(deadLetterQueue, false)).thenReturn(message(1), message(2), null);
+
+        assertEquals(2, deadLetterService.replay(QUEUE, 10));
+
+        InOrder order = inOrder(channel);
+        order.verify(channel).confirmSelect();
+        order.verify(channel, times(2))
+                .basicPublish(eq(""), eq(QUEUE), any(AMQP.BasicProperties.class), any(byte[].class));
+        order.verify(channel).waitForConfirmsOrDie(anyLong());
+        order.verify(channel).basicAck(2, true);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testConfirmFailureLeavesDeadLetters() throws Exception {
+        when(rabbitTemplate.execute(any(ChannelCallback.class)))
+                .thenAnswer(invocation -> ((ChannelCallback<Integer>) invocation.getArgument(0)).doInRabbit(channel));
+        when(channel.basicGet(anyString(), anyBoolean())).thenReturn(message(1), (GetResponse) null);
+        doThrow(new TimeoutException("确认超时")).when(channel).waitForConfirmsOrDie(anyLong());
+
+        assertThrows(TimeoutException.class, () -> deadLetterService.replay(QUEUE, 10));
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+    }
+
+    private GetResponse message(long deliveryTag) {
+        return new GetResponse(new Envelope(deliveryTag, false, "", RabbitMQConfig.deadLetterQueueName(QUEUE)),
+                new AMQP.BasicProperties(), new byte[]{1}, 0);
+    }
+}
@@ -0,0 +1,139 @@
+package com.itzixi.service;
+
+import com.itzixi.common.exception.BusinessException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+/**
+ * 推理调度器测试，用手动完成的 Flux 代替模型
+ */
+public class InferenceSchedulerTest {
+
+    private InferenceScheduler scheduler;
+
+    private final List<String> started = Collections.synchronizedList(new ArrayList<>());
+
+    private final Map<String, Sinks.Empty<Void>> running = new ConcurrentHashMap<>();
+
+    private final Map<String, List<Integer>> positions = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    public void setUp() {
+        scheduler = new InferenceScheduler(new SimpleMeterRegistry(), 1, 10, 2);
+    }
+
+    @Test
+    public void testRoundRobinBetweenUsers() {
+        submit("alice", "a1");
+        submit("alice", "a2");
+        submit("alice", "a3");
+        submit("bob", "b1");
+
+        assertEquals(List.of("a1"), started);
+        assertEquals(List.of(2), positions.get("b1"));
+        assertEquals(List.of(1), positions.get("a2"));
+        assertEquals(List.of(2, 3), positions.get("a3"));
+
+        finish("a1");
+        finish("a2");
+        finish("b1");
+        assertEquals(List.of("a1", "a2", "b1", "a3"), started);
+        assertEquals(1, scheduler.getInFlight());
+        assertEquals(0, scheduler.getQueued());
+
+        finish("a3");
+        assertEquals(0, scheduler.getInFlight());
+    }
+
+    @Test
+    public void testRejectWhenUserQueueFull() {
+        submit("alice", "a1");
+        submit("alice", "a2");
+        submit("alice", "a3");
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        scheduler.schedule("alice", () -> generation("a4"), null).subscribe(value -> { }, error::set);
+
+        assertInstanceOf(BusinessException.class, error.get());
+        assertEquals(2, scheduler.getQueued());
+    }
+
+    @Test
+    public void testCancelReleasesSlotAndQueuePosition() {
+        Disposable first = submit("alice", "a1");
+        Disposable queued = submit("bob", "b1");
+        submit("carol", "c1");
+
+        queued.dispose();
+        assertEquals(List.of(1), positions.get("c1").subList(1, 2));
+        assertEquals(1, scheduler.getQueued());
+
+        first.dispose();
+        assertEquals(List.of("a1", "c1"), started);
+        assertEquals(1, scheduler.getInFlight());
+    }
+
+    @Test
+    public void testBackgroundWaitsForUserRequests() {
+        submit("alice", "a1");
+        scheduler.scheduleBackground("summary", () -> generation("s1")).subscribe();
+        submit("bob", "b1");
+
+        finish("a1");
+        assertEquals(List.of("a1", "b1"), started);
+        assertEquals(1, scheduler.getQueued());
+
+        finish("b1");
+        assertEquals(List.of("a1", "b1", "s1"), started);
+    }
+
+    @Test
+    public void testBackgroundLeavesSlotForUsers() {
+        scheduler = new InferenceScheduler(new SimpleMeterRegistry(), 2, 10, 2);
+        scheduler.scheduleBackground("summary", () -> generation("s1")).subscribe();
+        scheduler.scheduleBackground("summary", () -> generation("s2")).subscribe();
+        assertEquals(List.of("s1"), started);
+
+        submit("alice", "a1");
+        assertEquals(List.of("s1", "a1"), started);
+
+        finish("s1");
+        assertEquals(List.of("s1", "a1"), started);
+        finish("a1");
+        assertEquals(List.of("s1", "a1", "s2"), started);
+    }
+
+    private Disposable submit(String userId, String name) {
+        return scheduler.schedule(userId, () -> generation(name),
+                        position -> {
+                            if (position > 0) {
+                                positions.computeIfAbsent(name, key -> new ArrayList<>()).add(position);
+                            }
+                        })
+                .subscribe();
+    }
+
+    private Flux<String> generation(String name) {
+        started.add(name);
+        Sinks.Empty<Void> sink = Sinks.empty();
+        running.put(name, sink);
+        return sink.asMono().thenMany(Flux.just(name));
+    }
+
+    private void finish(String name) {
+        running.get(name).tryEmitEmpty();
+    }
+}
@@ -0,0 +1,96 @@
+package com.itzixi.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 消息去重测试，布隆过滤器按 10 个元素、50% 误判率创建，写入 1000 个元素后几乎总是命中；
+ * Redis 可用时以 Redis 为准，本地精确集合按条数封顶
+ */
+public class MessageDeduplicatorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    public void testBloomHitAloneDoesNotDropMessage() {
+        MessageDeduplicator deduplicator = newDeduplicator(mock(StringRedisTemplate.class), false);
+        for (int i = 0; i < 1000; i++) {
+            deduplicator.complete("done-" + i);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(deduplicator.tryAcquire("queue", "new-" + i, false));
+            assertFalse(deduplicator.seenLocally("queue", "new-" + i));
+        }
+        assertFalse(deduplicator.tryAcquire("queue", "done-1", false));
+        assertTrue(deduplicator.seenLocally("queue", "done-2"));
+    }
+
+    @Test
+    public void testRedisFailureFailsOpen() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        when(redisTemplate.opsForValue()).thenThrow(new RedisConnectionFailureException("连接失败"));
+        MessageDeduplicator deduplicator = newDeduplicator(redisTemplate, true);
+        for (int i = 0; i < 1000; i++) {
+            deduplicator.completeLocally("done-" + i);
+        }
+
+        assertTrue(deduplicator.tryAcquire("queue", "new-1", false));
+        assertTrue(deduplicator.tryAcquire("queue", "new-1", true));
+        assertFalse(deduplicator.tryAcquire("queue", "done-1", false));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRedisDecidesWhenAvailable() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> ops = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(ops);
+        when(ops.setIfAbsent(eq("mq:dedup:local-done"), anyString(), any(Duration.class))).thenReturn(true);
+        when(ops.setIfAbsent(eq("mq:dedup:other-node-done"), anyString(), any(Duration.class))).thenReturn(false);
+        when(ops.get("mq:dedup:other-node-done")).thenReturn("done");
+        MessageDeduplicator deduplicator = newDeduplicator(redisTemplate, true);
+        deduplicator.completeLocally("local-done");
+
+        // 本地记录不参与判断，Redis 占位成功就处理，其他实例处理过就跳过
+        assertTrue(deduplicator.tryAcquire("queue", "local-done", false));
+        assertFalse(deduplicator.tryAcquire("queue", "other-node-done", true));
+    }
+
+    @Test
+    public void testLocalSetBoundedByMaxSize() {
+        MessageDeduplicator deduplicator = new MessageDeduplicator(mock(StringRedisTemplate.class), meterRegistry,
+                true, false, Duration.ofMinutes(10), Duration.ofMinutes(5), 10, 0.5, 100);
+        for (int i = 0; i < 1000; i++) {
+            deduplicator.complete("done-" + i);
+        }
+
+        // 本地内存按条数封顶，淘汰掉的消息再次到达时照常处理
+        assertTrue(deduplicator.localEntries() <= 100);
+        assertEquals((double) deduplicator.localEntries(), meterRegistry.get("mq.dedup.local.entries").gauge().value());
+        long accepted = IntStream.range(0, 1000)
+                .filter(i -> deduplicator.tryAcquire("queue", "done-" + i, false))
+                .count();
+        assertTrue(accepted >= 900);
+    }
+
+    private MessageDeduplicator newDeduplicator(StringRedisTemplate redisTemplate, boolean redisEnabled) {
+        return new MessageDeduplicator(redisTemplate, meterRegistry, true, redisEnabled,
+                Duration.ofMinutes(10), Duration.ofMinutes(5), 10, 0.5, 10_000);
+    }
+}
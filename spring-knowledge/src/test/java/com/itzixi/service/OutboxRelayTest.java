@@ -0,0 +1,235 @@
+package com.itzixi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itzixi.config.RabbitMQConfig;
+import com.itzixi.entity.OutboxEvent;
+import com.itzixi.mapper.OutboxEventMapper;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.Return;
+import com.rabbitmq.client.ReturnCallback;
+import com.rabbitmq.client.impl.LongStringHelper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.boot.autoconfigure.amqp.RabbitProperties;
+import org.springframework.boot.autoconfigure.amqp.RabbitTemplateConfigurer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.RETURNS_DEFAULTS;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * 发件箱投递测试，数据库和 RabbitMQ 用 mock 代替，事务用记录是否处于事务中的模板代替
+ */
+public class OutboxRelayTest {
+
+    private final OutboxEventMapper outboxEventMapper = mock(OutboxEventMapper.class);
+
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS));
+
+    private final RecordingTransactionTemplate transactionTemplate = new RecordingTransactionTemplate();
+
+    private final ThreadPoolTaskExecutor relayExecutor = new ThreadPoolTaskExecutor();
+
+    private OutboxRelay relay;
+
+    @BeforeEach
+    public void setUp() {
+        when(rabbitTemplate.getConnectionFactory().isPublisherConfirms()).thenReturn(true);
+        relayExecutor.setCorePoolSize(1);
+        relayExecutor.setMaxPoolSize(1);
+        relayExecutor.setWaitForTasksToCompleteOnShutdown(true);
+        relayExecutor.initialize();
+        relay = newRelay(rabbitTemplate);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        relayExecutor.shutdown();
+    }
+
+    @Test
+    public void testPublishesOutsideTransaction() throws Exception {
+        when(outboxEventMapper.selectDueForUpdate(any(), anyInt())).thenReturn(List.of(event(1L), event(2L)));
+        AtomicBoolean publishedInTransaction = new AtomicBoolean();
+        doAnswer(invocation -> {
+            publishedInTransaction.compareAndSet(false, transactionTemplate.inTransaction.get());
+            CorrelationData correlation = invocation.getArgument(4);
+            correlation.getFuture().complete(new CorrelationData.Confirm(true, null));
+            return null;
+        }).when(rabbitTemplate).convertAndSend(anyString(), anyString(), any(Object.class),
+                any(MessagePostProcessor.class), any(CorrelationData.class));
+        CountDownLatch marked = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            marked.countDown();
+            return 2;
+        }).when(outboxEventMapper).markSent(any(), any());
+
+        relay.trigger();
+
+        assertTrue(marked.await(5, TimeUnit.SECONDS));
+        assertFalse(publishedInTransaction.get(), "等待确认期间不能持有事务");
+        verify(outboxEventMapper).claim(eq(List.of(1L, 2L)), any(LocalDateTime.class));
+        verify(outboxEventMapper).markSent(eq(List.of(1L, 2L)), any(LocalDateTime.class));
+    }
+
+    @Test
+    public void testTriggersCoalesce() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger polls = new AtomicInteger();
+        when(outboxEventMapper.selectDueForUpdate(any(), anyInt())).thenAnswer(invocation -> {
+            polls.incrementAndGet();
+            release.await();
+            return List.of();
+        });
+
+        relay.trigger();
+        // 第一轮开始后的唤醒合并为一轮
+        while (polls.get() == 0) {
+            Thread.sleep(1);
+        }
+        for (int i = 0; i < 1000; i++) {
+            relay.trigger();
+        }
+        release.countDown();
+        relayExecutor.shutdown();
+        relayExecutor.getThreadPoolExecutor().awaitTermination(5, TimeUnit.SECONDS);
+
+        assertEquals(2, polls.get());
+    }
+
+    /**
+     * 使用真实的 RabbitTemplate 和 CachingConnectionFactory，broker 用 mock 通道代替：
+     * 发布后先退回消息再确认，与 broker 处理无法路由的 mandatory 消息的顺序一致
+     */
+    @Test
+    public void testReturnedEventIsRetried() throws Exception {
+        Channel channel = mock(Channel.class);
+        when(channel.isOpen()).thenReturn(true);
+        when(channel.getNextPublishSeqNo()).thenReturn(1L);
+        Connection connection = mock(Connection.class);
+        when(connection.isOpen()).thenReturn(true);
+        when(connection.createChannel()).thenReturn(channel);
+        com.rabbitmq.client.ConnectionFactory rabbitConnectionFactory = mock(com.rabbitmq.client.ConnectionFactory.class,
+                invocation -> invocation.getMethod().getReturnType() == Connection.class
+                        ? connection : RETURNS_DEFAULTS.answer(invocation));
+        CachingConnectionFactory connectionFactory = new CachingConnectionFactory(rabbitConnectionFactory);
+        connectionFactory.setPublisherConfirmType(CachingConnectionFactory.ConfirmType.CORRELATED);
+        connectionFactory.setPublisherReturns(true);
+        RabbitTemplate template = new RabbitMQConfig().rabbitTemplate(
+                new RabbitTemplateConfigurer(new RabbitProperties()), connectionFactory);
+
+        ArgumentCaptor<ReturnCallback> returnCallback = ArgumentCaptor.forClass(ReturnCallback.class);
+        ArgumentCaptor<ConfirmListener> confirmListener = ArgumentCaptor.forClass(ConfirmListener.class);
+        AtomicBoolean mandatory = new AtomicBoolean();
+        doAnswer(invocation -> {
+            mandatory.set(invocation.getArgument(2));
+            AMQP.BasicProperties properties = invocation.getArgument(3);
+            Map<String, Object> headers = new HashMap<>();
+            properties.getHeaders().forEach((key, value) -> headers.put(key, LongStringHelper.asLongString(value.toString())));
+            verify(channel).addReturnListener(returnCallback.capture());
+            verify(channel).addConfirmListener(confirmListener.capture());
+            returnCallback.getValue().handle(new Return(312, "NO_ROUTE", invocation.getArgument(0),
+                    invocation.getArgument(1), properties.builder().headers(headers).build(), invocation.getArgument(4)));
+            confirmListener.getValue().handleAck(1L, false);
+            return null;
+        }).when(channel).basicPublish(anyString(), anyString(), anyBoolean(), any(AMQP.BasicProperties.class), any(byte[].class));
+        when(outboxEventMapper.selectDueForUpdate(any(), anyInt())).thenReturn(List.of(event(1L)), List.of());
+        CountDownLatch marked = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            marked.countDown();
+            return 1;
+        }).when(outboxEventMapper).markRetry(any(), any(), anyInt());
+
+        relay = newRelay(template);
+        // 确认超时远大于等待时间，重试只能来自退回
+        ReflectionTestUtils.setField(relay, "confirmTimeout", Duration.ofSeconds(30));
+        relay.trigger();
+
+        assertTrue(marked.await(5, TimeUnit.SECONDS));
+        assertTrue(mandatory.get(), "发送时需开启 mandatory，broker 才会退回无法路由的消息");
+        verify(outboxEventMapper).markRetry(eq(List.of(1L)), any(LocalDateTime.class), eq(10));
+        verify(outboxEventMapper, never()).markSent(any(), any());
+        connectionFactory.destroy();
+    }
+
+    private OutboxRelay newRelay(RabbitTemplate template) {
+        OutboxRelay outboxRelay = new OutboxRelay(outboxEventMapper, template, new ObjectMapper(), transactionTemplate,
+                new SimpleMeterRegistry(), relayExecutor);
+        ReflectionTestUtils.setField(outboxRelay, "batchSize", 10);
+        ReflectionTestUtils.setField(outboxRelay, "confirmTimeout", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(outboxRelay, "maxAttempts", 10);
+        ReflectionTestUtils.setField(outboxRelay, "retryBackoff", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(outboxRelay, "lease", Duration.ofSeconds(30));
+        return outboxRelay;
+    }
+
+    private OutboxEvent event(Long id) {
+        OutboxEvent event = new OutboxEvent();
+        event.setId(id);
+        event.setMessageId("message-" + id);
+        event.setExchange("exchange");
+        event.setRoutingKey("routing");
+        event.setPayloadType("com.itzixi.dto.StatsMessage");
+        event.setPayload("{}");
+        event.setAttempts(0);
+        return event;
+    }
+
+    /**
+     * 直接执行回调，并记录当前线程是否处于事务中
+     */
+    private static class RecordingTransactionTemplate extends TransactionTemplate {
+
+        private final ThreadLocal<Boolean> inTransaction = ThreadLocal.withInitial(() -> false);
+
+        @Override
+        public <T> T execute(TransactionCallback<T> action) {
+            inTransaction.set(true);
+            try {
+                TransactionStatus status = new SimpleTransactionStatus();
+                return action.doInTransaction(status);
+            } finally {
+                inTransaction.set(false);
+            }
+        }
+    }
+}
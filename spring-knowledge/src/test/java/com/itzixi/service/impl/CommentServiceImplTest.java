@@ -0,0 +1,169 @@
+package com.itzixi.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itzixi.common.result.CursorPage;
+import com.itzixi.dto.CommentReplyCount;
+import com.itzixi.entity.Comment;
+import com.itzixi.mapper.CommentMapper;
+import com.itzixi.service.CacheService;
+import com.itzixi.service.CountEstimateService;
+import com.itzixi.service.OutboxService;
+import com.itzixi.service.ReactionService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 评论服务测试：评论树构建、顶级评论和回复的游标分页、删除后在事务提交时才清除评论树缓存，
+ * 以及点赞前的存在性检查走缓存，评论表用 mock 代替
+ */
+public class CommentServiceImplTest {
+
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    private final CommentMapper commentMapper = mock(CommentMapper.class);
+
+    private final CacheService cacheService = mock(CacheService.class);
+
+    private final ReactionService reactionService = mock(ReactionService.class);
+
+    private CommentServiceImpl commentService;
+
+    @BeforeEach
+    public void setUp() {
+        commentService = new CommentServiceImpl(mock(OutboxService.class), reactionService,
+                mock(CountEstimateService.class), cacheService, new ObjectMapper());
+        ReflectionTestUtils.setField(commentService, "baseMapper", commentMapper);
+        when(commentMapper.countRepliesByParentIds(anyCollection())).thenReturn(List.of());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void testBuildCommentTree() {
+        // 按创建时间正序返回，回复 5 的父评论未发布，不在查询结果里
+        when(commentMapper.selectList(any())).thenReturn(List.of(
+                comment(1L, null, 0), comment(2L, 1L, 1), comment(3L, null, 2),
+                comment(4L, 2L, 3), comment(5L, 99L, 4), comment(6L, 1L, 5)));
+
+        List<Comment> tree = commentService.getCommentsByArticleId(10L);
+
+        assertEquals(List.of(1L, 3L), ids(tree));
+        assertEquals(List.of(2L, 6L), ids(tree.get(0).getChildren()));
+        assertEquals(List.of(4L), ids(tree.get(0).getChildren().get(0).getChildren()));
+        assertTrue(tree.get(1).getChildren().isEmpty());
+    }
+
+    @Test
+    public void testThreadPagesFollowCursor() {
+        List<Comment> firstPage = comments(1, 4);
+        when(commentMapper.selectChildrenAfter(10L, null, null, null, 4)).thenReturn(firstPage);
+        CommentReplyCount replies = new CommentReplyCount();
+        replies.setParentId(2L);
+        replies.setReplyCount(7L);
+        when(commentMapper.countRepliesByParentIds(List.of(1L, 2L, 3L))).thenReturn(List.of(replies));
+
+        CursorPage<Comment> page = commentService.getCommentThreads(10L, null, 3);
+
+        // 多查的一条只用来判断是否有下一页
+        assertEquals(List.of(1L, 2L, 3L), ids(page.getRecords()));
+        assertTrue(page.isHasMore());
+        assertEquals(List.of(0L, 7L, 0L), page.getRecords().stream().map(Comment::getReplyCount).toList());
+
+        // 下一页从上一页最后一条的 (created_at, id) 之后开始
+        Comment last = firstPage.get(2);
+        when(commentMapper.selectChildrenAfter(10L, null, last.getCreatedAt(), 3L, 4)).thenReturn(comments(4, 5));
+        CursorPage<Comment> next = commentService.getCommentThreads(10L, page.getNextCursor(), 3);
+
+        assertEquals(List.of(4L, 5L), ids(next.getRecords()));
+        assertFalse(next.isHasMore());
+        assertNull(next.getNextCursor());
+    }
+
+    @Test
+    public void testReplyPagesByParent() {
+        List<Comment> firstPage = comments(20, 22);
+        firstPage.forEach(comment -> comment.setParentId(1L));
+        when(commentMapper.selectChildrenAfter(null, 1L, null, null, 3)).thenReturn(firstPage);
+
+        CursorPage<Comment> page = commentService.getCommentReplies(1L, null, 2);
+
+        assertEquals(List.of(20L, 21L), ids(page.getRecords()));
+        Comment last = firstPage.get(1);
+        when(commentMapper.selectChildrenAfter(null, 1L, last.getCreatedAt(), 21L, 3)).thenReturn(comments(22, 22));
+        assertEquals(List.of(22L), ids(commentService.getCommentReplies(1L, page.getNextCursor(), 2).getRecords()));
+    }
+
+    @Test
+    public void testDeleteEvictsTreeAfterCommit() {
+        Comment comment = comment(1L, null, 0);
+        when(commentMapper.selectById(1L)).thenReturn(comment);
+        when(commentMapper.updateById(comment)).thenReturn(1);
+        TransactionSynchronizationManager.initSynchronization();
+
+        assertTrue(commentService.deleteComment(1L));
+
+        // 提交前不清除，避免并发读取把未提交前的旧评论树重新写入缓存
+        verify(cacheService, never()).evictCommentTreeCache(10L);
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        verify(cacheService).evictCommentTreeCache(10L);
+        assertEquals(2, comment.getStatus());
+    }
+
+    @Test
+    public void testLikeChecksExistenceThroughCache() {
+        when(cacheService.commentExists(1L)).thenReturn(true);
+        when(reactionService.like(ReactionService.Target.COMMENT, 1L, 7L)).thenReturn(true);
+
+        assertTrue(commentService.likeComment(1L, 7L));
+        assertFalse(commentService.likeComment(2L, 7L));
+
+        // 点赞不再整行查询评论
+        verify(commentMapper, never()).selectById(any());
+        verify(reactionService, never()).like(ReactionService.Target.COMMENT, 2L, 7L);
+    }
+
+    private List<Comment> comments(int fromId, int toId) {
+        List<Comment> comments = new ArrayList<>();
+        LongStream.rangeClosed(fromId, toId).forEach(id -> comments.add(comment(id, null, (int) id)));
+        return comments;
+    }
+
+    private Comment comment(Long id, Long parentId, int minutes) {
+        Comment comment = new Comment();
+        comment.setId(id);
+        comment.setArticleId(10L);
+        comment.setParentId(parentId);
+        comment.setStatus(1);
+        comment.setCreatedAt(BASE_TIME.plusMinutes(minutes));
+        return comment;
+    }
+
+    private List<Long> ids(List<Comment> comments) {
+        return comments.stream().map(Comment::getId).toList();
+    }
+}
@@ -0,0 +1,150 @@
+package com.itzixi.service.impl;
+
+import com.itzixi.bean.ChatRecord;
+import com.itzixi.mapper.ChatRecordMapper;
+import com.itzixi.service.InferenceScheduler;
+import com.itzixi.utils.ChatTypeEnum;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 对话记忆测试：token 预算内的窗口裁剪和移出窗口后的摘要合并，模型和聊天记录表用 mock 代替。
+ * 汉字按 1 个 token 估算，预算设为 10
+ */
+public class ConversationMemoryServiceImplTest {
+
+    private final ChatRecordMapper chatRecordMapper = mock(ChatRecordMapper.class);
+
+    private final OllamaChatModel ollamaChatModel = mock(OllamaChatModel.class);
+
+    private ConversationMemoryServiceImpl memoryService;
+
+    @BeforeEach
+    public void setUp() {
+        memoryService = new ConversationMemoryServiceImpl(100, Duration.ofMinutes(30));
+        ReflectionTestUtils.setField(memoryService, "chatRecordMapper", chatRecordMapper);
+        ReflectionTestUtils.setField(memoryService, "ollamaChatModel", ollamaChatModel);
+        ReflectionTestUtils.setField(memoryService, "inferenceScheduler",
+                new InferenceScheduler(new SimpleMeterRegistry(), 1, 10, 2));
+        ReflectionTestUtils.setField(memoryService, "maxTokens", 10);
+        ReflectionTestUtils.setField(memoryService, "summaryMaxChars", 300);
+        ReflectionTestUtils.setField(memoryService, "loadRecords", 40);
+        ReflectionTestUtils.setField(memoryService, "summarize", false);
+        when(chatRecordMapper.selectRecentByFamilyMember(anyString(), anyInt())).thenReturn(new ArrayList<>());
+    }
+
+    @Test
+    public void testEstimateTokens() {
+        assertEquals(4, ConversationMemoryServiceImpl.estimateTokens("头痛发热"));
+        assertEquals(2, ConversationMemoryServiceImpl.estimateTokens("fever"));
+        assertEquals(3, ConversationMemoryServiceImpl.estimateTokens("发热 38"));
+    }
+
+    @Test
+    public void testWindowTrimmedToTokenBudget() {
+        memoryService.buildMessages("alice", "开始");
+        memoryService.appendTurn("alice", "头痛发热", "多喝热水");
+        memoryService.appendTurn("alice", "咳嗽", "注意休息");
+
+        // 4 + 4 + 2 + 4 超出预算，最早的问题移出窗口进入摘要
+        List<Message> messages = memoryService.buildMessages("alice", "还要吃药吗");
+
+        assertEquals(5, messages.size());
+        assertInstanceOf(SystemMessage.class, messages.get(0));
+        assertTrue(messages.get(0).getText().contains("用户曾问：头痛发热"));
+        assertEquals(List.of("多喝热水", "咳嗽", "注意休息", "还要吃药吗"),
+                messages.subList(1, 5).stream().map(Message::getText).toList());
+        assertInstanceOf(AssistantMessage.class, messages.get(1));
+        assertInstanceOf(UserMessage.class, messages.get(4));
+    }
+
+    @Test
+    public void testColdLoadOverBudgetIsSummarized() {
+        List<ChatRecord> records = new ArrayList<>();
+        // 表中按时间倒序返回
+        records.add(record(ChatTypeEnum.BOT, "按时服药"));
+        records.add(record(ChatTypeEnum.USER, "血压偏高"));
+        records.add(record(ChatTypeEnum.BOT, "早睡早起"));
+        records.add(record(ChatTypeEnum.USER, "晚上失眠"));
+        when(chatRecordMapper.selectRecentByFamilyMember(eq("bob"), anyInt())).thenReturn(records);
+
+        List<Message> messages = memoryService.buildMessages("bob", "问题");
+
+        assertTrue(messages.get(0).getText().contains("用户曾问：晚上失眠"));
+        // 4 + 4 + 4 + 4 超出预算，最早的一问一答移出窗口
+        assertEquals(List.of("血压偏高", "按时服药", "问题"),
+                messages.subList(1, messages.size()).stream().map(Message::getText).toList());
+    }
+
+    @Test
+    public void testModelSummaryMergesEvictedTurns() {
+        ReflectionTestUtils.setField(memoryService, "summarize", true);
+        when(ollamaChatModel.call(anyString())).thenReturn("用户头痛发热，已建议多喝热水");
+
+        memoryService.buildMessages("alice", "开始");
+        memoryService.appendTurn("alice", "头痛发热", "多喝热水");
+        memoryService.appendTurn("alice", "咳嗽", "注意休息");
+
+        await(() -> memoryService.buildMessages("alice", "问题").get(0) instanceof SystemMessage);
+        assertEquals("以下是与该用户之前对话的摘要：用户头痛发热，已建议多喝热水",
+                memoryService.buildMessages("alice", "问题").get(0).getText());
+        verify(ollamaChatModel).call(argThat((String prompt) -> prompt.contains("用户：头痛发热")));
+    }
+
+    @Test
+    public void testModelFailureFallsBackToQuestions() {
+        ReflectionTestUtils.setField(memoryService, "summarize", true);
+        when(ollamaChatModel.call(anyString())).thenThrow(new IllegalStateException("模型不可用"));
+
+        memoryService.buildMessages("alice", "开始");
+        memoryService.appendTurn("alice", "头痛发热", "多喝热水");
+        memoryService.appendTurn("alice", "咳嗽", "注意休息");
+
+        await(() -> memoryService.buildMessages("alice", "问题").get(0) instanceof SystemMessage);
+        assertTrue(memoryService.buildMessages("alice", "问题").get(0).getText().contains("用户曾问：头痛发热"));
+    }
+
+    private ChatRecord record(ChatTypeEnum type, String content) {
+        ChatRecord record = new ChatRecord();
+        record.setChatType(type.type);
+        record.setContent(content);
+        return record;
+    }
+
+    private void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "等待摘要超时");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
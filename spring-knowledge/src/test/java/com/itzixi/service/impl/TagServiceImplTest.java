@@ -0,0 +1,130 @@
+package com.itzixi.service.impl;
+
+import com.itzixi.entity.Tag;
+import com.itzixi.mapper.TagMapper;
+import com.itzixi.service.CacheService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 标签服务测试：按语句实际影响的行数调整文章数，部分生效时改为重新统计，
+ * 以及在事务提交后才清除标签缓存。TagMapper 用 mock 代替，返回值即语句影响的行数
+ */
+public class TagServiceImplTest {
+
+    private final TagMapper tagMapper = mock(TagMapper.class);
+
+    private final CacheService cacheService = mock(CacheService.class);
+
+    private TagServiceImpl tagService;
+
+    @BeforeEach
+    public void setUp() {
+        tagService = new TagServiceImpl();
+        ReflectionTestUtils.setField(tagService, "baseMapper", tagMapper);
+        ReflectionTestUtils.setField(tagService, "cacheService", cacheService);
+        when(tagMapper.selectByNames(any())).thenReturn(List.of(tag(2L, "java"), tag(3L, "spring")));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void testSyncAppliesFullDiff() {
+        when(tagMapper.selectTagIdsByArticleId(10L)).thenReturn(List.of(1L, 2L));
+        when(tagMapper.deleteArticleTags(10L, Set.of(1L))).thenReturn(1);
+        when(tagMapper.insertIgnoreArticleTags(10L, Set.of(3L))).thenReturn(1);
+
+        tagService.syncArticleTags(10L, List.of("java", "spring"));
+
+        // 保留的标签 2 不计入增量
+        verify(tagMapper).batchAdjustArticleCount(Map.of(1L, -1, 3L, 1));
+        verify(tagMapper, never()).recountArticleCount(anyCollection());
+    }
+
+    @Test
+    public void testPartialInsertRecounts() {
+        when(tagMapper.selectTagIdsByArticleId(10L)).thenReturn(List.of());
+        // 并发请求已插入其中一条关联，INSERT IGNORE 只影响一行
+        when(tagMapper.insertIgnoreArticleTags(eq(10L), eq(Set.of(2L, 3L)))).thenReturn(1);
+
+        tagService.associateTagsWithArticle(10L, List.of("java", "spring"));
+
+        verify(tagMapper).recountArticleCount(Set.of(2L, 3L));
+        verify(tagMapper, never()).batchAdjustArticleCount(anyMap());
+    }
+
+    @Test
+    public void testNoAffectedRowsNoAdjustment() {
+        when(tagMapper.selectTagIdsByArticleId(10L)).thenReturn(List.of(2L));
+        when(tagMapper.deleteArticleTags(10L, Set.of(2L))).thenReturn(0);
+
+        tagService.syncArticleTags(10L, List.of());
+
+        verify(tagMapper, never()).batchAdjustArticleCount(anyMap());
+        verify(tagMapper, never()).recountArticleCount(anyCollection());
+    }
+
+    @Test
+    public void testRemoveAllTags() {
+        when(tagMapper.selectTagIdsByArticleId(10L)).thenReturn(List.of(1L, 2L));
+        when(tagMapper.deleteArticleTags(10L, null)).thenReturn(2);
+
+        tagService.removeTagsFromArticle(10L);
+
+        verify(tagMapper).batchAdjustArticleCount(Map.of(1L, -1, 2L, -1));
+    }
+
+    @Test
+    public void testPartialRemoveRecounts() {
+        when(tagMapper.selectTagIdsByArticleId(10L)).thenReturn(List.of(1L, 2L));
+        when(tagMapper.deleteArticleTags(10L, null)).thenReturn(1);
+
+        tagService.removeTagsFromArticle(10L);
+
+        verify(tagMapper).recountArticleCount(Set.of(1L, 2L));
+        verify(tagMapper, never()).batchAdjustArticleCount(anyMap());
+    }
+
+    @Test
+    public void testCacheEvictedAfterCommit() {
+        when(tagMapper.selectTagIdsByArticleId(10L)).thenReturn(List.of());
+        when(tagMapper.insertIgnoreArticleTags(eq(10L), anyCollection())).thenReturn(2);
+        TransactionSynchronizationManager.initSynchronization();
+
+        tagService.associateTagsWithArticle(10L, List.of("java", "spring"));
+
+        // 外层文章事务提交前不清除热门标签缓存
+        verify(cacheService, never()).evictTagCache();
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        verify(cacheService).evictTagCache();
+    }
+
+    private Tag tag(Long id, String name) {
+        Tag tag = new Tag();
+        tag.setId(id);
+        tag.setName(name);
+        return tag;
+    }
+}
@@ -0,0 +1,143 @@
+package com.itzixi.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 计数增量缓冲区测试：落库中的批次按开始时间参与叠加、失败撤回，以及并发写入与取出时增量不丢不重
+ */
+public class CounterBufferTest {
+
+    @Test
+    public void testInFlightBatchCountedForEarlierLoads() {
+        CounterBuffer buffer = new CounterBuffer();
+        buffer.add(1L, 5);
+
+        assertEquals(Map.of(1L, 5L), buffer.drain(1000));
+
+        // UPDATE 尚未提交时，落库开始前加载的缓存对象仍能看到这批增量
+        assertEquals(0, buffer.pending(1L));
+        assertEquals(5, buffer.changedSince(1L, 999L));
+        // 落库开始之后才加载完成的缓存对象视为已包含，不重复计数
+        assertEquals(0, buffer.changedSince(1L, 1000L));
+        assertEquals(0, buffer.changedSince(1L, 2000L));
+
+        buffer.add(1L, 2);
+        assertEquals(7, buffer.changedSince(1L, 999L));
+        assertEquals(2, buffer.changedSince(1L, 2000L));
+        assertEquals(2, buffer.changedSince(1L, null));
+    }
+
+    @Test
+    public void testRestoreWithdrawsFailedBatch() {
+        CounterBuffer buffer = new CounterBuffer();
+        buffer.add(1L, 5);
+        buffer.add(2L, 3);
+        buffer.drain(1000);
+        buffer.add(1L, 1);
+        Map<Long, Long> second = buffer.drain(2000);
+
+        buffer.restore(second, 2000);
+
+        // 撤回的批次只算在未落库里，前一批的记录保留
+        assertEquals(1, buffer.pending(1L));
+        assertEquals(6, buffer.changedSince(1L, 0L));
+        assertEquals(3, buffer.changedSince(2L, 0L));
+        assertEquals(Map.of(1L, 1L), buffer.drain(3000));
+    }
+
+    @Test
+    public void testExpireFlushed() {
+        CounterBuffer buffer = new CounterBuffer();
+        buffer.add(1L, 5);
+        buffer.drain(1000);
+        buffer.add(1L, 2);
+        buffer.drain(2000);
+
+        buffer.expireFlushed(1500);
+
+        assertEquals(2, buffer.changedSince(1L, 0L));
+    }
+
+    @Test
+    public void testIdleCounterRemoved() {
+        CounterBuffer buffer = new CounterBuffer();
+        buffer.add(1L, 5);
+        buffer.drain(1000);
+        assertEquals(1, buffer.size());
+
+        assertEquals(Map.of(), buffer.drain(2000));
+        assertEquals(0, buffer.size());
+
+        buffer.add(1L, 1);
+        assertEquals(Map.of(1L, 1L), buffer.drain(3000));
+    }
+
+    @Test
+    public void testConcurrentAddAndDrainLosesNothing() throws Exception {
+        CounterBuffer buffer = new CounterBuffer();
+        int threads = 8;
+        int addsPerThread = 200_000;
+        ExecutorService writers = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(writers.submit(() -> {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int n = 0; n < addsPerThread; n++) {
+                        // id 分布稀疏，空闲计数器会频繁被移除后又重新创建
+                        buffer.add((long) random.nextInt(4096), 1);
+                    }
+                    return null;
+                }));
+            }
+
+            long drained = 0;
+            long stamp = 0;
+            start.countDown();
+            Future<?> done = writers.submit(() -> {
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                writing.set(false);
+                return null;
+            });
+            while (writing.get()) {
+                drained += sum(buffer.drain(++stamp));
+            }
+            done.get(30, TimeUnit.SECONDS);
+            drained += sum(buffer.drain(++stamp));
+
+            assertEquals((long) threads * addsPerThread, drained);
+            assertEquals(0, buffer.pendingTotal());
+            long overlay = 0;
+            for (long id = 0; id < 4096; id++) {
+                overlay += buffer.changedSince(id, 0L);
+            }
+            assertEquals(drained, overlay);
+            assertTrue(stamp > 1);
+        } finally {
+            writers.shutdownNow();
+        }
+    }
+
+    private long sum(Map<Long, Long> deltas) {
+        return deltas.values().stream().mapToLong(Long::longValue).sum();
+    }
+}
@@ -0,0 +1,96 @@
+package com.itzixi.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.itzixi.security.TokenRevocationList;
+import com.itzixi.service.impl.UserServiceImpl;
+import io.jsonwebtoken.Claims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+
+/**
+ * JWT 工具类测试：吊销后的 Token 解析失败、刷新后旧 Token 失效、已验证缓存在 Token 过期时移除。
+ * Redis 用 mock 代替，吊销只看本地内存
+ */
+public class JwtUtilTest {
+
+    private final TokenRevocationList revocationList =
+            new TokenRevocationList(mock(StringRedisTemplate.class, RETURNS_DEEP_STUBS));
+
+    private JwtUtil jwtUtil;
+
+    @BeforeEach
+    public void setUp() {
+        jwtUtil = newJwtUtil(86400L);
+    }
+
+    @Test
+    public void testRevokedTokenRejected() {
+        String token = jwtUtil.createToken("alice");
+        assertNotNull(jwtUtil.parseToken(token));
+
+        jwtUtil.revokeToken(token);
+
+        // 已验证缓存中的条目也要失效，不能绕过吊销列表
+        assertNull(jwtUtil.parseToken(token));
+        assertNull(jwtUtil.getUsernameFromToken(token));
+    }
+
+    @Test
+    public void testRefreshRevokesOldToken() {
+        UserServiceImpl userService = new UserServiceImpl();
+        ReflectionTestUtils.setField(userService, "jwtUtil", jwtUtil);
+        String oldToken = jwtUtil.createToken("alice");
+        assertNotNull(jwtUtil.parseToken(oldToken));
+
+        String newToken = userService.refreshToken(oldToken);
+
+        assertNotEquals(oldToken, newToken);
+        assertNull(jwtUtil.parseToken(oldToken));
+        assertEquals("alice", jwtUtil.parseToken(newToken).getSubject());
+    }
+
+    @Test
+    public void testCachedClaimsExpireWithToken() throws InterruptedException {
+        JwtUtil shortLived = newJwtUtil(1L);
+        String token = shortLived.createToken("alice");
+        Claims claims = shortLived.parseToken(token);
+        assertNotNull(claims);
+        assertEquals(1, claimsCache(shortLived).estimatedSize());
+
+        long waitMillis = claims.getExpiration().getTime() - System.currentTimeMillis() + 200;
+        Thread.sleep(Math.max(0, waitMillis));
+
+        // 过期后缓存条目已移除，重新校验签名时因过期被拒绝
+        assertNull(claimsCache(shortLived).getIfPresent(hashOf(shortLived, token)));
+        assertNull(shortLived.parseToken(token));
+    }
+
+    private JwtUtil newJwtUtil(long expirationSeconds) {
+        JwtUtil util = new JwtUtil();
+        ReflectionTestUtils.setField(util, "secret", "mySecretKey123456789012345678901234567890");
+        ReflectionTestUtils.setField(util, "expiration", expirationSeconds);
+        ReflectionTestUtils.setField(util, "refreshExpiration", 604800L);
+        ReflectionTestUtils.setField(util, "claimsCacheSize", 100L);
+        ReflectionTestUtils.setField(util, "tokenRevocationList", revocationList);
+        util.init();
+        return util;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Cache<String, Claims> claimsCache(JwtUtil util) {
+        return (Cache<String, Claims>) ReflectionTestUtils.getField(util, "claimsCache");
+    }
+
+    private String hashOf(JwtUtil util, String token) {
+        return ReflectionTestUtils.invokeMethod(util, "hashToken", token);
+    }
+}
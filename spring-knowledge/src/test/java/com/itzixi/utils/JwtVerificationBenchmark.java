@@ -0,0 +1,101 @@
+package com.itzixi.utils;
+
+import com.itzixi.security.TokenRevocationList;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每个请求的 JWT 校验开销基准测试
+ * legacyPerRequest 复现原来过滤器的做法：每次解析都重新生成密钥和解析器，一个请求解析六次；
+ * singleParse 为预生成密钥后单次校验签名，cachedParse 为已验证缓存命中。
+ * 运行：mvn -Pjmh test -Dtest=JwtVerificationBenchmark（默认的测试不包含基准测试）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtVerificationBenchmark {
+
+    private static final String SECRET = "mySecretKey123456789012345678901234567890";
+
+    private JwtUtil jwtUtil;
+
+    private JwtParser parser;
+
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 86400L);
+        ReflectionTestUtils.setField(jwtUtil, "refreshExpiration", 604800L);
+        ReflectionTestUtils.setField(jwtUtil, "claimsCacheSize", 10000L);
+        ReflectionTestUtils.setField(jwtUtil, "tokenRevocationList",
+                new TokenRevocationList(Mockito.mock(StringRedisTemplate.class)));
+        jwtUtil.init();
+        parser = Jwts.parser().verifyWith(Keys.hmacShaKeyFor(SECRET.getBytes())).build();
+        token = jwtUtil.createToken("benchmark");
+        jwtUtil.parseToken(token);
+    }
+
+    @Benchmark
+    public void legacyPerRequest(Blackhole blackhole) {
+        // validateToken(token) 解析两次，getUsernameFromToken 一次，validateToken(token, username) 三次
+        for (int i = 0; i < 6; i++) {
+            Claims claims = Jwts.parser()
+                    .verifyWith(Keys.hmacShaKeyFor(SECRET.getBytes()))
+                    .build()
+                    .parseSignedClaims(token)
+                    .getPayload();
+            blackhole.consume(claims.getExpiration().before(new Date()));
+        }
+    }
+
+    @Benchmark
+    public Claims singleParse() {
+        return parser.parseSignedClaims(token).getPayload();
+    }
+
+    @Benchmark
+    public Claims cachedParse() {
+        return jwtUtil.parseToken(token);
+    }
+
+    @Test
+    public void runBenchmarks() throws RunnerException {
+        main(new String[0]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtVerificationBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,278 @@
+package com.itzixi.utils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * 测试用的最小 Redis 服务，只实现 RESP2 协议下 SSE 跨节点路由用到的命令：
+ * 有序集合（在线表）、哈希（在线人数）和发布订阅。环境中没有 Redis 和 Docker 时代替真实 Redis
+ */
+class MiniRedisServer implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+
+    private final Map<String, Map<String, Double>> zsets = new ConcurrentHashMap<>();
+
+    private final Map<String, Map<String, String>> hashes = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<Client>> subscribers = new ConcurrentHashMap<>();
+
+    private final Set<Client> clients = new CopyOnWriteArraySet<>();
+
+    MiniRedisServer() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "mini-redis-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Client client : clients) {
+            client.close();
+        }
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Client client = new Client(serverSocket.accept());
+                clients.add(client);
+                Thread thread = new Thread(client::serve, "mini-redis-client");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private class Client {
+
+        private final Socket socket;
+
+        private final InputStream in;
+
+        private final OutputStream out;
+
+        private final Set<String> channels = ConcurrentHashMap.newKeySet();
+
+        Client(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new BufferedInputStream(socket.getInputStream());
+            this.out = socket.getOutputStream();
+        }
+
+        void serve() {
+            try {
+                List<String> command;
+                while ((command = readCommand()) != null) {
+                    try {
+                        execute(command);
+                    } catch (RuntimeException e) {
+                        write("-ERR " + e + "\r\n");
+                    }
+                }
+            } catch (IOException e) {
+                // 连接关闭
+            } finally {
+                channels.forEach(channel -> subscribers.computeIfPresent(channel, (key, set) -> {
+                    set.remove(this);
+                    return set;
+                }));
+                clients.remove(this);
+                close();
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // 忽略
+            }
+        }
+
+        private void execute(List<String> command) throws IOException {
+            String name = command.get(0).toUpperCase();
+            switch (name) {
+                case "PING" -> write("+PONG\r\n");
+                case "CLIENT", "SELECT" -> write("+OK\r\n");
+                case "QUIT" -> {
+                    write("+OK\r\n");
+                    close();
+                }
+                case "ZADD" -> {
+                    Map<String, Double> zset = zsets.computeIfAbsent(command.get(1), key -> new ConcurrentHashMap<>());
+                    int added = 0;
+                    for (int i = 2; i + 1 < command.size(); i += 2) {
+                        if (zset.put(command.get(i + 1), Double.parseDouble(command.get(i))) == null) {
+                            added++;
+                        }
+                    }
+                    writeInteger(added);
+                }
+                case "ZREM" -> {
+                    Map<String, Double> zset = zsets.computeIfAbsent(command.get(1), key -> new ConcurrentHashMap<>());
+                    int removed = 0;
+                    for (String member : command.subList(2, command.size())) {
+                        if (zset.remove(member) != null) {
+                            removed++;
+                        }
+                    }
+                    writeInteger(removed);
+                }
+                case "ZRANGEBYSCORE", "ZCOUNT" -> {
+                    double min = parseScore(command.get(2));
+                    double max = parseScore(command.get(3));
+                    List<String> members = new ArrayList<>();
+                    zsets.getOrDefault(command.get(1), Map.of()).forEach((member, score) -> {
+                        if (score >= min && score <= max) {
+                            members.add(member);
+                        }
+                    });
+                    if ("ZCOUNT".equals(name)) {
+                        writeInteger(members.size());
+                    } else {
+                        writeArray(members);
+                    }
+                }
+                case "EXPIRE" -> writeInteger(zsets.containsKey(command.get(1)) || hashes.containsKey(command.get(1)) ? 1 : 0);
+                case "HSET" -> {
+                    Map<String, String> hash = hashes.computeIfAbsent(command.get(1), key -> new ConcurrentHashMap<>());
+                    int added = 0;
+                    for (int i = 2; i + 1 < command.size(); i += 2) {
+                        if (hash.put(command.get(i), command.get(i + 1)) == null) {
+                            added++;
+                        }
+                    }
+                    writeInteger(added);
+                }
+                case "HDEL" -> {
+                    Map<String, String> hash = hashes.computeIfAbsent(command.get(1), key -> new ConcurrentHashMap<>());
+                    int removed = 0;
+                    for (String field : command.subList(2, command.size())) {
+                        if (hash.remove(field) != null) {
+                            removed++;
+                        }
+                    }
+                    writeInteger(removed);
+                }
+                case "HGETALL" -> {
+                    List<String> values = new ArrayList<>();
+                    hashes.getOrDefault(command.get(1), Map.of()).forEach((field, value) -> {
+                        values.add(field);
+                        values.add(value);
+                    });
+                    writeArray(values);
+                }
+                case "PUBLISH" -> {
+                    Set<Client> receivers = subscribers.getOrDefault(command.get(1), Set.of());
+                    for (Client receiver : receivers) {
+                        receiver.writeArray(List.of("message", command.get(1), command.get(2)));
+                    }
+                    writeInteger(receivers.size());
+                }
+                case "SUBSCRIBE" -> {
+                    for (String channel : command.subList(1, command.size())) {
+                        channels.add(channel);
+                        subscribers.computeIfAbsent(channel, key -> new CopyOnWriteArraySet<>()).add(this);
+                        writeSubscription("subscribe", channel);
+                    }
+                }
+                case "UNSUBSCRIBE" -> {
+                    List<String> targets = command.size() > 1 ? command.subList(1, command.size()) : new ArrayList<>(channels);
+                    for (String channel : targets) {
+                        channels.remove(channel);
+                        subscribers.computeIfAbsent(channel, key -> new CopyOnWriteArraySet<>()).remove(this);
+                        writeSubscription("unsubscribe", channel);
+                    }
+                }
+                default -> write("-ERR unknown command '" + command.get(0) + "'\r\n");
+            }
+        }
+
+        private double parseScore(String score) {
+            String value = score.startsWith("(") ? score.substring(1) : score;
+            return switch (value.toLowerCase()) {
+                case "-inf" -> Double.NEGATIVE_INFINITY;
+                case "+inf", "inf" -> Double.POSITIVE_INFINITY;
+                default -> Double.parseDouble(value);
+            };
+        }
+
+        private List<String> readCommand() throws IOException {
+            String header = readLine();
+            if (header == null) {
+                return null;
+            }
+            if (!header.startsWith("*")) {
+                throw new IOException("不支持的请求: " + header);
+            }
+            int count = Integer.parseInt(header.substring(1));
+            List<String> args = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int length = Integer.parseInt(readLine().substring(1));
+                byte[] bytes = in.readNBytes(length + 2);
+                args.add(new String(bytes, 0, length, StandardCharsets.UTF_8));
+            }
+            return args;
+        }
+
+        private String readLine() throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == '\r') {
+                    in.read();
+                    return line.toString(StandardCharsets.UTF_8);
+                }
+                line.write(b);
+            }
+            return null;
+        }
+
+        private void writeSubscription(String kind, String channel) throws IOException {
+            byte[] kindBytes = kind.getBytes(StandardCharsets.UTF_8);
+            byte[] channelBytes = channel.getBytes(StandardCharsets.UTF_8);
+            write("*3\r\n$" + kindBytes.length + "\r\n" + kind + "\r\n$" + channelBytes.length + "\r\n" + channel
+                    + "\r\n:" + channels.size() + "\r\n");
+        }
+
+        private void writeInteger(long value) throws IOException {
+            write(":" + value + "\r\n");
+        }
+
+        private void writeArray(List<String> values) throws IOException {
+            StringBuilder reply = new StringBuilder("*").append(values.size()).append("\r\n");
+            for (String value : values) {
+                reply.append('$').append(value.getBytes(StandardCharsets.UTF_8).length).append("\r\n")
+                        .append(value).append("\r\n");
+            }
+            write(reply.toString());
+        }
+
+        private synchronized void write(String reply) throws IOException {
+            out.write(reply.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.itzixi.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 环形缓冲区测试
+ */
+public class MpscRingBufferTest {
+
+    @Test
+    public void testOfferFailsWhenFull() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(3);
+        assertEquals(4, buffer.capacity());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+
+        assertEquals(0, buffer.poll());
+        assertTrue(buffer.offer(4));
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(4, buffer.drainTo(drained, 10));
+        assertEquals(List.of(1, 2, 3, 4), drained);
+        assertNull(buffer.poll());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void testConcurrentProducersLoseNothingAccepted() throws InterruptedException {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(1024);
+        int producers = 4;
+        int perProducer = 50_000;
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    if (!buffer.offer(base + i)) {
+                        rejected.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+
+        Set<Integer> received = new HashSet<>();
+        List<Integer> batch = new ArrayList<>();
+        while (done.getCount() > 0 || buffer.size() > 0) {
+            batch.clear();
+            buffer.drainTo(batch, 256);
+            received.addAll(batch);
+        }
+        done.await();
+        batch.clear();
+        buffer.drainTo(batch, Integer.MAX_VALUE);
+        received.addAll(batch);
+
+        assertEquals(producers * perProducer, received.size() + rejected.get());
+    }
+}
@@ -0,0 +1,68 @@
+package com.itzixi.utils;
+
+import com.itzixi.common.exception.BusinessException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 分页游标测试：编码解析往返、篡改和跨列表混用的游标统一按参数错误拒绝
+ */
+public class PageCursorTest {
+
+    @Test
+    public void testRoundTrip() {
+        // 纳秒精度不能丢，否则同一毫秒内创建的文章会被跳过或重复
+        LocalDateTime createdAt = LocalDateTime.of(2024, 5, 1, 12, 0, 0, 123_456_789);
+
+        PageCursor cursor = PageCursor.decode(PageCursor.encode("article", true, createdAt, 42L), "article", 3);
+
+        assertTrue(cursor.getBoolean(0));
+        assertEquals(createdAt, cursor.getDateTime(1));
+        assertEquals(42L, cursor.getLong(2));
+        assertFalse(PageCursor.decode(PageCursor.encode("article", false, createdAt, 1L), "article", 3).getBoolean(0));
+        assertEquals(3, PageCursor.decode(PageCursor.encode("search", 3), "search", 1).getInt(0));
+    }
+
+    @Test
+    public void testCursorIsUrlSafe() {
+        String token = PageCursor.encode("article", true, LocalDateTime.of(2024, 5, 1, 12, 0), 42L);
+
+        assertTrue(token.matches("[A-Za-z0-9_-]+"), token);
+    }
+
+    @Test
+    public void testCrossTypeCursorRejected() {
+        String commentCursor = PageCursor.encode("comment", LocalDateTime.of(2024, 5, 1, 12, 0), 42L);
+
+        assertInvalid(() -> PageCursor.decode(commentCursor, "thread", 2));
+        // 类型相同但排序键个数不同也不接受
+        assertInvalid(() -> PageCursor.decode(commentCursor, "comment", 3));
+    }
+
+    @Test
+    public void testTamperedCursorRejected() {
+        assertInvalid(() -> PageCursor.decode("不是游标", "article", 3));
+        assertInvalid(() -> PageCursor.decode("%%%", "article", 3));
+        assertInvalid(() -> PageCursor.decode(raw("article|1|2024-05-01T12:00|42|7"), "article", 3));
+        assertInvalid(() -> PageCursor.decode(raw("article|1|昨天|42"), "article", 3).getDateTime(1));
+        assertInvalid(() -> PageCursor.decode(raw("article|1|2024-05-01T12:00|1 OR 1=1"), "article", 3).getLong(2));
+        assertInvalid(() -> PageCursor.decode(raw("search|abc"), "search", 1).getInt(0));
+    }
+
+    private String raw(String payload) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void assertInvalid(Runnable decode) {
+        BusinessException e = assertThrows(BusinessException.class, decode::run);
+        assertEquals(400, e.getCode());
+    }
+}
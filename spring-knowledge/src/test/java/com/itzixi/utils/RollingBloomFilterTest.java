@@ -0,0 +1,67 @@
+package com.itzixi.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 滚动布隆过滤器测试
+ */
+public class RollingBloomFilterTest {
+
+    @Test
+    public void testMemoryPerMillionIds() {
+        RollingBloomFilter filter = new RollingBloomFilter(1_000_000, 0.01, Duration.ofMinutes(10));
+        long perGeneration = filter.memoryBytes() / 2;
+        // 1% 误判率约 9.6 位/元素
+        assertTrue(perGeneration > 1_150_000 && perGeneration < 1_250_000, "单代字节数: " + perGeneration);
+        assertTrue(filter.memoryBytes() < 2_500_000, "两代字节数: " + filter.memoryBytes());
+        assertEquals(7, filter.hashCount());
+    }
+
+    @Test
+    public void testNoFalseNegativesAndBoundedFalsePositives() {
+        int count = 100_000;
+        RollingBloomFilter filter = new RollingBloomFilter(count, 0.01, Duration.ofMinutes(10));
+        String[] ids = new String[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = UUID.randomUUID().toString();
+            filter.put(ids[i]);
+        }
+        for (String id : ids) {
+            assertTrue(filter.mightContain(id));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < count; i++) {
+            if (filter.mightContain(UUID.randomUUID().toString())) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < count * 0.015, "误判数: " + falsePositives);
+    }
+
+    @Test
+    public void testEntriesExpireAfterTwoWindows() {
+        AtomicLong clock = new AtomicLong();
+        long window = Duration.ofMinutes(10).toNanos();
+        RollingBloomFilter filter = new RollingBloomFilter(1000, 0.01, Duration.ofMinutes(10), clock::get);
+        filter.put("message-1");
+
+        clock.addAndGet(window);
+        assertTrue(filter.mightContain("message-1"));
+        filter.put("message-2");
+
+        clock.addAndGet(window);
+        assertFalse(filter.mightContain("message-1"));
+        assertTrue(filter.mightContain("message-2"));
+
+        clock.addAndGet(window * 3);
+        assertFalse(filter.mightContain("message-2"));
+    }
+}
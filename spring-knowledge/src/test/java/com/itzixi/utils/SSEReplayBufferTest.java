@@ -0,0 +1,100 @@
+package com.itzixi.utils;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * SSE 重放缓冲测试：按 Last-Event-ID 补发断线期间的消息，以及超出容量和过期后的行为
+ */
+public class SSEReplayBufferTest {
+
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+
+    @Test
+    public void testReplayGapAfterLastEventId() {
+        SSEReplayBuffer buffer = newBuffer(2048, 65536, Duration.ofMinutes(10));
+        long first = buffer.append("alice", "你好", SSEMsgType.ADD);
+        long second = buffer.append("alice", "，请问", SSEMsgType.ADD);
+        long third = buffer.append("alice", "", SSEMsgType.FINISH);
+        buffer.append("bob", "其他用户", SSEMsgType.MESSAGE);
+
+        assertTrue(first < second && second < third);
+        // 客户端收到第一条后断线，重连时只补发之后的消息
+        assertEquals(List.of(new SSEReplayBuffer.ReplayEvent(second, SSEMsgType.ADD, "，请问"),
+                        new SSEReplayBuffer.ReplayEvent(third, SSEMsgType.FINISH, "")),
+                buffer.since("alice", first));
+        assertEquals(List.of(), buffer.since("alice", third));
+        assertEquals(3, buffer.since("alice", 0).size());
+        assertEquals(List.of(), buffer.since("carol", 0));
+    }
+
+    @Test
+    public void testOverflowDropsOldestEvents() {
+        SSEReplayBuffer buffer = newBuffer(3, 65536, Duration.ofMinutes(10));
+        long first = buffer.append("alice", "1", SSEMsgType.ADD);
+        for (int i = 2; i <= 5; i++) {
+            buffer.append("alice", String.valueOf(i), SSEMsgType.ADD);
+        }
+
+        // 只保留最近 3 条，更早的事件无法补发
+        assertEquals(List.of("3", "4", "5"), messages(buffer.since("alice", first)));
+    }
+
+    @Test
+    public void testOverflowByCharsKeepsLatestEvent() {
+        SSEReplayBuffer buffer = newBuffer(2048, 10, Duration.ofMinutes(10));
+        buffer.append("alice", "12345", SSEMsgType.ADD);
+        buffer.append("alice", "67890", SSEMsgType.ADD);
+        buffer.append("alice", "abc", SSEMsgType.ADD);
+        assertEquals(List.of("67890", "abc"), messages(buffer.since("alice", 0)));
+
+        // 单条超过字符上限时仍保留这一条
+        buffer.append("alice", "x".repeat(20), SSEMsgType.ADD);
+        assertEquals(List.of("x".repeat(20)), messages(buffer.since("alice", 0)));
+    }
+
+    @Test
+    public void testExpiredBufferRestartsAboveOldIds() throws InterruptedException {
+        SSEReplayBuffer buffer = newBuffer(2048, 65536, Duration.ofMillis(50));
+        long oldId = buffer.append("alice", "过期前", SSEMsgType.MESSAGE);
+
+        Thread.sleep(100);
+
+        assertEquals(List.of(), buffer.since("alice", 0));
+        long newId = buffer.append("alice", "过期后", SSEMsgType.MESSAGE);
+        assertTrue(newId > oldId, "缓冲重建后的事件ID必须大于客户端持有的旧ID");
+        assertEquals(List.of("过期后"), messages(buffer.since("alice", oldId)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRedisFailureDisablesReplay() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenThrow(new RedisConnectionFailureException("连接失败"));
+        when(redisTemplate.opsForList()).thenThrow(new RedisConnectionFailureException("连接失败"));
+        SSEReplayBuffer buffer = new SSEReplayBuffer(redisTemplate, true, 2048, 65536, Duration.ofMinutes(10), 10_000);
+
+        assertEquals(0L, buffer.append("alice", "消息", SSEMsgType.MESSAGE));
+        assertEquals(List.of(), buffer.since("alice", 0));
+    }
+
+    private SSEReplayBuffer newBuffer(int maxEvents, int maxChars, Duration ttl) {
+        return new SSEReplayBuffer(redisTemplate, false, maxEvents, maxChars, ttl, 10_000);
+    }
+
+    private List<String> messages(List<SSEReplayBuffer.ReplayEvent> events) {
+        return events.stream().map(SSEReplayBuffer.ReplayEvent::message).toList();
+    }
+}
@@ -0,0 +1,143 @@
+package com.itzixi.utils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * SSE 跨节点投递测试：两个 SSEServer 实例通过同一个 Redis（测试内的最小 RESP 服务）路由消息，
+ * 使用真实的 Lettuce 连接和 RedisMessageListenerContainer 订阅
+ */
+public class SSEServerCrossNodeTest {
+
+    private MiniRedisServer redisServer;
+
+    private Node nodeA;
+
+    private Node nodeB;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        redisServer = new MiniRedisServer();
+        nodeA = new Node(redisServer.getPort());
+        nodeB = new Node(redisServer.getPort());
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        nodeA.close();
+        nodeB.close();
+        redisServer.close();
+    }
+
+    @Test
+    public void testDirectedMessageReachesOtherNode() {
+        SseEmitter emitter = nodeA.sseServer.connect("alice");
+
+        nodeB.sseServer.sendMessage("alice", "来自节点B", SSEMsgType.MESSAGE);
+
+        await(() -> received(emitter, "来自节点B"));
+        assertTrue(nodeB.sseServer.isOnline("alice"));
+        assertEquals(0, nodeB.sseServer.getConnectionCounts());
+    }
+
+    @Test
+    public void testBroadcastReachesAllNodes() {
+        SseEmitter onA = nodeA.sseServer.connect("alice");
+        SseEmitter onB = nodeB.sseServer.connect("bob");
+
+        nodeB.sseServer.sendMessageToAllUsers("全体通知");
+
+        await(() -> received(onA, "全体通知") && received(onB, "全体通知"));
+    }
+
+    @Test
+    public void testStopClosesConnectionOnOtherNode() {
+        nodeA.sseServer.connect("alice");
+
+        nodeB.sseServer.stopServer("alice");
+
+        // 连接移除后才清除在线记录，两者都要等待
+        await(() -> nodeA.sseServer.getConnectionCounts() == 0 && !nodeB.sseServer.isOnline("alice"));
+    }
+
+    private void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "等待跨节点消息超时");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 连接未绑定 HTTP 响应，已发送的事件暂存在 emitter 的早期缓冲中
+     */
+    @SuppressWarnings("unchecked")
+    private boolean received(SseEmitter emitter, String message) {
+        Set<ResponseBodyEmitter.DataWithMediaType> sent =
+                (Set<ResponseBodyEmitter.DataWithMediaType>) ReflectionTestUtils.getField(emitter, "earlySendAttempts");
+        synchronized (emitter) {
+            return sent.stream().anyMatch(data -> String.valueOf(data.getData()).contains(message));
+        }
+    }
+
+    /**
+     * 一个节点：独立的 Redis 连接、订阅容器和 SSEServer
+     */
+    private static class Node {
+
+        private final LettuceConnectionFactory connectionFactory;
+
+        private final RedisMessageListenerContainer container;
+
+        private final SSEServer sseServer;
+
+        Node(int port) {
+            connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("127.0.0.1", port));
+            connectionFactory.afterPropertiesSet();
+            connectionFactory.start();
+            StringRedisTemplate redisTemplate = new StringRedisTemplate(connectionFactory);
+            SSEReplayBuffer replayBuffer = new SSEReplayBuffer(redisTemplate, false, 2048, 65536,
+                    Duration.ofMinutes(10), 10_000);
+            sseServer = new SSEServer(redisTemplate, replayBuffer, new SimpleMeterRegistry(), Duration.ofSeconds(90),
+                    256, SSEConnection.SlowConsumerPolicy.DISCONNECT, Duration.ofMinutes(30), Duration.ofSeconds(60),
+                    5, 2);
+            container = new RedisMessageListenerContainer();
+            container.setConnectionFactory(connectionFactory);
+            container.addMessageListener(sseServer, List.of(new ChannelTopic(sseServer.getNodeChannel()),
+                    new ChannelTopic(SSEServer.BROADCAST_CHANNEL)));
+            container.afterPropertiesSet();
+            container.start();
+        }
+
+        void close() {
+            sseServer.shutdown();
+            container.stop();
+            connectionFactory.destroy();
+        }
+    }
+}
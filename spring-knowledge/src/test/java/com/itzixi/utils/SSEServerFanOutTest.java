@@ -0,0 +1,181 @@
+package com.itzixi.utils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * SSE 群发测试：入队不阻塞调用方，慢客户端不拖住其他连接，阻塞的连接在关闭线程池中断开。
+ * Redis 用 mock 代替，连接未绑定 HTTP 响应时 send 写入 emitter 的早期缓冲
+ */
+public class SSEServerFanOutTest {
+
+    private static final int CONNECTIONS = 10_000;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private SSEServer sseServer;
+
+    @AfterEach
+    public void tearDown() {
+        if (sseServer != null) {
+            sseServer.shutdown();
+        }
+    }
+
+    @Test
+    public void testBroadcastToTenThousandConnections() throws InterruptedException {
+        sseServer = newServer(Duration.ofSeconds(60), 8);
+        for (int i = 0; i < CONNECTIONS; i++) {
+            sseServer.connect("user-" + i);
+        }
+
+        long start = System.nanoTime();
+        // 群发只负责入队，写出由写线程完成，调用方不等待
+        assertTimeoutPreemptively(Duration.ofSeconds(2), () -> sseServer.sendMessageToAllUsers("hello"));
+        long deadline = start + TimeUnit.SECONDS.toNanos(10);
+        while (sentCount() < CONNECTIONS && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+
+        assertEquals(CONNECTIONS, sentCount());
+        assertEquals(CONNECTIONS, sseServer.getConnectionCounts());
+    }
+
+    @Test
+    public void testSlowClientsDoNotStallOtherConnections() throws InterruptedException {
+        ExecutorService writers = Executors.newFixedThreadPool(4);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            List<SSEConnection> connections = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                connections.add(new SSEConnection("slow-" + i, new BlockingEmitter(release), 16));
+            }
+            int fast = 1000;
+            CountDownLatch delivered = new CountDownLatch(fast);
+            for (int i = 0; i < fast; i++) {
+                connections.add(new SSEConnection("fast-" + i, new SseEmitter(), 16));
+            }
+            SSEConnection.QueuedEvent event = new SSEConnection.QueuedEvent(
+                    SseEmitter.event().data("hello").build(), 0L, System.nanoTime());
+
+            for (SSEConnection connection : connections) {
+                connection.offer(event, SSEConnection.SlowConsumerPolicy.DISCONNECT);
+                connection.schedule(writers, (sent, error) -> {
+                    if (error == null && connection.getUserId().startsWith("fast-")) {
+                        delivered.countDown();
+                    }
+                });
+            }
+
+            assertTrue(delivered.await(5, TimeUnit.SECONDS), "慢客户端阻塞了其他连接的发送");
+        } finally {
+            release.countDown();
+            writers.shutdownNow();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReapDoesNotWaitForBlockedSend() throws InterruptedException {
+        sseServer = newServer(Duration.ofMillis(50), 2);
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingEmitter emitter = new BlockingEmitter(release);
+        Map<String, List<SSEConnection>> clients =
+                (Map<String, List<SSEConnection>>) ReflectionTestUtils.getField(sseServer, "sseClients");
+        clients.put("stuck", new CopyOnWriteArrayList<>(List.of(new SSEConnection("stuck", emitter, 16))));
+        try {
+            sseServer.sendMessage("stuck", "hello", SSEMsgType.MESSAGE);
+            assertTrue(emitter.entered.await(5, TimeUnit.SECONDS));
+            Thread.sleep(100);
+
+            // 写线程持有 emitter 锁阻塞在 send 中，清理不能在调度线程上等待 complete
+            assertTimeoutPreemptively(Duration.ofSeconds(1), () -> sseServer.reapIdleConnections());
+            assertEquals(0, sseServer.getConnectionCounts());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testStopWithFullQueueDoesNotWaitForBlockedSend() throws InterruptedException {
+        sseServer = newServer(Duration.ofSeconds(60), 2);
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingEmitter emitter = new BlockingEmitter(release);
+        Map<String, List<SSEConnection>> clients =
+                (Map<String, List<SSEConnection>>) ReflectionTestUtils.getField(sseServer, "sseClients");
+        clients.put("stuck", new CopyOnWriteArrayList<>(List.of(new SSEConnection("stuck", emitter, 1))));
+        try {
+            sseServer.sendMessage("stuck", "hello", SSEMsgType.MESSAGE);
+            assertTrue(emitter.entered.await(5, TimeUnit.SECONDS));
+            // 写线程阻塞在第一条消息上，第二条占满队列，关闭标记无法入队
+            sseServer.sendMessage("stuck", "world", SSEMsgType.MESSAGE);
+
+            // 关闭交给关闭线程池，调用方不能在 emitter 锁上等待 complete
+            assertTimeoutPreemptively(Duration.ofSeconds(1), () -> sseServer.stopServer("stuck"));
+            assertEquals(0, sseServer.getConnectionCounts());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private SSEServer newServer(Duration idleTimeout, int writerThreads) {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class,
+                withSettings().stubOnly().defaultAnswer(RETURNS_DEEP_STUBS));
+        SSEReplayBuffer replayBuffer = new SSEReplayBuffer(redisTemplate, false, 2048, 65536,
+                Duration.ofMinutes(10), 10_000);
+        return new SSEServer(redisTemplate, replayBuffer, meterRegistry, Duration.ofSeconds(90), 256,
+                SSEConnection.SlowConsumerPolicy.DISCONNECT, Duration.ofMinutes(30), idleTimeout, 5, writerThreads);
+    }
+
+    private long sentCount() {
+        return meterRegistry.get("sse.send.latency").timer().count();
+    }
+
+    /**
+     * 模拟网络写阻塞的客户端，和 ResponseBodyEmitter 一样在持有 emitter 锁时阻塞
+     */
+    private static class BlockingEmitter extends SseEmitter {
+
+        private final CountDownLatch release;
+
+        private final CountDownLatch entered = new CountDownLatch(1);
+
+        BlockingEmitter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public synchronized void send(Set<ResponseBodyEmitter.DataWithMediaType> items) {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}